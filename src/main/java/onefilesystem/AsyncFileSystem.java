@@ -0,0 +1,154 @@
+package onefilesystem;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import onefilesystem.exception.TooManyInFlightOperationsException;
+
+import static onefilesystem.utils.Constants.ASYNC_IO_THREADS;
+import static onefilesystem.utils.Constants.ASYNC_MAX_IN_FLIGHT;
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Неблокирующая обертка над FileSystem: вызывающий поток сразу получает CompletableFuture, а операция выполняется
+ * на выделенных потоках ввода/вывода (дорожках).
+ * <p>
+ * Файл закреплен за дорожкой по хэшу имени, поэтому операции над одним файлом выполняются в порядке вызова, а над
+ * файлами разных дорожек - параллельно. Гарантии видимости те же, что у FileSystem: после завершения future записи
+ * новый контент виден всем читателям, недописанный контент не виден никому.
+ * <p>
+ * Число операций в полете ограничено maxInFlight. Сверх него future сразу завершается
+ * TooManyInFlightOperationsException: вызывающий поток (например, event loop) не блокируется и сам решает, когда
+ * повторить операцию.
+ * <p>
+ * Зависимые стадии без *Async выполняются на потоке дорожки и задерживают остальные операции этой дорожки.
+ * Файловую систему AsyncFileSystem не закрывает.
+ */
+public class AsyncFileSystem implements Closeable {
+
+    private final FileSystem fileSystem;
+    private final ExecutorService[] lanes;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    /**
+     * @param fileSystem - файловая система
+     */
+    public AsyncFileSystem(FileSystem fileSystem) {
+        this(fileSystem, ASYNC_IO_THREADS, ASYNC_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param fileSystem  - файловая система
+     * @param ioThreads   - сколько потоков ввода/вывода
+     * @param maxInFlight - сколько операций может быть начато и не закончено одновременно
+     */
+    public AsyncFileSystem(FileSystem fileSystem, int ioThreads, int maxInFlight) {
+        checkState(ioThreads > 0, "IO threads count must be positive: " + ioThreads);
+        checkState(maxInFlight > 0, "Max in flight operations count must be positive: " + maxInFlight);
+
+        this.fileSystem = fileSystem;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.lanes = new ExecutorService[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            String threadName = "one-file-system-io-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public CompletableFuture<Void> createFile(String fileName) {
+        return submit(fileName, () -> {
+            fileSystem.createFile(fileName);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> writeContent(String fileName, byte[] content) {
+        return submit(fileName, () -> {
+            fileSystem.writeContent(fileName, content);
+            return null;
+        });
+    }
+
+    public CompletableFuture<byte[]> readContent(String fileName) {
+        return submit(fileName, () -> fileSystem.readContent(fileName));
+    }
+
+    public CompletableFuture<Void> deleteFile(String fileName) {
+        return submit(fileName, () -> {
+            fileSystem.deleteFile(fileName);
+            return null;
+        });
+    }
+
+    /**
+     * @return - сколько операций начато и не закончено
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Дождаться уже начатых операций и остановить потоки ввода/вывода. Новые операции завершаются
+     * RejectedExecutionException
+     */
+    @Override
+    public void close() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        try {
+            for (ExecutorService lane : lanes) {
+                lane.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Выполнить операцию на дорожке файла. Разрешение на операцию освобождается до завершения future, чтобы
+     * зависимая стадия могла сразу начать следующую операцию
+     */
+    private <T> CompletableFuture<T> submit(String fileName, Supplier<T> operation) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(new TooManyInFlightOperationsException(fileName, maxInFlight));
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            laneFor(fileName).execute(() -> {
+                T result;
+                try {
+                    result = operation.get();
+                } catch (Throwable e) {
+                    inFlight.release();
+                    future.completeExceptionally(e);
+                    return;
+                }
+                inFlight.release();
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private ExecutorService laneFor(String fileName) {
+        int hash = fileName.hashCode();
+        return lanes[Math.floorMod(hash ^ hash >>> 16, lanes.length)];
+    }
+}
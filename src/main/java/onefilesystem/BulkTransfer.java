@@ -0,0 +1,433 @@
+package onefilesystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.BulkTransferStatistics;
+import onefilesystem.model.FileHeader;
+import onefilesystem.utils.BufferPool;
+import onefilesystem.utils.Checksums;
+import onefilesystem.validation.ValidationService;
+
+import static onefilesystem.utils.Constants.BULK_TRANSFER_BATCH_SIZE;
+import static onefilesystem.utils.Constants.BULK_TRANSFER_BUFFER_SIZE;
+import static onefilesystem.utils.Constants.BULK_TRANSFER_PARALLELISM;
+import static onefilesystem.utils.Constants.DIRECTORY_SEPARATOR;
+import static onefilesystem.validation.ValidationService.checkArgument;
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Параллельная загрузка дерева директорий основной файловой системы в файловую систему и выгрузка обратно.
+ * <p>
+ * Загрузка не вызывает createFile и writeContent на каждый файл. Дерево обходится параллельно, директория - задача
+ * ForkJoinPool. Файлы сортируются по имени и делятся на пачки по batchSize, но не больше, чем помещается в журнал
+ * (см. OneFileSystem.maxBatchSize). Для пачки одним проходом под metadataLock занимаются слоты заголовков и экстенты
+ * подряд друг за другом (см. OneFileSystem.reserveFiles). Затем потоки читают соседние маленькие файлы в один буфер и
+ * пишут его одной записью. Записи журнала всей пачки пишутся одной записью на диск, и на пачку делается один force()
+ * (см. Journal.commit(List)). Суперблок пишется один раз на пачку. Поэтому загрузка маленьких файлов упирается в
+ * чтение и запись диска, а не в накладные расходы вызова.
+ * <p>
+ * Имя файла - prefix и путь относительно директории через '/', символические ссылки пропускаются. Контент хранится
+ * несжатым. Другие потоки видят файлы пачки разом. Атомарности при сбое нет: если процесс упал до force(), при открытии
+ * проигрываются только записи пачки, успевшие попасть на диск, а в режиме Durability.NONE заголовки пишутся на место
+ * по одному. При ошибке уже зафиксированные пачки остаются. Если файл укоротился во время загрузки, загрузка
+ * прерывается.
+ * <p>
+ * Выгрузка пишет файлы с префиксом в файлы директории параллельно. Несжатый контент передается из файла файловой
+ * системы через FileChannel.transferTo без копирования в память процесса (см. OneFileSystem.transferContent).
+ * <p>
+ * Работает поверх OneFileSystem и ShardedFileSystem: в сегментированной файловой системе файлы раскладываются по
+ * сегментам по хэшу имени. BulkTransfer не закрывает файловую систему. Thread-safe
+ */
+@Slf4j
+public class BulkTransfer implements Closeable {
+
+    private final FileSystem fileSystem;
+    private final int batchSize;
+    private final ForkJoinPool pool;
+    private final BufferPool bufferPool;
+
+    /**
+     * @param fileSystem - OneFileSystem или ShardedFileSystem
+     */
+    public BulkTransfer(FileSystem fileSystem) {
+        this(fileSystem, BULK_TRANSFER_PARALLELISM, BULK_TRANSFER_BATCH_SIZE);
+    }
+
+    /**
+     * @param fileSystem  - OneFileSystem или ShardedFileSystem
+     * @param parallelism - сколько файлов читается и пишется параллельно
+     * @param batchSize   - сколько заголовков фиксируется одной пачкой, если они помещаются в журнал
+     */
+    public BulkTransfer(FileSystem fileSystem, int parallelism, int batchSize) {
+        checkState(fileSystem instanceof OneFileSystem || fileSystem instanceof ShardedFileSystem,
+                "Bulk transfer supports OneFileSystem and ShardedFileSystem only: " + fileSystem.getClass().getName());
+        checkState(parallelism > 0, "Parallelism must be positive: " + parallelism);
+        checkState(batchSize > 0, "Batch size must be positive: " + batchSize);
+
+        this.fileSystem = fileSystem;
+        this.batchSize = batchSize;
+        this.bufferPool = new BufferPool(BULK_TRANSFER_BUFFER_SIZE, parallelism);
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("one-file-system-bulk-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Загрузить файлы дерева директорий как новые файлы
+     *
+     * @param source - директория основной файловой системы
+     * @param prefix - префикс имен новых файлов, "" - без префикса
+     * @return - метрики загрузки
+     */
+    public BulkTransferStatistics importDirectory(Path source, String prefix) {
+        checkArgument(Files.isDirectory(source), "Not a directory: " + source);
+        long start = System.nanoTime();
+
+        List<SourceFile> files = pool.invoke(new DirectoryWalk(source, source, prefix));
+        files.sort(Comparator.comparing(SourceFile::getFileName));
+        Map<OneFileSystem, List<SourceFile>> filesByTarget = new LinkedHashMap<>();
+        for (SourceFile file : files) {
+            filesByTarget.computeIfAbsent(target(file.getFileName()), target -> new ArrayList<>()).add(file);
+        }
+
+        long bytes = 0;
+        for (Map.Entry<OneFileSystem, List<SourceFile>> targetFiles : filesByTarget.entrySet()) {
+            List<SourceFile> targetList = targetFiles.getValue();
+            int targetBatchSize = Math.min(batchSize, targetFiles.getKey().maxBatchSize());
+            for (int from = 0; from < targetList.size(); from += targetBatchSize) {
+                bytes += importBatch(targetFiles.getKey(),
+                        targetList.subList(from, Math.min(targetList.size(), from + targetBatchSize)));
+            }
+        }
+
+        BulkTransferStatistics statistics = BulkTransferStatistics.builder()
+                .filesCount(files.size())
+                .bytes(bytes)
+                .durationNanos(System.nanoTime() - start)
+                .build();
+        log.info("Imported {}: {}", source, statistics);
+        return statistics;
+    }
+
+    /**
+     * Выгрузить файлы с префиксом в директорию: файл prefix + "a/b" становится файлом a/b директории. Существующие
+     * файлы директории перезаписываются, файлы, удаленные во время выгрузки, пропускаются
+     *
+     * @param prefix - префикс имен файлов, "" - все файлы
+     * @param target - директория основной файловой системы, создается при необходимости
+     * @return - метрики выгрузки
+     */
+    public BulkTransferStatistics exportDirectory(String prefix, Path target) {
+        long start = System.nanoTime();
+        Path root = target.toAbsolutePath().normalize();
+        List<String> fileNames = fileSystem.list(prefix);
+
+        int chunkSize = Math.max(1, Math.min(batchSize, fileNames.size() / (4 * pool.getParallelism()) + 1));
+        List<Callable<long[]>> exports = new ArrayList<>();
+        for (int from = 0; from < fileNames.size(); from += chunkSize) {
+            List<String> chunk = fileNames.subList(from, Math.min(fileNames.size(), from + chunkSize));
+            exports.add(() -> exportFiles(chunk, prefix, root));
+        }
+
+        long filesCount = 0;
+        long bytes = 0;
+        for (Future<long[]> export : pool.invokeAll(exports)) {
+            long[] exported = await(export);
+            filesCount += exported[0];
+            bytes += exported[1];
+        }
+
+        BulkTransferStatistics statistics = BulkTransferStatistics.builder()
+                .filesCount(filesCount)
+                .bytes(bytes)
+                .durationNanos(System.nanoTime() - start)
+                .build();
+        log.info("Exported to {}: {}", root, statistics);
+        return statistics;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return - файловая система, в которой лежит файл
+     */
+    private OneFileSystem target(String fileName) {
+        if (fileSystem instanceof OneFileSystem) {
+            return (OneFileSystem) fileSystem;
+        }
+        ShardedFileSystem sharded = (ShardedFileSystem) fileSystem;
+        return sharded.getShard(ShardedFileSystem.shardOf(fileName, sharded.getShardsCount()));
+    }
+
+    /**
+     * Занять место под пачку, записать контент параллельно и зафиксировать заголовки
+     *
+     * @return - сколько байт контента загружено
+     */
+    private long importBatch(OneFileSystem target, List<SourceFile> files) {
+        List<String> fileNames = new ArrayList<>(files.size());
+        int[] sizes = new int[files.size()];
+        long bytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            SourceFile file = files.get(i);
+            ValidationService.checkContentSize(file.getSize(), file.getFileName());
+            fileNames.add(file.getFileName());
+            sizes[i] = (int) file.getSize();
+            bytes += sizes[i];
+        }
+
+        List<FileHeader> fileHeaders = target.reserveFiles(fileNames, sizes);
+        try {
+            // соседние файлы, которые вместе помещаются в буфер, читаются в него и пишутся одной записью
+            List<Callable<Void>> writes = new ArrayList<>();
+            int from = 0;
+            long runCapacity = 0;
+            for (int i = 0; i < files.size(); i++) {
+                long capacity = fileHeaders.get(i).getContentCapacity();
+                if (i > from && runCapacity + capacity > bufferPool.getBufferSize()) {
+                    writes.add(writeRun(target, files, fileHeaders, from, i));
+                    from = i;
+                    runCapacity = 0;
+                }
+                runCapacity += capacity;
+            }
+            writes.add(writeRun(target, files, fileHeaders, from, files.size()));
+
+            for (Future<Void> write : pool.invokeAll(writes)) {
+                await(write);
+            }
+        } catch (RuntimeException e) {
+            target.releaseReserved(fileHeaders);
+            throw e;
+        }
+
+        target.commitReserved(fileHeaders);
+        return bytes;
+    }
+
+    /**
+     * Записать контент файлов [from, to) пачки. Их экстенты идут подряд, поэтому файлы читаются в буфер по смещениям
+     * своих экстентов и пишутся одной записью. Хвосты экстентов между файлами заполняются нулями, а не тем, что осталось
+     * в буфере от прошлой пачки. Файл больше буфера идет один и пишется по частям
+     */
+    private Callable<Void> writeRun(OneFileSystem target, List<SourceFile> files, List<FileHeader> fileHeaders,
+                                    int from, int to) {
+        return () -> {
+            ByteBuffer buffer = bufferPool.acquire();
+            try {
+                long runPosition = -1;
+                int runEnd = 0;
+                for (int i = from; i < to; i++) {
+                    FileHeader fileHeader = fileHeaders.get(i);
+                    int size = fileHeader.getContentRealSize();
+                    if (size == 0) {
+                        // контрольная сумма пустого контента - 0, как в новом заголовке
+                        continue;
+                    }
+                    if (size > buffer.capacity()) {
+                        fileHeader.setContentChecksum(writeLargeFile(target, files.get(i).getPath(), fileHeader,
+                                buffer));
+                        continue;
+                    }
+
+                    if (runPosition < 0) {
+                        runPosition = fileHeader.getContentPosition();
+                    }
+                    int offset = (int) (fileHeader.getContentPosition() - runPosition);
+                    buffer.clear();
+                    for (int j = runEnd; j < offset; j++) {
+                        buffer.put(j, (byte) 0);
+                    }
+                    buffer.limit(offset + size).position(offset);
+                    try (FileChannel channel = FileChannel.open(files.get(i).getPath(), StandardOpenOption.READ)) {
+                        readFully(channel, buffer, files.get(i).getPath());
+                    }
+                    fileHeader.setContentChecksum(Checksums.crc32c(buffer.duplicate().position(offset)));
+                    runEnd = offset + size;
+                }
+
+                if (runEnd > 0) {
+                    buffer.limit(runEnd).position(0);
+                    target.writeReserved(buffer, runPosition);
+                }
+                return null;
+            } finally {
+                bufferPool.release(buffer);
+            }
+        };
+    }
+
+    /**
+     * Записать файл больше буфера по частям
+     *
+     * @return - CRC32C контента
+     */
+    private static int writeLargeFile(OneFileSystem target, Path path, FileHeader fileHeader, ByteBuffer buffer)
+            throws IOException {
+        CRC32C crc = new CRC32C();
+        int size = fileHeader.getContentRealSize();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (int offset = 0; offset < size; offset += buffer.capacity()) {
+                buffer.clear().limit(Math.min(buffer.capacity(), size - offset));
+                readFully(channel, buffer, path);
+                buffer.flip();
+                crc.update(buffer.duplicate());
+                target.writeReserved(buffer, fileHeader.getContentPosition() + offset);
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, Path path) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new OneFileSystemException("File " + path + " was truncated during import");
+            }
+        }
+    }
+
+    /**
+     * Выгрузить файлы в директорию
+     *
+     * @return - сколько файлов и байт выгружено
+     */
+    private long[] exportFiles(List<String> fileNames, String prefix, Path root) throws IOException {
+        long filesCount = 0;
+        long bytes = 0;
+        for (String fileName : fileNames) {
+            String relative = fileName.substring(prefix.length());
+            while (!relative.isEmpty() && relative.charAt(0) == DIRECTORY_SEPARATOR) {
+                relative = relative.substring(1);
+            }
+            Path path = root.resolve(relative).normalize();
+            checkArgument(!relative.isEmpty() && path.startsWith(root) && !path.equals(root),
+                    "File " + fileName + " cannot be exported to " + root);
+
+            Files.createDirectories(path.getParent());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer rest = target(fileName).transferContent(fileName, size -> ByteBuffer.allocate(0), channel);
+                if (rest == null) {
+                    rest = ByteBuffer.wrap(fileSystem.readContent(fileName));
+                }
+                while (rest.hasRemaining()) {
+                    channel.write(rest);
+                }
+                bytes += channel.size();
+                filesCount++;
+            } catch (FileNotFoundException e) {
+                log.debug("File {} is deleted during export", fileName);
+                Files.deleteIfExists(path);
+            }
+        }
+        return new long[]{filesCount, bytes};
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OneFileSystemException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * Обход директории: поддиректории обходятся параллельно
+     */
+    private static class DirectoryWalk extends RecursiveTask<List<SourceFile>> {
+        private final Path root;
+        private final Path directory;
+        private final String prefix;
+
+        DirectoryWalk(Path root, Path directory, String prefix) {
+            this.root = root;
+            this.directory = directory;
+            this.prefix = prefix;
+        }
+
+        @Override
+        protected List<SourceFile> compute() {
+            List<SourceFile> files = new ArrayList<>();
+            List<DirectoryWalk> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        subdirectories.add(new DirectoryWalk(root, entry, prefix));
+                    } else if (attributes.isRegularFile()) {
+                        files.add(new SourceFile(fileName(entry), entry, attributes.size()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new OneFileSystemException(e);
+            }
+
+            invokeAll(subdirectories);
+            for (DirectoryWalk subdirectory : subdirectories) {
+                files.addAll(subdirectory.join());
+            }
+            return files;
+        }
+
+        private String fileName(Path entry) {
+            StringBuilder fileName = new StringBuilder(prefix);
+            for (Path part : root.relativize(entry)) {
+                if (fileName.length() > prefix.length()) {
+                    fileName.append(DIRECTORY_SEPARATOR);
+                }
+                fileName.append(part);
+            }
+            return fileName.toString();
+        }
+    }
+
+    @Value
+    private static class SourceFile {
+        String fileName;
+        Path path;
+        long size;
+    }
+}
@@ -0,0 +1,102 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.locks.Lock;
+
+import onefilesystem.model.Superblock;
+import onefilesystem.utils.SuperblockCodec;
+
+/**
+ * Счетчик изменений в суперблоке, по которому процессы, открывшие файловую систему только для чтения, узнают об
+ * изменениях писателя (см. SharedHeaderView).
+ * <p>
+ * Старшие биты - номер изменения, младшие CHANGES_SHIFT бит - сколько записей контента на месте сейчас идет. Номер
+ * увеличивается после записи заголовка на место, до освобождения старого экстента, а также в начале и в конце записи
+ * на место. Поэтому читатель, у которого счетчик до и после чтения совпал и записей на месте не было, прочитал
+ * контент, который за время чтения не менялся и не освобождался.
+ * <p>
+ * Счетчик меняется на каждой фиксации заголовка и дважды на каждой записи на месте, поэтому он не берет metadataLock
+ * и не пишется системным вызовом: он хранится в отображенной в память странице суперблока и меняется под собственным
+ * монитором, поэтому значения на диске только растут. Остальной суперблок пишется в обход счетчика
+ * (см. ChannelReadWriteService.updateSuperblock).
+ * <p>
+ * Thread-safe
+ */
+class ChangeCounter {
+
+    private static final int CHANGES_SHIFT = 16;
+    private static final long CHANGE = 1L << CHANGES_SHIFT;
+    private static final long IN_PLACE_WRITES_MASK = CHANGE - 1;
+
+    private final ChannelReadWriteService readWriteService;
+    private final Superblock superblock;
+    private final Lock metadataLock;
+
+    /**
+     * Отображенный суперблок, создается в reset: отображать на запись может только писатель
+     */
+    private MappedByteBuffer mappedSuperblock;
+    private long changeCounter;
+
+    ChangeCounter(ChannelReadWriteService readWriteService, Superblock superblock, Lock metadataLock) {
+        this.readWriteService = readWriteService;
+        this.superblock = superblock;
+        this.metadataLock = metadataLock;
+    }
+
+    /**
+     * @return - идет ли у писателя запись контента на месте
+     */
+    static boolean isWriting(long changeCounter) {
+        return (changeCounter & IN_PLACE_WRITES_MASK) != 0;
+    }
+
+    /**
+     * Начать новое изменение при открытии писателем: записи на месте, прерванные сбоем прежнего писателя, не
+     * закончатся никогда
+     */
+    void reset() throws IOException {
+        metadataLock.lock();
+        try {
+            MappedByteBuffer mapped = readWriteService.mapReadWrite(0, SuperblockCodec.ENCODED_SIZE);
+            synchronized (this) {
+                mappedSuperblock = mapped;
+                changeCounter = (superblock.getChangeCounter() & ~IN_PLACE_WRITES_MASK) + CHANGE;
+                publish();
+            }
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Заголовок записан на место
+     */
+    void changed() {
+        add(CHANGE);
+    }
+
+    /**
+     * Начинается запись контента на место, которое могут читать читатели
+     */
+    void beginInPlaceWrite() {
+        add(CHANGE + 1);
+    }
+
+    /**
+     * Запись на место закончена, заголовок, если он менялся, уже записан. Вызывается и при ошибке записи
+     */
+    void endInPlaceWrite() {
+        add(CHANGE - 1);
+    }
+
+    private synchronized void add(long delta) {
+        changeCounter += delta;
+        publish();
+    }
+
+    private void publish() {
+        mappedSuperblock.putLong(SuperblockCodec.CHANGE_COUNTER_OFFSET, changeCounter);
+    }
+}
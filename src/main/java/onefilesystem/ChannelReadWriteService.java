@@ -2,21 +2,43 @@ package onefilesystem;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32C;
 
 import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.metrics.MetricsListener;
 import onefilesystem.model.FileHeader;
+import onefilesystem.model.Superblock;
+import onefilesystem.utils.BufferPool;
+import onefilesystem.utils.FileHeaderCodec;
+import onefilesystem.utils.SuperblockCodec;
 
-import static onefilesystem.utils.ByteBufferUtils.toByteBuffer;
+import static onefilesystem.utils.Constants.IO_BUFFER_POOL_SIZE;
+import static onefilesystem.utils.Constants.IO_BUFFER_SIZE;
 
 /**
- * Сервис для чтения/записи данных на диске
+ * Сервис для чтения/записи данных на диске.
+ * <p>
+ * Контент и заголовки передаются через direct буферы из пула: heap буфер FileChannel все равно копирует во временный
+ * direct буфер, который JDK кэширует по размеру записи, то есть для больших файлов держит в памяти буферы размером с
+ * файл.
  */
 class ChannelReadWriteService {
+    private static final byte[] ZEROS = new byte[IO_BUFFER_SIZE];
+
     private final FileChannel channel;
+    private final BufferPool bufferPool = new BufferPool(IO_BUFFER_SIZE, IO_BUFFER_POOL_SIZE);
+    private final MetricsListener metrics;
 
-    ChannelReadWriteService(FileChannel channel) {
+    /**
+     * @param channel - канал файла файловой системы
+     * @param metrics - получатель байт ввода-вывода и времени кодирования заголовков
+     */
+    ChannelReadWriteService(FileChannel channel, MetricsListener metrics) {
         this.channel = channel;
+        this.metrics = metrics;
     }
 
     /**
@@ -27,31 +49,348 @@ class ChannelReadWriteService {
      */
     protected void readBuffer(ByteBuffer byteBuffer, long position) {
         try {
-            channel.read(byteBuffer, position);
+            readFully(byteBuffer, position);
             byteBuffer.rewind();
         } catch (IOException e) {
             throw new OneFileSystemException(e);
         }
     }
 
+    /**
+     * Прочитать контент файла
+     *
+     * @param content  - массив, который нужно заполнить целиком
+     * @param position - с какой позиции читать
+     */
+    protected void readContent(byte[] content, long position) {
+        readContent(ByteBuffer.wrap(content), position);
+    }
+
+    /**
+     * Прочитать контент файла в буфер. Direct буфер заполняется напрямую, heap буфер - через буфер из пула.
+     * Чтение останавливается в конце файла: недописанный хвост контента в буфер не попадает
+     *
+     * @param target   - буфер, который нужно заполнить до limit
+     * @param position - с какой позиции читать
+     */
+    protected void readContent(ByteBuffer target, long position) {
+        try {
+            if (target.isDirect()) {
+                readFully(target, position);
+                return;
+            }
+
+            ByteBuffer byteBuffer = bufferPool.acquire();
+            try {
+                while (target.hasRemaining()) {
+                    byteBuffer.clear().limit(Math.min(byteBuffer.capacity(), target.remaining()));
+                    readFully(byteBuffer, position);
+
+                    byteBuffer.flip();
+                    if (!byteBuffer.hasRemaining()) {
+                        return;
+                    }
+                    position += byteBuffer.remaining();
+                    target.put(byteBuffer);
+                }
+            } finally {
+                bufferPool.release(byteBuffer);
+            }
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * Передать участок файла в канал без копирования в память процесса (FileChannel.transferTo). Неблокирующий канал
+     * принимает столько, сколько помещается в его буфер
+     *
+     * @param position - начало участка
+     * @param length   - размер участка
+     * @param target   - канал
+     * @return - сколько байт передано
+     */
+    protected long transferTo(long position, long length, WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = channel.transferTo(position + transferred, length - transferred, target);
+            if (count <= 0) {
+                break;
+            }
+            transferred += count;
+        }
+        metrics.onBytesRead(transferred);
+        return transferred;
+    }
+
+    /**
+     * Отобразить участок файла в память только для чтения. Участок за концом файла не отображается, то есть буфер
+     * может оказаться короче запрошенного
+     *
+     * @param position - начало участка
+     * @param size     - размер участка
+     */
+    protected ByteBuffer mapReadOnly(long position, long size) {
+        try {
+            long mappedSize = Math.max(0, Math.min(size, channel.size() - position));
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, mappedSize);
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * Отобразить участок файла в память на чтение и запись. Участок за концом файла дописывается нулями
+     *
+     * @param position - начало участка
+     * @param size     - размер участка, не больше Integer.MAX_VALUE
+     */
+    protected MappedByteBuffer mapReadWrite(long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+    }
+
+    /**
+     * @return - размер файла файловой системы
+     */
+    protected long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * Обновить суперблок в файловой системе. Счетчик изменений не пишется: его меняет только ChangeCounter через
+     * отображение суперблока, и запись устаревшего значения вернула бы его назад
+     *
+     * @param superblock - суперблок
+     */
+    protected void updateSuperblock(Superblock superblock) throws IOException {
+        ByteBuffer byteBuffer = bufferPool.acquire();
+        try {
+            SuperblockCodec.encode(superblock, byteBuffer);
+            byteBuffer.flip();
+            int counterEnd = SuperblockCodec.CHANGE_COUNTER_OFFSET + Long.BYTES;
+            writeFully(byteBuffer.duplicate().limit(SuperblockCodec.CHANGE_COUNTER_OFFSET), 0);
+            writeFully(byteBuffer.position(counterEnd), counterEnd);
+        } finally {
+            bufferPool.release(byteBuffer);
+        }
+    }
+
+    /**
+     * @return - счетчик изменений из суперблока на диске
+     */
+    protected long readChangeCounter() {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(Long.BYTES);
+        readBuffer(byteBuffer, SuperblockCodec.CHANGE_COUNTER_OFFSET);
+        return byteBuffer.getLong(0);
+    }
+
     /**
      * Обновить заголовок в файловой системе
      *
      * @param fileHeader - заголовок файла
      */
     protected void updateFileHeader(FileHeader fileHeader) throws IOException {
-        ByteBuffer byteBuffer = toByteBuffer(fileHeader);
-        channel.write(byteBuffer, fileHeader.getHeaderPosition());
+        ByteBuffer byteBuffer = bufferPool.acquire();
+        try {
+            if (metrics == MetricsListener.NOOP) {
+                FileHeaderCodec.encode(fileHeader, byteBuffer);
+            } else {
+                long encodeStart = System.nanoTime();
+                FileHeaderCodec.encode(fileHeader, byteBuffer);
+                metrics.onHeadersEncoded(1, System.nanoTime() - encodeStart);
+            }
+            byteBuffer.flip();
+            writeFully(byteBuffer, fileHeader.getHeaderPosition());
+        } finally {
+            bufferPool.release(byteBuffer);
+        }
     }
 
     /**
-     * Обновить контент файла в файловой системе
+     * Обновить контент файла в файловой системе.
+     * Пишется ровно content.length байт: запись лишних байт затерла бы соседние экстенты
      *
      * @param content  - контент
      * @param position - с какой позиции писать
      */
     protected void updateContent(byte[] content, long position) throws IOException {
-        ByteBuffer byteBuffer = toByteBuffer(content);
-        channel.write(byteBuffer, position);
+        updateContent(ByteBuffer.wrap(content), position);
+    }
+
+    /**
+     * Записать буфер от position до limit. Direct буфер пишется напрямую, heap буфер - через буфер из пула
+     *
+     * @param source   - буфер с контентом
+     * @param position - с какой позиции писать
+     */
+    protected void updateContent(ByteBuffer source, long position) throws IOException {
+        if (source.isDirect()) {
+            writeFully(source, position);
+            return;
+        }
+
+        ByteBuffer byteBuffer = bufferPool.acquire();
+        try {
+            while (source.hasRemaining()) {
+                int length = Math.min(byteBuffer.capacity(), source.remaining());
+                byteBuffer.clear();
+                byteBuffer.put(source.slice().limit(length));
+                source.position(source.position() + length);
+                byteBuffer.flip();
+
+                writeFully(byteBuffer, position);
+                position += length;
+            }
+        } finally {
+            bufferPool.release(byteBuffer);
+        }
+    }
+
+    /**
+     * Скопировать участок файла в другое место файла через буфер из пула. Участки не должны перекрываться
+     *
+     * @param from   - откуда копировать
+     * @param to     - куда копировать
+     * @param length - сколько байт копировать
+     */
+    protected void copyContent(long from, long to, long length) throws IOException {
+        ByteBuffer byteBuffer = bufferPool.acquire();
+        try {
+            long offset = 0;
+            while (offset < length) {
+                byteBuffer.clear().limit((int) Math.min(byteBuffer.capacity(), length - offset));
+                readFully(byteBuffer, from + offset);
+                byteBuffer.flip();
+                if (!byteBuffer.hasRemaining()) {
+                    return;
+                }
+
+                int read = byteBuffer.remaining();
+                writeFully(byteBuffer, to + offset);
+                offset += read;
+            }
+        } finally {
+            bufferPool.release(byteBuffer);
+        }
+    }
+
+    /**
+     * Посчитать CRC32C участка файла, читая его через буфер из пула
+     *
+     * @param position - начало участка
+     * @param length   - размер участка
+     * @return - CRC32C участка; если файл кончился раньше, то прочитанной части
+     */
+    protected int checksum(long position, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer byteBuffer = bufferPool.acquire();
+        try {
+            long offset = 0;
+            while (offset < length) {
+                byteBuffer.clear().limit((int) Math.min(byteBuffer.capacity(), length - offset));
+                readFully(byteBuffer, position + offset);
+                byteBuffer.flip();
+                if (!byteBuffer.hasRemaining()) {
+                    break;
+                }
+
+                offset += byteBuffer.remaining();
+                crc.update(byteBuffer);
+            }
+        } finally {
+            bufferPool.release(byteBuffer);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Сравнить участок файла с массивом, читая его через буфер из пула
+     *
+     * @param position - начало участка
+     * @param source   - массив
+     * @param length   - сколько байт сравнить
+     * @return - совпадает ли участок с началом массива
+     */
+    protected boolean contentEquals(long position, byte[] source, int length) throws IOException {
+        ByteBuffer byteBuffer = bufferPool.acquire();
+        try {
+            int offset = 0;
+            while (offset < length) {
+                byteBuffer.clear().limit(Math.min(byteBuffer.capacity(), length - offset));
+                readFully(byteBuffer, position + offset);
+                byteBuffer.flip();
+                int read = byteBuffer.remaining();
+                if (read == 0 || !byteBuffer.equals(ByteBuffer.wrap(source, offset, read))) {
+                    return false;
+                }
+                offset += read;
+            }
+            return true;
+        } finally {
+            bufferPool.release(byteBuffer);
+        }
+    }
+
+    /**
+     * Заполнить участок файла нулями
+     *
+     * @param position - начало участка
+     * @param length   - размер участка
+     */
+    protected void fillZeros(long position, long length) throws IOException {
+        long offset = 0;
+        while (offset < length) {
+            int chunk = (int) Math.min(ZEROS.length, length - offset);
+            updateContent(ByteBuffer.wrap(ZEROS, 0, chunk), position + offset);
+            offset += chunk;
+        }
+    }
+
+    /**
+     * Обрезать файл файловой системы, если он длиннее size
+     *
+     * @param size - новый размер файла
+     */
+    protected void truncate(long size) throws IOException {
+        if (channel.size() > size) {
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * Сбросить записанные данные на диск
+     */
+    protected void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Записать буфер целиком: FileChannel.write может записать только часть буфера
+     */
+    private void writeFully(ByteBuffer byteBuffer, long position) throws IOException {
+        int length = byteBuffer.remaining();
+        while (byteBuffer.hasRemaining()) {
+            position += channel.write(byteBuffer, position);
+        }
+        metrics.onBytesWritten(length);
+    }
+
+    /**
+     * Дочитать буфер до конца или до конца файла
+     */
+    private void readFully(ByteBuffer byteBuffer, long position) throws IOException {
+        long start = position;
+        while (byteBuffer.hasRemaining()) {
+            int read = channel.read(byteBuffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        metrics.onBytesRead(position - start);
     }
 }
@@ -0,0 +1,287 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.allocation.ContentIndex;
+import onefilesystem.allocation.ExtentAllocator;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.CompactionStatistics;
+import onefilesystem.model.FileHeader;
+
+/**
+ * Онлайн-компактор контентной области.
+ * <p>
+ * Проход идет по живым файлам сверху вниз и переносит контент каждого в свободное место ниже него (см.
+ * {@link ExtentAllocator#allocateBelow(long, long)}), после чего файл файловой системы обрезается по highWaterMark.
+ * <p>
+ * Контент копируется под блокировкой чтения файла: читатели не ждут, ждут только писатели этого файла. Затем под
+ * блокировкой записи проверяется, что файл не изменился, и новый экстент фиксируется через журнал, как при
+ * writeContent: старый экстент освобождается только после фиксации заголовка. Если файл успел измениться, новый
+ * экстент освобождается, а файл остается на месте до следующего прохода. Под блокировкой записи, то есть в паузе для
+ * файла, только фиксация заголовка. Экстенты, разделенные несколькими файлами (см. ContentIndex), не переносятся.
+ * Прежний экстент, который читает открытый снимок, освобождается после закрытия снимка (см. SnapshotRegistry).
+ * <p>
+ * Копирование ограничено ioBudget байт в секунду (см. Throttle). Проход останавливается через stop(), а не
+ * прерыванием потока.
+ * <p>
+ * Thread-safe, проходы выполняются по одному
+ */
+@Slf4j
+class Compactor {
+
+    private final HeaderTable existingFiles;
+    private final StripedLocks locks;
+    private final Lock metadataLock;
+    private final ExtentAllocator extentAllocator;
+    private final ContentIndex contentIndex;
+    private final SnapshotRegistry snapshots;
+    private final ChannelReadWriteService readWriteService;
+    private final Journal journal;
+    private final Throttle throttle;
+
+    /**
+     * Отображение файла в память в режиме ReadMode.MMAP или null. Файл не обрезается ниже отображенного
+     */
+    private final MappedContentReader mappedContentReader;
+
+    private final Lock passLock = new ReentrantLock();
+    private volatile CompactionStatistics lastStatistics;
+
+    /**
+     * @param mappedContentReader - отображение файла в память или null
+     * @param ioBudget            - сколько байт контента копировать в секунду, 0 - без ограничения
+     */
+    Compactor(HeaderTable existingFiles, StripedLocks locks, Lock metadataLock,
+              ExtentAllocator extentAllocator, ContentIndex contentIndex, SnapshotRegistry snapshots,
+              ChannelReadWriteService readWriteService, Journal journal, MappedContentReader mappedContentReader,
+              long ioBudget) {
+        this.existingFiles = existingFiles;
+        this.locks = locks;
+        this.metadataLock = metadataLock;
+        this.extentAllocator = extentAllocator;
+        this.contentIndex = contentIndex;
+        this.snapshots = snapshots;
+        this.readWriteService = readWriteService;
+        this.journal = journal;
+        this.mappedContentReader = mappedContentReader;
+        this.throttle = new Throttle(ioBudget);
+    }
+
+    /**
+     * Сделать проход компактора
+     *
+     * @return - метрики прохода
+     */
+    protected CompactionStatistics compact() {
+        passLock.lock();
+        try {
+            long start = System.nanoTime();
+            long sizeBefore = readWriteService.size();
+            PassStatistics statistics = new PassStatistics();
+
+            List<FileHeader> candidates = existingFiles.values().stream()
+                    .filter(fileHeader -> fileHeader.getContentCapacity() > 0)
+                    .sorted(Comparator.comparingLong(FileHeader::getContentPosition).reversed())
+                    .collect(Collectors.toList());
+            for (FileHeader fileHeader : candidates) {
+                if (throttle.isStopped()) {
+                    break;
+                }
+                move(fileHeader, statistics);
+                throttle.pace(start, statistics.movedBytes);
+            }
+
+            metadataLock.lock();
+            try {
+                readWriteService.truncate(minContainerSize());
+            } finally {
+                metadataLock.unlock();
+            }
+
+            long containerSize = readWriteService.size();
+            CompactionStatistics result = CompactionStatistics.builder()
+                    .movedFilesCount(statistics.movedFilesCount)
+                    .movedBytes(statistics.movedBytes)
+                    .skippedFilesCount(statistics.skippedFilesCount)
+                    .reclaimedBytes(Math.max(0, sizeBefore - containerSize))
+                    .containerSize(containerSize)
+                    .durationNanos(System.nanoTime() - start)
+                    .totalPauseNanos(statistics.totalPauseNanos)
+                    .maxPauseNanos(statistics.maxPauseNanos)
+                    .build();
+            if (result.getMovedFilesCount() > 0 || result.getReclaimedBytes() > 0) {
+                log.info("Compacted file system: {}", result);
+            }
+            lastStatistics = result;
+            return result;
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        } finally {
+            passLock.unlock();
+        }
+    }
+
+    /**
+     * @return - есть ли что компактировать: свободные экстенты или хвост файла, который можно обрезать
+     */
+    protected boolean hasFreeSpace() {
+        metadataLock.lock();
+        try {
+            return extentAllocator.getFreeBytes() > 0 || readWriteService.size() > minContainerSize();
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * @return - до какого размера можно обрезать файл файловой системы: не ниже highWaterMark и не ниже отображенного
+     * в память. Вызывается под metadataLock
+     */
+    private long minContainerSize() {
+        long mappedEnd = mappedContentReader == null ? 0 : mappedContentReader.mappedEnd();
+        return Math.max(extentAllocator.getHighWaterMark(), mappedEnd);
+    }
+
+    /**
+     * Остановить текущий проход после переноса очередного файла. Следующие проходы сразу заканчиваются
+     */
+    protected void stop() {
+        throttle.stop();
+    }
+
+    /**
+     * @return - метрики последнего прохода или null, если проходов не было
+     */
+    protected CompactionStatistics getLastStatistics() {
+        return lastStatistics;
+    }
+
+    /**
+     * Перенести контент файла в свободное место ниже него, если такое есть. Заголовок файла берется заново под
+     * блокировкой: кандидат может оказаться копией, прочитанной с диска (HeaderIndex.DISK)
+     */
+    private void move(FileHeader candidate, PassStatistics statistics) throws IOException {
+        String fileName = candidate.getFileName();
+        FileHeader fileHeader;
+        ReadWriteLock lock = locks.forFile(fileName);
+        long position;
+        long capacity;
+        long version;
+        int contentSize;
+        long newPosition;
+
+        lock.readLock().lock();
+        try {
+            fileHeader = existingFiles.get(fileName);
+            if (fileHeader == null || fileHeader.getContentCapacity() == 0) {
+                return;
+            }
+            position = fileHeader.getContentPosition();
+            capacity = fileHeader.getContentCapacity();
+            version = fileHeader.getVersion();
+            contentSize = fileHeader.getContentStoredSize();
+
+            metadataLock.lock();
+            try {
+                if (contentIndex.isShared(position)) {
+                    return;
+                }
+                newPosition = extentAllocator.allocateBelow(capacity, position);
+            } finally {
+                metadataLock.unlock();
+            }
+            if (newPosition < 0) {
+                return;
+            }
+
+            try {
+                readWriteService.copyContent(position, newPosition, contentSize);
+            } catch (IOException | RuntimeException e) {
+                release(newPosition, capacity, false);
+                throw e;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        boolean changed;
+        lock.writeLock().lock();
+        long pauseStart = System.nanoTime();
+        try {
+            changed = existingFiles.get(fileName) != fileHeader || fileHeader.getVersion() != version
+                    || fileHeader.getContentPosition() != position || !moveIndexed(position, newPosition);
+            if (!changed) {
+                FileHeader moved = fileHeader.copy();
+                moved.setContentPosition(newPosition);
+                journal.commit(moved);
+                fileHeader.assign(moved);
+            }
+        } finally {
+            lock.writeLock().unlock();
+            long pause = System.nanoTime() - pauseStart;
+            statistics.totalPauseNanos += pause;
+            statistics.maxPauseNanos = Math.max(statistics.maxPauseNanos, pause);
+        }
+
+        if (changed) {
+            release(newPosition, capacity, false);
+            statistics.skippedFilesCount++;
+        } else {
+            release(position, capacity, true);
+            statistics.movedFilesCount++;
+            statistics.movedBytes += contentSize;
+        }
+    }
+
+    /**
+     * Перенести экстент в индексе контента, если его никто не успел разделить, пока контент копировался
+     *
+     * @return - экстент принадлежит только переносимому файлу
+     */
+    private boolean moveIndexed(long position, long newPosition) {
+        metadataLock.lock();
+        try {
+            if (contentIndex.isShared(position)) {
+                return false;
+            }
+            contentIndex.move(position, newPosition);
+            return true;
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * @param visible - экстент мог попасть в снимок: новый экстент освобождается сразу, прежний - через снимки
+     */
+    private void release(long position, long capacity, boolean visible) {
+        metadataLock.lock();
+        try {
+            if (visible) {
+                snapshots.release(position, capacity);
+            } else {
+                extentAllocator.release(position, capacity);
+            }
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Счетчики текущего прохода
+     */
+    private static class PassStatistics {
+        private long movedFilesCount;
+        private long movedBytes;
+        private long skippedFilesCount;
+        private long totalPauseNanos;
+        private long maxPauseNanos;
+    }
+}
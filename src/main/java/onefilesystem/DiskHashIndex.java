@@ -0,0 +1,251 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.FileHeader;
+import onefilesystem.model.Superblock;
+import onefilesystem.validation.ValidationService;
+
+import static onefilesystem.utils.Constants.HASH_INDEX_BUCKET_SIZE;
+import static onefilesystem.utils.Constants.HASH_INDEX_PAGE_SIZE;
+
+/**
+ * Хеш-индекс имен файлов в файле файловой системы (HeaderIndex.DISK): по имени находит слот заголовка.
+ * <p>
+ * Открытая адресация с линейным пробированием. Корзина - 8 байт:
+ * <pre>
+ * int hash   (см. hash)
+ * int slot   (номер слота заголовка + 1, 0 - корзина пустая)
+ * </pre>
+ * Самого имени в корзине нет, поэтому слот с совпавшим хешем проверяется чтением заголовка. Корзин не меньше чем
+ * вдвое больше слотов заголовков, то есть индекс заполнен не больше чем наполовину. При удалении следующие корзины
+ * цепочки сдвигаются назад: надгробий нет, и поиск не деградирует от удалений.
+ * <p>
+ * Индекс отображен в память сегментами по SEGMENT_BUCKETS корзин, поэтому пробирование не делает системных вызовов.
+ * Индекс пишется мимо журнала, поэтому после сбоя может не совпадать с заголовками. При открытии он сверяется с
+ * прочитанными заголовками и при расхождении перестраивается (см. restore).
+ * <p>
+ * Thread-safe: поиск под блокировкой чтения, изменения под блокировкой записи
+ */
+@Slf4j
+class DiskHashIndex {
+
+    /**
+     * Сколько корзин в одном отображенном сегменте: 2^27 корзин - 1 ГБ
+     */
+    private static final int SEGMENT_SHIFT = 27;
+    private static final int SEGMENT_BUCKETS = 1 << SEGMENT_SHIFT;
+
+    private final MappedByteBuffer[] segments;
+    private final int mask;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Сколько корзин занято, защищен lock
+     */
+    private int size;
+
+    /**
+     * @param readWriteService - сервис чтения/записи файла файловой системы
+     * @param superblock       - суперблок с положением и размером индекса
+     */
+    DiskHashIndex(ChannelReadWriteService readWriteService, Superblock superblock) {
+        int bucketsCount = superblock.getIndexBucketsCount();
+        this.mask = bucketsCount - 1;
+        this.segments = new MappedByteBuffer[(bucketsCount - 1) / SEGMENT_BUCKETS + 1];
+        try {
+            for (int i = 0; i < segments.length; i++) {
+                int segmentBuckets = Math.min(SEGMENT_BUCKETS, bucketsCount - i * SEGMENT_BUCKETS);
+                segments[i] = readWriteService.mapReadWrite(superblock.getIndexPosition()
+                        + (long) i * SEGMENT_BUCKETS * HASH_INDEX_BUCKET_SIZE,
+                        (long) segmentBuckets * HASH_INDEX_BUCKET_SIZE);
+            }
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * @param maxFilesCount - сколько слотов заголовков в файловой системе
+     * @return - сколько корзин нужно индексу: степень двойки не меньше 2 * maxFilesCount и не меньше страницы
+     */
+    static int bucketsCount(int maxFilesCount) {
+        ValidationService.checkArgument(maxFilesCount <= 1 << 29, "Too many files for file name index: "
+                + maxFilesCount);
+        int required = Math.max(HASH_INDEX_PAGE_SIZE / HASH_INDEX_BUCKET_SIZE, 2 * maxFilesCount);
+        return Integer.bitCount(required) == 1 ? required : Integer.highestOneBit(required) << 1;
+    }
+
+    /**
+     * Хеш имени. String.hashCode перемешивается, чтобы похожие имена не ложились в соседние корзины
+     */
+    static int hash(String fileName) {
+        int hash = fileName.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Найти слот заголовка файла
+     *
+     * @param fileName - имя файла
+     * @param matches  - лежит ли в слоте заголовок этого файла, вызывается для слотов с совпавшим хешем
+     * @return - слот или -1, если файла нет
+     */
+    int find(String fileName, IntPredicate matches) {
+        int hash = hash(fileName);
+        lock.readLock().lock();
+        try {
+            for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                int slot = slotAt(i) - 1;
+                if (slot < 0) {
+                    return -1;
+                }
+                if (hashAt(i) == hash && matches.test(slot)) {
+                    return slot;
+                }
+            }
+            return -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Добавить слот заголовка файла. Файла с таким именем в индексе быть не должно
+     */
+    void insert(String fileName, int slot) {
+        int hash = hash(fileName);
+        lock.writeLock().lock();
+        try {
+            for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                if (slotAt(i) == 0) {
+                    putBucket(i, hash, slot + 1);
+                    size++;
+                    return;
+                }
+            }
+            throw new OneFileSystemException("File name index is full");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Убрать слот заголовка файла
+     *
+     * @return - был ли слот в индексе
+     */
+    boolean remove(String fileName, int slot) {
+        int hash = hash(fileName);
+        lock.writeLock().lock();
+        try {
+            for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                if (slotAt(i) == 0) {
+                    return false;
+                }
+                if (hashAt(i) == hash && slotAt(i) == slot + 1) {
+                    shiftBack(i);
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сверить индекс с заголовками живых файлов, прочитанными при открытии: в нем должно быть ровно столько корзин,
+     * сколько живых файлов, и каждый файл должен находиться по своему слоту. Иначе индекс строится заново
+     *
+     * @param liveHeaders - заголовки живых файлов, по одному на имя
+     * @param allIndexed  - каждый заголовок уже найден в индексе по своему слоту (см. DiskHeaderTable.restore)
+     * @return - пришлось ли перестроить индекс
+     */
+    boolean restore(Collection<FileHeader> liveHeaders, boolean allIndexed) {
+        lock.writeLock().lock();
+        try {
+            int entries = 0;
+            for (int i = 0; i <= mask; i++) {
+                if (slotAt(i) != 0) {
+                    entries++;
+                }
+            }
+            size = liveHeaders.size();
+            if (allIndexed && entries == liveHeaders.size()) {
+                return false;
+            }
+
+            log.warn("File name index does not match {} file headers, rebuilding it", liveHeaders.size());
+            for (int i = 0; i <= mask; i++) {
+                putBucket(i, 0, 0);
+            }
+            for (FileHeader fileHeader : liveHeaders) {
+                int hash = hash(fileHeader.getFileName());
+                int i = hash & mask;
+                while (slotAt(i) != 0) {
+                    i = (i + 1) & mask;
+                }
+                putBucket(i, hash, (int) fileHeader.getOrder() + 1);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сдвинуть назад корзины цепочки за освобожденной корзиной. Корзина сдвигается, если освобожденная корзина
+     * лежит между ее исходной корзиной (hash & mask) и ею самой
+     *
+     * @param hole - освобожденная корзина
+     */
+    private void shiftBack(int hole) {
+        for (int i = (hole + 1) & mask; i != hole; i = (i + 1) & mask) {
+            int slot = slotAt(i);
+            if (slot == 0) {
+                break;
+            }
+            int hash = hashAt(i);
+            int home = hash & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                putBucket(hole, hash, slot);
+                hole = i;
+            }
+        }
+        putBucket(hole, 0, 0);
+    }
+
+    private int hashAt(int i) {
+        return segments[i >>> SEGMENT_SHIFT].getInt((i & (SEGMENT_BUCKETS - 1)) * HASH_INDEX_BUCKET_SIZE);
+    }
+
+    /**
+     * @return - номер слота + 1, 0 - корзина пустая
+     */
+    private int slotAt(int i) {
+        return segments[i >>> SEGMENT_SHIFT].getInt((i & (SEGMENT_BUCKETS - 1)) * HASH_INDEX_BUCKET_SIZE + 4);
+    }
+
+    private void putBucket(int i, int hash, int slot) {
+        int offset = (i & (SEGMENT_BUCKETS - 1)) * HASH_INDEX_BUCKET_SIZE;
+        segments[i >>> SEGMENT_SHIFT].putInt(offset, hash).putInt(offset + 4, slot);
+    }
+}
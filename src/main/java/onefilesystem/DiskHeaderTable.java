@@ -0,0 +1,251 @@
+package onefilesystem;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.FileHeader;
+import onefilesystem.utils.FileHeaderCodec;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
+
+/**
+ * Заголовки живых файлов на диске (HeaderIndex.DISK): слот заголовка ищется по имени в DiskHashIndex, заголовок
+ * читается из слота. В памяти держатся только headerCacheSize недавно использованных заголовков.
+ * <p>
+ * Заголовок, вытесненный из памяти, мог остаться у операции, которая его меняет. Это безопасно: заголовок меняется
+ * под блокировкой записи полосы файла и записывается на диск до ее снятия, поэтому следующая операция над файлом
+ * прочитает его уже измененным. Прочитанный заголовок получает новую версию контента, то есть не попадает в чужие
+ * записи кэша контента, и поколение экстента 0, которое разрешает читать экстент любому снимку.
+ * <p>
+ * Слот заголовка другого файла с тем же хешем может читаться, пока его пишут: такой заголовок не разбирается или не
+ * совпадает по имени и пропускается. Свой слот файла не меняется, пока держится блокировка его полосы, поэтому
+ * contains вызывается под блокировкой файла (isLockFree).
+ * <p>
+ * Thread-safe
+ */
+class DiskHeaderTable implements HeaderTable {
+
+    private static final int SEGMENTS_COUNT = 16;
+
+    private final ChannelReadWriteService readWriteService;
+    private final DiskHashIndex index;
+
+    /**
+     * Сколько слотов заголовков использовано, для обхода values
+     */
+    private final LongSupplier headerCount;
+
+    /**
+     * Источник версий контента для прочитанных заголовков
+     */
+    private final LongSupplier contentVersions;
+
+    /**
+     * Недавно использованные заголовки по имени, LRU по сегментам. Сегмент защищен своим монитором
+     */
+    private final LinkedHashMap<String, FileHeader>[] segments;
+
+    /**
+     * Слоты повторных заголовков с именем, которое уже есть в другом слоте. Они не видны, как и в HeapHeaderTable
+     */
+    private final Set<Integer> ignoredSlots = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Заголовки, добавленные через restore, до вызова restored
+     */
+    private List<FileHeader> restoredHeaders = new ArrayList<>();
+
+    /**
+     * Имена добавленных через restore заголовков, которых нет в индексе. Пока индекс совпадает с заголовками, пусто
+     */
+    private Set<String> unindexedNames = new HashSet<>();
+
+    /**
+     * Все добавленные через restore заголовки нашлись в индексе по своим слотам
+     */
+    private boolean indexConsistent = true;
+
+    /**
+     * @param readWriteService - сервис чтения/записи файла файловой системы
+     * @param index            - хеш-индекс имен
+     * @param headerCount      - сколько слотов заголовков использовано
+     * @param contentVersions  - источник версий контента
+     * @param cacheSize        - сколько заголовков держать в памяти
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    DiskHeaderTable(ChannelReadWriteService readWriteService, DiskHashIndex index, LongSupplier headerCount,
+                    LongSupplier contentVersions, int cacheSize) {
+        this.readWriteService = readWriteService;
+        this.index = index;
+        this.headerCount = headerCount;
+        this.contentVersions = contentVersions;
+        int segmentSize = Math.max(1, cacheSize / SEGMENTS_COUNT);
+        segments = new LinkedHashMap[SEGMENTS_COUNT];
+        for (int i = 0; i < SEGMENTS_COUNT; i++) {
+            segments[i] = new LinkedHashMap<String, FileHeader>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FileHeader> eldest) {
+                    return size() > segmentSize;
+                }
+            };
+        }
+    }
+
+    @Override
+    public FileHeader get(String fileName) {
+        LinkedHashMap<String, FileHeader> segment = segment(fileName);
+        synchronized (segment) {
+            FileHeader fileHeader = segment.get(fileName);
+            if (fileHeader != null) {
+                return fileHeader;
+            }
+        }
+
+        FileHeader[] found = new FileHeader[1];
+        if (index.find(fileName, slot -> (found[0] = readHeader(slot, fileName)) != null) < 0) {
+            return null;
+        }
+        found[0].setVersion(contentVersions.getAsLong());
+        synchronized (segment) {
+            FileHeader cached = segment.putIfAbsent(fileName, found[0]);
+            return cached != null ? cached : found[0];
+        }
+    }
+
+    @Override
+    public boolean contains(String fileName) {
+        LinkedHashMap<String, FileHeader> segment = segment(fileName);
+        synchronized (segment) {
+            if (segment.containsKey(fileName)) {
+                return true;
+            }
+        }
+        return index.find(fileName, slot -> readHeader(slot, fileName) != null) >= 0;
+    }
+
+    @Override
+    public void put(FileHeader fileHeader) {
+        index.insert(fileHeader.getFileName(), (int) fileHeader.getOrder());
+        LinkedHashMap<String, FileHeader> segment = segment(fileHeader.getFileName());
+        synchronized (segment) {
+            segment.put(fileHeader.getFileName(), fileHeader);
+        }
+    }
+
+    @Override
+    public boolean remove(FileHeader fileHeader) {
+        LinkedHashMap<String, FileHeader> segment = segment(fileHeader.getFileName());
+        synchronized (segment) {
+            segment.remove(fileHeader.getFileName());
+        }
+        return index.remove(fileHeader.getFileName(), (int) fileHeader.getOrder());
+    }
+
+    /**
+     * Обойти слоты заголовков на диске. Заголовки из памяти берутся как есть, остальные - прочитанные копии без
+     * версии контента, менять их нельзя
+     */
+    @Override
+    public Collection<FileHeader> values() {
+        int slotsCount = (int) headerCount.getAsLong();
+        ByteBuffer headers = readWriteService.mapReadOnly(HEADERS_START_POSITION, (long) slotsCount * FILE_HEADER_SIZE);
+        List<FileHeader> fileHeaders = new ArrayList<>();
+        for (int slot = 0; slot < slotsCount; slot++) {
+            int offset = slot * FILE_HEADER_SIZE;
+            if (offset + FILE_HEADER_SIZE > headers.limit()) {
+                break;
+            }
+            FileHeader fileHeader = decode(headers, offset, slot);
+            if (fileHeader == null) {
+                continue;
+            }
+
+            LinkedHashMap<String, FileHeader> segment = segment(fileHeader.getFileName());
+            synchronized (segment) {
+                FileHeader cached = segment.get(fileHeader.getFileName());
+                fileHeaders.add(cached != null ? cached : fileHeader);
+            }
+        }
+        return fileHeaders;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public boolean isLockFree() {
+        return false;
+    }
+
+    /**
+     * Повторные имена ищутся по индексу на диске, без множества имен в памяти: заголовок, слот которого лежит в
+     * индексе по его имени, - единственный с этим именем. Заголовок, которого в индексе нет, повторный, если индекс
+     * находит по имени другой живой заголовок, иначе индекс разошелся с заголовками и будет перестроен
+     */
+    @Override
+    public boolean restore(FileHeader fileHeader) {
+        String fileName = fileHeader.getFileName();
+        int slot = (int) fileHeader.getOrder();
+        if (index.find(fileName, indexed -> indexed == slot) < 0) {
+            if (index.find(fileName, indexed -> readHeader(indexed, fileName) != null) >= 0
+                    || !unindexedNames.add(fileName)) {
+                ignoredSlots.add(slot);
+                return false;
+            }
+            indexConsistent = false;
+        }
+        restoredHeaders.add(fileHeader);
+        return true;
+    }
+
+    @Override
+    public boolean restored() {
+        boolean rebuilt = index.restore(restoredHeaders, indexConsistent);
+        restoredHeaders = null;
+        unindexedNames = null;
+        return rebuilt;
+    }
+
+    /**
+     * Прочитать заголовок из слота
+     *
+     * @return - заголовок или null, если в слоте нет живого файла с таким именем
+     */
+    private FileHeader readHeader(int slot, String fileName) {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readWriteService.readBuffer(header, HEADERS_START_POSITION + (long) slot * FILE_HEADER_SIZE);
+        FileHeader fileHeader = decode(header, 0, slot);
+        return fileHeader != null && fileHeader.getFileName().equals(fileName) ? fileHeader : null;
+    }
+
+    /**
+     * @return - заголовок живого файла или null, если слот пустой, испорчен, удален или повторяет другой слот
+     */
+    private FileHeader decode(ByteBuffer headers, int offset, int slot) {
+        if (FileHeaderCodec.isEmpty(headers, offset) || ignoredSlots.contains(slot)) {
+            return null;
+        }
+        try {
+            FileHeader fileHeader = FileHeaderCodec.decode(headers, offset);
+            return fileHeader.isDeleted() || fileHeader.getOrder() != slot ? null : fileHeader;
+        } catch (OneFileSystemException e) {
+            return null;
+        }
+    }
+
+    private LinkedHashMap<String, FileHeader> segment(String fileName) {
+        return segments[DiskHashIndex.hash(fileName) & (SEGMENTS_COUNT - 1)];
+    }
+}
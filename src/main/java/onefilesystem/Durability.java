@@ -0,0 +1,22 @@
+package onefilesystem;
+
+/**
+ * Когда изменения становятся устойчивыми к сбою
+ */
+public enum Durability {
+    /**
+     * Журнал не пишется, force() не вызывается. После сбоя заголовок может указывать на недописанный контент
+     */
+    NONE,
+
+    /**
+     * Каждая операция пишет запись в журнал и вызывает force() до возврата
+     */
+    PER_OPERATION,
+
+    /**
+     * Каждая операция пишет запись в журнал, force() общий для операций, пришедших в пределах окна
+     * OneFileSystemOptions.groupCommitWindow. Операция возвращается после force(), который покрыл ее запись
+     */
+    GROUP_COMMIT
+}
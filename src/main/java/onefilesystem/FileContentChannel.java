@@ -0,0 +1,112 @@
+package onefilesystem;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+import static onefilesystem.validation.ValidationService.checkArgument;
+
+/**
+ * Канал над контентом одного файла. Каждая операция - отдельный позиционный read/write файловой системы, поэтому
+ * память на канал не тратится и неизмененные байты не переписываются.
+ * <p>
+ * Не thread-safe
+ */
+class FileContentChannel implements SeekableByteChannel {
+
+    private final FileSystem fileSystem;
+    private final String fileName;
+    private final boolean writable;
+
+    private long position;
+    private boolean open = true;
+
+    /**
+     * @param fileSystem - файловая система
+     * @param fileName   - имя существующего файла
+     * @param writable   - разрешена ли запись
+     */
+    FileContentChannel(FileSystem fileSystem, String fileName, boolean writable) {
+        this.fileSystem = fileSystem;
+        this.fileName = fileName;
+        this.writable = writable;
+
+        // FileNotFoundException при открытии, а не при первой операции
+        fileSystem.size(fileName);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        checkOpen();
+
+        int read = fileSystem.read(fileName, position, dst);
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws ClosedChannelException {
+        checkOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+
+        int length = src.remaining();
+        fileSystem.write(fileName, position, src);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public long position() throws ClosedChannelException {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws ClosedChannelException {
+        checkOpen();
+        checkArgument(newPosition >= 0, "Negative channel position: " + newPosition);
+
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws ClosedChannelException {
+        checkOpen();
+        return fileSystem.size(fileName);
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws ClosedChannelException {
+        checkOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        checkArgument(size >= 0, "Negative content size: " + size);
+
+        fileSystem.truncate(fileName, size);
+        position = Math.min(position, size);
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void checkOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
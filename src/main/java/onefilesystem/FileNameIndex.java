@@ -0,0 +1,102 @@
+package onefilesystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static onefilesystem.utils.Constants.DIRECTORY_SEPARATOR;
+import static onefilesystem.utils.Constants.SERVICE_NAME_PREFIX;
+
+/**
+ * Отсортированные имена живых файлов рядом с таблицей заголовков (см. HeaderTable): по ней файл ищется по имени, а
+ * по индексу - файлы по префиксу.
+ * <p>
+ * Директорий как отдельных сущностей нет: директория - это префикс имен, заканчивающийся на DIRECTORY_SEPARATOR.
+ * Запросы стоят O(log n) на каждое имя результата, поддерево вложенной директории перескакивается одним поиском.
+ * <p>
+ * Служебные файлы (имя начинается с SERVICE_NAME_PREFIX, например чанки больших файлов) сортируются перед остальными
+ * и видны только по префиксу, который начинается с SERVICE_NAME_PREFIX.
+ * <p>
+ * Thread-safe. Результаты слабо согласованы: файлы, созданные или удаленные во время запроса, могут попасть или не
+ * попасть в результат
+ */
+class FileNameIndex {
+
+    /**
+     * Первое имя после всех служебных имен
+     */
+    private static final String FIRST_NAME = String.valueOf((char) (SERVICE_NAME_PREFIX + 1));
+
+    private final NavigableSet<String> fileNames = new ConcurrentSkipListSet<>();
+
+    void add(String fileName) {
+        fileNames.add(fileName);
+    }
+
+    void remove(String fileName) {
+        fileNames.remove(fileName);
+    }
+
+    /**
+     * @param prefix - префикс имени
+     * @return - имена файлов с префиксом по возрастанию
+     */
+    List<String> list(String prefix) {
+        List<String> result = new ArrayList<>();
+        for (String fileName : fileNames.tailSet(prefix.isEmpty() ? FIRST_NAME : prefix)) {
+            if (!fileName.startsWith(prefix)) {
+                break;
+            }
+            result.add(fileName);
+        }
+        return result;
+    }
+
+    /**
+     * @param after - имя, после которого начинается страница, null - с начала
+     * @param limit - размер страницы
+     * @return - имена файлов по возрастанию
+     */
+    List<String> listAll(String after, int limit) {
+        NavigableSet<String> tail = after == null || after.compareTo(FIRST_NAME) < 0
+                ? fileNames.tailSet(FIRST_NAME, true) : fileNames.tailSet(after, false);
+        List<String> result = new ArrayList<>(Math.min(limit, 1024));
+        for (String fileName : tail) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(fileName);
+        }
+        return result;
+    }
+
+    /**
+     * @param directory - директория, "" - корень
+     * @return - имена файлов директории и вложенные директории с DIRECTORY_SEPARATOR на конце, по возрастанию
+     */
+    List<String> listDirectory(String directory) {
+        String prefix = directory.isEmpty() || directory.charAt(directory.length() - 1) == DIRECTORY_SEPARATOR
+                ? directory : directory + DIRECTORY_SEPARATOR;
+        List<String> result = new ArrayList<>();
+
+        String fileName = fileNames.ceiling(prefix.isEmpty() ? FIRST_NAME : prefix);
+        while (fileName != null && fileName.startsWith(prefix)) {
+            int separator = fileName.indexOf(DIRECTORY_SEPARATOR, prefix.length());
+            if (separator < 0) {
+                result.add(fileName);
+                fileName = fileNames.higher(fileName);
+            } else {
+                result.add(fileName.substring(0, separator + 1));
+                // первое имя после всех имен с префиксом вложенной директории
+                String subdirectory = fileName.substring(0, separator);
+                fileName = fileNames.ceiling(subdirectory + (char) (DIRECTORY_SEPARATOR + 1));
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return fileNames.size();
+    }
+}
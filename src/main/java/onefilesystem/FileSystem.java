@@ -1,15 +1,136 @@
 package onefilesystem;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.List;
+
+import onefilesystem.model.FileStat;
 
 public interface FileSystem extends Closeable {
 
     void createFile(String fileName);
 
+    /**
+     * Создать служебный файл, имя которого начинается с Constants.SERVICE_NAME_PREFIX (например чанк LargeFiles).
+     * createFile такие имена не принимает: служебные файлы не видны в списках и удаляются collectGarbage
+     *
+     * @param fileName - служебное имя файла
+     */
+    void createServiceFile(String fileName);
+
     void deleteFile(String fileName);
 
     void writeContent(String fileName, byte[] content);
 
     byte[] readContent(String fileName);
 
+    /**
+     * Прочитать контент файла в буфер только для чтения.
+     * <p>
+     * Реализация может вернуть срез отображенного в память файла без копирования. Такой срез отражает текущее
+     * состояние места, где лежит контент, поэтому пользоваться им нужно до следующей записи в файл или его удаления.
+     *
+     * @param fileName - имя файла
+     * @return - буфер с контентом, position = 0, limit = размер контента
+     */
+    default ByteBuffer readContentView(String fileName) {
+        return ByteBuffer.wrap(readContent(fileName)).asReadOnlyBuffer();
+    }
+
+    /**
+     * @param fileName - имя файла
+     * @return - размер контента файла
+     */
+    long size(String fileName);
+
+    /**
+     * @param fileName - имя файла
+     * @return - существует ли файл
+     */
+    boolean exists(String fileName);
+
+    /**
+     * @param fileName - имя файла
+     * @return - атрибуты файла
+     */
+    FileStat stat(String fileName);
+
+    /**
+     * @param prefix - префикс имени, "" - все файлы
+     * @return - имена файлов с префиксом по возрастанию
+     */
+    List<String> list(String prefix);
+
+    /**
+     * Постраничный список всех файлов. Следующая страница запрашивается с последним именем предыдущей
+     *
+     * @param after - имя, после которого начинается страница, null - с начала
+     * @param limit - размер страницы
+     * @return - имена файлов по возрастанию, пустой список после последней страницы
+     */
+    List<String> listAll(String after, int limit);
+
+    /**
+     * Содержимое директории: имена, разделенные '/', считаются путями
+     *
+     * @param directory - директория с '/' на конце или без, "" - корень
+     * @return - полные имена файлов директории и вложенные директории с '/' на конце, по возрастанию
+     */
+    List<String> listDirectory(String directory);
+
+    /**
+     * Прочитать участок контента файла
+     *
+     * @param fileName - имя файла
+     * @param offset   - смещение от начала контента
+     * @param target   - буфер, в который читаются байты от position до limit
+     * @return - сколько байт прочитано, -1 если offset не меньше размера контента
+     */
+    int read(String fileName, long offset, ByteBuffer target);
+
+    /**
+     * Записать участок контента файла, не переписывая остальной контент.
+     * Если offset больше размера контента, то промежуток заполняется нулями
+     *
+     * @param fileName - имя файла
+     * @param offset   - смещение от начала контента
+     * @param source   - буфер, из которого пишутся байты от position до limit
+     */
+    void write(String fileName, long offset, ByteBuffer source);
+
+    /**
+     * Дописать контент в конец файла
+     *
+     * @param fileName - имя файла
+     * @param source   - буфер, из которого пишутся байты от position до limit
+     */
+    void append(String fileName, ByteBuffer source);
+
+    /**
+     * Обрезать контент файла. Если контент не больше size, то ничего не меняется
+     *
+     * @param fileName - имя файла
+     * @param size     - новый размер контента
+     */
+    void truncate(String fileName, long size);
+
+    /**
+     * Открыть канал для чтения контента файла
+     *
+     * @param fileName - имя файла
+     */
+    default SeekableByteChannel openReadChannel(String fileName) {
+        return new FileContentChannel(this, fileName, false);
+    }
+
+    /**
+     * Открыть канал для чтения и записи контента файла, позиция канала в начале контента
+     *
+     * @param fileName - имя файла
+     */
+    default SeekableByteChannel openWriteChannel(String fileName) {
+        return new FileContentChannel(this, fileName, true);
+    }
+
 }
@@ -0,0 +1,201 @@
+package onefilesystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.exception.OneFileSystemException;
+
+import static onefilesystem.utils.Constants.SERVER_WORKER_THREADS;
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Сервер, открывающий файловую систему другим процессам по бинарному протоколу (см. ProtocolCodec, клиент -
+ * RemoteFileSystem).
+ * <p>
+ * Все соединения обслуживает один поток на Selector: он принимает соединения, читает сокеты и разбирает кадры
+ * запросов. Выполняются запросы на workerThreads потоках-дорожках, дорожка выбирается по имени файла, как в
+ * AsyncFileSystem: медленная операция не останавливает ввод/вывод остальных соединений, а запросы к одному файлу
+ * выполняются в порядке прихода. Пока запросы соединения выполняются, его сокет читается, только если запросов в работе
+ * немного; выполнив запрос, дорожка пишет ответ в сокет сама и, если нужно, просит поток сервера снова включить чтение
+ * или дописать ответы по OP_WRITE. Клиент может отправлять запросы, не дожидаясь ответов (pipelining). Несжатый
+ * контент, которого нет в кэше, ответ READ_CONTENT передает из файла файловой системы в сокет через
+ * FileChannel.transferTo (см. ServerConnection).
+ * <p>
+ * Файловую систему FileSystemServer не закрывает.
+ */
+@Slf4j
+public class FileSystemServer implements Closeable {
+
+    private final FileSystem fileSystem;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private final ExecutorService[] lanes;
+
+    /**
+     * Соединения, у которых выполнились запросы, для потока сервера
+     */
+    private final Queue<ServerConnection> completedConnections = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * @param fileSystem - файловая система
+     * @param address    - адрес, на котором принимать соединения; порт 0 - любой свободный
+     */
+    public FileSystemServer(FileSystem fileSystem, InetSocketAddress address) {
+        this(fileSystem, address, SERVER_WORKER_THREADS);
+    }
+
+    /**
+     * @param fileSystem    - файловая система
+     * @param address       - адрес, на котором принимать соединения; порт 0 - любой свободный
+     * @param workerThreads - сколько потоков выполняют запросы
+     */
+    public FileSystemServer(FileSystem fileSystem, InetSocketAddress address, int workerThreads) {
+        checkState(workerThreads > 0, "Worker threads count must be positive: " + workerThreads);
+        this.fileSystem = fileSystem;
+        lanes = new ExecutorService[workerThreads];
+        for (int i = 0; i < workerThreads; i++) {
+            String threadName = "one-file-system-server-worker-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+
+        thread = new Thread(this::run, "one-file-system-server");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("File system server is listening on {}", getAddress());
+    }
+
+    /**
+     * @return - адрес, на котором сервер принимает соединения
+     */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                log.warn("File system server selector failed", e);
+                break;
+            }
+
+            for (ServerConnection connection; (connection = completedConnections.poll()) != null; ) {
+                handle(connection, false);
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+
+                handle((ServerConnection) key.attachment(), key.isReadable());
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof ServerConnection) {
+                ((ServerConnection) key.attachment()).close();
+            }
+        }
+    }
+
+    private void handle(ServerConnection connection, boolean readable) {
+        if (!connection.isOpen()) {
+            return;
+        }
+        try {
+            connection.handle(readable);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Close connection {}", connection, e);
+            connection.close();
+        }
+    }
+
+    /**
+     * Запрос соединения выполнен: поток сервера обновит интерес к событиям его сокета
+     */
+    private void completed(ServerConnection connection) {
+        completedConnections.add(connection);
+        selector.wakeup();
+    }
+
+    private ExecutorService laneFor(String fileName) {
+        int hash = fileName.hashCode();
+        return lanes[Math.floorMod(hash ^ hash >>> 16, lanes.length)];
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new ServerConnection(fileSystem, channel, key, this::laneFor, this::completed));
+        } catch (IOException e) {
+            log.warn("Failed to accept connection", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+            // соединения уже закрыты, оставшиеся запросы не смогут ответить
+            for (ExecutorService lane : lanes) {
+                lane.shutdown();
+            }
+            for (ExecutorService lane : lanes) {
+                lane.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        serverChannel.close();
+        selector.close();
+    }
+}
@@ -0,0 +1,158 @@
+package onefilesystem;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import onefilesystem.exception.ReadOnlyFileSystemException;
+import onefilesystem.model.FileHeader;
+import onefilesystem.model.FileStat;
+import onefilesystem.validation.ValidationService;
+
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Снимок OneFileSystem на момент снятия (см. OneFileSystem.snapshot()).
+ * <p>
+ * Снимок хранит копии заголовков живых файлов и читает контент по ним без блокировок: пока снимок открыт, файловая
+ * система не переписывает на месте и не освобождает экстенты, на которые ссылаются копии (см. SnapshotRegistry).
+ * Изменяющие операции бросают ReadOnlyFileSystemException.
+ * <p>
+ * Thread-safe, но закрывать снимок можно только после окончания чтений из него
+ */
+class FileSystemSnapshot implements SnapshottableFileSystem {
+
+    private final OneFileSystem fileSystem;
+    private final long generation;
+    private final Map<String, FileHeader> headers;
+    private final FileNameIndex fileNameIndex = new FileNameIndex();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * @param fileSystem - файловая система, с которой снят снимок
+     * @param generation - поколение снимка
+     * @param headers    - копии заголовков живых файлов по имени
+     */
+    FileSystemSnapshot(OneFileSystem fileSystem, long generation, Map<String, FileHeader> headers) {
+        this.fileSystem = fileSystem;
+        this.generation = generation;
+        this.headers = headers;
+        headers.keySet().forEach(fileNameIndex::add);
+    }
+
+    @Override
+    public void createFile(String fileName) {
+        throw new ReadOnlyFileSystemException("create", fileName);
+    }
+
+    @Override
+    public void createServiceFile(String fileName) {
+        throw new ReadOnlyFileSystemException("create", fileName);
+    }
+
+    @Override
+    public void deleteFile(String fileName) {
+        throw new ReadOnlyFileSystemException("delete", fileName);
+    }
+
+    @Override
+    public void writeContent(String fileName, byte[] content) {
+        throw new ReadOnlyFileSystemException("write", fileName);
+    }
+
+    @Override
+    public byte[] readContent(String fileName) {
+        return fileSystem.readSnapshotContent(getFileHeader(fileName));
+    }
+
+    @Override
+    public long size(String fileName) {
+        return getFileHeader(fileName).getContentRealSize();
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return headers.containsKey(fileName);
+    }
+
+    @Override
+    public FileStat stat(String fileName) {
+        FileHeader fileHeader = getFileHeader(fileName);
+        return FileStat.builder()
+                .fileName(fileName)
+                .size(fileHeader.getContentRealSize())
+                .storedSize(fileHeader.getContentStoredSize())
+                .compression(fileHeader.getCompression())
+                .build();
+    }
+
+    @Override
+    public List<String> list(String prefix) {
+        ValidationService.checkArgument(prefix != null, "Prefix must not be null");
+        return fileNameIndex.list(prefix);
+    }
+
+    @Override
+    public List<String> listAll(String after, int limit) {
+        ValidationService.checkArgument(limit > 0, "Page limit must be positive: " + limit);
+        return fileNameIndex.listAll(after, limit);
+    }
+
+    @Override
+    public List<String> listDirectory(String directory) {
+        ValidationService.checkArgument(directory != null, "Directory must not be null");
+        return fileNameIndex.listDirectory(directory);
+    }
+
+    @Override
+    public int read(String fileName, long offset, ByteBuffer target) {
+        ValidationService.checkArgument(offset >= 0, "Negative content offset: " + offset);
+        return fileSystem.readSnapshotRange(getFileHeader(fileName), offset, target);
+    }
+
+    @Override
+    public void write(String fileName, long offset, ByteBuffer source) {
+        throw new ReadOnlyFileSystemException("write", fileName);
+    }
+
+    @Override
+    public void append(String fileName, ByteBuffer source) {
+        throw new ReadOnlyFileSystemException("append", fileName);
+    }
+
+    @Override
+    public void truncate(String fileName, long size) {
+        throw new ReadOnlyFileSystemException("truncate", fileName);
+    }
+
+    /**
+     * Снимок того же момента, закрывается независимо от этого снимка
+     */
+    @Override
+    public FileSystemSnapshot snapshot() {
+        checkOpen();
+        fileSystem.retainSnapshot(generation);
+        return new FileSystemSnapshot(fileSystem, generation, headers);
+    }
+
+    /**
+     * Закрыть снимок. Повторное закрытие ничего не делает
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            fileSystem.closeSnapshot(generation);
+        }
+    }
+
+    private FileHeader getFileHeader(String fileName) {
+        checkOpen();
+        ValidationService.isFileExists(headers, fileName);
+        return headers.get(fileName);
+    }
+
+    private void checkOpen() {
+        checkState(!closed.get(), "Snapshot is closed");
+    }
+}
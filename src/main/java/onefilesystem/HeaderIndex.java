@@ -0,0 +1,17 @@
+package onefilesystem;
+
+/**
+ * Где держать заголовки живых файлов для поиска по имени
+ */
+public enum HeaderIndex {
+    /**
+     * Все заголовки в памяти процесса, поиск без обращения к диску
+     */
+    HEAP,
+
+    /**
+     * Хеш-индекс имен хранится в файле файловой системы за журналом. В памяти остаются только недавно использованные
+     * заголовки (OneFileSystemOptions.headerCacheSize), остальные читаются из слота по индексу
+     */
+    DISK
+}
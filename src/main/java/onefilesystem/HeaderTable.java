@@ -0,0 +1,60 @@
+package onefilesystem;
+
+import java.util.Collection;
+
+import onefilesystem.model.FileHeader;
+
+/**
+ * Заголовки живых файлов по имени.
+ * <p>
+ * Заголовок файла достается и меняется под блокировкой полосы этого файла (см. StripedLocks), таблица отвечает только
+ * за то, чтобы операции над разными файлами не мешали друг другу. Thread-safe
+ */
+interface HeaderTable {
+
+    /**
+     * @return - заголовок живого файла или null, если файла нет
+     */
+    FileHeader get(String fileName);
+
+    boolean contains(String fileName);
+
+    /**
+     * Добавить заголовок уже записанного на диск файла
+     */
+    void put(FileHeader fileHeader);
+
+    /**
+     * Убрать заголовок, если по его имени лежит именно он
+     *
+     * @return - был ли заголовок убран
+     */
+    boolean remove(FileHeader fileHeader);
+
+    /**
+     * @return - заголовки всех живых файлов. Слабо согласованы: файлы, созданные или удаленные во время обхода, могут
+     * попасть или не попасть в результат
+     */
+    Collection<FileHeader> values();
+
+    int size();
+
+    /**
+     * @return - можно ли вызывать contains без блокировки файла
+     */
+    boolean isLockFree();
+
+    /**
+     * Добавить заголовок, прочитанный при открытии файловой системы
+     *
+     * @return - false, если файл с таким именем уже добавлен
+     */
+    boolean restore(FileHeader fileHeader);
+
+    /**
+     * Закончить открытие файловой системы: все заголовки добавлены через restore
+     *
+     * @return - пришлось ли перестроить то, что хранится на диске
+     */
+    boolean restored();
+}
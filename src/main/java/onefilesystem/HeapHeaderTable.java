@@ -0,0 +1,62 @@
+package onefilesystem;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import onefilesystem.model.FileHeader;
+
+/**
+ * Все заголовки живых файлов в хеш-карте в памяти (HeaderIndex.HEAP). Поиск по имени без блокировок.
+ * <p>
+ * Thread-safe
+ */
+class HeapHeaderTable implements HeaderTable {
+
+    private final Map<String, FileHeader> fileHeaders = new ConcurrentHashMap<>();
+
+    @Override
+    public FileHeader get(String fileName) {
+        return fileHeaders.get(fileName);
+    }
+
+    @Override
+    public boolean contains(String fileName) {
+        return fileHeaders.containsKey(fileName);
+    }
+
+    @Override
+    public void put(FileHeader fileHeader) {
+        fileHeaders.put(fileHeader.getFileName(), fileHeader);
+    }
+
+    @Override
+    public boolean remove(FileHeader fileHeader) {
+        return fileHeaders.remove(fileHeader.getFileName(), fileHeader);
+    }
+
+    @Override
+    public Collection<FileHeader> values() {
+        return fileHeaders.values();
+    }
+
+    @Override
+    public int size() {
+        return fileHeaders.size();
+    }
+
+    @Override
+    public boolean isLockFree() {
+        return true;
+    }
+
+    @Override
+    public boolean restore(FileHeader fileHeader) {
+        return fileHeaders.putIfAbsent(fileHeader.getFileName(), fileHeader) == null;
+    }
+
+    @Override
+    public boolean restored() {
+        return false;
+    }
+}
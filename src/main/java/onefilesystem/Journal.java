@@ -0,0 +1,403 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.FileHeader;
+import onefilesystem.model.Superblock;
+import onefilesystem.utils.JournalRecordCodec;
+import onefilesystem.validation.ValidationService;
+
+import static onefilesystem.utils.JournalRecordCodec.RECORD_SIZE;
+
+/**
+ * Журнал заголовков.
+ * <p>
+ * Изменение файла фиксируется записью нового образа заголовка в журнал. Новый контент к этому моменту уже записан
+ * на свободное место, поэтому один force() делает устойчивыми и контент, и запись журнала. Только после force()
+ * заголовок пишется на свое место. При открытии записи текущего поколения проигрываются поверх заголовков,
+ * недописанные записи отбрасываются, и начинается новое поколение.
+ * <p>
+ * Когда журнал заполняется, делается checkpoint: дожидаемся операций, которые еще не записали заголовок на место,
+ * сбрасываем заголовки на диск и увеличиваем поколение в суперблоке. Записи старого поколения не проигрываются.
+ * <p>
+ * В режиме Durability.NONE журнал не пишется, заголовок сразу пишется на место.
+ * <p>
+ * После записи заголовка на место увеличивается счетчик изменений для читателей из других процессов.
+ * <p>
+ * Если запись не удалась после того, как запись журнала или заголовок начали писаться, на диске может оказаться любой
+ * образ заголовка. Журнал помечается сломанным: дальнейшие изменения отклоняются до переоткрытия, при закрытии
+ * checkpoint не делается, и при открытии записи проигрываются. Освобождать экстенты, на которые ссылается такой
+ * образ, нельзя.
+ * <p>
+ * Thread-safe
+ */
+@Slf4j
+class Journal {
+
+    private final ChannelReadWriteService readWriteService;
+    private final Superblock superblock;
+    private final Lock metadataLock;
+    private final ChangeCounter changeCounter;
+    private final Durability durability;
+    private final long groupCommitWindowNanos;
+
+    /**
+     * Запись в журнал и checkpoint
+     */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition noPendingRecords = appendLock.newCondition();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocateDirect(RECORD_SIZE);
+    private long writeOffset;
+
+    /**
+     * Записи, заголовки которых еще не записаны на место
+     */
+    private int pendingRecords;
+
+    /**
+     * Групповой force(): номера начатого, законченного и последнего упавшего force(). force() идут по одному, поэтому
+     * номер упавшего только растет
+     */
+    private final ReentrantLock groupLock = new ReentrantLock();
+    private final Condition forceCompleted = groupLock.newCondition();
+    private long forcesStarted;
+    private long forcesCompleted;
+    private long failedForce;
+
+    /**
+     * Ошибка, после которой журнал сломан, или null
+     */
+    private volatile Exception failure;
+
+    /**
+     * @param readWriteService - сервис чтения/записи файла файловой системы
+     * @param superblock       - суперблок, в нем размер журнала и поколение
+     * @param metadataLock     - блокировка, под которой пишется суперблок
+     * @param changeCounter    - счетчик изменений в суперблоке
+     * @param durability       - когда изменения становятся устойчивыми к сбою
+     * @param groupCommitWindow - сколько ждать другие операции перед общим force()
+     */
+    Journal(ChannelReadWriteService readWriteService, Superblock superblock, Lock metadataLock,
+            ChangeCounter changeCounter, Durability durability, Duration groupCommitWindow) {
+        if (durability != Durability.NONE && superblock.getJournalSize() < RECORD_SIZE) {
+            throw new OneFileSystemException("File system format version " + superblock.getFormatVersion()
+                    + " has no journal, durability " + durability + " is not supported");
+        }
+
+        this.readWriteService = readWriteService;
+        this.superblock = superblock;
+        this.metadataLock = metadataLock;
+        this.changeCounter = changeCounter;
+        this.durability = durability;
+        this.groupCommitWindowNanos = groupCommitWindow.toNanos();
+    }
+
+    /**
+     * Проиграть записи текущего поколения и начать новое поколение. Вызывается при открытии до чтения заголовков
+     *
+     * @return - сколько записей проиграно
+     */
+    protected int recover() {
+        int journalSize = superblock.getJournalSize();
+        if (journalSize == 0) {
+            return 0;
+        }
+
+        try {
+            ByteBuffer journal = readWriteService.mapReadOnly(superblock.getJournalPosition(), journalSize);
+            int replayed = 0;
+            for (int offset = 0; ; offset += RECORD_SIZE) {
+                FileHeader fileHeader = JournalRecordCodec.decode(journal, offset, superblock.getJournalEpoch());
+                if (fileHeader == null) {
+                    break;
+                }
+                readWriteService.updateFileHeader(fileHeader);
+                superblock.setHeaderCount(Math.max(superblock.getHeaderCount(), fileHeader.getOrder() + 1));
+                replayed++;
+            }
+            if (replayed > 0) {
+                log.warn("File system was not closed properly. Replayed {} journal records", replayed);
+            }
+
+            startNewEpoch();
+            return replayed;
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * Зафиксировать новый образ заголовка: запись в журнал, force() согласно durability, запись заголовка на место.
+     * Вызывается под блокировкой записи файла и не под metadataLock: checkpoint ждет завершения этого вызова
+     *
+     * @param fileHeader - заголовок файла
+     */
+    protected void commit(FileHeader fileHeader) throws IOException {
+        checkNotFailed();
+        if (durability == Durability.NONE) {
+            try {
+                readWriteService.updateFileHeader(fileHeader);
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+                throw e;
+            }
+            changeCounter.changed();
+            return;
+        }
+
+        append(fileHeader);
+        try {
+            sync();
+            readWriteService.updateFileHeader(fileHeader);
+            changeCounter.changed();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            throw e;
+        } finally {
+            appendLock.lock();
+            try {
+                if (--pendingRecords == 0) {
+                    noPendingRecords.signalAll();
+                }
+            } finally {
+                appendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Зафиксировать новые образы нескольких заголовков: записи пишутся в журнал одной записью, на все записи один
+     * force(). Пачка не больше журнала (см. {@link #maxBatchSize()}). В режиме Durability.NONE заголовки пишутся на
+     * место по одному. Вызывается под блокировками записи файлов
+     *
+     * @param fileHeaders - заголовки файлов
+     */
+    protected void commit(List<FileHeader> fileHeaders) throws IOException {
+        checkNotFailed();
+        if (durability == Durability.NONE) {
+            try {
+                for (FileHeader fileHeader : fileHeaders) {
+                    readWriteService.updateFileHeader(fileHeader);
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+                throw e;
+            }
+            changeCounter.changed();
+            return;
+        }
+
+        ValidationService.checkArgument(fileHeaders.size() <= maxBatchSize(), "Batch of " + fileHeaders.size()
+                + " headers does not fit into journal of " + maxBatchSize() + " records");
+        append(fileHeaders);
+        try {
+            sync();
+            for (FileHeader fileHeader : fileHeaders) {
+                readWriteService.updateFileHeader(fileHeader);
+            }
+            changeCounter.changed();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            throw e;
+        } finally {
+            appendLock.lock();
+            try {
+                pendingRecords -= fileHeaders.size();
+                if (pendingRecords == 0) {
+                    noPendingRecords.signalAll();
+                }
+            } finally {
+                appendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return - сколько заголовков можно зафиксировать одной пачкой: столько записей помещается в журнал
+     */
+    protected int maxBatchSize() {
+        return durability == Durability.NONE ? Integer.MAX_VALUE : superblock.getJournalSize() / RECORD_SIZE;
+    }
+
+    /**
+     * Сделать устойчивым все, что записано до вызова, согласно durability
+     */
+    protected void sync() throws IOException {
+        switch (durability) {
+            case PER_OPERATION:
+                readWriteService.force();
+                break;
+            case GROUP_COMMIT:
+                groupForce();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return - журнал сломан: после ошибки фиксации нельзя освобождать то, на что ссылаются ее заголовки
+     */
+    protected boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Отклонить изменение, если журнал сломан
+     */
+    protected void checkNotFailed() {
+        if (failure != null) {
+            throw new OneFileSystemException("Journal write failed, file system must be reopened: " + failure);
+        }
+    }
+
+    /**
+     * Сделать checkpoint, чтобы при следующем открытии проигрывать было нечего. Сломанный журнал не сбрасывается:
+     * его записи проигрываются при открытии
+     */
+    protected void close() throws IOException {
+        if (durability == Durability.NONE || failure != null) {
+            return;
+        }
+
+        appendLock.lock();
+        try {
+            checkpoint();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void append(FileHeader fileHeader) throws IOException {
+        appendLock.lock();
+        try {
+            if (writeOffset + RECORD_SIZE > superblock.getJournalSize()) {
+                checkpoint();
+            }
+
+            recordBuffer.clear();
+            JournalRecordCodec.encode(superblock.getJournalEpoch(), fileHeader, recordBuffer);
+            recordBuffer.flip();
+            readWriteService.updateContent(recordBuffer, superblock.getJournalPosition() + writeOffset);
+
+            writeOffset += RECORD_SIZE;
+            pendingRecords++;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void append(List<FileHeader> fileHeaders) throws IOException {
+        appendLock.lock();
+        try {
+            int length = fileHeaders.size() * RECORD_SIZE;
+            if (writeOffset + length > superblock.getJournalSize()) {
+                checkpoint();
+            }
+
+            ByteBuffer records = ByteBuffer.allocate(length);
+            for (FileHeader fileHeader : fileHeaders) {
+                JournalRecordCodec.encode(superblock.getJournalEpoch(), fileHeader, records);
+            }
+            records.flip();
+            readWriteService.updateContent(records, superblock.getJournalPosition() + writeOffset);
+
+            writeOffset += length;
+            pendingRecords += fileHeaders.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Вызывается под appendLock
+     */
+    private void checkpoint() throws IOException {
+        while (pendingRecords > 0) {
+            noPendingRecords.awaitUninterruptibly();
+        }
+        try {
+            startNewEpoch();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            throw e;
+        }
+        writeOffset = 0;
+    }
+
+    private void fail(Exception e) {
+        if (failure == null) {
+            failure = e;
+            log.error("Journal write failed, file system rejects changes until it is reopened", e);
+        }
+    }
+
+    /**
+     * Сбросить заголовки на диск и увеличить поколение журнала
+     */
+    private void startNewEpoch() throws IOException {
+        readWriteService.force();
+
+        metadataLock.lock();
+        try {
+            superblock.setJournalEpoch(superblock.getJournalEpoch() + 1);
+            readWriteService.updateSuperblock(superblock);
+        } finally {
+            metadataLock.unlock();
+        }
+
+        readWriteService.force();
+    }
+
+    /**
+     * Дождаться force(), начатого после вызова: уже идущий force() мог не захватить последние записи.
+     * Первый пришедший поток ждет groupCommitWindow, чтобы к нему присоединились другие, и делает force() за всех
+     */
+    private void groupForce() throws IOException {
+        groupLock.lock();
+        try {
+            long required = forcesStarted + 1;
+            while (forcesCompleted < required) {
+                if (forcesStarted > forcesCompleted) {
+                    forceCompleted.awaitUninterruptibly();
+                    continue;
+                }
+
+                forcesStarted++;
+                groupLock.unlock();
+                boolean forced = false;
+                try {
+                    if (groupCommitWindowNanos > 0) {
+                        LockSupport.parkNanos(groupCommitWindowNanos);
+                    }
+                    readWriteService.force();
+                    forced = true;
+                } finally {
+                    groupLock.lock();
+                    forcesCompleted = forcesStarted;
+                    if (!forced) {
+                        failedForce = forcesCompleted;
+                    }
+                    forceCompleted.signalAll();
+                }
+            }
+
+            // force() после упавшего мог не записать страницы, сброшенные упавшим, поэтому падают все, кто ждал
+            // упавший или более ранний force()
+            if (failedForce >= required) {
+                throw new IOException("Group force failed");
+            }
+        } finally {
+            groupLock.unlock();
+        }
+    }
+}
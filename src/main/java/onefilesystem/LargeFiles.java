@@ -0,0 +1,527 @@
+package onefilesystem;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.LargeFileManifest;
+import onefilesystem.utils.LargeFileManifestCodec;
+import onefilesystem.validation.ValidationService;
+
+import static onefilesystem.utils.Constants.LARGE_FILE_CHUNK_SIZE;
+import static onefilesystem.utils.Constants.LARGE_FILE_PARALLELISM;
+import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static onefilesystem.utils.Constants.SERVICE_NAME_PREFIX;
+import static onefilesystem.validation.ValidationService.checkArgument;
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Большие файлы поверх FileSystem: размер long, контент не ограничен MAX_FILE_SIZE и не держится в памяти целиком.
+ * <p>
+ * Контент большого файла лежит в служебных файлах-чанках по chunkSize байт, а под именем большого файла лежит обычный
+ * файл с манифестом: длина, размер чанка и идентификатор набора чанков (см. LargeFileManifestCodec). Чанк i набора id
+ * называется CHUNK_NAME_PREFIX + id + '/' + i, в списках файлов чанки не видны. Каждый чанк - обычный файл со своим
+ * заголовком, поэтому сжатие, контрольные суммы, дедупликация, снимки и компакция работают для чанков как для любых
+ * файлов, а в ShardedFileSystem чанки одного файла расходятся по сегментам.
+ * <p>
+ * Запись идет в новый набор чанков: поток пишет чанки на parallelism потоков конвейером, пока заполняет следующий, и
+ * при закрытии записывает манифест. Запись манифеста - точка фиксации: до нее читатели видят прежний контент, после -
+ * новый, прежний набор чанков затем удаляется. Чанки прерванной записи остаются сиротами до collectGarbage().
+ * Чтение потоком читает следующие parallelism чанков заранее. Потоку нужно не больше (parallelism + 1) * chunkSize
+ * байт памяти независимо от размера файла.
+ * <p>
+ * Читатель большого файла, который переписывают или удаляют, получит FileNotFoundException на удаленном чанке.
+ * Согласованное чтение - через LargeFiles над снимком файловой системы (см. SnapshottableFileSystem.snapshot()).
+ * <p>
+ * Каждый чанк занимает слот заголовка, OneFileSystemOptions.maxFilesCount должен это учитывать. LargeFiles не
+ * закрывает файловую систему. Thread-safe, потоки чтения и записи - нет
+ */
+@Slf4j
+public class LargeFiles implements Closeable {
+
+    public static final String CHUNK_NAME_PREFIX = SERVICE_NAME_PREFIX + "chunk/";
+
+    private final FileSystem fileSystem;
+    private final int chunkSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    /**
+     * Фиксация и удаление больших файлов этим экземпляром идут по одной, чтобы прежний набор чанков не потерялся
+     */
+    private final Lock commitLock = new ReentrantLock();
+
+    /**
+     * Наборы чанков, которые сейчас пишутся, collectGarbage() их не трогает. Набор добавляется до создания первого
+     * чанка, а убирается после фиксации манифеста под commitLock
+     */
+    private final Set<Long> writingChunks = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param fileSystem - файловая система
+     */
+    public LargeFiles(FileSystem fileSystem) {
+        this(fileSystem, LARGE_FILE_CHUNK_SIZE, LARGE_FILE_PARALLELISM);
+    }
+
+    /**
+     * @param fileSystem  - файловая система
+     * @param chunkSize   - размер чанка новых файлов, меньше MAX_FILE_SIZE
+     * @param parallelism - сколько чанков потока пишется или читается заранее параллельно
+     */
+    public LargeFiles(FileSystem fileSystem, int chunkSize, int parallelism) {
+        checkState(chunkSize > 0 && chunkSize < MAX_FILE_SIZE, "Chunk size must be positive and less than "
+                + MAX_FILE_SIZE + ": " + chunkSize);
+        checkState(parallelism > 0, "Parallelism must be positive: " + parallelism);
+
+        this.fileSystem = fileSystem;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "one-file-system-chunks-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param chunksId - идентификатор набора чанков
+     * @param chunk    - номер чанка
+     * @return - имя файла чанка
+     */
+    static String chunkName(long chunksId, long chunk) {
+        return CHUNK_NAME_PREFIX + Long.toHexString(chunksId) + "/" + chunk;
+    }
+
+    /**
+     * Открыть поток записи большого файла. Файл создается или переписывается при закрытии потока, в том числе
+     * обычный файл с тем же именем
+     *
+     * @param fileName - имя файла
+     * @return - поток записи, контент виден после close()
+     */
+    public OutputStream create(String fileName) {
+        ValidationService.checkNotReserved(fileName);
+        return new ChunkedOutputStream(fileName);
+    }
+
+    /**
+     * Открыть поток чтения большого файла
+     *
+     * @param fileName - имя большого файла
+     * @return - поток чтения контента с начала
+     */
+    public InputStream open(String fileName) {
+        return new ChunkedInputStream(getManifest(fileName));
+    }
+
+    /**
+     * Прочитать участок контента большого файла позиционным чтением чанков
+     *
+     * @param fileName - имя большого файла
+     * @param offset   - смещение от начала контента
+     * @param target   - буфер, в который читаются байты от position до limit
+     * @return - сколько байт прочитано, -1 если offset не меньше размера контента
+     */
+    public int read(String fileName, long offset, ByteBuffer target) {
+        checkArgument(offset >= 0, "Negative content offset: " + offset);
+        LargeFileManifest manifest = getManifest(fileName);
+        if (offset >= manifest.getLength()) {
+            return target.hasRemaining() ? -1 : 0;
+        }
+
+        int length = (int) Math.min(target.remaining(), manifest.getLength() - offset);
+        int limit = target.limit();
+        target.limit(target.position() + length);
+        try {
+            int read = 0;
+            while (read < length) {
+                long position = offset + read;
+                long chunk = position / manifest.getChunkSize();
+                int chunkRead = fileSystem.read(chunkName(manifest.getChunksId(), chunk),
+                        position - chunk * manifest.getChunkSize(), target);
+                if (chunkRead <= 0) {
+                    throw new OneFileSystemException("Chunk " + chunk + " of large file " + fileName
+                            + " is shorter than expected");
+                }
+                read += chunkRead;
+            }
+            return read;
+        } finally {
+            target.limit(limit);
+        }
+    }
+
+    /**
+     * @param fileName - имя большого файла
+     * @return - размер контента
+     */
+    public long length(String fileName) {
+        return getManifest(fileName).getLength();
+    }
+
+    /**
+     * @param fileName - имя файла
+     * @return - существует ли файл и большой ли он
+     */
+    public boolean isLargeFile(String fileName) {
+        return fileSystem.exists(fileName) && readManifest(fileName) != null;
+    }
+
+    /**
+     * Удалить большой файл и его чанки
+     *
+     * @param fileName - имя большого файла
+     */
+    public void delete(String fileName) {
+        commitLock.lock();
+        try {
+            LargeFileManifest manifest = getManifest(fileName);
+            fileSystem.deleteFile(fileName);
+            deleteChunks(manifest.getChunksId(), manifest.getChunksCount());
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Удалить чанки, на которые не ссылается ни один манифест: остатки прерванной записи или сбоя между записью
+     * манифеста и удалением прежних чанков. Читает контент всех файлов размера манифеста
+     *
+     * @return - сколько чанков удалено
+     */
+    public int collectGarbage() {
+        commitLock.lock();
+        try {
+            Set<Long> liveChunks = new HashSet<>();
+            for (String fileName : fileSystem.list("")) {
+                if (fileSystem.size(fileName) != LargeFileManifestCodec.ENCODED_SIZE) {
+                    continue;
+                }
+                LargeFileManifest manifest = readManifest(fileName);
+                if (manifest != null) {
+                    liveChunks.add(manifest.getChunksId());
+                }
+            }
+
+            int deleted = 0;
+            for (String chunkName : fileSystem.list(CHUNK_NAME_PREFIX)) {
+                long chunksId = Long.parseUnsignedLong(
+                        chunkName.substring(CHUNK_NAME_PREFIX.length(), chunkName.lastIndexOf('/')), 16);
+                // поток, открытый после обхода манифестов, успел создать чанки до их перечисления
+                if (!liveChunks.contains(chunksId) && !writingChunks.contains(chunksId)) {
+                    deleteQuietly(chunkName);
+                    deleted++;
+                }
+            }
+            if (deleted > 0) {
+                log.info("Deleted {} orphan large file chunks", deleted);
+            }
+            return deleted;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Дождаться уже начатых чтений и записей чанков и остановить потоки
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return - манифест большого файла, FileNotFoundException если файла нет или он не большой
+     */
+    private LargeFileManifest getManifest(String fileName) {
+        LargeFileManifest manifest = readManifest(fileName);
+        if (manifest == null) {
+            throw new FileNotFoundException(fileName);
+        }
+        return manifest;
+    }
+
+    /**
+     * @return - манифест или null, если файл обычный
+     */
+    private LargeFileManifest readManifest(String fileName) {
+        if (fileSystem.size(fileName) != LargeFileManifestCodec.ENCODED_SIZE) {
+            return null;
+        }
+        return LargeFileManifestCodec.decode(fileSystem.readContent(fileName));
+    }
+
+    /**
+     * Записать манифест нового набора чанков и удалить прежний набор, если файл уже был большим
+     */
+    private void commit(String fileName, LargeFileManifest manifest) {
+        commitLock.lock();
+        try {
+            LargeFileManifest previous = null;
+            if (!fileSystem.exists(fileName)) {
+                fileSystem.createFile(fileName);
+            } else {
+                previous = readManifest(fileName);
+            }
+            fileSystem.writeContent(fileName, LargeFileManifestCodec.encode(manifest));
+            if (previous != null) {
+                deleteChunks(previous.getChunksId(), previous.getChunksCount());
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void deleteChunks(long chunksId, long chunksCount) {
+        for (long chunk = 0; chunk < chunksCount; chunk++) {
+            deleteQuietly(chunkName(chunksId, chunk));
+        }
+    }
+
+    private void deleteQuietly(String fileName) {
+        try {
+            fileSystem.deleteFile(fileName);
+        } catch (FileNotFoundException e) {
+            log.debug("Chunk {} is already deleted", fileName);
+        }
+    }
+
+    /**
+     * Дождаться результата задачи над чанком
+     */
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OneFileSystemException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * Поток записи: заполненный чанк отдается на запись, а поток заполняет следующий буфер. Чанков в записи не
+     * больше parallelism, буферы записанных чанков переиспользуются
+     */
+    private class ChunkedOutputStream extends OutputStream {
+
+        private final String fileName;
+        private final long chunksId;
+        private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+        private final Deque<byte[]> freeBuffers = new ArrayDeque<>();
+
+        private byte[] buffer;
+        private int bufferLength;
+        private long chunksCount;
+        private long length;
+        private boolean closed;
+
+        private ChunkedOutputStream(String fileName) {
+            this.fileName = fileName;
+            long id;
+            do {
+                id = ThreadLocalRandom.current().nextLong();
+            } while (fileSystem.exists(chunkName(id, 0)) || !writingChunks.add(id));
+            this.chunksId = id;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] source, int offset, int length) {
+            checkState(!closed, "Stream is closed");
+            try {
+                while (length > 0) {
+                    if (buffer == null) {
+                        buffer = freeBuffers.isEmpty() ? new byte[chunkSize] : freeBuffers.pollFirst();
+                    }
+                    int copied = Math.min(length, chunkSize - bufferLength);
+                    System.arraycopy(source, offset, buffer, bufferLength, copied);
+                    bufferLength += copied;
+                    this.length += copied;
+                    offset += copied;
+                    length -= copied;
+                    if (bufferLength == chunkSize) {
+                        submitChunk();
+                    }
+                }
+            } catch (RuntimeException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        /**
+         * Дописать последний чанк, дождаться записи всех чанков и записать манифест
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            try {
+                if (bufferLength > 0) {
+                    submitChunk();
+                }
+                while (!pendingChunks.isEmpty()) {
+                    await(pendingChunks.pollFirst());
+                }
+                closed = true;
+                commit(fileName, new LargeFileManifest(chunksId, length, chunkSize));
+            } catch (RuntimeException e) {
+                abort();
+                throw e;
+            } finally {
+                writingChunks.remove(chunksId);
+            }
+        }
+
+        private void submitChunk() {
+            if (pendingChunks.size() == parallelism) {
+                freeBuffers.addLast(await(pendingChunks.pollFirst()));
+            }
+
+            String chunkName = chunkName(chunksId, chunksCount++);
+            byte[] chunk = bufferLength == chunkSize ? buffer : Arrays.copyOf(buffer, bufferLength);
+            byte[] reusable = buffer;
+            pendingChunks.addLast(executor.submit(() -> {
+                fileSystem.createServiceFile(chunkName);
+                fileSystem.writeContent(chunkName, chunk);
+                return reusable;
+            }));
+            buffer = null;
+            bufferLength = 0;
+        }
+
+        /**
+         * Отменить запись: дождаться начатых чанков и удалить все записанные
+         */
+        private void abort() {
+            closed = true;
+            for (Future<byte[]> chunk : pendingChunks) {
+                try {
+                    chunk.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    log.debug("Chunk write of {} failed", fileName, e.getCause());
+                }
+            }
+            pendingChunks.clear();
+            deleteChunks(chunksId, chunksCount);
+            writingChunks.remove(chunksId);
+        }
+    }
+
+    /**
+     * Поток чтения: следующие parallelism чанков читаются заранее
+     */
+    private class ChunkedInputStream extends InputStream {
+
+        private final LargeFileManifest manifest;
+        private final Deque<Future<byte[]>> prefetchedChunks = new ArrayDeque<>();
+
+        private byte[] chunk = new byte[0];
+        private int chunkPosition;
+        private long nextChunk;
+        private boolean closed;
+
+        private ChunkedInputStream(LargeFileManifest manifest) {
+            this.manifest = manifest;
+            prefetch();
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            checkState(!closed, "Stream is closed");
+            if (length == 0) {
+                return 0;
+            }
+            if (chunkPosition == chunk.length) {
+                if (prefetchedChunks.isEmpty()) {
+                    return -1;
+                }
+                chunk = await(prefetchedChunks.pollFirst());
+                chunkPosition = 0;
+                prefetch();
+                if (chunk.length == 0) {
+                    throw new OneFileSystemException("Chunk of large file is empty: " + manifest);
+                }
+            }
+
+            int read = Math.min(length, chunk.length - chunkPosition);
+            System.arraycopy(chunk, chunkPosition, target, offset, read);
+            chunkPosition += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - chunkPosition;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            for (Future<byte[]> prefetched : prefetchedChunks) {
+                prefetched.cancel(false);
+            }
+            prefetchedChunks.clear();
+        }
+
+        private void prefetch() {
+            while (prefetchedChunks.size() < parallelism && nextChunk < manifest.getChunksCount()) {
+                long chunk = nextChunk++;
+                Callable<byte[]> read = () -> {
+                    byte[] content = fileSystem.readContent(chunkName(manifest.getChunksId(), chunk));
+                    if (content.length != manifest.getChunkLength(chunk)) {
+                        throw new OneFileSystemException("Chunk " + chunk + " of large file has size "
+                                + content.length + ", expected " + manifest.getChunkLength(chunk));
+                    }
+                    return content;
+                };
+                prefetchedChunks.addLast(executor.submit(read));
+            }
+        }
+    }
+}
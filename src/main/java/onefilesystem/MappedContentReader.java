@@ -0,0 +1,137 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import onefilesystem.exception.OneFileSystemException;
+
+import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static onefilesystem.utils.Constants.MMAP_SEGMENT_SIZE;
+
+/**
+ * Чтение контента из файла файловой системы, отображенного в память.
+ * <p>
+ * Файл отображается сегментами: сегмент i начинается с i * MMAP_SEGMENT_SIZE, а его окно длиннее на MAX_FILE_SIZE.
+ * Окна соседних сегментов перекрываются, поэтому любой экстент не больше MAX_FILE_SIZE целиком попадает в окно того
+ * сегмента, в котором начинается, и отдается одним срезом без копирования.
+ * <p>
+ * Последний сегмент отображается только до конца файла. Когда файл растет, сегмент отображается заново, а прежнее
+ * отображение остается у тех, кто успел получить из него срезы, и освобождается GC.
+ * <p>
+ * Файл нельзя обрезать короче отображенного: обращение к срезу за концом файла роняет JVM (InternalError), а не бросает
+ * исключение. Поэтому компактор не обрезает файл ниже mappedEnd.
+ * <p>
+ * Thread-safe
+ */
+class MappedContentReader {
+
+    private static final long WINDOW_SIZE = MMAP_SEGMENT_SIZE + MAX_FILE_SIZE;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private final FileChannel channel;
+
+    /**
+     * Копия при изменении: читатели берут ссылку на массив без блокировки
+     */
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    /**
+     * Конец самого дальнего отображения, которое когда-либо отдавалось. Только растет: срезы прежних отображений
+     * живут, пока на них есть ссылки
+     */
+    private volatile long mappedEnd;
+
+    MappedContentReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Срез отображения только для чтения
+     *
+     * @param position - позиция контента в файле
+     * @param length   - размер контента
+     * @return - срез или null, если контент не помещается в окно одного сегмента
+     */
+    protected ByteBuffer view(long position, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+
+        int segment = (int) (position / MMAP_SEGMENT_SIZE);
+        int offset = (int) (position % MMAP_SEGMENT_SIZE);
+        if (offset + (long) length > WINDOW_SIZE) {
+            return null;
+        }
+
+        ByteBuffer view = mappedSegment(segment, offset + length).duplicate();
+        view.position(offset).limit(offset + length);
+        return view.slice();
+    }
+
+    /**
+     * Прочитать контент в массив
+     *
+     * @param content  - массив, который нужно заполнить целиком
+     * @param position - позиция контента в файле
+     * @return - удалось ли прочитать из отображения
+     */
+    protected boolean read(byte[] content, long position) {
+        ByteBuffer view = view(position, content.length);
+        if (view == null) {
+            return false;
+        }
+        view.get(content);
+        return true;
+    }
+
+    /**
+     * @return - до какой позиции файл файловой системы отображен в память, короче файл обрезать нельзя
+     */
+    protected long mappedEnd() {
+        return mappedEnd;
+    }
+
+    /**
+     * Отпустить отображения. Сами отображения освобождает GC, когда на них не останется срезов
+     */
+    protected synchronized void close() {
+        segments = new MappedByteBuffer[0];
+    }
+
+    /**
+     * Достать сегмент, в окне которого отображено хотя бы requiredLength байт
+     */
+    private MappedByteBuffer mappedSegment(int segment, long requiredLength) {
+        MappedByteBuffer[] current = segments;
+        if (segment < current.length && current[segment] != null && current[segment].capacity() >= requiredLength) {
+            return current[segment];
+        }
+        return remap(segment, requiredLength);
+    }
+
+    private synchronized MappedByteBuffer remap(int segment, long requiredLength) {
+        MappedByteBuffer[] current = segments;
+        if (segment < current.length && current[segment] != null && current[segment].capacity() >= requiredLength) {
+            return current[segment];
+        }
+
+        try {
+            long start = (long) segment * MMAP_SEGMENT_SIZE;
+            long size = Math.min(WINDOW_SIZE, channel.size() - start);
+            if (size < requiredLength) {
+                throw new OneFileSystemException("Content is out of file system bounds: " + (start + requiredLength));
+            }
+
+            MappedByteBuffer[] updated = Arrays.copyOf(current, Math.max(current.length, segment + 1));
+            updated[segment] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            mappedEnd = Math.max(mappedEnd, start + size);
+            segments = updated;
+            return updated[segment];
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+}
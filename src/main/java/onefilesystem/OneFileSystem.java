@@ -3,44 +3,312 @@ package onefilesystem;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import lombok.extern.slf4j.Slf4j;
+import onefilesystem.allocation.ContentIndex;
+import onefilesystem.allocation.ExtentAllocator;
+import onefilesystem.allocation.SlotAllocator;
+import onefilesystem.cache.ContentCache;
+import onefilesystem.compression.Compression;
+import onefilesystem.compression.ContentCompressor;
+import onefilesystem.compression.EncodedContent;
+import onefilesystem.exception.CorruptedContentException;
+import onefilesystem.exception.FileAlreadyExistsException;
+import onefilesystem.exception.FileNotFoundException;
 import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.exception.ReadOnlyFileSystemException;
+import onefilesystem.metrics.CompositeMetricsListener;
+import onefilesystem.metrics.MetricsListener;
+import onefilesystem.metrics.OneFileSystemMetrics;
+import onefilesystem.metrics.Operation;
+import onefilesystem.migration.LegacyContainerMigration;
+import onefilesystem.model.CacheStatistics;
+import onefilesystem.model.CompactionStatistics;
 import onefilesystem.model.FileHeader;
+import onefilesystem.model.FileStat;
+import onefilesystem.model.OpenStatistics;
+import onefilesystem.model.ScrubStatistics;
+import onefilesystem.model.Superblock;
+import onefilesystem.utils.Checksums;
+import onefilesystem.utils.FileHeaderCodec;
+import onefilesystem.utils.SuperblockCodec;
 import onefilesystem.validation.ValidationService;
-import org.apache.commons.lang3.SerializationException;
 
-import static onefilesystem.utils.ByteBufferUtils.createFileHeaderFrom;
+import static onefilesystem.allocation.ExtentAllocator.roundUp;
 import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
-import static onefilesystem.utils.Constants.MAX_FILES_COUNT;
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
+import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static onefilesystem.utils.Constants.SUPERBLOCK_SIZE;
 
 @Slf4j
-public class OneFileSystem implements FileSystem {
+public class OneFileSystem implements SnapshottableFileSystem {
 
     private final OneFileSystemStartupHelper oneFileSystemStartupHelper;
 
-    private final ReadWriteLock lock;
-    private final Map<String, FileHeader> existingFiles = new HashMap<>();
-    private final AtomicLong lastFileNumber = new AtomicLong();
+    /**
+     * Блокировки контента и заголовков файлов, файл защищает блокировка его полосы
+     */
+    private final StripedLocks locks;
+
+    /**
+     * Короткие критические секции над общими метаданными: распределение экстентов и слотов, суперблок
+     */
+    private final Lock metadataLock = new ReentrantLock();
+
+    /**
+     * Заголовки живых файлов по имени: в памяти или в хеш-индексе на диске (см. HeaderIndex)
+     */
+    private final HeaderTable existingFiles;
+
+    /**
+     * Отсортированные имена живых файлов для списков по префиксу, меняется вместе с existingFiles
+     */
+    private final FileNameIndex fileNameIndex = new FileNameIndex();
     private final ChannelReadWriteService readWriteService;
+    private final Superblock superblock;
+    private final Journal journal;
+
+    /**
+     * Счетчик изменений для читателей из других процессов
+     */
+    private final ChangeCounter changeCounter;
+
+    /**
+     * Заголовки, которые перечитываются по счетчику изменений писателя, или null, если файловая система открыта не
+     * только для чтения
+     */
+    private final SharedHeaderView sharedHeaderView;
+
+    /**
+     * Писать контент writeContent в новый экстент, а не поверх старого. Включено, если пишется журнал
+     */
+    private final boolean copyOnWrite;
+
+    /**
+     * Сжатие контента writeContent по умолчанию
+     */
+    private final Compression compression;
+    private final Verification verification;
+
+    /**
+     * Искать одинаковый контент при writeContent и делить с ним экстент
+     */
+    private final boolean deduplication;
+    private final ExtentAllocator extentAllocator;
+
+    /**
+     * Разделяемые экстенты и число ссылок на них, защищен metadataLock
+     */
+    private final ContentIndex contentIndex = new ContentIndex();
+
+    /**
+     * Открытые снимки и экстенты, освобождение которых ждет их закрытия, защищен metadataLock
+     */
+    private final SnapshotRegistry snapshots;
+    private final SlotAllocator slotAllocator;
+    private final OpenStatistics openStatistics;
+    private final MappedContentReader mappedContentReader;
+    private final ContentCache contentCache;
+
+    /**
+     * Источник версий контента для ключей кэша
+     */
+    private final AtomicLong contentVersions = new AtomicLong();
+
+    /**
+     * Встроенные метрики или null, если они выключены
+     */
+    private final OneFileSystemMetrics metrics;
+
+    /**
+     * Получатель событий инструментирования: встроенные метрики и metricsListener из настроек
+     */
+    private final MetricsListener metricsListener;
+
+    private final Compactor compactor;
+
+    /**
+     * Поток фоновой компакции или null, если она выключена
+     */
+    private final ScheduledExecutorService compactionExecutor;
+    private final Scrubber scrubber;
+
+    /**
+     * Поток фоновой проверки контрольных сумм или null, если она выключена
+     */
+    private final ScheduledExecutorService scrubExecutor;
 
     /**
      * @param fileSystemDirectory - директория в основной файловой системе
      * @param fileSystemName      - имя файла в основной файловой системе
      */
     public OneFileSystem(String fileSystemDirectory, String fileSystemName) {
-        oneFileSystemStartupHelper = new OneFileSystemStartupHelper(fileSystemDirectory, fileSystemName);
+        this(fileSystemDirectory, fileSystemName, OneFileSystemOptions.defaults());
+    }
+
+    /**
+     * @param fileSystemDirectory - директория в основной файловой системе
+     * @param fileSystemName      - имя файла в основной файловой системе
+     * @param options             - настройки файловой системы
+     */
+    public OneFileSystem(String fileSystemDirectory, String fileSystemName, OneFileSystemOptions options) {
+        long openStart = System.nanoTime();
+
+        boolean readOnly = options.isReadOnly();
+        oneFileSystemStartupHelper = new OneFileSystemStartupHelper(fileSystemDirectory, fileSystemName, readOnly);
         FileChannel channel = oneFileSystemStartupHelper.init();
 
-        readWriteService = new ChannelReadWriteService(channel);
-        readAllFilesHeaders();
-        this.lock = new ReentrantReadWriteLock();
+        metrics = options.isMetricsEnabled()
+                ? new OneFileSystemMetrics(this::containerSize, this::liveBytes, this::storedBytes, this::savedBytes)
+                : null;
+        metricsListener = createMetricsListener(metrics, options.getMetricsListener());
+        readWriteService = new ChannelReadWriteService(channel, metricsListener);
+        // писатель меняет контент на месте, не меняя заголовок, и обрезает файл, поэтому читателю из другого процесса
+        // нельзя ни кэшировать контент, ни обращаться к отображению контента, которое может оказаться за концом файла
+        mappedContentReader = options.getReadMode() == ReadMode.MMAP && !readOnly
+                ? new MappedContentReader(channel)
+                : null;
+        contentCache = options.getCacheSize() > 0 && !readOnly
+                ? new ContentCache(options.getCacheSize(), options.getEvictionPolicy().get())
+                : null;
+        superblock = readOrCreateSuperblock(options);
+        changeCounter = new ChangeCounter(readWriteService, superblock, metadataLock);
+        journal = new Journal(readWriteService, superblock, metadataLock, changeCounter,
+                readOnly ? Durability.NONE : options.getDurability(), options.getGroupCommitWindow());
+        int journalRecordsReplayed = readOnly ? 0 : journal.recover();
+        if (!readOnly) {
+            resetChangeCounter();
+        }
+        copyOnWrite = options.getDurability() != Durability.NONE;
+        compression = options.getCompression();
+        verification = options.getVerification();
+        deduplication = options.isDeduplication();
+        extentAllocator = new ExtentAllocator(superblock.getContentStartPosition());
+        snapshots = new SnapshotRegistry(extentAllocator);
+        slotAllocator = new SlotAllocator(superblock.getHeaderCount());
+        // читатель из другого процесса перечитывает заголовки сам и не может менять индекс на диске
+        existingFiles = superblock.getIndexBucketsCount() > 0 && !readOnly
+                ? new DiskHeaderTable(readWriteService, new DiskHashIndex(readWriteService, superblock),
+                this::headerCount, contentVersions::incrementAndGet, options.getHeaderCacheSize())
+                : new HeapHeaderTable();
+
+        OpenStatistics.OpenStatisticsBuilder statistics = OpenStatistics.builder();
+        if (readOnly) {
+            sharedHeaderView = new SharedHeaderView(readWriteService, existingFiles, fileNameIndex);
+            sharedHeaderView.refresh();
+            statistics.headerCount((int) superblock.getHeaderCount());
+        } else {
+            sharedHeaderView = null;
+            List<FileHeader> liveHeaders = readAllFilesHeaders(statistics);
+            restoreExtentAllocator(liveHeaders);
+            statistics.headerIndexRebuilt(existingFiles.restored());
+        }
+        locks = new StripedLocks(options.getLockStripesCount());
+        compactor = new Compactor(existingFiles, locks, metadataLock, extentAllocator, contentIndex, snapshots,
+                readWriteService, journal, mappedContentReader, options.getCompactionIoBudget());
+        scrubber = new Scrubber(existingFiles, locks, readWriteService, metricsListener, options.getScrubIoBudget());
+
+        openStatistics = statistics
+                .journalRecordsReplayed(journalRecordsReplayed)
+                .liveFilesCount(existingFiles.size())
+                .openTimeNanos(System.nanoTime() - openStart)
+                .build();
+        log.info("Opened file system: {}", openStatistics);
+
+        if (metrics != null) {
+            metrics.registerMBean(Paths.get(fileSystemDirectory, fileSystemName).toAbsolutePath().toString());
+        }
+        compactionExecutor = startBackgroundTask("one-file-system-compactor",
+                readOnly ? 0 : options.getCompactionInterval().toMillis(), () -> {
+                    if (compactor.hasFreeSpace()) {
+                        compactor.compact();
+                    }
+                });
+        scrubExecutor = startBackgroundTask("one-file-system-scrubber",
+                verification == Verification.BACKGROUND && !readOnly ? options.getScrubInterval().toMillis() : 0,
+                scrubber::scrub);
+    }
+
+    /**
+     * @param threadName     - имя фонового потока
+     * @param intervalMillis - период задачи, 0 - не запускать
+     * @param task           - фоновая задача
+     * @return - фоновый поток или null
+     */
+    private static ScheduledExecutorService startBackgroundTask(String threadName, long intervalMillis,
+                                                                Runnable task) {
+        if (intervalMillis <= 0) {
+            return null;
+        }
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Background task {} failed", threadName, e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    /**
+     * Дождаться окончания фоновой задачи. Поток не прерывается: прерывание посреди ввода-вывода закрыло бы
+     * FileChannel, задача должна быть остановлена заранее
+     */
+    private static void stopBackgroundTask(ScheduledExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Получатель событий инструментирования по настройкам: встроенные метрики, свой получатель, оба или никого
+     */
+    private static MetricsListener createMetricsListener(OneFileSystemMetrics metrics, MetricsListener listener) {
+        List<MetricsListener> listeners = new ArrayList<>();
+        if (metrics != null) {
+            listeners.add(metrics);
+        }
+        if (listener != MetricsListener.NOOP) {
+            listeners.add(listener);
+        }
+
+        if (listeners.isEmpty()) {
+            return MetricsListener.NOOP;
+        }
+        return listeners.size() == 1 ? listeners.get(0) : new CompositeMetricsListener(listeners);
     }
 
     /**
@@ -49,26 +317,39 @@ public class OneFileSystem implements FileSystem {
      * @param fileName- имя файла
      */
     public void createFile(String fileName) {
-        //todo: нужно переиспользовать место удаленных файлов
+        ValidationService.checkNotReserved(fileName);
+        create(fileName);
+    }
 
-        lock.writeLock().lock();
+    @Override
+    public void createServiceFile(String fileName) {
+        ValidationService.checkArgument(ValidationService.isServiceName(fileName), "Not a service file name: "
+                + fileName);
+        create(fileName);
+    }
 
-        try {
-            ValidationService.isFileAlreadyExists(existingFiles, fileName);
+    private void create(String fileName) {
+        checkWritable("create", fileName);
+        ValidationService.checkFileName(fileName);
 
-            boolean successReuse = reuseDeletedFileSpace(fileName);
-            if (successReuse) {
-                return;
-            }
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.CREATE_FILE, start);
+        long bytes = -1;
+
+        try {
+            ValidationService.isFileAlreadyExists(existingFiles::contains, fileName);
 
-            FileHeader fileHeader = new FileHeader(lastFileNumber.get(), fileName);
-            readWriteService.updateFileHeader(fileHeader);
-            existingFiles.put(fileHeader.getFileName(), fileHeader);
-            lastFileNumber.getAndIncrement();
+            FileHeader fileHeader = allocateFileHeader(fileName);
+            fileHeader.setVersion(contentVersions.incrementAndGet());
+            journal.commit(fileHeader);
+            existingFiles.put(fileHeader);
+            fileNameIndex.add(fileName);
+            bytes = 0;
         } catch (IOException e) {
             throw new OneFileSystemException(e);
         } finally {
-            lock.writeLock().unlock();
+            unlock(lock, Operation.CREATE_FILE, start, acquired, bytes);
         }
     }
 
@@ -79,144 +360,1712 @@ public class OneFileSystem implements FileSystem {
      * @return - контент
      */
     public byte[] readContent(String fileName) {
-        lock.readLock().lock();
+        if (sharedHeaderView != null) {
+            return readShared(Operation.READ_CONTENT, () -> readFileContent(getFileHeader(fileName)),
+                    content -> content.length);
+        }
+
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.READ_CONTENT, start);
+        long bytes = -1;
 
         try {
             FileHeader fileHeader = getFileHeader(fileName);
-            long contentPosition = fileHeader.getContentPosition();
-            int contentRealSize = fileHeader.getContentRealSize();
+            ByteBuffer cached = getCachedContent(fileHeader);
+            byte[] content;
+            if (cached != null) {
+                content = new byte[cached.remaining()];
+                cached.get(content);
+            } else {
+                content = readAndCacheContent(fileHeader);
+            }
 
-            ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[contentRealSize]);
-            readWriteService.readBuffer(byteBuffer, contentPosition);
-            return byteBuffer.array();
+            bytes = content.length;
+            return content;
+        } finally {
+            unlock(lock, Operation.READ_CONTENT, start, acquired, bytes);
+        }
+    }
+
+    /**
+     * Прочитать контент файла в буфер только для чтения.
+     * Контент из кэша и в режиме ReadMode.MMAP возвращается без копирования: срез буфера кэша или отображенного в
+     * память файла
+     *
+     * @param fileName - имя файла
+     * @return - буфер с контентом
+     */
+    @Override
+    public ByteBuffer readContentView(String fileName) {
+        if (mappedContentReader == null && contentCache == null) {
+            return SnapshottableFileSystem.super.readContentView(fileName);
+        }
+
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.READ_CONTENT, start);
+        long bytes = -1;
+
+        try {
+            FileHeader fileHeader = getFileHeader(fileName);
+            ByteBuffer content = getCachedContent(fileHeader);
+            if (content == null && mappedContentReader != null && fileHeader.getCompression() == Compression.NONE) {
+                ByteBuffer view = mappedContentReader.view(fileHeader.getContentPosition(),
+                        fileHeader.getContentRealSize());
+                if (view != null) {
+                    verifyContent(fileHeader, view);
+                    content = view.asReadOnlyBuffer();
+                }
+            }
+            if (content == null) {
+                content = ByteBuffer.wrap(readAndCacheContent(fileHeader)).asReadOnlyBuffer();
+            }
 
+            bytes = content.remaining();
+            return content;
         } finally {
-            lock.readLock().unlock();
+            unlock(lock, Operation.READ_CONTENT, start, acquired, bytes);
+        }
+    }
+
+    /**
+     * Передать контент файла в неблокирующий канал без копирования в память процесса: сначала заголовок ответа, затем
+     * контент через FileChannel.transferTo. Что канал не принял сразу, копируется в буфер, чтобы не держать блокировку
+     * файла, пока канал освобождается. Сжатый контент, контент из кэша и контент, который проверяется при чтении, так
+     * не передаются
+     *
+     * @param fileName - имя файла
+     * @param prefix   - заголовок ответа по размеру контента
+     * @param target   - канал, в очереди которого ничего нет
+     * @return - непереданный остаток заголовка и контента, пустой буфер, если передано все, или null, если контент
+     * нужно прочитать через readContent
+     */
+    ByteBuffer transferContent(String fileName, IntFunction<ByteBuffer> prefix, WritableByteChannel target)
+            throws IOException {
+        if (sharedHeaderView != null || verification == Verification.ON_READ) {
+            return null;
+        }
+
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.READ_CONTENT, start);
+        long bytes = -1;
+
+        try {
+            FileHeader fileHeader = getFileHeader(fileName);
+            if (fileHeader.getCompression() != Compression.NONE || getCachedContent(fileHeader) != null) {
+                return null;
+            }
+
+            int contentSize = fileHeader.getContentRealSize();
+            ByteBuffer header = prefix.apply(contentSize);
+            target.write(header);
+            long transferred = header.hasRemaining()
+                    ? 0
+                    : readWriteService.transferTo(fileHeader.getContentPosition(), contentSize, target);
+
+            ByteBuffer rest = ByteBuffer.allocate(header.remaining() + contentSize - (int) transferred);
+            rest.put(header);
+            readWriteService.readContent(rest, fileHeader.getContentPosition() + transferred);
+            rest.flip();
+            bytes = contentSize;
+            return rest;
+        } finally {
+            unlock(lock, Operation.READ_CONTENT, start, acquired, bytes);
+        }
+    }
+
+    /**
+     * Прочитать контент с диска и положить в кэш. Вызывается под блокировкой чтения файла
+     */
+    private byte[] readAndCacheContent(FileHeader fileHeader) {
+        byte[] content = readFileContent(fileHeader);
+        if (contentCache != null) {
+            contentCache.put(fileHeader.getFileName(), fileHeader.getVersion(), ByteBuffer.wrap(content));
+        }
+        return content;
+    }
+
+    /**
+     * Прочитать контент с диска. Вызывается под блокировкой чтения файла или для заголовка снимка
+     */
+    private byte[] readFileContent(FileHeader fileHeader) {
+        long contentPosition = fileHeader.getContentPosition();
+        byte[] content = new byte[fileHeader.getContentRealSize()];
+        if (fileHeader.getCompression() != Compression.NONE) {
+            readCompressedContent(fileHeader, content);
+        } else {
+            if (mappedContentReader == null || !mappedContentReader.read(content, contentPosition)) {
+                readWriteService.readContent(content, contentPosition);
+            }
+            verifyContent(fileHeader, ByteBuffer.wrap(content));
+        }
+        return content;
+    }
+
+    /**
+     * Прочитать сжатый контент в буфер потока и распаковать. Вызывается под блокировкой файла или для заголовка снимка
+     *
+     * @param target - массив под контент, не меньше contentRealSize
+     */
+    private void readCompressedContent(FileHeader fileHeader, byte[] target) {
+        int storedSize = fileHeader.getContentStoredSize();
+        long position = fileHeader.getContentPosition();
+        byte[] stored = ContentCompressor.storedBuffer(storedSize);
+
+        ByteBuffer view = mappedContentReader == null ? null : mappedContentReader.view(position, storedSize);
+        if (view != null) {
+            view.get(stored, 0, storedSize);
+        } else {
+            readWriteService.readContent(ByteBuffer.wrap(stored, 0, storedSize), position);
+        }
+        verifyContent(fileHeader, ByteBuffer.wrap(stored, 0, storedSize));
+        ContentCompressor.decompress(fileHeader.getCompression(), stored, storedSize, target,
+                fileHeader.getContentRealSize());
+    }
+
+    /**
+     * Проверить контрольную сумму контента, прочитанного с диска, в режиме Verification.ON_READ
+     *
+     * @param stored - контент в том виде, в котором он лежит в экстенте
+     */
+    private void verifyContent(FileHeader fileHeader, ByteBuffer stored) {
+        Integer checksum = fileHeader.getContentChecksum();
+        if (verification != Verification.ON_READ || checksum == null || Checksums.crc32c(stored) == checksum) {
+            return;
+        }
+
+        metricsListener.onChecksumMismatch(fileHeader.getFileName());
+        throw new CorruptedContentException(fileHeader.getFileName());
+    }
+
+    /**
+     * @return - контент из кэша или null, если кэш выключен или в нем нет текущей версии контента
+     */
+    private ByteBuffer getCachedContent(FileHeader fileHeader) {
+        if (contentCache == null) {
+            return null;
+        }
+        return contentCache.get(fileHeader.getFileName(), fileHeader.getVersion());
+    }
+
+    /**
+     * Контент файла изменился: новая версия, старая убирается из кэша. Вызывается под блокировкой записи файла
+     */
+    private void contentChanged(FileHeader fileHeader) {
+        fileHeader.setVersion(contentVersions.incrementAndGet());
+        if (contentCache != null) {
+            contentCache.invalidate(fileHeader.getFileName());
         }
     }
 
     /**
      * Удалить файл.
-     * Помечаем в хедере файла, что файл удален
+     * Помечаем в хедере файла, что файл удален, освобождаем его экстент и слот заголовка.
+     * Экстент и слот освобождаются только после записи заголовка, иначе их мог бы занять другой файл.
+     * Фиксируется копия заголовка: если запись не удалась, файл остается видимым и в памяти не меняется, а экстент и
+     * слот не освобождаются, так как удаление могло остаться в журнале (см. Journal)
      *
      * @param fileName - имя файла
      */
     public void deleteFile(String fileName) {
-        lock.writeLock().lock();
+        checkWritable("delete", fileName);
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.DELETE_FILE, start);
+        long bytes = -1;
 
         try {
             FileHeader fileHeader = getFileHeader(fileName);
-            fileHeader.setDeleted(true);
-            fileHeader.setContentRealSize(0);
+            long position = fileHeader.getContentPosition();
+            long capacity = fileHeader.getContentCapacity();
+            FileHeader deleted = fileHeader.copy();
+            markDeleted(deleted);
+            journal.commit(deleted);
 
-            readWriteService.updateFileHeader(fileHeader);
+            fileNameIndex.remove(fileName);
+            existingFiles.remove(fileHeader);
+            contentChanged(fileHeader);
+            markDeleted(fileHeader);
+
+            metadataLock.lock();
+            try {
+                releaseContent(position, capacity);
+                slotAllocator.release(fileHeader.getOrder());
+            } finally {
+                metadataLock.unlock();
+            }
+            bytes = 0;
         } catch (IOException e) {
             throw new OneFileSystemException(e);
         } finally {
-            lock.writeLock().unlock();
+            unlock(lock, Operation.DELETE_FILE, start, acquired, bytes);
         }
 
     }
 
+    private static void markDeleted(FileHeader fileHeader) {
+        fileHeader.setDeleted(true);
+        fileHeader.setRawContentSize(0);
+        fileHeader.setContentCapacity(0);
+    }
+
     /**
-     * Записать контент в существующий файл
+     * Записать контент в существующий файл со сжатием из настроек файловой системы
      *
      * @param fileName - имя файла
      * @param content  - контент
      */
     public void writeContent(String fileName, byte[] content) {
+        writeContent(fileName, content, compression);
+    }
+
+    /**
+     * Записать контент в существующий файл.
+     * Контент сжимается до захвата блокировки файла. Если он не сжимается, то хранится как есть
+     *
+     * @param fileName    - имя файла
+     * @param content     - контент
+     * @param compression - сжатие контента этого файла
+     */
+    public void writeContent(String fileName, byte[] content, Compression compression) {
+        checkWritable("write", fileName);
         ValidationService.checkContentSize(content, fileName);
+        EncodedContent encoded = ContentCompressor.compress(content, compression);
 
-        lock.writeLock().lock();
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.WRITE_CONTENT, start);
+        long bytes = -1;
 
         try {
             FileHeader fileHeader = getFileHeader(fileName);
-            readWriteService.updateContent(content, fileHeader.getContentPosition());
-
-            fileHeader.setContentRealSize(content.length);
-            readWriteService.updateFileHeader(fileHeader);
+            contentChanged(fileHeader);
+            if (!deduplication || !shareContent(fileHeader, encoded, content.length)) {
+                storeContent(fileHeader, encoded, content.length);
+                indexContent(fileHeader);
+            }
+            bytes = content.length;
         } catch (IOException e) {
             throw new OneFileSystemException(e);
         } finally {
-            lock.writeLock().unlock();
+            unlock(lock, Operation.WRITE_CONTENT, start, acquired, bytes);
         }
     }
 
     /**
-     * Прочитать все заголовки файлов в файловой системе.
+     * @param fileName - имя файла
+     * @return - размер контента файла
      */
-    private void readAllFilesHeaders() {
-        /*
-          В идеале где-то внутри файловой системы нужно хранить общее количество файлов, но сейчас читаем пока объекты
-          сериализуются
-         */
+    @Override
+    public long size(String fileName) {
+        refreshSharedView();
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.SIZE, start);
+        long bytes = -1;
 
         try {
-            for (int i = 0; i < MAX_FILES_COUNT; i++) {
-                FileHeader header = readFileHeader(i * (long) FILE_HEADER_SIZE);
-                existingFiles.put(header.getFileName(), header);
-                lastFileNumber.getAndIncrement();
-            }
-        } catch (SerializationException unimportant) {
-            log.info("Read {} headers", existingFiles.size());
+            long size = getFileHeader(fileName).getContentRealSize();
+            bytes = 0;
+            return size;
+        } finally {
+            unlock(lock, Operation.SIZE, start, acquired, bytes);
         }
     }
 
     /**
-     * Прочитать заголовок файла
+     * Проверить существование файла. Блокировка файла берется, только если заголовки читаются с диска
+     * (HeaderIndex.DISK)
      *
-     * @param position - смещение заголовка
-     * @return - объект FileHeader
+     * @param fileName - имя файла
+     * @return - существует ли файл
+     */
+    @Override
+    public boolean exists(String fileName) {
+        refreshSharedView();
+        if (existingFiles.isLockFree()) {
+            return existingFiles.contains(fileName);
+        }
+
+        ReadWriteLock lock = locks.forFile(fileName);
+        lock.readLock().lock();
+        try {
+            return existingFiles.contains(fileName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param fileName - имя файла
+     * @return - атрибуты файла
      */
-    private FileHeader readFileHeader(long position) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[FILE_HEADER_SIZE]);
-        readWriteService.readBuffer(byteBuffer, position);
-        return createFileHeaderFrom(byteBuffer);
+    @Override
+    public FileStat stat(String fileName) {
+        refreshSharedView();
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.STAT, start);
+        long bytes = -1;
+
+        try {
+            FileHeader fileHeader = getFileHeader(fileName);
+            FileStat stat = FileStat.builder()
+                    .fileName(fileName)
+                    .size(fileHeader.getContentRealSize())
+                    .storedSize(fileHeader.getContentStoredSize())
+                    .compression(fileHeader.getCompression())
+                    .build();
+            bytes = 0;
+            return stat;
+        } finally {
+            unlock(lock, Operation.STAT, start, acquired, bytes);
+        }
     }
 
     /**
-     * Переиспользовать место удаленного файла, при создании нового
+     * Список файлов по префиксу. Стоит O(log n) на каждое имя результата, блокировки файлов не берутся
      *
-     * @param newFileName - имя нового файла
-     * @return - удалось ли переиспользовать существующее место
+     * @param prefix - префикс имени, "" - все файлы
+     * @return - имена файлов с префиксом по возрастанию
      */
-    private boolean reuseDeletedFileSpace(String newFileName) {
-        Optional<FileHeader> deletedFileHeaderOptional = existingFiles.values().stream()
-                .filter(FileHeader::isDeleted)
-                .findAny();
+    @Override
+    public List<String> list(String prefix) {
+        ValidationService.checkArgument(prefix != null, "Prefix must not be null");
+        refreshSharedView();
+        return fileNameIndex.list(prefix);
+    }
 
-        if (deletedFileHeaderOptional.isEmpty()) {
-            return false;
+    /**
+     * Постраничный список всех файлов. Страницы не держат состояния между вызовами: файлы, созданные после
+     * последнего имени страницы, попадут в следующие страницы
+     *
+     * @param after - имя, после которого начинается страница, null - с начала
+     * @param limit - размер страницы
+     * @return - имена файлов по возрастанию, пустой список после последней страницы
+     */
+    @Override
+    public List<String> listAll(String after, int limit) {
+        ValidationService.checkArgument(limit > 0, "Page limit must be positive: " + limit);
+        refreshSharedView();
+        return fileNameIndex.listAll(after, limit);
+    }
+
+    /**
+     * Содержимое директории. Вложенная директория стоит один поиск по индексу независимо от числа файлов в ней
+     *
+     * @param directory - директория с '/' на конце или без, "" - корень
+     * @return - полные имена файлов директории и вложенные директории с '/' на конце, по возрастанию
+     */
+    @Override
+    public List<String> listDirectory(String directory) {
+        ValidationService.checkArgument(directory != null, "Directory must not be null");
+        refreshSharedView();
+        return fileNameIndex.listDirectory(directory);
+    }
+
+    /**
+     * Прочитать участок контента файла позиционным чтением, без чтения остального контента
+     *
+     * @param fileName - имя файла
+     * @param offset   - смещение от начала контента
+     * @param target   - буфер для байт контента
+     * @return - сколько байт прочитано, -1 если offset не меньше размера контента
+     */
+    @Override
+    public int read(String fileName, long offset, ByteBuffer target) {
+        ValidationService.checkArgument(offset >= 0, "Negative content offset: " + offset);
+        if (sharedHeaderView != null) {
+            int targetStart = target.position();
+            return readShared(Operation.READ, () -> {
+                target.position(targetStart);
+                return readRange(getFileHeader(fileName), offset, target);
+            }, read -> Math.max(read, 0));
         }
 
-        FileHeader deletedFileHeader = deletedFileHeaderOptional.get();
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.READ, start);
+        long bytes = -1;
 
-        deletedFileHeader.setFileName(newFileName);
-        deletedFileHeader.setDeleted(false);
-        deletedFileHeader.setContentRealSize(0);
         try {
-            readWriteService.updateFileHeader(deletedFileHeader);
-        } catch (IOException e) {
-            throw new OneFileSystemException(e);
+            int read = readRange(getFileHeader(fileName), offset, target);
+            bytes = Math.max(read, 0);
+            return read;
+        } finally {
+            unlock(lock, Operation.READ, start, acquired, bytes);
         }
+    }
 
-        return true;
+    /**
+     * Прочитать участок контента. Вызывается под блокировкой чтения файла или для заголовка снимка
+     *
+     * @return - сколько байт прочитано, -1 если offset не меньше размера контента
+     */
+    private int readRange(FileHeader fileHeader, long offset, ByteBuffer target) {
+        int contentRealSize = fileHeader.getContentRealSize();
+        if (offset >= contentRealSize) {
+            return target.hasRemaining() ? -1 : 0;
+        }
+
+        int length = (int) Math.min(target.remaining(), contentRealSize - offset);
+        if (fileHeader.getCompression() != Compression.NONE) {
+            readCompressedRange(fileHeader, (int) offset, length, target);
+            return length;
+        }
+
+        long position = fileHeader.getContentPosition() + offset;
+        ByteBuffer view = mappedContentReader == null ? null : mappedContentReader.view(position, length);
+        int targetStart = target.position();
+        if (view != null) {
+            target.put(view);
+        } else {
+            int limit = target.limit();
+            target.limit(targetStart + length);
+            try {
+                readWriteService.readContent(target, position);
+            } finally {
+                target.limit(limit);
+            }
+        }
+        return target.position() - targetStart;
     }
 
     /**
-     * Достать объект FileHeader по имени файла из мапы всех заголовков.
-     * Бросает FileNotFoundException если такого файла нет.
+     * Прочитать участок сжатого контента: из кэша, если там есть текущая версия, иначе распаковкой контента целиком в
+     * буфер потока. Вызывается под блокировкой чтения файла или для заголовка снимка
+     */
+    private void readCompressedRange(FileHeader fileHeader, int offset, int length, ByteBuffer target) {
+        ByteBuffer cached = getCachedContent(fileHeader);
+        if (cached != null) {
+            target.put(cached.position(offset).limit(offset + length));
+            return;
+        }
+
+        byte[] content = ContentCompressor.contentBuffer(fileHeader.getContentRealSize());
+        readCompressedContent(fileHeader, content);
+        target.put(content, offset, length);
+    }
+
+    /**
+     * Записать участок контента файла позиционной записью.
+     * Если участок не помещается в экстент, то экстент растет (см. growExtent)
      *
      * @param fileName - имя файла
-     * @return - объект FileHeader
+     * @param offset   - смещение от начала контента
+     * @param source   - буфер с байтами контента
      */
-    private FileHeader getFileHeader(String fileName) {
-        ValidationService.isFileExists(existingFiles, fileName);
-        return existingFiles.get(fileName);
+    @Override
+    public void write(String fileName, long offset, ByteBuffer source) {
+        checkWritable("write", fileName);
+        ValidationService.checkArgument(offset >= 0, "Negative content offset: " + offset);
+
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.WRITE, start);
+        long bytes = -1;
+
+        try {
+            int length = source.remaining();
+            writeAt(getFileHeader(fileName), offset, source);
+            bytes = length;
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        } finally {
+            unlock(lock, Operation.WRITE, start, acquired, bytes);
+        }
     }
 
-    @Override
-    public void close() throws IOException {
+    /**
+     * Дописать контент в конец файла
+     *
+     * @param fileName - имя файла
+     * @param source   - буфер с байтами контента
+     */
+    @Override
+    public void append(String fileName, ByteBuffer source) {
+        checkWritable("append to", fileName);
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.APPEND, start);
+        long bytes = -1;
+
+        try {
+            int length = source.remaining();
+            FileHeader fileHeader = getFileHeader(fileName);
+            writeAt(fileHeader, fileHeader.getContentRealSize(), source);
+            bytes = length;
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        } finally {
+            unlock(lock, Operation.APPEND, start, acquired, bytes);
+        }
+    }
+
+    /**
+     * Обрезать контент файла. Фиксируется копия заголовка, лишний хвост экстента освобождается после ее фиксации
+     *
+     * @param fileName - имя файла
+     * @param size     - новый размер контента
+     */
+    @Override
+    public void truncate(String fileName, long size) {
+        checkWritable("truncate", fileName);
+        ValidationService.checkArgument(size >= 0, "Negative content size: " + size);
+
+        ReadWriteLock lock = locks.forFile(fileName);
+        long start = startTime();
+        long acquired = lock(lock, Operation.TRUNCATE, start);
+        long bytes = -1;
+
+        try {
+            FileHeader fileHeader = getFileHeader(fileName);
+            if (size >= fileHeader.getContentRealSize()) {
+                bytes = 0;
+                return;
+            }
+            contentChanged(fileHeader);
+            storeUncompressed(fileHeader);
+            // хвост экстента не переписывается, а освобождается с учетом снимков, поэтому копировать нужно только
+            // разделенный экстент
+            unshareContent(fileHeader, false);
+
+            FileHeader truncated = fileHeader.copy();
+            truncated.setRawContentSize((int) size);
+            truncated.setContentCapacity(roundUp(size));
+            truncated.setContentChecksum(rewrittenChecksum(truncated));
+            journal.commit(truncated);
+            publish(fileHeader, truncated);
+            bytes = 0;
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        } finally {
+            unlock(lock, Operation.TRUNCATE, start, acquired, bytes);
+        }
+    }
+
+    /**
+     * Записать участок контента. Вызывается под блокировкой записи файла.
+     * Участок пишется на место, атомарно меняются только размер и экстент файла. Экстент, который читает открытый
+     * снимок, сначала копируется
+     */
+    private void writeAt(FileHeader fileHeader, long offset, ByteBuffer source) throws IOException {
+        long end = offset + source.remaining();
+        ValidationService.checkContentSize(end, fileHeader.getFileName());
+        changeCounter.beginInPlaceWrite();
+        try {
+            writeInPlace(fileHeader, offset, source);
+        } finally {
+            changeCounter.endInPlaceWrite();
+        }
+    }
+
+    /**
+     * Записать участок контента между началом и концом записи на место (см. ChangeCounter).
+     * Размер, контрольная сумма и, если экстент пришлось увеличить, экстент меняются в копии заголовка, которая
+     * публикуется после фиксации
+     */
+    private void writeInPlace(FileHeader fileHeader, long offset, ByteBuffer source) throws IOException {
+        long end = offset + source.remaining();
+        contentChanged(fileHeader);
+        storeUncompressed(fileHeader);
+        unshareContent(fileHeader, true);
+
+        int contentRealSize = fileHeader.getContentRealSize();
+        Integer checksum = fileHeader.getContentChecksum();
+        Integer newChecksum = null;
+        if (offset >= contentRealSize && checksum != null) {
+            // дописывание: контрольная сумма продолжается без чтения контента
+            long gap = offset - contentRealSize;
+            newChecksum = Checksums.combine(checksum, Checksums.zeros(gap), gap);
+            newChecksum = Checksums.combine(newChecksum, Checksums.crc32c(source), source.remaining());
+        }
+
+        FileHeader updated = fileHeader.copy();
+        if (end > updated.getContentCapacity()) {
+            growExtent(updated, end);
+        }
+        try {
+            if (offset > contentRealSize) {
+                // в хвосте экстента может лежать контент прежнего владельца
+                readWriteService.fillZeros(updated.getContentPosition() + contentRealSize, offset - contentRealSize);
+            }
+            readWriteService.updateContent(source, updated.getContentPosition() + offset);
+        } catch (IOException | RuntimeException e) {
+            releaseUncommitted(fileHeader, updated);
+            throw e;
+        }
+
+        if (end > contentRealSize) {
+            updated.setRawContentSize((int) end);
+        }
+        if (offset < contentRealSize) {
+            newChecksum = rewrittenChecksum(updated);
+        }
+        updated.setContentChecksum(newChecksum);
+        if (updated.equals(fileHeader)) {
+            journal.sync();
+            return;
+        }
+        journal.commit(updated);
+        publish(fileHeader, updated);
+    }
+
+    /**
+     * Контрольная сумма контента после записи участка внутрь контента или обрезки: пересчитывается чтением контента,
+     * а если контрольные суммы не проверяются, то сбрасывается. Вызывается под блокировкой записи файла
+     */
+    private Integer rewrittenChecksum(FileHeader fileHeader) throws IOException {
+        if (verification == Verification.OFF || fileHeader.getContentChecksum() == null) {
+            return null;
+        }
+        return readWriteService.checksum(fileHeader.getContentPosition(), fileHeader.getContentStoredSize());
+    }
+
+    /**
+     * Сжатый контент хранится целиком, поэтому перед записью участка или обрезкой файл переписывается несжатым.
+     * Вызывается под блокировкой записи файла
+     */
+    private void storeUncompressed(FileHeader fileHeader) throws IOException {
+        if (fileHeader.getCompression() == Compression.NONE) {
+            return;
+        }
+
+        int contentSize = fileHeader.getContentRealSize();
+        byte[] content = ContentCompressor.contentBuffer(contentSize);
+        readCompressedContent(fileHeader, content);
+        storeContent(fileHeader, EncodedContent.of(Compression.NONE, content, contentSize), contentSize);
+    }
+
+    /**
+     * Записать контент целиком: в новый экстент, если пишется журнал, старый экстент разделен с другими файлами или
+     * его читает открытый снимок, иначе поверх старого. Вызывается под блокировкой записи файла
+     *
+     * @param encoded     - контент в том виде, в котором он пишется на диск
+     * @param contentSize - размер контента до сжатия
+     */
+    private void storeContent(FileHeader fileHeader, EncodedContent encoded, int contentSize) throws IOException {
+        if (copyOnWrite || !detachContent(fileHeader, true)) {
+            writeContentCopyOnWrite(fileHeader, encoded, contentSize);
+            return;
+        }
+
+        changeCounter.beginInPlaceWrite();
+        try {
+            FileHeader updated = fileHeader.copy();
+            resizeExtent(updated, encoded.getLength());
+            try {
+                readWriteService.updateContent(ByteBuffer.wrap(encoded.getBytes(), 0, encoded.getLength()),
+                        updated.getContentPosition());
+            } catch (IOException | RuntimeException e) {
+                releaseUncommitted(fileHeader, updated);
+                throw e;
+            }
+            setContentSize(updated, encoded, contentSize);
+            journal.commit(updated);
+            publish(fileHeader, updated);
+        } finally {
+            changeCounter.endInPlaceWrite();
+        }
+    }
+
+    private static void setContentSize(FileHeader fileHeader, EncodedContent encoded, int contentSize) {
+        fileHeader.setContentRealSize(contentSize);
+        fileHeader.setContentStoredSize(encoded.getLength());
+        fileHeader.setCompression(encoded.getCompression());
+        fileHeader.setContentChecksum(encoded.getChecksum());
+    }
+
+    /**
+     * Записать контент в новый экстент. Старый экстент освобождается только после фиксации заголовка в журнале,
+     * поэтому после сбоя заголовок указывает либо на старый, либо на новый контент целиком.
+     * Фиксируется копия заголовка: сам заголовок меняется только после фиксации, а при ошибке остается прежним.
+     * Новый экстент освобождается, только если не записался контент: после ошибки фиксации на него может ссылаться
+     * запись журнала (см. Journal)
+     */
+    private void writeContentCopyOnWrite(FileHeader fileHeader, EncodedContent encoded, int contentSize)
+            throws IOException {
+        long position = fileHeader.getContentPosition();
+        long capacity = fileHeader.getContentCapacity();
+        long newCapacity = roundUp(encoded.getLength());
+
+        FileHeader updated = fileHeader.copy();
+        if (newCapacity > 0) {
+            metadataLock.lock();
+            try {
+                updated.setContentPosition(extentAllocator.allocate(newCapacity));
+                updated.setExtentGeneration(snapshots.getGeneration());
+            } finally {
+                metadataLock.unlock();
+            }
+        }
+        updated.setContentCapacity(newCapacity);
+        setContentSize(updated, encoded, contentSize);
+
+        if (newCapacity > 0) {
+            try {
+                readWriteService.updateContent(ByteBuffer.wrap(encoded.getBytes(), 0, encoded.getLength()),
+                        updated.getContentPosition());
+            } catch (IOException | RuntimeException e) {
+                metadataLock.lock();
+                try {
+                    extentAllocator.release(updated.getContentPosition(), newCapacity);
+                } finally {
+                    metadataLock.unlock();
+                }
+                throw e;
+            }
+        }
+        journal.commit(updated);
+        fileHeader.assign(updated);
+
+        metadataLock.lock();
+        try {
+            releaseContent(position, capacity);
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Записать в файл ссылку на экстент с таким же контентом, если такой есть. Ключ контента ищется в индексе, а
+     * сам контент сравнивается с экстентом побайтово. Как при writeContentCopyOnWrite, фиксируется копия заголовка, а
+     * старый экстент файла освобождается после ее фиксации. Вызывается под блокировкой записи файла
+     *
+     * @param encoded     - контент в том виде, в котором он пишется на диск
+     * @param contentSize - размер контента до сжатия
+     * @return - контент записан ссылкой
+     */
+    private boolean shareContent(FileHeader fileHeader, EncodedContent encoded, int contentSize) throws IOException {
+        ContentIndex.ContentKey key = contentKey(encoded, contentSize);
+        if (key == null) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        ContentIndex.SharedExtent extent;
+        metadataLock.lock();
+        try {
+            extent = contentIndex.acquire(key);
+        } finally {
+            metadataLock.unlock();
+        }
+        // ссылка уже взята, поэтому экстент не освободится и не переедет, пока контент сравнивается
+        boolean equal = extent != null && readWriteService.contentEquals(extent.getPosition(), encoded.getBytes(),
+                encoded.getLength());
+        metricsListener.onDeduplication(equal, System.nanoTime() - start);
+        if (extent == null) {
+            return false;
+        }
+        if (!equal) {
+            metadataLock.lock();
+            try {
+                releaseContent(extent.getPosition(), extent.getCapacity());
+            } finally {
+                metadataLock.unlock();
+            }
+            return false;
+        }
+
+        long position = fileHeader.getContentPosition();
+        long capacity = fileHeader.getContentCapacity();
+        FileHeader shared = fileHeader.copy();
+        shared.setContentPosition(extent.getPosition());
+        shared.setContentCapacity(extent.getCapacity());
+        // поколение разделенного экстента неизвестно: его может читать любой открытый снимок
+        shared.setExtentGeneration(0);
+        setContentSize(shared, encoded, contentSize);
+        journal.commit(shared);
+        fileHeader.assign(shared);
+
+        metadataLock.lock();
+        try {
+            releaseContent(position, capacity);
+        } finally {
+            metadataLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Добавить экстент только что записанного контента в индекс, чтобы его могли разделить другие файлы.
+     * Вызывается под блокировкой записи файла
+     */
+    private void indexContent(FileHeader fileHeader) {
+        if (!deduplication) {
+            return;
+        }
+        ContentIndex.ContentKey key = contentKey(fileHeader);
+        if (key == null) {
+            return;
+        }
+
+        metadataLock.lock();
+        try {
+            contentIndex.add(key, fileHeader.getContentPosition(), fileHeader.getContentCapacity());
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Забрать экстент файла из индекса перед записью поверх контента. Вызывается под блокировкой записи файла
+     *
+     * @param overwrite - контент экстента будет переписан, а не только обрезан
+     * @return - экстент принадлежит только этому файлу, false - он разделен или, при overwrite, его читает открытый
+     * снимок, и писать в него нельзя
+     */
+    private boolean detachContent(FileHeader fileHeader, boolean overwrite) {
+        metadataLock.lock();
+        try {
+            if (contentIndex.isShared(fileHeader.getContentPosition()) || overwrite
+                    && fileHeader.getContentCapacity() > 0 && snapshots.isPinned(fileHeader.getExtentGeneration())) {
+                return false;
+            }
+            contentIndex.forget(fileHeader.getContentPosition());
+            return true;
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Перед изменением участка контента скопировать разделенный экстент или экстент, который читает снимок, в новый
+     * собственный экстент файла. Фиксируется копия заголовка, старый экстент освобождается после ее фиксации.
+     * Вызывается под блокировкой записи файла
+     *
+     * @param overwrite - контент экстента будет переписан, а не только обрезан
+     */
+    private void unshareContent(FileHeader fileHeader, boolean overwrite) throws IOException {
+        if (detachContent(fileHeader, overwrite)) {
+            return;
+        }
+
+        long position = fileHeader.getContentPosition();
+        long capacity = fileHeader.getContentCapacity();
+        FileHeader unshared = fileHeader.copy();
+        metadataLock.lock();
+        try {
+            unshared.setContentPosition(extentAllocator.allocate(capacity));
+            unshared.setExtentGeneration(snapshots.getGeneration());
+        } finally {
+            metadataLock.unlock();
+        }
+
+        try {
+            readWriteService.copyContent(position, unshared.getContentPosition(), fileHeader.getContentStoredSize());
+        } catch (IOException | RuntimeException e) {
+            releaseUncommitted(fileHeader, unshared);
+            throw e;
+        }
+        journal.commit(unshared);
+        fileHeader.assign(unshared);
+
+        metadataLock.lock();
+        try {
+            releaseContent(position, capacity);
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    private static ContentIndex.ContentKey contentKey(EncodedContent encoded, int contentSize) {
+        if (encoded.getLength() == 0) {
+            return null;
+        }
+        return new ContentIndex.ContentKey(encoded.getLength(), contentSize, encoded.getCompression(),
+                encoded.getChecksum());
+    }
+
+    private static ContentIndex.ContentKey contentKey(FileHeader fileHeader) {
+        if (fileHeader.getContentStoredSize() == 0 || fileHeader.getContentChecksum() == null) {
+            return null;
+        }
+        return new ContentIndex.ContentKey(fileHeader.getContentStoredSize(), fileHeader.getContentRealSize(),
+                fileHeader.getCompression(), fileHeader.getContentChecksum());
+    }
+
+    /**
+     * Прочитать суперблок. Если файловая система новая, то создать его
+     */
+    private Superblock readOrCreateSuperblock(OneFileSystemOptions options) {
+        if (readWriteService.size() == 0 && options.isReadOnly()) {
+            throw new OneFileSystemException("File system is not created yet and cannot be opened read-only");
+        }
+        if (readWriteService.size() == 0) {
+            boolean diskIndex = options.getHeaderIndex() == HeaderIndex.DISK;
+            Superblock newSuperblock = new Superblock(
+                    diskIndex ? SuperblockCodec.FORMAT_VERSION_WITH_HEADER_INDEX : SuperblockCodec.FORMAT_VERSION,
+                    options.getMaxFilesCount(), options.getJournalSize(),
+                    diskIndex ? DiskHashIndex.bucketsCount(options.getMaxFilesCount()) : 0);
+            updateSuperblock(newSuperblock);
+            return newSuperblock;
+        }
+
+        ByteBuffer byteBuffer = ByteBuffer.allocate(SUPERBLOCK_SIZE);
+        readWriteService.readBuffer(byteBuffer, 0);
+
+        if (LegacyContainerMigration.isLegacyContainer(byteBuffer)) {
+            throw new OneFileSystemException("File system has legacy format. Run "
+                    + LegacyContainerMigration.class.getName() + " to upgrade it");
+        }
+        return SuperblockCodec.decode(byteBuffer);
+    }
+
+    /**
+     * Прочитать все заголовки файлов в файловой системе.
+     * <p>
+     * Область заголовков до headerCount из суперблока отображается в память целиком, заголовки разбираются
+     * параллельно. Слоты удаленных файлов и пустые слоты (заголовок не успел записаться) отдаются на переиспользование.
+     * Испорченные слоты пропускаются и не переиспользуются.
+     * <p>
+     * В режиме HeaderIndex.DISK прочитанные заголовки в памяти не остаются: они нужны только чтобы восстановить
+     * свободное место, индекс имен и сверить хеш-индекс на диске
+     *
+     * @return - заголовки живых файлов
+     */
+    private List<FileHeader> readAllFilesHeaders(OpenStatistics.OpenStatisticsBuilder statistics) {
+        int headerCount = (int) superblock.getHeaderCount();
+
+        long readStart = System.nanoTime();
+        ByteBuffer headers = readWriteService.mapReadOnly(HEADERS_START_POSITION, (long) headerCount * FILE_HEADER_SIZE);
+        long decodeStart = System.nanoTime();
+
+        FileHeader[] fileHeaders = new FileHeader[headerCount];
+        boolean[] corrupted = new boolean[headerCount];
+        IntStream.range(0, headerCount).parallel().forEach(i -> {
+            int offset = i * FILE_HEADER_SIZE;
+            if (offset + FILE_HEADER_SIZE > headers.limit() || FileHeaderCodec.isEmpty(headers, offset)) {
+                return;
+            }
+            try {
+                fileHeaders[i] = FileHeaderCodec.decode(headers, offset);
+            } catch (OneFileSystemException e) {
+                log.warn("Skip corrupted file header in slot {}: {}", i, e.getMessage());
+                corrupted[i] = true;
+            }
+        });
+
+        long decodeTime = System.nanoTime() - decodeStart;
+        metricsListener.onHeadersDecoded(headerCount, decodeTime);
+
+        int corruptedHeaders = 0;
+        List<FileHeader> liveHeaders = new ArrayList<>();
+        for (int i = 0; i < headerCount; i++) {
+            FileHeader header = fileHeaders[i];
+            if (corrupted[i]) {
+                corruptedHeaders++;
+            } else if (header == null || header.isDeleted()) {
+                slotAllocator.release(i);
+            } else if (!existingFiles.restore(header)) {
+                log.warn("Skip duplicate file header {} in slot {}", header.getFileName(), i);
+            } else {
+                fileNameIndex.add(header.getFileName());
+                liveHeaders.add(header);
+            }
+        }
+
+        statistics.headerCount(headerCount)
+                .corruptedHeadersCount(corruptedHeaders)
+                .headerBytesRead(headers.limit())
+                .decodeParallelism(ForkJoinPool.getCommonPoolParallelism())
+                .readTimeNanos(decodeStart - readStart)
+                .decodeTimeNanos(decodeTime);
+        return liveHeaders;
+    }
+
+    /**
+     * Восстановить карту свободного места и индекс контента по экстентам из прочитанных заголовков.
+     * Без дедупликации в индекс попадают только экстенты, на которые ссылается больше одного заголовка: по ним
+     * считаются ссылки
+     *
+     * @param liveHeaders - заголовки живых файлов
+     */
+    private void restoreExtentAllocator(List<FileHeader> liveHeaders) {
+        List<FileHeader> withContent = liveHeaders.stream()
+                .filter(fileHeader -> fileHeader.getContentCapacity() > 0)
+                .sorted(Comparator.comparingLong(FileHeader::getContentPosition))
+                .collect(Collectors.toList());
+        for (int from = 0; from < withContent.size(); ) {
+            long position = withContent.get(from).getContentPosition();
+            long capacity = withContent.get(from).getContentCapacity();
+            int to = from + 1;
+            while (to < withContent.size() && withContent.get(to).getContentPosition() == position) {
+                to++;
+            }
+
+            // разделенный экстент помечается занятым один раз
+            extentAllocator.markUsed(position, capacity);
+            if (deduplication || to - from > 1) {
+                for (int i = from; i < to; i++) {
+                    contentIndex.restore(contentKey(withContent.get(i)), position, capacity);
+                }
+            }
+            from = to;
+        }
+
+        log.info("Content high water mark {}, free {} bytes", extentAllocator.getHighWaterMark(),
+                extentAllocator.getFreeBytes());
+        if (extentAllocator.getHighWaterMark() != superblock.getContentHighWaterMark()) {
+            log.warn("File system was not closed properly. Content high water mark in superblock is {}",
+                    superblock.getContentHighWaterMark());
+        }
+    }
+
+    /**
+     * Начать новое изменение при открытии писателем (см. ChangeCounter.reset)
+     */
+    private void resetChangeCounter() {
+        try {
+            changeCounter.reset();
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * Записать суперблок
+     */
+    private void updateSuperblock(Superblock superblock) {
+        try {
+            readWriteService.updateSuperblock(superblock);
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    /**
+     * Подогнать экстент копии заголовка файла под новый размер контента.
+     * <p>
+     * Если контент не помещается, то экстент увеличивается на месте (если за ним свободно), иначе файл переезжает в
+     * новый экстент. Контент при переезде не копируется, так как дальше он все равно перезаписывается целиком.
+     * Старый экстент или лишний хвост освобождается после фиксации копии (см. publish).
+     *
+     * @param updated     - копия заголовка файла
+     * @param contentSize - новый размер контента
+     */
+    private void resizeExtent(FileHeader updated, int contentSize) {
+        long position = updated.getContentPosition();
+        long capacity = updated.getContentCapacity();
+        long newCapacity = roundUp(contentSize);
+
+        if (newCapacity > capacity) {
+            metadataLock.lock();
+            try {
+                if (capacity == 0 || !extentAllocator.tryExtend(position, capacity, newCapacity)) {
+                    updated.setContentPosition(extentAllocator.allocate(newCapacity));
+                    updated.setExtentGeneration(snapshots.getGeneration());
+                }
+            } finally {
+                metadataLock.unlock();
+            }
+        }
+
+        updated.setContentCapacity(newCapacity);
+    }
+
+    /**
+     * Увеличить экстент копии заголовка файла, сохранив контент.
+     * <p>
+     * Экстент увеличивается на месте, если за ним свободно. Иначе контент копируется в новый экстент вдвое больше
+     * прежнего, чтобы дописывание небольшими участками не копировало контент на каждой записи. Старый экстент
+     * освобождается только после фиксации копии (см. publish), иначе его мог бы занять другой файл.
+     *
+     * @param updated     - копия заголовка файла
+     * @param contentSize - новый размер контента
+     */
+    private void growExtent(FileHeader updated, long contentSize) throws IOException {
+        long position = updated.getContentPosition();
+        long capacity = updated.getContentCapacity();
+        long newCapacity = roundUp(contentSize);
+        long newPosition;
+        long generation;
+
+        metadataLock.lock();
+        try {
+            if (capacity != 0 && extentAllocator.tryExtend(position, capacity, newCapacity)) {
+                updated.setContentCapacity(newCapacity);
+                return;
+            }
+            newCapacity = Math.max(newCapacity, Math.min(2 * capacity, roundUp(MAX_FILE_SIZE)));
+            newPosition = extentAllocator.allocate(newCapacity);
+            generation = snapshots.getGeneration();
+        } finally {
+            metadataLock.unlock();
+        }
+
+        try {
+            readWriteService.copyContent(position, newPosition, updated.getContentStoredSize());
+        } catch (IOException | RuntimeException e) {
+            metadataLock.lock();
+            try {
+                extentAllocator.release(newPosition, newCapacity);
+            } finally {
+                metadataLock.unlock();
+            }
+            throw e;
+        }
+        updated.setContentPosition(newPosition);
+        updated.setContentCapacity(newCapacity);
+        updated.setExtentGeneration(generation);
+    }
+
+    /**
+     * Опубликовать зафиксированную копию заголовка и освободить то, что файл перестал занимать: старый экстент, если
+     * файл переехал, иначе отрезанный хвост. Экстент файла не разделен (см. detachContent).
+     * Вызывается под блокировкой записи файла
+     *
+     * @param fileHeader - заголовок файла
+     * @param updated    - копия заголовка, уже зафиксированная в журнале
+     */
+    private void publish(FileHeader fileHeader, FileHeader updated) {
+        long position = fileHeader.getContentPosition();
+        long capacity = fileHeader.getContentCapacity();
+        fileHeader.assign(updated);
+
+        metadataLock.lock();
+        try {
+            if (updated.getContentPosition() != position) {
+                releaseExtent(position, capacity);
+            } else if (updated.getContentCapacity() < capacity) {
+                releaseExtent(position + updated.getContentCapacity(), capacity - updated.getContentCapacity());
+            }
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Вернуть место, занятое под копию заголовка, если ее контент не записался: новый экстент, если файл переезжал,
+     * иначе добавленный хвост. Копия еще не в журнале, и снимки это место не читали.
+     * Вызывается под блокировкой записи файла
+     *
+     * @param fileHeader - заголовок файла
+     * @param updated    - копия заголовка, которая не будет зафиксирована
+     */
+    private void releaseUncommitted(FileHeader fileHeader, FileHeader updated) {
+        long position = fileHeader.getContentPosition();
+        long capacity = fileHeader.getContentCapacity();
+
+        metadataLock.lock();
+        try {
+            if (updated.getContentPosition() != position) {
+                extentAllocator.release(updated.getContentPosition(), updated.getContentCapacity());
+            } else if (updated.getContentCapacity() > capacity) {
+                extentAllocator.release(position + capacity, updated.getContentCapacity() - capacity);
+            }
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Убрать ссылку файла на экстент и освободить его, если больше никто на него не ссылается.
+     * Вызывается под metadataLock
+     */
+    private void releaseContent(long position, long capacity) {
+        if (capacity > 0 && contentIndex.release(position)) {
+            snapshots.release(position, capacity);
+        }
+    }
+
+    /**
+     * Освободить экстент, как только его не будет читать ни один открытый снимок. Вызывается под metadataLock
+     */
+    private void releaseExtent(long position, long capacity) {
+        snapshots.release(position, capacity);
+    }
+
+    /**
+     * Занять слот заголовка: слот удаленного файла, если такой есть, иначе новый
+     *
+     * @param fileName - имя нового файла
+     * @return - заголовок нового файла, еще не записанный
+     */
+    private FileHeader allocateFileHeader(String fileName) throws IOException {
+        metadataLock.lock();
+        try {
+            long slot = slotAllocator.allocateFree();
+            if (slot >= 0) {
+                return new FileHeader(slot, fileName);
+            }
+
+            ValidationService.checkFilesCount(slotAllocator.getSlotsCount(), superblock.getMaxFilesCount(), fileName);
+
+            // сначала суперблок: слот за headerCount при старте не прочитается
+            FileHeader fileHeader = new FileHeader(slotAllocator.allocateNew(), fileName);
+            superblock.setHeaderCount(slotAllocator.getSlotsCount());
+            readWriteService.updateSuperblock(superblock);
+            return fileHeader;
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Достать объект FileHeader по имени файла из мапы всех заголовков.
+     * Бросает FileNotFoundException если такого файла нет.
+     *
+     * @param fileName - имя файла
+     * @return - объект FileHeader
+     */
+    private FileHeader getFileHeader(String fileName) {
+        FileHeader fileHeader = existingFiles.get(fileName);
+        if (fileHeader == null) {
+            throw new FileNotFoundException(fileName);
+        }
+        return fileHeader;
+    }
+
+    /**
+     * Бросить ReadOnlyFileSystemException, если файловая система открыта только для чтения
+     *
+     * @param operation - название операции для сообщения
+     */
+    private void checkWritable(String operation, String fileName) {
+        if (sharedHeaderView != null) {
+            throw new ReadOnlyFileSystemException(operation, fileName);
+        }
+        journal.checkNotFailed();
+    }
+
+    /**
+     * Перечитать изменившиеся заголовки, если файловая система открыта только для чтения
+     */
+    private void refreshSharedView() {
+        if (sharedHeaderView != null) {
+            sharedHeaderView.refresh();
+        }
+    }
+
+    /**
+     * Прочитать контент в режиме только для чтения: без блокировок файлов, с повтором, если писатель изменил файловую
+     * систему во время чтения (см. SharedHeaderView.read)
+     *
+     * @param read  - чтение, которое можно повторить
+     * @param bytes - сколько байт контента прочитано
+     */
+    private <T> T readShared(Operation operation, Supplier<T> read, ToLongFunction<T> bytes) {
+        long start = startTime();
+        T result = sharedHeaderView.read(read);
+        if (metricsListener != MetricsListener.NOOP) {
+            metricsListener.onOperation(operation, System.nanoTime() - start, bytes.applyAsLong(result));
+        }
+        return result;
+    }
+
+    /**
+     * @return - System.nanoTime() или 0, если событий инструментирования никто не получает
+     */
+    private long startTime() {
+        return metricsListener == MetricsListener.NOOP ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Захватить блокировку файла для операции и сообщить время ожидания.
+     * Операция замеряется тремя вызовами System.nanoTime(): начало, захват и отпускание блокировки
+     *
+     * @param start - startTime() в начале операции
+     * @return - System.nanoTime() после захвата или 0, если событий инструментирования никто не получает
+     */
+    private long lock(ReadWriteLock lock, Operation operation, long start) {
+        (operation.isExclusive() ? lock.writeLock() : lock.readLock()).lock();
+        if (metricsListener == MetricsListener.NOOP) {
+            return 0;
+        }
+
+        long acquired = System.nanoTime();
+        metricsListener.onLockWait(acquired - start, operation.isExclusive());
+        return acquired;
+    }
+
+    /**
+     * Отпустить блокировку файла и сообщить время удержания, а для успешной операции - ее время
+     *
+     * @param acquired - результат lock
+     * @param bytes    - сколько байт контента прочитала или записала операция, -1 если операция не завершилась
+     */
+    private void unlock(ReadWriteLock lock, Operation operation, long start, long acquired, long bytes) {
+        if (metricsListener != MetricsListener.NOOP) {
+            long released = System.nanoTime();
+            metricsListener.onLockHold(released - acquired, operation.isExclusive());
+            if (bytes >= 0) {
+                metricsListener.onOperation(operation, released - start, bytes);
+            }
+        }
+        (operation.isExclusive() ? lock.writeLock() : lock.readLock()).unlock();
+    }
+
+    /**
+     * @return - размер файла файловой системы
+     */
+    private long containerSize() {
+        return readWriteService.size();
+    }
+
+    /**
+     * @return - сколько слотов заголовков когда-либо использовалось
+     */
+    private long headerCount() {
+        metadataLock.lock();
+        try {
+            return superblock.getHeaderCount();
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * @return - суммарный размер контента живых файлов. Считается обходом всех заголовков
+     */
+    private long liveBytes() {
+        return existingFiles.values().stream().mapToLong(FileHeader::getContentRealSize).sum();
+    }
+
+    /**
+     * @return - суммарный размер контента живых файлов на диске, после сжатия, разделенный контент считается один раз.
+     * Считается обходом всех заголовков
+     */
+    private long storedBytes() {
+        return existingFiles.values().stream().mapToLong(FileHeader::getContentStoredSize).sum() - savedBytes();
+    }
+
+    /**
+     * @return - сколько байт на диске сэкономила дедупликация
+     */
+    private long savedBytes() {
+        metadataLock.lock();
+        try {
+            return contentIndex.getSavedBytes();
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Снимок файловой системы на текущий момент. Снимок читает без блокировок: его заголовки - копии, а экстенты, на
+     * которые они ссылаются, не переписываются на месте и не освобождаются, пока снимок открыт. Писатели ждут снятия
+     * снимка, то есть копирования заголовков, читатели не ждут. Открытый снимок нужно закрыть
+     *
+     * @return - снимок только для чтения
+     */
+    @Override
+    public SnapshottableFileSystem snapshot() {
+        ValidationService.checkState(sharedHeaderView == null, "Snapshots of read-only file system are not supported");
+        lockForSnapshot();
+        try {
+            return captureSnapshot();
+        } finally {
+            unlockForSnapshot();
+        }
+    }
+
+    /**
+     * Остановить изменения файлов, чтобы снять согласованный снимок нескольких файловых систем
+     */
+    void lockForSnapshot() {
+        locks.readLockAll();
+    }
+
+    void unlockForSnapshot() {
+        locks.readUnlockAll();
+    }
+
+    /**
+     * Снять снимок. Вызывается под lockForSnapshot: новое поколение должно начаться, когда файлы не меняются
+     */
+    FileSystemSnapshot captureSnapshot() {
+        long generation;
+        metadataLock.lock();
+        try {
+            generation = snapshots.open();
+        } finally {
+            metadataLock.unlock();
+        }
+
+        Map<String, FileHeader> headers = new HashMap<>();
+        for (FileHeader fileHeader : existingFiles.values()) {
+            headers.put(fileHeader.getFileName(), fileHeader.copy());
+        }
+        return new FileSystemSnapshot(this, generation, headers);
+    }
+
+    /**
+     * Прочитать контент файла снимка без блокировок
+     *
+     * @param fileHeader - копия заголовка из снимка
+     */
+    byte[] readSnapshotContent(FileHeader fileHeader) {
+        long start = startTime();
+        ByteBuffer cached = getCachedContent(fileHeader);
+        byte[] content;
+        if (cached != null) {
+            content = new byte[cached.remaining()];
+            cached.get(content);
+        } else {
+            content = readFileContent(fileHeader);
+        }
+
+        if (metricsListener != MetricsListener.NOOP) {
+            metricsListener.onOperation(Operation.READ_CONTENT, System.nanoTime() - start, content.length);
+        }
+        return content;
+    }
+
+    /**
+     * Прочитать участок контента файла снимка без блокировок
+     *
+     * @param fileHeader - копия заголовка из снимка
+     */
+    int readSnapshotRange(FileHeader fileHeader, long offset, ByteBuffer target) {
+        long start = startTime();
+        int read = readRange(fileHeader, offset, target);
+        if (metricsListener != MetricsListener.NOOP) {
+            metricsListener.onOperation(Operation.READ, System.nanoTime() - start, Math.max(read, 0));
+        }
+        return read;
+    }
+
+    /**
+     * Открыть еще один снимок того же поколения
+     */
+    void retainSnapshot(long generation) {
+        metadataLock.lock();
+        try {
+            snapshots.retain(generation);
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Закрыть снимок и освободить экстенты, которые больше никто не читает
+     */
+    void closeSnapshot(long generation) {
+        metadataLock.lock();
+        try {
+            snapshots.close(generation);
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * Занять слоты заголовков и экстенты под новые файлы одним проходом под metadataLock (см. BulkTransfer). Экстенты
+     * идут подряд в порядке имен, поэтому контент пачки ложится в файл файловой системы последовательно. Файлы не
+     * видны, пока заголовки не зафиксированы commitReserved
+     *
+     * @param fileNames - имена новых файлов
+     * @param sizes     - размеры их контента
+     * @return - заголовки с экстентами, еще не записанные; контрольную сумму контента заполняет вызывающий
+     */
+    List<FileHeader> reserveFiles(List<String> fileNames, int[] sizes) {
+        long totalCapacity = 0;
+        for (int i = 0; i < fileNames.size(); i++) {
+            String fileName = fileNames.get(i);
+            checkWritable("import", fileName);
+            ValidationService.checkFileName(fileName);
+            ValidationService.checkNotReserved(fileName);
+            ValidationService.checkContentSize(sizes[i], fileName);
+            ValidationService.isFileAlreadyExists(existingFiles::contains, fileName);
+            totalCapacity += roundUp(sizes[i]);
+        }
+
+        List<FileHeader> fileHeaders = new ArrayList<>(fileNames.size());
+        metadataLock.lock();
+        try {
+            long newSlots = Math.max(0, fileNames.size() - slotAllocator.getFreeSlotsCount());
+            if (newSlots > 0) {
+                ValidationService.checkFilesCount(slotAllocator.getSlotsCount() + newSlots - 1,
+                        superblock.getMaxFilesCount(), fileNames.get(fileNames.size() - 1));
+            }
+
+            long position = totalCapacity > 0 ? extentAllocator.allocate(totalCapacity) : 0;
+            long generation = snapshots.getGeneration();
+            for (int i = 0; i < fileNames.size(); i++) {
+                long slot = slotAllocator.allocateFree();
+                FileHeader fileHeader = new FileHeader(slot >= 0 ? slot : slotAllocator.allocateNew(), fileNames.get(i));
+                long capacity = roundUp(sizes[i]);
+                if (capacity > 0) {
+                    fileHeader.setContentPosition(position);
+                    fileHeader.setContentCapacity(capacity);
+                    fileHeader.setExtentGeneration(generation);
+                    position += capacity;
+                }
+                fileHeader.setRawContentSize(sizes[i]);
+                fileHeaders.add(fileHeader);
+            }
+
+            if (newSlots > 0) {
+                // один раз на пачку, а не на каждый новый слот, как в createFile
+                superblock.setHeaderCount(slotAllocator.getSlotsCount());
+                readWriteService.updateSuperblock(superblock);
+            }
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        } finally {
+            metadataLock.unlock();
+        }
+        return fileHeaders;
+    }
+
+    /**
+     * Записать контент в экстенты, занятые reserveFiles
+     *
+     * @param source   - буфер с контентом одного или нескольких соседних экстентов
+     * @param position - с какой позиции писать
+     */
+    void writeReserved(ByteBuffer source, long position) throws IOException {
+        readWriteService.updateContent(source, position);
+    }
+
+    /**
+     * @return - сколько файлов можно зафиксировать одной пачкой commitReserved (см. Journal.maxBatchSize)
+     */
+    int maxBatchSize() {
+        return journal.maxBatchSize();
+    }
+
+    /**
+     * Зафиксировать заголовки файлов, занятых reserveFiles, одной пачкой через журнал и сделать файлы видимыми.
+     * На время фиксации берутся блокировки записи всех полос, поэтому другие потоки видят файлы пачки разом. Если
+     * файл с таким именем успели создать или записать в журнал ничего не успели, слоты и экстенты пачки освобождаются.
+     * Если ошибка случилась после записи в журнал или на место хотя бы одного заголовка, журнал сломан (см. Journal),
+     * и место не освобождается: после переоткрытия на него могут ссылаться заголовки пачки
+     *
+     * @param fileHeaders - заголовки с контрольными суммами записанного контента
+     */
+    void commitReserved(List<FileHeader> fileHeaders) {
+        locks.writeLockAll();
+        try {
+            for (FileHeader fileHeader : fileHeaders) {
+                if (existingFiles.contains(fileHeader.getFileName())) {
+                    releaseReserved(fileHeaders);
+                    throw new FileAlreadyExistsException(fileHeader.getFileName());
+                }
+                fileHeader.setVersion(contentVersions.incrementAndGet());
+            }
+
+            try {
+                journal.commit(fileHeaders);
+            } catch (IOException | RuntimeException e) {
+                if (!journal.isFailed()) {
+                    releaseReserved(fileHeaders);
+                }
+                throw e;
+            }
+            for (FileHeader fileHeader : fileHeaders) {
+                existingFiles.put(fileHeader);
+                fileNameIndex.add(fileHeader.getFileName());
+                indexContent(fileHeader);
+            }
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        } finally {
+            locks.writeUnlockAll();
+        }
+    }
+
+    /**
+     * Освободить слоты и экстенты, занятые reserveFiles, если пачку не удалось записать
+     */
+    void releaseReserved(List<FileHeader> fileHeaders) {
+        metadataLock.lock();
+        try {
+            for (FileHeader fileHeader : fileHeaders) {
+                releaseExtent(fileHeader.getContentPosition(), fileHeader.getContentCapacity());
+                slotAllocator.release(fileHeader.getOrder());
+            }
+        } finally {
+            metadataLock.unlock();
+        }
+    }
+
+    /**
+     * @return - встроенные метрики или null, если они выключены
+     */
+    public OneFileSystemMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Перенести контент файлов в свободное место ниже и обрезать файл файловой системы.
+     * Операции над файлами во время компакции продолжаются, писатели переносимого файла ждут копирования его контента.
+     * Срезы, полученные ранее из readContentView в режиме ReadMode.MMAP, после переноса файла могут увидеть чужой
+     * контент, как и после его изменения. Файл файловой системы в этом режиме не обрезается ниже отображенного в
+     * память, иначе чтение из таких срезов роняло бы JVM
+     *
+     * @return - метрики прохода
+     */
+    public CompactionStatistics compact() {
+        ValidationService.checkState(sharedHeaderView == null, "Read-only file system cannot be compacted");
+        return compactor.compact();
+    }
+
+    /**
+     * @return - метрики последнего прохода компактора или null, если проходов не было
+     */
+    public CompactionStatistics getCompactionStatistics() {
+        return compactor.getLastStatistics();
+    }
+
+    /**
+     * Проверить контрольные суммы контента всех файлов, независимо от OneFileSystemOptions.verification.
+     * Операции над файлами во время проверки не блокируются
+     *
+     * @return - метрики прохода со списком испорченных файлов
+     */
+    public ScrubStatistics scrub() {
+        ValidationService.checkState(sharedHeaderView == null, "Read-only file system is scrubbed by its writer");
+        return scrubber.scrub();
+    }
+
+    /**
+     * @return - метрики последнего прохода проверки контрольных сумм или null, если проходов не было
+     */
+    public ScrubStatistics getScrubStatistics() {
+        return scrubber.getLastStatistics();
+    }
+
+    /**
+     * @return - метрики открытия файловой системы
+     */
+    public OpenStatistics getOpenStatistics() {
+        return openStatistics;
+    }
+
+    /**
+     * @return - метрики кэша контента или null, если кэш выключен
+     */
+    public CacheStatistics getCacheStatistics() {
+        return contentCache == null ? null : contentCache.getStatistics();
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.stop();
+        scrubber.stop();
+        stopBackgroundTask(compactionExecutor);
+        stopBackgroundTask(scrubExecutor);
+        if (metrics != null) {
+            metrics.unregisterMBean();
+        }
+        if (sharedHeaderView == null) {
+            journal.close();
+
+            metadataLock.lock();
+            try {
+                superblock.setContentHighWaterMark(extentAllocator.getHighWaterMark());
+                readWriteService.updateSuperblock(superblock);
+            } finally {
+                metadataLock.unlock();
+            }
+        }
+        if (mappedContentReader != null) {
+            mappedContentReader.close();
+        }
         oneFileSystemStartupHelper.close();
     }
 }
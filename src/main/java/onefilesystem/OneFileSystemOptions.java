@@ -0,0 +1,164 @@
+package onefilesystem;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import lombok.Builder;
+import lombok.Getter;
+import onefilesystem.cache.EvictionPolicy;
+import onefilesystem.cache.TinyLfuEvictionPolicy;
+import onefilesystem.compression.Compression;
+import onefilesystem.metrics.MetricsListener;
+
+import static onefilesystem.utils.Constants.COMPACTION_IO_BUDGET;
+import static onefilesystem.utils.Constants.GROUP_COMMIT_WINDOW_MICROS;
+import static onefilesystem.utils.Constants.HEADER_CACHE_SIZE;
+import static onefilesystem.utils.Constants.JOURNAL_SIZE;
+import static onefilesystem.utils.Constants.LOCK_STRIPES_COUNT;
+import static onefilesystem.utils.Constants.MAX_FILES_COUNT;
+import static onefilesystem.utils.Constants.SCRUB_INTERVAL_MINUTES;
+import static onefilesystem.utils.Constants.SCRUB_IO_BUDGET;
+
+/**
+ * Настройки файловой системы
+ */
+@Getter
+@Builder
+public class OneFileSystemOptions {
+
+    /**
+     * Сколько слотов под заголовки зарезервировать при создании файловой системы.
+     * Для существующей файловой системы берется из суперблока
+     */
+    @Builder.Default
+    private final int maxFilesCount = MAX_FILES_COUNT;
+
+    /**
+     * Как читать контент файлов
+     */
+    @Builder.Default
+    private final ReadMode readMode = ReadMode.CHANNEL;
+
+    /**
+     * На сколько полос делятся блокировки файлов, степень двойки. Операции над файлами из разных полос не блокируют
+     * друг друга. 1 - одна глобальная блокировка на все файлы
+     */
+    @Builder.Default
+    private final int lockStripesCount = LOCK_STRIPES_COUNT;
+
+    /**
+     * Когда изменения становятся устойчивыми к сбою
+     */
+    @Builder.Default
+    private final Durability durability = Durability.NONE;
+
+    /**
+     * Сколько ждать другие операции перед общим force() в режиме Durability.GROUP_COMMIT.
+     * 0 - в общий force() попадают операции, пришедшие, пока шел предыдущий force()
+     */
+    @Builder.Default
+    private final Duration groupCommitWindow = Duration.ofNanos(GROUP_COMMIT_WINDOW_MICROS * 1000);
+
+    /**
+     * Размер журнала при создании файловой системы. Для существующей файловой системы берется из суперблока
+     */
+    @Builder.Default
+    private final int journalSize = JOURNAL_SIZE;
+
+    /**
+     * Сколько байт контента держать в кэше перед readContent. 0 - кэш выключен
+     */
+    @Builder.Default
+    private final long cacheSize = 0;
+
+    /**
+     * Политика вытеснения кэша контента
+     */
+    @Builder.Default
+    private final Supplier<EvictionPolicy> evictionPolicy = TinyLfuEvictionPolicy::new;
+
+    /**
+     * Собирать встроенные метрики и публиковать их в JMX (см. OneFileSystemMetrics)
+     */
+    @Builder.Default
+    private final boolean metricsEnabled = true;
+
+    /**
+     * Дополнительный получатель событий инструментирования, например для экспорта в свою систему мониторинга.
+     * Работает и при выключенных встроенных метриках
+     */
+    @Builder.Default
+    private final MetricsListener metricsListener = MetricsListener.NOOP;
+
+    /**
+     * Как часто компактор в фоне переносит контент в свободное место ниже и обрезает файл файловой системы.
+     * Duration.ZERO - фоновой компакции нет, только OneFileSystem.compact()
+     */
+    @Builder.Default
+    private final Duration compactionInterval = Duration.ZERO;
+
+    /**
+     * Сколько байт контента компактор копирует в секунду. 0 - без ограничения
+     */
+    @Builder.Default
+    private final long compactionIoBudget = COMPACTION_IO_BUDGET;
+
+    /**
+     * Сжатие контента writeContent, если оно не задано для файла (см. OneFileSystem.writeContent). Файлы, записанные с
+     * другим сжатием, читаются как обычно
+     */
+    @Builder.Default
+    private final Compression compression = Compression.NONE;
+
+    /**
+     * Когда проверять контрольные суммы контента
+     */
+    @Builder.Default
+    private final Verification verification = Verification.OFF;
+
+    /**
+     * Как часто проверять контрольные суммы в фоне в режиме Verification.BACKGROUND
+     */
+    @Builder.Default
+    private final Duration scrubInterval = Duration.ofMinutes(SCRUB_INTERVAL_MINUTES);
+
+    /**
+     * Сколько байт контента фоновая проверка читает в секунду. 0 - без ограничения
+     */
+    @Builder.Default
+    private final long scrubIoBudget = SCRUB_IO_BUDGET;
+
+    /**
+     * Дедупликация: writeContent ищет файл с таким же контентом и вместо записи ссылается на его экстент. Разделенный
+     * экстент копируется перед изменением участка контента. Файлы, разделенные раньше, читаются и удаляются как обычно
+     * и при выключенной дедупликации
+     */
+    @Builder.Default
+    private final boolean deduplication = false;
+
+    /**
+     * Открыть существующую файловую систему только для чтения, пока в нее пишет другой процесс. Читателей может быть
+     * сколько угодно процессов. Изменения писателя видны со следующей операции без переоткрытия. Изменение
+     * файлов бросает ReadOnlyFileSystemException, кэш контента и ReadMode.MMAP выключены, фоновые задачи не
+     * запускаются
+     */
+    @Builder.Default
+    private final boolean readOnly = false;
+
+    /**
+     * Где держать заголовки для поиска файла по имени. Задается при создании файловой системы, для существующей
+     * берется из суперблока. Файловая система, открытая только для чтения, всегда держит заголовки в памяти
+     */
+    @Builder.Default
+    private final HeaderIndex headerIndex = HeaderIndex.HEAP;
+
+    /**
+     * Сколько недавно использованных заголовков держать в памяти в режиме HeaderIndex.DISK
+     */
+    @Builder.Default
+    private final int headerCacheSize = HEADER_CACHE_SIZE;
+
+    public static OneFileSystemOptions defaults() {
+        return builder().build();
+    }
+}
@@ -12,30 +12,49 @@ import onefilesystem.exception.OneFileSystemException;
 
 /**
  * Инициализирует файловую систему, если она еще не была создана.
+ * <p>
+ * Процессы договариваются через блокировки однобайтовых участков за концом файла: писатель берет исключительную
+ * блокировку участка WRITER_LOCK_POSITION, поэтому писатель один, а читатели (режим только для чтения) - разделяемую
+ * блокировку участка READERS_LOCK_POSITION и друг другу и писателю не мешают. Прежние версии брали исключительную
+ * блокировку всего файла, поэтому с ними читатели не откроются. В одной JVM файловую систему открывает один писатель
+ * и один читатель: пересекающиеся блокировки одного файла в JVM запрещены.
  * Не thread-safe
  */
 @Slf4j
 class OneFileSystemStartupHelper implements Closeable {
 
+    private static final long WRITER_LOCK_POSITION = Long.MAX_VALUE - 2;
+    private static final long READERS_LOCK_POSITION = Long.MAX_VALUE - 1;
+
     private final Path fileSystemPath;
+    private final boolean readOnly;
     private RandomAccessFile randomAccessFile;
     private FileChannel channel;
 
     /**
      * @param fileSystemDirectory - директория в основной файловой системе
      * @param fileSystemName      - имя файла в основной файловой системе
+     * @param readOnly            - открыть существующую файловую систему только для чтения
      */
-    OneFileSystemStartupHelper(String fileSystemDirectory, String fileSystemName) {
+    OneFileSystemStartupHelper(String fileSystemDirectory, String fileSystemName, boolean readOnly) {
         fileSystemPath = Paths.get(fileSystemDirectory, fileSystemName);
+        this.readOnly = readOnly;
     }
 
     protected FileChannel init() {
-        createFileSystemFileIfNotExists(fileSystemPath);
+        if (!readOnly) {
+            createFileSystemFileIfNotExists(fileSystemPath);
+        }
 
         try {
-            randomAccessFile = new RandomAccessFile(fileSystemPath.toFile(), "rw");
+            randomAccessFile = new RandomAccessFile(fileSystemPath.toFile(), readOnly ? "r" : "rw");
             channel = randomAccessFile.getChannel();
-            channel.lock();
+            if (readOnly) {
+                channel.lock(READERS_LOCK_POSITION, 1, true);
+                log.info("Opened file system read-only : {}", fileSystemPath);
+            } else {
+                channel.lock(WRITER_LOCK_POSITION, 1, false);
+            }
         } catch (IOException e) {
             throw new OneFileSystemException(e);
         }
@@ -0,0 +1,16 @@
+package onefilesystem;
+
+/**
+ * Как читать контент файлов
+ */
+public enum ReadMode {
+    /**
+     * Позиционное чтение через FileChannel
+     */
+    CHANNEL,
+
+    /**
+     * Чтение из файла, отображенного в память. readContentView возвращает срез отображения без копирования
+     */
+    MMAP
+}
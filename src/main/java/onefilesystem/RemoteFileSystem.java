@@ -0,0 +1,325 @@
+package onefilesystem;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.compression.Compression;
+import onefilesystem.exception.CorruptedContentException;
+import onefilesystem.exception.FileAlreadyExistsException;
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.exception.ReadOnlyFileSystemException;
+import onefilesystem.model.FileStat;
+import onefilesystem.utils.ProtocolCodec;
+import onefilesystem.validation.ValidationService;
+
+import static onefilesystem.utils.ProtocolCodec.APPEND;
+import static onefilesystem.utils.ProtocolCodec.CORRUPTED_CONTENT;
+import static onefilesystem.utils.ProtocolCodec.CREATE_FILE;
+import static onefilesystem.utils.ProtocolCodec.CREATE_SERVICE_FILE;
+import static onefilesystem.utils.ProtocolCodec.DELETE_FILE;
+import static onefilesystem.utils.ProtocolCodec.EXISTS;
+import static onefilesystem.utils.ProtocolCodec.FILE_ALREADY_EXISTS;
+import static onefilesystem.utils.ProtocolCodec.FILE_NOT_FOUND;
+import static onefilesystem.utils.ProtocolCodec.ILLEGAL_ARGUMENT;
+import static onefilesystem.utils.ProtocolCodec.ILLEGAL_STATE;
+import static onefilesystem.utils.ProtocolCodec.LENGTH_SIZE;
+import static onefilesystem.utils.ProtocolCodec.LIST;
+import static onefilesystem.utils.ProtocolCodec.LIST_ALL;
+import static onefilesystem.utils.ProtocolCodec.LIST_DIRECTORY;
+import static onefilesystem.utils.ProtocolCodec.OK;
+import static onefilesystem.utils.ProtocolCodec.READ;
+import static onefilesystem.utils.ProtocolCodec.READ_CONTENT;
+import static onefilesystem.utils.ProtocolCodec.READ_ONLY;
+import static onefilesystem.utils.ProtocolCodec.SIZE;
+import static onefilesystem.utils.ProtocolCodec.STAT;
+import static onefilesystem.utils.ProtocolCodec.TRUNCATE;
+import static onefilesystem.utils.ProtocolCodec.WRITE;
+import static onefilesystem.utils.ProtocolCodec.WRITE_CONTENT;
+import static onefilesystem.utils.ProtocolCodec.getContent;
+import static onefilesystem.utils.ProtocolCodec.getString;
+import static onefilesystem.utils.ProtocolCodec.getStrings;
+import static onefilesystem.utils.ProtocolCodec.putString;
+import static onefilesystem.utils.ProtocolCodec.stringSize;
+import static onefilesystem.utils.ProtocolCodec.utf8;
+
+/**
+ * Клиент FileSystemServer: файловая система в другом процессе.
+ * <p>
+ * Все потоки работают через одно соединение. Поток, вызвавший операцию, отправляет запрос и ждет ответ, не мешая
+ * другим потокам отправлять свои запросы (pipelining), ответы разбирает отдельный поток и отдает ждущим по requestId.
+ * Имена файлов и размер контента проверяются до отправки, ошибки сервера бросаются теми же исключениями, что бросила
+ * бы файловая система на сервере.
+ * <p>
+ * Снимки не поддерживаются: RemoteFileSystem не SnapshottableFileSystem. Thread-safe
+ */
+@Slf4j
+public class RemoteFileSystem implements FileSystem {
+
+    private final SocketChannel channel;
+    private final Map<Integer, CompletableFuture<ByteBuffer>> pendingResponses = new ConcurrentHashMap<>();
+    private final AtomicInteger requestIds = new AtomicInteger();
+    private final Thread receiver;
+
+    /**
+     * Почему соединение больше не работает, null - работает
+     */
+    private volatile OneFileSystemException failure;
+
+    /**
+     * @param address - адрес FileSystemServer
+     */
+    public RemoteFileSystem(InetSocketAddress address) {
+        try {
+            channel = SocketChannel.open(address);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+
+        receiver = new Thread(this::receive, "one-file-system-client");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    @Override
+    public void createFile(String fileName) {
+        ValidationService.checkFileName(fileName);
+        ValidationService.checkNotReserved(fileName);
+        call(request(CREATE_FILE, fileName, 0), fileName, "create");
+    }
+
+    @Override
+    public void createServiceFile(String fileName) {
+        ValidationService.checkFileName(fileName);
+        call(request(CREATE_SERVICE_FILE, fileName, 0), fileName, "create");
+    }
+
+    @Override
+    public void deleteFile(String fileName) {
+        call(request(DELETE_FILE, fileName, 0), fileName, "delete");
+    }
+
+    @Override
+    public void writeContent(String fileName, byte[] content) {
+        ValidationService.checkContentSize(content, fileName);
+        ByteBuffer request = request(WRITE_CONTENT, fileName, Integer.BYTES + content.length);
+        request.putInt(content.length).put(content);
+        call(request, fileName, "write");
+    }
+
+    @Override
+    public byte[] readContent(String fileName) {
+        return getContent(call(request(READ_CONTENT, fileName, 0), fileName, "read"));
+    }
+
+    @Override
+    public long size(String fileName) {
+        return call(request(SIZE, fileName, 0), fileName, "read").getLong();
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return call(request(EXISTS, fileName, 0), fileName, "read").get() != 0;
+    }
+
+    @Override
+    public FileStat stat(String fileName) {
+        ByteBuffer result = call(request(STAT, fileName, 0), fileName, "read");
+        return FileStat.builder()
+                .fileName(fileName)
+                .size(result.getLong())
+                .storedSize(result.getLong())
+                .compression(Compression.byId(result.get()))
+                .build();
+    }
+
+    @Override
+    public List<String> list(String prefix) {
+        return getStrings(call(request(LIST, prefix, 0), prefix, "list"));
+    }
+
+    @Override
+    public List<String> listAll(String after, int limit) {
+        ByteBuffer request = request(LIST_ALL, after, Integer.BYTES);
+        request.putInt(limit);
+        return getStrings(call(request, after, "list"));
+    }
+
+    @Override
+    public List<String> listDirectory(String directory) {
+        return getStrings(call(request(LIST_DIRECTORY, directory, 0), directory, "list"));
+    }
+
+    @Override
+    public int read(String fileName, long offset, ByteBuffer target) {
+        ByteBuffer request = request(READ, fileName, Long.BYTES + Integer.BYTES);
+        request.putLong(offset).putInt(target.remaining());
+        ByteBuffer result = call(request, fileName, "read");
+        int read = result.getInt();
+        if (read > 0) {
+            target.put(result.limit(result.position() + read));
+        }
+        return read;
+    }
+
+    @Override
+    public void write(String fileName, long offset, ByteBuffer source) {
+        ValidationService.checkContentSize(source.remaining(), fileName);
+        ByteBuffer request = request(WRITE, fileName, Long.BYTES + Integer.BYTES + source.remaining());
+        request.putLong(offset).putInt(source.remaining()).put(source);
+        call(request, fileName, "write");
+    }
+
+    @Override
+    public void append(String fileName, ByteBuffer source) {
+        ValidationService.checkContentSize(source.remaining(), fileName);
+        ByteBuffer request = request(APPEND, fileName, Integer.BYTES + source.remaining());
+        request.putInt(source.remaining()).put(source);
+        call(request, fileName, "append");
+    }
+
+    @Override
+    public void truncate(String fileName, long size) {
+        ByteBuffer request = request(TRUNCATE, fileName, Long.BYTES);
+        request.putLong(size);
+        call(request, fileName, "truncate");
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Буфер запроса с именем файла, остальные аргументы дописываются после него
+     *
+     * @param argumentsSize - размер аргументов после имени
+     */
+    private ByteBuffer request(byte opcode, String fileName, int argumentsSize) {
+        byte[] name = utf8(fileName);
+        ByteBuffer request = ProtocolCodec.request(opcode, requestIds.incrementAndGet(),
+                stringSize(name) + argumentsSize);
+        putString(request, name);
+        return request;
+    }
+
+    /**
+     * Отправить запрос и дождаться ответа
+     *
+     * @param request   - заполненный буфер запроса
+     * @param fileName  - имя файла для исключений
+     * @param operation - операция для исключений
+     * @return - результат операции
+     */
+    private ByteBuffer call(ByteBuffer request, String fileName, String operation) {
+        int requestId = request.getInt(LENGTH_SIZE + 1);
+        CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+        pendingResponses.put(requestId, response);
+        if (failure != null) {
+            pendingResponses.remove(requestId);
+            throw failure;
+        }
+
+        request.flip();
+        try {
+            synchronized (channel) {
+                while (request.hasRemaining()) {
+                    channel.write(request);
+                }
+            }
+        } catch (IOException e) {
+            pendingResponses.remove(requestId);
+            throw new OneFileSystemException(e);
+        }
+
+        ByteBuffer result;
+        try {
+            result = response.join();
+        } catch (CompletionException e) {
+            throw (OneFileSystemException) e.getCause();
+        }
+
+        byte status = result.get();
+        if (status != OK) {
+            throw exception(status, getString(result), fileName, operation);
+        }
+        return result;
+    }
+
+    private static RuntimeException exception(byte status, String message, String fileName, String operation) {
+        switch (status) {
+            case FILE_NOT_FOUND:
+                return new FileNotFoundException(fileName);
+            case FILE_ALREADY_EXISTS:
+                return new FileAlreadyExistsException(fileName);
+            case CORRUPTED_CONTENT:
+                return new CorruptedContentException(fileName);
+            case READ_ONLY:
+                return new ReadOnlyFileSystemException(operation, fileName);
+            case ILLEGAL_ARGUMENT:
+                return new IllegalArgumentException(message);
+            case ILLEGAL_STATE:
+                return new IllegalStateException(message);
+            default:
+                return new OneFileSystemException(message);
+        }
+    }
+
+    /**
+     * Разбирать ответы, пока соединение не закроется, затем завершить ждущие запросы ошибкой
+     */
+    private void receive() {
+        ByteBuffer length = ByteBuffer.allocate(LENGTH_SIZE);
+        try {
+            while (true) {
+                length.clear();
+                readFully(length);
+                ByteBuffer frame = ByteBuffer.allocate(length.getInt(0));
+                readFully(frame);
+                frame.flip();
+
+                CompletableFuture<ByteBuffer> response = pendingResponses.remove(frame.getInt());
+                if (response != null) {
+                    response.complete(frame);
+                }
+            }
+        } catch (IOException e) {
+            failure = new OneFileSystemException(e);
+        }
+
+        if (channel.isOpen()) {
+            log.warn("Connection to file system server is lost", failure);
+        }
+        for (Integer requestId : pendingResponses.keySet()) {
+            CompletableFuture<ByteBuffer> response = pendingResponses.remove(requestId);
+            if (response != null) {
+                response.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void readFully(ByteBuffer target) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target) < 0) {
+                throw new EOFException("File system server closed the connection");
+            }
+        }
+    }
+}
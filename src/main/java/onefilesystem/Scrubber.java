@@ -0,0 +1,166 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.metrics.MetricsListener;
+import onefilesystem.model.FileHeader;
+import onefilesystem.model.ScrubStatistics;
+
+/**
+ * Проверка контрольных сумм контента всех файлов.
+ * <p>
+ * Контент читается по возрастанию позиции в файле файловой системы, то есть последовательно, и без блокировок файлов:
+ * под блокировкой чтения берется только снимок заголовка. Если контрольная сумма не совпала, то под блокировкой чтения
+ * проверяется, что файл не изменился и не переехал за время чтения: иначе прочитан уже чужой экстент, и файл
+ * пропускается до следующего прохода.
+ * <p>
+ * Чтение ограничено ioBudget байт в секунду (см. Throttle). Thread-safe, проходы выполняются по одному
+ */
+@Slf4j
+class Scrubber {
+
+    private final HeaderTable existingFiles;
+    private final StripedLocks locks;
+    private final ChannelReadWriteService readWriteService;
+    private final MetricsListener metricsListener;
+    private final Throttle throttle;
+
+    private final Lock passLock = new ReentrantLock();
+    private volatile ScrubStatistics lastStatistics;
+
+    /**
+     * @param ioBudget - сколько байт контента читать в секунду, 0 - без ограничения
+     */
+    Scrubber(HeaderTable existingFiles, StripedLocks locks, ChannelReadWriteService readWriteService,
+             MetricsListener metricsListener, long ioBudget) {
+        this.existingFiles = existingFiles;
+        this.locks = locks;
+        this.readWriteService = readWriteService;
+        this.metricsListener = metricsListener;
+        this.throttle = new Throttle(ioBudget);
+    }
+
+    /**
+     * Сделать проход проверки
+     *
+     * @return - метрики прохода
+     */
+    protected ScrubStatistics scrub() {
+        passLock.lock();
+        try {
+            long start = System.nanoTime();
+            long checkedFiles = 0;
+            long checkedBytes = 0;
+            long skippedFiles = 0;
+            List<String> corruptedFiles = new ArrayList<>();
+
+            List<FileHeader> fileHeaders = existingFiles.values().stream()
+                    .sorted(Comparator.comparingLong(FileHeader::getContentPosition))
+                    .collect(Collectors.toList());
+            for (FileHeader fileHeader : fileHeaders) {
+                if (throttle.isStopped()) {
+                    break;
+                }
+
+                Boolean intact = check(fileHeader);
+                if (intact == null) {
+                    skippedFiles++;
+                    continue;
+                }
+                checkedFiles++;
+                checkedBytes += fileHeader.getContentStoredSize();
+                if (!intact) {
+                    log.error("Content of file {} is corrupted: checksum mismatch", fileHeader.getFileName());
+                    metricsListener.onChecksumMismatch(fileHeader.getFileName());
+                    corruptedFiles.add(fileHeader.getFileName());
+                }
+                throttle.pace(start, checkedBytes);
+            }
+
+            ScrubStatistics result = ScrubStatistics.builder()
+                    .checkedFilesCount(checkedFiles)
+                    .checkedBytes(checkedBytes)
+                    .skippedFilesCount(skippedFiles)
+                    .corruptedFiles(corruptedFiles)
+                    .durationNanos(System.nanoTime() - start)
+                    .build();
+            log.info("Scrubbed file system: {}", result);
+            lastStatistics = result;
+            return result;
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        } finally {
+            passLock.unlock();
+        }
+    }
+
+    /**
+     * Остановить текущий проход после очередного файла. Следующие проходы сразу заканчиваются
+     */
+    protected void stop() {
+        throttle.stop();
+    }
+
+    /**
+     * @return - метрики последнего прохода или null, если проходов не было
+     */
+    protected ScrubStatistics getLastStatistics() {
+        return lastStatistics;
+    }
+
+    /**
+     * Проверить контент файла. Заголовок файла берется заново под блокировкой: кандидат может оказаться копией,
+     * прочитанной с диска (HeaderIndex.DISK)
+     *
+     * @return - совпал ли контент с контрольной суммой или null, если проверить нельзя: у файла нет контрольной суммы
+     * или он изменился во время проверки
+     */
+    private Boolean check(FileHeader candidate) throws IOException {
+        String fileName = candidate.getFileName();
+        FileHeader fileHeader;
+        ReadWriteLock lock = locks.forFile(fileName);
+        long position;
+        int storedSize;
+        long version;
+        Integer checksum;
+
+        lock.readLock().lock();
+        try {
+            fileHeader = existingFiles.get(fileName);
+            if (fileHeader == null) {
+                return null;
+            }
+            position = fileHeader.getContentPosition();
+            storedSize = fileHeader.getContentStoredSize();
+            version = fileHeader.getVersion();
+            checksum = fileHeader.getContentChecksum();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (checksum == null) {
+            return null;
+        }
+
+        if (readWriteService.checksum(position, storedSize) == checksum) {
+            return true;
+        }
+
+        lock.readLock().lock();
+        try {
+            boolean changed = existingFiles.get(fileName) != fileHeader || fileHeader.getVersion() != version
+                    || fileHeader.getContentPosition() != position;
+            return changed ? null : false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import onefilesystem.exception.CorruptedContentException;
+import onefilesystem.exception.FileAlreadyExistsException;
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.exception.ReadOnlyFileSystemException;
+import onefilesystem.model.FileStat;
+
+import static onefilesystem.utils.Constants.IO_BUFFER_SIZE;
+import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static onefilesystem.utils.Constants.SERVER_MAX_FRAME_SIZE;
+import static onefilesystem.utils.Constants.SERVER_MAX_IN_FLIGHT_REQUESTS;
+import static onefilesystem.utils.Constants.SERVER_MAX_PENDING_BYTES;
+import static onefilesystem.utils.ProtocolCodec.APPEND;
+import static onefilesystem.utils.ProtocolCodec.CORRUPTED_CONTENT;
+import static onefilesystem.utils.ProtocolCodec.CREATE_FILE;
+import static onefilesystem.utils.ProtocolCodec.CREATE_SERVICE_FILE;
+import static onefilesystem.utils.ProtocolCodec.DELETE_FILE;
+import static onefilesystem.utils.ProtocolCodec.ERROR;
+import static onefilesystem.utils.ProtocolCodec.EXISTS;
+import static onefilesystem.utils.ProtocolCodec.FILE_ALREADY_EXISTS;
+import static onefilesystem.utils.ProtocolCodec.FILE_NOT_FOUND;
+import static onefilesystem.utils.ProtocolCodec.ILLEGAL_ARGUMENT;
+import static onefilesystem.utils.ProtocolCodec.ILLEGAL_STATE;
+import static onefilesystem.utils.ProtocolCodec.LENGTH_SIZE;
+import static onefilesystem.utils.ProtocolCodec.LIST;
+import static onefilesystem.utils.ProtocolCodec.LIST_ALL;
+import static onefilesystem.utils.ProtocolCodec.LIST_DIRECTORY;
+import static onefilesystem.utils.ProtocolCodec.OK;
+import static onefilesystem.utils.ProtocolCodec.READ;
+import static onefilesystem.utils.ProtocolCodec.READ_CONTENT;
+import static onefilesystem.utils.ProtocolCodec.READ_ONLY;
+import static onefilesystem.utils.ProtocolCodec.REQUEST_HEADER_SIZE;
+import static onefilesystem.utils.ProtocolCodec.SIZE;
+import static onefilesystem.utils.ProtocolCodec.STAT;
+import static onefilesystem.utils.ProtocolCodec.TRUNCATE;
+import static onefilesystem.utils.ProtocolCodec.WRITE;
+import static onefilesystem.utils.ProtocolCodec.WRITE_CONTENT;
+import static onefilesystem.utils.ProtocolCodec.getContent;
+import static onefilesystem.utils.ProtocolCodec.getString;
+import static onefilesystem.utils.ProtocolCodec.putString;
+import static onefilesystem.utils.ProtocolCodec.putStrings;
+import static onefilesystem.utils.ProtocolCodec.response;
+import static onefilesystem.utils.ProtocolCodec.stringSize;
+import static onefilesystem.utils.ProtocolCodec.stringsSize;
+import static onefilesystem.utils.ProtocolCodec.utf8;
+
+/**
+ * Соединение FileSystemServer.
+ * <p>
+ * Сокет читается и кадры запросов разбираются в потоке сервера, а выполняются запросы на потоках-дорожках сервера:
+ * запросы к одному файлу выполняются по очереди в порядке прихода, к разным файлам - параллельно. Ответы приходят в
+ * порядке выполнения, клиент сопоставляет их с запросами по requestId.
+ * <p>
+ * Входной буфер растет под самый большой пришедший кадр, но не больше SERVER_MAX_FRAME_SIZE. Ответы копятся в
+ * очереди и пишутся в сокет gathering write потоком, выполнившим запрос, а остаток - потоком сервера по OP_WRITE.
+ * Пока запросы в работе и ответы в очереди занимают больше SERVER_MAX_PENDING_BYTES или в работе больше
+ * SERVER_MAX_IN_FLIGHT_REQUESTS запросов, новые запросы не разбираются и сокет не читается: клиент, который не читает
+ * ответы, упирается в TCP окно, а не в память сервера. Когда запрос выполнен, поток сервера снова включает чтение
+ * (см. FileSystemServer.completed).
+ * <p>
+ * Ответ READ_CONTENT при пустой очереди пишется в сокет прямо из файла файловой системы (см.
+ * OneFileSystem.transferContent): без копирования уходит столько, сколько сокет принимает сразу, а остаток копируется
+ * в очередь. Держать блокировку файла до конца отправки нельзя: медленный клиент остановил бы запись в файл.
+ * <p>
+ * Очередь ответов и счетчики защищены монитором соединения, входной буфер трогает только поток сервера
+ */
+class ServerConnection {
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 1024;
+
+    private final FileSystem fileSystem;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+
+    /**
+     * Дорожка для запроса к файлу
+     */
+    private final Function<String, Executor> lanes;
+
+    /**
+     * Сообщить потоку сервера, что запрос выполнен и нужно обновить интерес к событиям сокета
+     */
+    private final Consumer<ServerConnection> completed;
+
+    private final Deque<ByteBuffer> responses = new ArrayDeque<>();
+    private ByteBuffer input = ByteBuffer.allocate(IO_BUFFER_SIZE);
+
+    /**
+     * Сколько байт занимают запросы в работе и ответы в очереди
+     */
+    private long pendingBytes;
+    private int inFlightRequests;
+
+    /**
+     * Чтение сокета выключено, пока в работе слишком много запросов
+     */
+    private boolean readPaused;
+
+    ServerConnection(FileSystem fileSystem, SocketChannel channel, SelectionKey key, Function<String, Executor> lanes,
+                     Consumer<ServerConnection> completed) {
+        this.fileSystem = fileSystem;
+        this.channel = channel;
+        this.key = key;
+        this.lanes = lanes;
+        this.completed = completed;
+    }
+
+    /**
+     * Прочитать пришедшие запросы и отдать их дорожкам, дописать ответы, насколько примет сокет.
+     * Вызывается только из потока сервера
+     *
+     * @param readable - сокет можно читать
+     */
+    void handle(boolean readable) throws IOException {
+        if (readable && channel.read(input) < 0) {
+            close();
+            return;
+        }
+
+        processRequests();
+
+        int interestOps;
+        synchronized (this) {
+            flush();
+            readPaused = !canAccept();
+            interestOps = readPaused ? 0 : SelectionKey.OP_READ;
+            if (!responses.isEmpty()) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+        }
+        key.interestOps(interestOps);
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // соединение уже разорвано
+        }
+    }
+
+    private synchronized boolean canAccept() {
+        return pendingBytes < SERVER_MAX_PENDING_BYTES && inFlightRequests < SERVER_MAX_IN_FLIGHT_REQUESTS;
+    }
+
+    private void processRequests() {
+        input.flip();
+        try {
+            while (canAccept() && input.remaining() >= LENGTH_SIZE) {
+                int length = input.getInt(input.position());
+                if (length < REQUEST_HEADER_SIZE || length > SERVER_MAX_FRAME_SIZE) {
+                    throw new OneFileSystemException("Illegal request frame length " + length);
+                }
+                if (input.remaining() < LENGTH_SIZE + length) {
+                    break;
+                }
+
+                input.position(input.position() + LENGTH_SIZE);
+                ByteBuffer frame = ByteBuffer.allocate(length);
+                input.get(frame.array());
+                submit(frame);
+            }
+        } finally {
+            input.compact();
+        }
+
+        if (!input.hasRemaining() && input.position() >= LENGTH_SIZE) {
+            int required = LENGTH_SIZE + input.getInt(0);
+            if (required > input.capacity()) {
+                ByteBuffer grown = ByteBuffer.allocate(required);
+                input.flip();
+                grown.put(input);
+                input = grown;
+            }
+        }
+    }
+
+    /**
+     * Отдать запрос дорожке его файла
+     *
+     * @param frame - копия кадра запроса без длины
+     */
+    private void submit(ByteBuffer frame) {
+        String fileName = getString(frame.duplicate().position(REQUEST_HEADER_SIZE));
+        synchronized (this) {
+            pendingBytes += frame.capacity();
+            inFlightRequests++;
+        }
+        lanes.apply(fileName == null ? "" : fileName).execute(() -> process(frame));
+    }
+
+    /**
+     * Выполнить запрос на дорожке, поставить ответ в очередь и дописать очередь в сокет
+     *
+     * @param frame - кадр запроса без длины
+     */
+    private void process(ByteBuffer frame) {
+        byte opcode = frame.get();
+        int requestId = frame.getInt();
+        boolean notify;
+        try {
+            ByteBuffer response;
+            try {
+                response = execute(opcode, requestId, frame);
+            } catch (RuntimeException e) {
+                response = error(requestId, e);
+            }
+
+            synchronized (this) {
+                pendingBytes -= frame.capacity();
+                inFlightRequests--;
+                if (response != null) {
+                    enqueue(response);
+                }
+                flush();
+                notify = readPaused || !responses.isEmpty();
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            return;
+        }
+        if (notify) {
+            completed.accept(this);
+        }
+    }
+
+    /**
+     * @return - ответ, уже перевернутый для записи, или null, если ответ целиком ушел в сокет
+     */
+    private ByteBuffer execute(byte opcode, int requestId, ByteBuffer frame) throws IOException {
+        String fileName = getString(frame);
+        switch (opcode) {
+            case CREATE_FILE:
+                fileSystem.createFile(fileName);
+                return ok(requestId);
+            case CREATE_SERVICE_FILE:
+                fileSystem.createServiceFile(fileName);
+                return ok(requestId);
+            case DELETE_FILE:
+                fileSystem.deleteFile(fileName);
+                return ok(requestId);
+            case WRITE_CONTENT:
+                fileSystem.writeContent(fileName, getContent(frame));
+                return ok(requestId);
+            case READ_CONTENT:
+                return readContent(requestId, fileName);
+            case SIZE:
+                return response(requestId, OK, Long.BYTES).putLong(fileSystem.size(fileName)).flip();
+            case EXISTS:
+                return response(requestId, OK, 1).put((byte) (fileSystem.exists(fileName) ? 1 : 0)).flip();
+            case STAT:
+                FileStat stat = fileSystem.stat(fileName);
+                return response(requestId, OK, 2 * Long.BYTES + 1)
+                        .putLong(stat.getSize())
+                        .putLong(stat.getStoredSize())
+                        .put((byte) stat.getCompression().getId())
+                        .flip();
+            case LIST:
+                return names(requestId, fileSystem.list(fileName));
+            case LIST_ALL:
+                return names(requestId, fileSystem.listAll(fileName, frame.getInt()));
+            case LIST_DIRECTORY:
+                return names(requestId, fileSystem.listDirectory(fileName));
+            case READ:
+                return read(requestId, fileName, frame.getLong(), frame.getInt());
+            case WRITE:
+                long offset = frame.getLong();
+                int length = frame.getInt();
+                ByteBuffer source = frame.slice();
+                source.limit(length);
+                fileSystem.write(fileName, offset, source);
+                return ok(requestId);
+            case APPEND:
+                fileSystem.append(fileName, ByteBuffer.wrap(getContent(frame)));
+                return ok(requestId);
+            case TRUNCATE:
+                fileSystem.truncate(fileName, frame.getLong());
+                return ok(requestId);
+            default:
+                throw new IllegalArgumentException("Unknown opcode " + opcode);
+        }
+    }
+
+    private ByteBuffer readContent(int requestId, String fileName) throws IOException {
+        OneFileSystem target = transferTarget(fileName);
+        if (target != null) {
+            // пока контент идет в сокет, другие дорожки не пишут в него свои ответы
+            synchronized (this) {
+                if (flush()) {
+                    ByteBuffer rest = target.transferContent(fileName,
+                            size -> response(requestId, OK, Integer.BYTES + size).putInt(size).flip(), channel);
+                    if (rest != null) {
+                        return rest.hasRemaining() ? rest : null;
+                    }
+                }
+            }
+        }
+
+        byte[] content = fileSystem.readContent(fileName);
+        return response(requestId, OK, Integer.BYTES + content.length).putInt(content.length).put(content).flip();
+    }
+
+    /**
+     * @return - файловая система, из файла которой можно передать контент в сокет, или null
+     */
+    private OneFileSystem transferTarget(String fileName) {
+        if (fileSystem instanceof OneFileSystem) {
+            return (OneFileSystem) fileSystem;
+        }
+        if (fileSystem instanceof ShardedFileSystem) {
+            ShardedFileSystem sharded = (ShardedFileSystem) fileSystem;
+            return sharded.getShard(ShardedFileSystem.shardOf(fileName, sharded.getShardsCount()));
+        }
+        return null;
+    }
+
+    private ByteBuffer read(int requestId, String fileName, long offset, int length) {
+        ByteBuffer response = response(requestId, OK, Integer.BYTES + Math.max(0, Math.min(length, MAX_FILE_SIZE)));
+        int resultPosition = response.position();
+        response.position(resultPosition + Integer.BYTES);
+        int read = fileSystem.read(fileName, offset, response);
+        response.putInt(resultPosition, read);
+        // длина кадра по фактически прочитанному
+        response.putInt(0, response.position() - LENGTH_SIZE);
+        return response.flip();
+    }
+
+    private static ByteBuffer names(int requestId, List<String> names) {
+        List<byte[]> encoded = new ArrayList<>(names.size());
+        for (String name : names) {
+            encoded.add(utf8(name));
+        }
+        ByteBuffer response = response(requestId, OK, stringsSize(encoded));
+        putStrings(response, encoded);
+        return response.flip();
+    }
+
+    private static ByteBuffer ok(int requestId) {
+        return response(requestId, OK, 0).flip();
+    }
+
+    private static ByteBuffer error(int requestId, RuntimeException e) {
+        String message = String.valueOf(e.getMessage());
+        byte[] utf8 = utf8(message.length() > MAX_ERROR_MESSAGE_LENGTH
+                ? message.substring(0, MAX_ERROR_MESSAGE_LENGTH)
+                : message);
+        ByteBuffer response = response(requestId, status(e), stringSize(utf8));
+        putString(response, utf8);
+        return response.flip();
+    }
+
+    private static byte status(RuntimeException e) {
+        if (e instanceof FileNotFoundException) {
+            return FILE_NOT_FOUND;
+        }
+        if (e instanceof FileAlreadyExistsException) {
+            return FILE_ALREADY_EXISTS;
+        }
+        if (e instanceof CorruptedContentException) {
+            return CORRUPTED_CONTENT;
+        }
+        if (e instanceof ReadOnlyFileSystemException) {
+            return READ_ONLY;
+        }
+        if (e instanceof IllegalArgumentException) {
+            return ILLEGAL_ARGUMENT;
+        }
+        if (e instanceof IllegalStateException) {
+            return ILLEGAL_STATE;
+        }
+        return ERROR;
+    }
+
+    private void enqueue(ByteBuffer response) {
+        responses.addLast(response);
+        pendingBytes += response.remaining();
+    }
+
+    /**
+     * Записать ответы из очереди, сколько примет сокет. Вызывается под монитором соединения
+     *
+     * @return - очередь пуста
+     */
+    private boolean flush() throws IOException {
+        while (!responses.isEmpty()) {
+            ByteBuffer[] buffers = responses.toArray(new ByteBuffer[0]);
+            long written = channel.write(buffers);
+            pendingBytes -= written;
+            while (!responses.isEmpty() && !responses.peekFirst().hasRemaining()) {
+                responses.pollFirst();
+            }
+            if (written == 0 || !responses.isEmpty()) {
+                return responses.isEmpty();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(channel.socket().getRemoteSocketAddress());
+    }
+}
@@ -0,0 +1,338 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.compression.Compression;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.FileStat;
+import onefilesystem.validation.ValidationService;
+
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Файловая система из нескольких сегментов: файлы распределяются по сегментам по хэшу имени, каждый сегмент - это
+ * отдельная OneFileSystem со своим файлом в основной файловой системе, каналом, заголовками, журналом и блокировками.
+ * Операции над файлами разных сегментов не делят ни блокировок, ни force(), поэтому масштабируются с числом ядер и
+ * дисков (сегменты можно разложить по разным дискам символическими ссылками).
+ * <p>
+ * Сегмент i из n лежит в файле fileSystemName.i-of-n, один сегмент - в файле fileSystemName, то есть это обычная
+ * OneFileSystem. Число сегментов задается при создании, изменить его можно только офлайн
+ * (см. onefilesystem.migration.Resharding).
+ * <p>
+ * Списки файлов собираются со всех сегментов и сливаются. Thread-safe
+ */
+@Slf4j
+public class ShardedFileSystem implements SnapshottableFileSystem {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("\\.(\\d+)-of-(\\d+)$");
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+    private final OneFileSystem[] shards;
+
+    /**
+     * @param fileSystemDirectory - директория в основной файловой системе
+     * @param fileSystemName      - имя файловой системы, от него образуются имена сегментов
+     * @param shardsCount         - число сегментов
+     */
+    public ShardedFileSystem(String fileSystemDirectory, String fileSystemName, int shardsCount) {
+        this(fileSystemDirectory, fileSystemName, shardsCount, OneFileSystemOptions.defaults());
+    }
+
+    /**
+     * @param fileSystemDirectory - директория в основной файловой системе
+     * @param fileSystemName      - имя файловой системы, от него образуются имена сегментов
+     * @param shardsCount         - число сегментов
+     * @param options             - настройки каждого сегмента
+     */
+    public ShardedFileSystem(String fileSystemDirectory, String fileSystemName, int shardsCount,
+                             OneFileSystemOptions options) {
+        checkState(shardsCount > 0, "Shards count must be positive: " + shardsCount);
+        int existingShardsCount = existingShardsCount(fileSystemDirectory, fileSystemName);
+        checkState(existingShardsCount == 0 || existingShardsCount == shardsCount,
+                String.format("File system %s has %d shards, not %d: reshard it offline first",
+                        fileSystemName, existingShardsCount, shardsCount));
+
+        shards = new OneFileSystem[shardsCount];
+        try {
+            for (int i = 0; i < shardsCount; i++) {
+                shards[i] = new OneFileSystem(fileSystemDirectory, segmentName(fileSystemName, i, shardsCount),
+                        options);
+            }
+        } catch (RuntimeException e) {
+            closeShards(e);
+            throw e;
+        }
+        log.info("Opened sharded file system {} with {} shards", fileSystemName, shardsCount);
+    }
+
+    /**
+     * @param fileSystemName - имя файловой системы
+     * @param shard          - номер сегмента
+     * @param shardsCount    - число сегментов
+     * @return - имя файла сегмента в основной файловой системе
+     */
+    public static String segmentName(String fileSystemName, int shard, int shardsCount) {
+        return shardsCount == 1 ? fileSystemName : fileSystemName + "." + shard + "-of-" + shardsCount;
+    }
+
+    /**
+     * Сколько сегментов у существующей файловой системы
+     *
+     * @param fileSystemDirectory - директория в основной файловой системе
+     * @param fileSystemName      - имя файловой системы
+     * @return - число сегментов, 1 - обычная OneFileSystem, 0 - файловой системы нет
+     */
+    public static int existingShardsCount(String fileSystemDirectory, String fileSystemName) {
+        Path directory = Paths.get(fileSystemDirectory);
+        TreeSet<Integer> shardsCounts = new TreeSet<>();
+        if (Files.exists(directory.resolve(fileSystemName))) {
+            shardsCounts.add(1);
+        }
+
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, fileSystemName + ".*")) {
+            for (Path segment : segments) {
+                String suffix = segment.getFileName().toString().substring(fileSystemName.length());
+                Matcher matcher = SEGMENT_NAME.matcher(suffix);
+                if (matcher.matches()) {
+                    shardsCounts.add(Integer.parseInt(matcher.group(2)));
+                }
+            }
+        } catch (IOException e) {
+            throw new OneFileSystemException(e);
+        }
+
+        checkState(shardsCounts.size() <= 1, String.format(
+                "File system %s has segments for several shards counts %s: interrupted resharding?",
+                fileSystemName, shardsCounts));
+        return shardsCounts.isEmpty() ? 0 : shardsCounts.first();
+    }
+
+    /**
+     * Номер сегмента файла. Берутся старшие биты перемешанного хэша, а полосы блокировок внутри сегмента берут
+     * младшие биты хэша, поэтому файлы сегмента распределяются по всем полосам
+     *
+     * @param fileName    - имя файла
+     * @param shardsCount - число сегментов
+     * @return - номер сегмента от 0 до shardsCount - 1
+     */
+    public static int shardOf(String fileName, int shardsCount) {
+        long hash = (fileName.hashCode() * GOLDEN_RATIO) & 0xFFFFFFFFL;
+        return (int) (hash * shardsCount >>> 32);
+    }
+
+    public int getShardsCount() {
+        return shards.length;
+    }
+
+    /**
+     * @param shard - номер сегмента
+     * @return - сегмент, например для метрик, компакции или проверки контрольных сумм
+     */
+    public OneFileSystem getShard(int shard) {
+        return shards[shard];
+    }
+
+    private OneFileSystem shard(String fileName) {
+        return shards[shardOf(fileName, shards.length)];
+    }
+
+    @Override
+    public void createFile(String fileName) {
+        shard(fileName).createFile(fileName);
+    }
+
+    @Override
+    public void createServiceFile(String fileName) {
+        shard(fileName).createServiceFile(fileName);
+    }
+
+    @Override
+    public void deleteFile(String fileName) {
+        shard(fileName).deleteFile(fileName);
+    }
+
+    @Override
+    public void writeContent(String fileName, byte[] content) {
+        shard(fileName).writeContent(fileName, content);
+    }
+
+    /**
+     * Записать контент в существующий файл (см. OneFileSystem.writeContent)
+     *
+     * @param fileName    - имя файла
+     * @param content     - контент
+     * @param compression - сжатие контента этого файла
+     */
+    public void writeContent(String fileName, byte[] content, Compression compression) {
+        shard(fileName).writeContent(fileName, content, compression);
+    }
+
+    @Override
+    public byte[] readContent(String fileName) {
+        return shard(fileName).readContent(fileName);
+    }
+
+    @Override
+    public ByteBuffer readContentView(String fileName) {
+        return shard(fileName).readContentView(fileName);
+    }
+
+    @Override
+    public long size(String fileName) {
+        return shard(fileName).size(fileName);
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return shard(fileName).exists(fileName);
+    }
+
+    @Override
+    public FileStat stat(String fileName) {
+        return shard(fileName).stat(fileName);
+    }
+
+    @Override
+    public List<String> list(String prefix) {
+        return mergeList(shards, prefix);
+    }
+
+    /**
+     * Страница собирается из страниц всех сегментов, поэтому стоит O(shardsCount * limit)
+     */
+    @Override
+    public List<String> listAll(String after, int limit) {
+        return mergeListAll(shards, after, limit);
+    }
+
+    /**
+     * Вложенная директория может быть в нескольких сегментах, в результат она попадает один раз
+     */
+    @Override
+    public List<String> listDirectory(String directory) {
+        return mergeListDirectory(shards, directory);
+    }
+
+    static List<String> mergeList(FileSystem[] shards, String prefix) {
+        List<String> result = new ArrayList<>();
+        for (FileSystem shard : shards) {
+            result.addAll(shard.list(prefix));
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    static List<String> mergeListAll(FileSystem[] shards, String after, int limit) {
+        ValidationService.checkArgument(limit > 0, "Page limit must be positive: " + limit);
+        List<String> result = new ArrayList<>();
+        for (FileSystem shard : shards) {
+            result.addAll(shard.listAll(after, limit));
+        }
+        Collections.sort(result);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    static List<String> mergeListDirectory(FileSystem[] shards, String directory) {
+        TreeSet<String> result = new TreeSet<>();
+        for (FileSystem shard : shards) {
+            result.addAll(shard.listDirectory(directory));
+        }
+        return new ArrayList<>(result);
+    }
+
+    @Override
+    public int read(String fileName, long offset, ByteBuffer target) {
+        return shard(fileName).read(fileName, offset, target);
+    }
+
+    @Override
+    public void write(String fileName, long offset, ByteBuffer source) {
+        shard(fileName).write(fileName, offset, source);
+    }
+
+    @Override
+    public void append(String fileName, ByteBuffer source) {
+        shard(fileName).append(fileName, source);
+    }
+
+    @Override
+    public void truncate(String fileName, long size) {
+        shard(fileName).truncate(fileName, size);
+    }
+
+    /**
+     * Согласованный снимок всех сегментов: изменения останавливаются во всех сегментах сразу, пока снимаются
+     * снимки каждого
+     *
+     * @return - снимок только для чтения
+     */
+    @Override
+    public SnapshottableFileSystem snapshot() {
+        FileSystemSnapshot[] snapshots = new FileSystemSnapshot[shards.length];
+        int locked = 0;
+        try {
+            for (OneFileSystem shard : shards) {
+                shard.lockForSnapshot();
+                locked++;
+            }
+            for (int i = 0; i < shards.length; i++) {
+                snapshots[i] = shards[i].captureSnapshot();
+            }
+        } finally {
+            for (int i = 0; i < locked; i++) {
+                shards[i].unlockForSnapshot();
+            }
+        }
+        return new ShardedSnapshot(snapshots);
+    }
+
+    /**
+     * Закрыть все сегменты, даже если какой-то не закрылся
+     */
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (OneFileSystem shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Закрыть уже открытые сегменты, если открыть файловую систему не удалось
+     */
+    private void closeShards(RuntimeException cause) {
+        for (OneFileSystem shard : shards) {
+            if (shard == null) {
+                continue;
+            }
+            try {
+                shard.close();
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+}
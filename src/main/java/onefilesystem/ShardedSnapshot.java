@@ -0,0 +1,124 @@
+package onefilesystem;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import onefilesystem.exception.ReadOnlyFileSystemException;
+import onefilesystem.model.FileStat;
+
+/**
+ * Снимок ShardedFileSystem: снимки всех сегментов, снятые в один момент (см. ShardedFileSystem.snapshot()).
+ * Файлы распределяются по снимкам сегментов так же, как по сегментам. Thread-safe
+ */
+class ShardedSnapshot implements SnapshottableFileSystem {
+
+    private final FileSystemSnapshot[] shards;
+
+    /**
+     * @param shards - снимки сегментов по номеру сегмента
+     */
+    ShardedSnapshot(FileSystemSnapshot[] shards) {
+        this.shards = shards;
+    }
+
+    private FileSystemSnapshot shard(String fileName) {
+        return shards[ShardedFileSystem.shardOf(fileName, shards.length)];
+    }
+
+    @Override
+    public void createFile(String fileName) {
+        throw new ReadOnlyFileSystemException("create", fileName);
+    }
+
+    @Override
+    public void createServiceFile(String fileName) {
+        throw new ReadOnlyFileSystemException("create", fileName);
+    }
+
+    @Override
+    public void deleteFile(String fileName) {
+        throw new ReadOnlyFileSystemException("delete", fileName);
+    }
+
+    @Override
+    public void writeContent(String fileName, byte[] content) {
+        throw new ReadOnlyFileSystemException("write", fileName);
+    }
+
+    @Override
+    public byte[] readContent(String fileName) {
+        return shard(fileName).readContent(fileName);
+    }
+
+    @Override
+    public long size(String fileName) {
+        return shard(fileName).size(fileName);
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        return shard(fileName).exists(fileName);
+    }
+
+    @Override
+    public FileStat stat(String fileName) {
+        return shard(fileName).stat(fileName);
+    }
+
+    @Override
+    public List<String> list(String prefix) {
+        return ShardedFileSystem.mergeList(shards, prefix);
+    }
+
+    @Override
+    public List<String> listAll(String after, int limit) {
+        return ShardedFileSystem.mergeListAll(shards, after, limit);
+    }
+
+    @Override
+    public List<String> listDirectory(String directory) {
+        return ShardedFileSystem.mergeListDirectory(shards, directory);
+    }
+
+    @Override
+    public int read(String fileName, long offset, ByteBuffer target) {
+        return shard(fileName).read(fileName, offset, target);
+    }
+
+    @Override
+    public void write(String fileName, long offset, ByteBuffer source) {
+        throw new ReadOnlyFileSystemException("write", fileName);
+    }
+
+    @Override
+    public void append(String fileName, ByteBuffer source) {
+        throw new ReadOnlyFileSystemException("append", fileName);
+    }
+
+    @Override
+    public void truncate(String fileName, long size) {
+        throw new ReadOnlyFileSystemException("truncate", fileName);
+    }
+
+    /**
+     * Снимок того же момента, закрывается независимо от этого снимка
+     */
+    @Override
+    public SnapshottableFileSystem snapshot() {
+        FileSystemSnapshot[] snapshots = new FileSystemSnapshot[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            snapshots[i] = shards[i].snapshot();
+        }
+        return new ShardedSnapshot(snapshots);
+    }
+
+    /**
+     * Закрыть снимки всех сегментов
+     */
+    @Override
+    public void close() {
+        for (FileSystemSnapshot shard : shards) {
+            shard.close();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package onefilesystem;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.FileHeader;
+import onefilesystem.utils.Checksums;
+import onefilesystem.utils.FileHeaderCodec;
+import onefilesystem.utils.SuperblockCodec;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
+import static onefilesystem.utils.Constants.SHARED_READ_RETRY_MICROS;
+import static onefilesystem.utils.Constants.SHARED_READ_TIMEOUT_MILLIS;
+import static onefilesystem.utils.Constants.SUPERBLOCK_SIZE;
+
+/**
+ * Заголовки файловой системы, открытой только для чтения, пока в нее пишет другой процесс.
+ * <p>
+ * Заголовки перечитываются, когда меняется счетчик изменений в суперблоке (см. ChangeCounter). Перечитываются не все
+ * заголовки: область заголовков отображена в память, и разбираются только слоты, у которых изменилась контрольная
+ * сумма в конце слота. Заголовки в existingFiles не меняются, а заменяются новыми объектами, поэтому читать их можно
+ * без блокировок.
+ * <p>
+ * Слот, который не разобрался, считается недописанным, и перечитывание повторяется. Если слот дважды не разобрался при
+ * одном и том же счетчике с теми же байтами, он испорчен: такой слот пропускается, пока его байты не изменятся, иначе
+ * каждое перечитывание ждало бы его до таймаута.
+ * <p>
+ * Чтение контента проверяется как в seqlock: счетчик до чтения совпадает с заголовками, после чтения не изменился,
+ * и писатель не писал на место. Иначе заголовки перечитываются, а чтение повторяется.
+ * <p>
+ * Thread-safe
+ */
+@Slf4j
+class SharedHeaderView {
+
+    private final ChannelReadWriteService readWriteService;
+    private final HeaderTable existingFiles;
+    private final FileNameIndex fileNameIndex;
+    private final long timeoutNanos = SHARED_READ_TIMEOUT_MILLIS * 1_000_000;
+
+    /**
+     * Счетчик изменений, которому соответствуют заголовки в existingFiles
+     */
+    private volatile long changeCounter = -1;
+
+    /**
+     * Состояние слотов на момент последнего перечитывания, защищено монитором объекта
+     */
+    private ByteBuffer headers;
+    private FileHeader[] slots = new FileHeader[0];
+    private int[] slotChecksums = new int[0];
+    private int scannedSlots;
+
+    /**
+     * Контрольные суммы байт слотов, которые не разобрались при прошлом проходе, и счетчик этого прохода
+     */
+    private Map<Integer, Integer> tornSlots = new HashMap<>();
+    private long tornCounter = -1;
+
+    /**
+     * Контрольные суммы байт испорченных слотов: слот пропускается, пока они совпадают
+     */
+    private final Map<Integer, Integer> corruptedSlots = new HashMap<>();
+
+    /**
+     * @param readWriteService - сервис чтения файла файловой системы
+     * @param existingFiles    - заголовки живых файлов по имени, заполняются здесь
+     * @param fileNameIndex    - индекс имен, меняется вместе с existingFiles
+     */
+    SharedHeaderView(ChannelReadWriteService readWriteService, HeaderTable existingFiles,
+                     FileNameIndex fileNameIndex) {
+        this.readWriteService = readWriteService;
+        this.existingFiles = existingFiles;
+        this.fileNameIndex = fileNameIndex;
+    }
+
+    /**
+     * Прочитать заново заголовки, изменившиеся с прошлого вызова. Пока писатель пишет контент на место, ждет
+     *
+     * @return - счетчик изменений, которому соответствуют заголовки
+     */
+    long refresh() {
+        long counter = readWriteService.readChangeCounter();
+        if (counter == changeCounter) {
+            return counter;
+        }
+
+        synchronized (this) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            while (true) {
+                counter = readWriteService.readChangeCounter();
+                if (counter == changeCounter) {
+                    return counter;
+                }
+                if (ChangeCounter.isWriting(counter)) {
+                    await(deadline);
+                    continue;
+                }
+
+                int tornSlots = scan(counter);
+                if (readWriteService.readChangeCounter() != counter) {
+                    continue;
+                }
+                if (tornSlots > 0 && System.nanoTime() < deadline) {
+                    // заголовок еще пишется, счетчик увеличится после записи
+                    LockSupport.parkNanos(SHARED_READ_RETRY_MICROS * 1000);
+                    continue;
+                }
+                if (tornSlots > 0) {
+                    log.warn("Skip {} corrupted file headers", tornSlots);
+                }
+                changeCounter = counter;
+                return counter;
+            }
+        }
+    }
+
+    /**
+     * Прочитать контент по заголовкам из existingFiles так, чтобы писатель не менял его во время чтения
+     *
+     * @param read - чтение, которое можно повторить
+     * @return - результат чтения
+     */
+    <T> T read(Supplier<T> read) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            long counter = refresh();
+            try {
+                T result = read.get();
+                if (readWriteService.readChangeCounter() == counter) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // недописанный или уже чужой контент мог не разобраться или не сойтись с контрольной суммой
+                if (readWriteService.readChangeCounter() == counter) {
+                    throw e;
+                }
+            }
+            await(deadline);
+        }
+    }
+
+    private static void await(long deadline) {
+        if (System.nanoTime() > deadline) {
+            throw new OneFileSystemException("File system is being changed by the writer for too long");
+        }
+        LockSupport.parkNanos(SHARED_READ_RETRY_MICROS * 1000);
+    }
+
+    /**
+     * Разобрать слоты, контрольная сумма которых изменилась, и обновить existingFiles. Вызывается под монитором
+     *
+     * @param counter - счетчик изменений перед проходом
+     * @return - сколько слотов не разобралось: заголовок в них пишется или испорчен
+     */
+    private int scan(long counter) {
+        ByteBuffer superblockBuffer = ByteBuffer.allocate(SUPERBLOCK_SIZE);
+        readWriteService.readBuffer(superblockBuffer, 0);
+        int headerCount = (int) SuperblockCodec.decode(superblockBuffer).getHeaderCount();
+        long headersSize = (long) headerCount * FILE_HEADER_SIZE;
+        if (headers == null || headers.limit() < headersSize) {
+            headers = readWriteService.mapReadOnly(HEADERS_START_POSITION, headersSize);
+        }
+        if (slots.length < headerCount) {
+            slots = Arrays.copyOf(slots, headerCount);
+            slotChecksums = Arrays.copyOf(slotChecksums, headerCount);
+        }
+
+        Map<Integer, Integer> torn = new HashMap<>();
+        int slot = 0;
+        for (; slot < headerCount; slot++) {
+            int offset = slot * FILE_HEADER_SIZE;
+            if (offset + FILE_HEADER_SIZE > headers.limit()) {
+                // слот за концом файла еще не записан
+                break;
+            }
+            // у заголовков прежних версий контрольной суммы нет, в конце слота нули
+            int checksum = headers.getInt(offset + FILE_HEADER_SIZE - Integer.BYTES);
+            if (slot < scannedSlots && checksum == slotChecksums[slot] && (checksum != 0 || slots[slot] == null)) {
+                continue;
+            }
+
+            Integer corrupted = corruptedSlots.get(slot);
+            if (corrupted != null && corrupted == slotBytesChecksum(offset)) {
+                continue;
+            }
+
+            FileHeader fileHeader = null;
+            if (!FileHeaderCodec.isEmpty(headers, offset)) {
+                try {
+                    fileHeader = FileHeaderCodec.decode(headers, offset);
+                } catch (OneFileSystemException e) {
+                    int bytesChecksum = slotBytesChecksum(offset);
+                    if (counter == tornCounter && Integer.valueOf(bytesChecksum).equals(tornSlots.get(slot))) {
+                        log.warn("File header in slot {} is corrupted, skip it until it is rewritten", slot);
+                        corruptedSlots.put(slot, bytesChecksum);
+                    } else {
+                        torn.put(slot, bytesChecksum);
+                    }
+                    continue;
+                }
+            }
+            if (corrupted != null) {
+                corruptedSlots.remove(slot);
+            }
+            replace(slot, fileHeader == null || fileHeader.isDeleted() ? null : fileHeader);
+            slotChecksums[slot] = checksum;
+        }
+        scannedSlots = Math.max(scannedSlots, slot);
+        tornSlots = torn;
+        tornCounter = counter;
+        return torn.size();
+    }
+
+    /**
+     * @return - контрольная сумма всех байт слота, а не только записанная в его конце
+     */
+    private int slotBytesChecksum(int offset) {
+        return Checksums.crc32c(headers.duplicate().limit(offset + FILE_HEADER_SIZE).position(offset));
+    }
+
+    private void replace(int slot, FileHeader fileHeader) {
+        FileHeader previous = slots[slot];
+        if (previous != null && existingFiles.remove(previous)) {
+            fileNameIndex.remove(previous.getFileName());
+        }
+        if (fileHeader != null) {
+            existingFiles.put(fileHeader);
+            fileNameIndex.add(fileHeader.getFileName());
+        }
+        slots[slot] = fileHeader;
+    }
+}
@@ -0,0 +1,121 @@
+package onefilesystem;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import onefilesystem.allocation.ExtentAllocator;
+
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Открытые снимки и экстенты, которые ждут их закрытия.
+ * <p>
+ * Снимки нумеруются поколениями: открытие снимка увеличивает поколение. Заголовок файла запоминает поколение, в
+ * котором файл начал ссылаться на текущий экстент (FileHeader.extentGeneration). Экстент могут читать только снимки
+ * более поздних поколений, поэтому, пока такой снимок открыт, экстент нельзя менять на месте (см. {@link #isPinned}).
+ * <p>
+ * Освобожденный при открытых снимках экстент возвращается в ExtentAllocator, только когда закрыты все снимки, открытые
+ * до освобождения. Освобождения идут по возрастанию поколения, поэтому очередь разбирается с головы.
+ * <p>
+ * Не thread-safe, вызывается под metadataLock
+ */
+class SnapshotRegistry {
+
+    private final ExtentAllocator extentAllocator;
+    private long generation;
+
+    /**
+     * Поколение -> сколько снимков этого поколения открыто
+     */
+    private final NavigableMap<Long, Integer> openSnapshots = new TreeMap<>();
+    private final Deque<DeferredExtent> deferredExtents = new ArrayDeque<>();
+
+    SnapshotRegistry(ExtentAllocator extentAllocator) {
+        this.extentAllocator = extentAllocator;
+    }
+
+    /**
+     * @return - текущее поколение
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Открыть снимок нового поколения. Вызывается, когда заголовки не меняются
+     *
+     * @return - поколение снимка
+     */
+    long open() {
+        generation++;
+        openSnapshots.put(generation, 1);
+        return generation;
+    }
+
+    /**
+     * Открыть еще один снимок того же поколения, что и открытый снимок
+     */
+    void retain(long snapshotGeneration) {
+        checkState(openSnapshots.containsKey(snapshotGeneration), "Snapshot is closed: " + snapshotGeneration);
+        openSnapshots.merge(snapshotGeneration, 1, Integer::sum);
+    }
+
+    /**
+     * Закрыть снимок и освободить экстенты, которые больше не видит ни один снимок
+     */
+    void close(long snapshotGeneration) {
+        Integer count = openSnapshots.get(snapshotGeneration);
+        checkState(count != null, "Snapshot is closed: " + snapshotGeneration);
+        if (count == 1) {
+            openSnapshots.remove(snapshotGeneration);
+        } else {
+            openSnapshots.put(snapshotGeneration, count - 1);
+        }
+
+        long oldestSnapshot = openSnapshots.isEmpty() ? Long.MAX_VALUE : openSnapshots.firstKey();
+        while (!deferredExtents.isEmpty() && deferredExtents.peekFirst().generation < oldestSnapshot) {
+            DeferredExtent extent = deferredExtents.pollFirst();
+            extentAllocator.release(extent.position, extent.capacity);
+        }
+    }
+
+    /**
+     * @param extentGeneration - поколение, в котором файл начал ссылаться на экстент
+     * @return - экстент может читать открытый снимок, и менять его на месте нельзя
+     */
+    boolean isPinned(long extentGeneration) {
+        return !openSnapshots.isEmpty() && openSnapshots.lastKey() > extentGeneration;
+    }
+
+    /**
+     * Освободить экстент сразу, если снимков нет, иначе после закрытия снимков, открытых до этого момента
+     */
+    void release(long position, long capacity) {
+        if (capacity == 0) {
+            return;
+        }
+        if (openSnapshots.isEmpty()) {
+            extentAllocator.release(position, capacity);
+            return;
+        }
+        deferredExtents.addLast(new DeferredExtent(position, capacity, generation));
+    }
+
+    private static class DeferredExtent {
+        private final long position;
+        private final long capacity;
+
+        /**
+         * Поколение на момент освобождения: экстент видят снимки этого поколения и раньше
+         */
+        private final long generation;
+
+        private DeferredExtent(long position, long capacity, long generation) {
+            this.position = position;
+            this.capacity = capacity;
+            this.generation = generation;
+        }
+    }
+}
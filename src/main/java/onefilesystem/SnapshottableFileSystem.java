@@ -0,0 +1,16 @@
+package onefilesystem;
+
+/**
+ * Файловая система, с которой можно снять снимок. Снимки держат экстенты файловой системы в памяти процесса (см.
+ * SnapshotRegistry), поэтому их поддерживают только локальные файловые системы и сами снимки, а RemoteFileSystem нет
+ */
+public interface SnapshottableFileSystem extends FileSystem {
+
+    /**
+     * Снимок файловой системы на текущий момент: видит файлы и их контент такими, какими они были при снятии, и не
+     * видит последующих изменений. Снимок только для чтения, его нужно закрыть
+     *
+     * @return - снимок
+     */
+    SnapshottableFileSystem snapshot();
+}
@@ -0,0 +1,67 @@
+package onefilesystem;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Блокировки файлов, поделенные на полосы по хэшу имени файла.
+ * Файлы из одной полосы делят одну блокировку, файлы из разных полос не мешают друг другу
+ */
+class StripedLocks {
+
+    private final ReadWriteLock[] locks;
+
+    /**
+     * @param stripesCount - количество полос, степень двойки
+     */
+    StripedLocks(int stripesCount) {
+        checkState(stripesCount > 0 && Integer.bitCount(stripesCount) == 1,
+                "Lock stripes count must be a power of two: " + stripesCount);
+
+        locks = new ReadWriteLock[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * @param fileName - имя файла
+     * @return - блокировка полосы, в которую попадает файл
+     */
+    protected ReadWriteLock forFile(String fileName) {
+        int hash = fileName.hashCode();
+        return locks[(hash ^ hash >>> 16) & (locks.length - 1)];
+    }
+
+    /**
+     * Захватить блокировки чтения всех полос по порядку: ни один файл не меняется, пока они не отпущены
+     */
+    protected void readLockAll() {
+        for (ReadWriteLock lock : locks) {
+            lock.readLock().lock();
+        }
+    }
+
+    protected void readUnlockAll() {
+        for (ReadWriteLock lock : locks) {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Захватить блокировки записи всех полос по порядку: ни один файл не читается и не меняется, пока они не отпущены
+     */
+    protected void writeLockAll() {
+        for (ReadWriteLock lock : locks) {
+            lock.writeLock().lock();
+        }
+    }
+
+    protected void writeUnlockAll() {
+        for (ReadWriteLock lock : locks) {
+            lock.writeLock().unlock();
+        }
+    }
+}
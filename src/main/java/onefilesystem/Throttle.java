@@ -0,0 +1,55 @@
+package onefilesystem;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение скорости фонового ввода-вывода. Ожидание прерывается остановкой, а не прерыванием потока: прерывание
+ * посреди ввода-вывода закрыло бы FileChannel всей файловой системы
+ */
+class Throttle {
+
+    private final long bytesPerSecond;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * @param bytesPerSecond - сколько байт в секунду, 0 - без ограничения
+     */
+    Throttle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Подождать, если с начала прохода обработано больше, чем позволяет ограничение
+     *
+     * @param start - System.nanoTime() в начале прохода
+     * @param bytes - сколько байт обработано с начала прохода
+     */
+    void pace(long start, long bytes) {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+
+        long expectedNanos = (long) (bytes * 1e9 / bytesPerSecond);
+        long sleepNanos = expectedNanos - (System.nanoTime() - start);
+        if (sleepNanos <= 0) {
+            return;
+        }
+        try {
+            stopped.await(sleepNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Прервать текущее и все следующие ожидания
+     */
+    void stop() {
+        stopped.countDown();
+    }
+
+    boolean isStopped() {
+        return stopped.getCount() == 0;
+    }
+}
@@ -0,0 +1,22 @@
+package onefilesystem;
+
+/**
+ * Когда проверять контрольные суммы контента. Контрольные суммы заголовков проверяются при открытии всегда
+ */
+public enum Verification {
+    /**
+     * Не проверять. Запись участка внутрь контента и обрезка сбрасывают контрольную сумму файла, а не пересчитывают
+     */
+    OFF,
+
+    /**
+     * Проверять при каждом чтении контента целиком с диска (readContent, readContentView, чтение участка сжатого
+     * файла). Участок несжатого файла читается без проверки
+     */
+    ON_READ,
+
+    /**
+     * Проверять в фоне: Scrubber периодически читает контент всех файлов подряд с ограничением скорости
+     */
+    BACKGROUND
+}
@@ -0,0 +1,201 @@
+package onefilesystem.allocation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Value;
+import onefilesystem.compression.Compression;
+
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Индекс контента для дедупликации: ключ контента -> экстент, и число файлов, ссылающихся на каждый экстент.
+ * <p>
+ * Как и у ExtentAllocator, на диске индекс не хранится: источник правды - заголовки файлов, несколько заголовков с
+ * одной позицией контента делят экстент. При старте индекс восстанавливается из них, см. {@link #restore}.
+ * <p>
+ * Индекс знает только экстенты, которые можно разделить или уже разделены. Экстент, которого нет в индексе,
+ * принадлежит одному файлу. Перед изменением контента на месте файл забирает экстент из индекса (см. {@link #forget}),
+ * а разделенный экстент сначала копирует.
+ * <p>
+ * Не thread-safe
+ */
+public class ContentIndex {
+
+    /**
+     * Экстенты по ключу контента. На ключ - один экстент, даже если одинаковый контент лежит в нескольких
+     */
+    private final Map<ContentKey, SharedExtent> extentsByKey = new HashMap<>();
+
+    /**
+     * Экстенты по позиции
+     */
+    private final Map<Long, SharedExtent> extentsByPosition = new HashMap<>();
+
+    /**
+     * Сколько байт на диске сэкономлено: размер контента каждой ссылки на экстент, кроме первой
+     */
+    @Getter
+    private long savedBytes;
+
+    /**
+     * Добавить ссылку на экстент из заголовка, прочитанного при старте
+     *
+     * @param key      - ключ контента или null, если он неизвестен
+     * @param position - позиция экстента
+     * @param capacity - размер экстента
+     */
+    public void restore(ContentKey key, long position, long capacity) {
+        SharedExtent extent = extentsByPosition.get(position);
+        if (extent == null) {
+            add(key, position, capacity);
+        } else {
+            reference(extent);
+        }
+    }
+
+    /**
+     * Добавить экстент одного файла, чтобы его могли разделить файлы с таким же контентом
+     *
+     * @param key      - ключ контента или null, если он неизвестен
+     * @param position - позиция экстента
+     * @param capacity - размер экстента
+     */
+    public void add(ContentKey key, long position, long capacity) {
+        checkState(!extentsByPosition.containsKey(position), "Extent is already indexed: " + position);
+
+        SharedExtent extent = new SharedExtent(key, position, capacity);
+        extentsByPosition.put(position, extent);
+        if (key != null) {
+            extentsByKey.putIfAbsent(key, extent);
+        }
+    }
+
+    /**
+     * Найти экстент с контентом и добавить на него ссылку. Совпадение ключа не гарантирует совпадение контента,
+     * поэтому контент нужно сравнить и, если он не совпал, вернуть ссылку через {@link #release(long)}
+     *
+     * @param key - ключ контента
+     * @return - экстент или null, если экстента с таким ключом нет
+     */
+    public SharedExtent acquire(ContentKey key) {
+        SharedExtent extent = extentsByKey.get(key);
+        if (extent != null) {
+            reference(extent);
+        }
+        return extent;
+    }
+
+    /**
+     * Убрать ссылку на экстент
+     *
+     * @param position - позиция экстента
+     * @return - больше никто не ссылается на экстент и его нужно освободить
+     */
+    public boolean release(long position) {
+        SharedExtent extent = extentsByPosition.get(position);
+        if (extent == null) {
+            return true;
+        }
+
+        extent.references--;
+        if (extent.references > 0) {
+            savedBytes -= extent.storedSize();
+            return false;
+        }
+        remove(extent);
+        return true;
+    }
+
+    /**
+     * @param position - позиция экстента
+     * @return - есть ли экстент в индексе
+     */
+    public boolean isIndexed(long position) {
+        return extentsByPosition.containsKey(position);
+    }
+
+    /**
+     * @param position - позиция экстента
+     * @return - ссылается ли на экстент больше одного файла
+     */
+    public boolean isShared(long position) {
+        SharedExtent extent = extentsByPosition.get(position);
+        return extent != null && extent.references > 1;
+    }
+
+    /**
+     * Забрать экстент одного файла из индекса перед изменением контента на месте
+     *
+     * @param position - позиция экстента
+     */
+    public void forget(long position) {
+        SharedExtent extent = extentsByPosition.get(position);
+        if (extent == null) {
+            return;
+        }
+        checkState(extent.references == 1, "Cannot forget shared extent: " + position);
+        remove(extent);
+    }
+
+    /**
+     * Экстент одного файла перенесен компактором
+     *
+     * @param position    - прежняя позиция
+     * @param newPosition - новая позиция
+     */
+    public void move(long position, long newPosition) {
+        SharedExtent extent = extentsByPosition.get(position);
+        if (extent == null) {
+            return;
+        }
+        checkState(extent.references == 1, "Cannot move shared extent: " + position);
+        remove(extent);
+        add(extent.key, newPosition, extent.capacity);
+    }
+
+    private void reference(SharedExtent extent) {
+        extent.references++;
+        savedBytes += extent.storedSize();
+    }
+
+    private void remove(SharedExtent extent) {
+        extentsByPosition.remove(extent.position);
+        if (extent.key != null) {
+            extentsByKey.remove(extent.key, extent);
+        }
+    }
+
+    /**
+     * Ключ контента: одинаковый контент с одинаковым сжатием дает одинаковый ключ
+     */
+    @Value
+    public static class ContentKey {
+        int storedSize;
+        int realSize;
+        Compression compression;
+        int checksum;
+    }
+
+    /**
+     * Экстент в индексе
+     */
+    @Getter
+    public static class SharedExtent {
+        private final ContentKey key;
+        private final long position;
+        private final long capacity;
+        private int references = 1;
+
+        private SharedExtent(ContentKey key, long position, long capacity) {
+            this.key = key;
+            this.position = position;
+            this.capacity = capacity;
+        }
+
+        private long storedSize() {
+            return key == null ? 0 : key.getStoredSize();
+        }
+    }
+}
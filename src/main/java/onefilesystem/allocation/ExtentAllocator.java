@@ -0,0 +1,231 @@
+package onefilesystem.allocation;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static onefilesystem.utils.Constants.ALLOCATION_UNIT;
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Распределитель места под контент файлов.
+ * <p>
+ * Хранит карту свободных экстентов (участков контентной области) и выдает каждому файлу ровно столько места, сколько
+ * ему нужно (с округлением до ALLOCATION_UNIT). Свободный экстент подбирается по принципу best-fit, если подходящего
+ * нет, то место берется с конца занятой области (highWaterMark).
+ * <p>
+ * Сама карта на диске не хранится: источник правды - экстенты, записанные в заголовках файлов. При старте карта
+ * восстанавливается из них, см. {@link #markUsed(long, long)}.
+ * <p>
+ * Не thread-safe
+ */
+public class ExtentAllocator {
+
+    private final long startPosition;
+    private long highWaterMark;
+
+    /**
+     * Свободные экстенты: позиция -> размер. Нужна для слияния соседних экстентов при освобождении
+     */
+    private final NavigableMap<Long, Long> freeByPosition = new TreeMap<>();
+
+    /**
+     * Свободные экстенты: размер -> позиции. Нужна для поиска best-fit
+     */
+    private final NavigableMap<Long, NavigableSet<Long>> freeBySize = new TreeMap<>();
+
+    /**
+     * @param startPosition - позиция в файле, с которой начинается контентная область
+     */
+    public ExtentAllocator(long startPosition) {
+        this.startPosition = startPosition;
+        this.highWaterMark = startPosition;
+    }
+
+    /**
+     * Округлить размер вверх до ALLOCATION_UNIT
+     */
+    public static long roundUp(long size) {
+        return (size + ALLOCATION_UNIT - 1) / ALLOCATION_UNIT * ALLOCATION_UNIT;
+    }
+
+    /**
+     * Пометить экстент как занятый. Используется при восстановлении карты на старте.
+     * Все, что находится между startPosition и highWaterMark и не помечено занятым, считается свободным.
+     *
+     * @param position - позиция экстента
+     * @param length   - размер экстента
+     */
+    public void markUsed(long position, long length) {
+        if (length == 0) {
+            return;
+        }
+        checkState(position >= startPosition, "Extent is out of content area: " + position);
+
+        long end = position + length;
+        if (position >= highWaterMark) {
+            addFree(highWaterMark, position - highWaterMark);
+            highWaterMark = end;
+            return;
+        }
+
+        Map.Entry<Long, Long> free = freeByPosition.floorEntry(position);
+        checkState(free != null && free.getKey() + free.getValue() >= end, "Extent is already used: " + position);
+
+        removeFree(free.getKey(), free.getValue());
+        addFree(free.getKey(), position - free.getKey());
+        addFree(end, free.getKey() + free.getValue() - end);
+    }
+
+    /**
+     * Выделить экстент
+     *
+     * @param size - требуемый размер
+     * @return - позиция выделенного экстента размером roundUp(size)
+     */
+    public long allocate(long size) {
+        long length = roundUp(size);
+        checkState(length > 0, "Cannot allocate empty extent");
+
+        Map.Entry<Long, NavigableSet<Long>> bestFit = freeBySize.ceilingEntry(length);
+        if (bestFit == null) {
+            long position = highWaterMark;
+            highWaterMark += length;
+            return position;
+        }
+
+        long freeLength = bestFit.getKey();
+        long position = bestFit.getValue().first();
+        removeFree(position, freeLength);
+        addFree(position + length, freeLength - length);
+        return position;
+    }
+
+    /**
+     * Выделить экстент из свободного места, целиком лежащий до limit. Используется компактором, чтобы переносить
+     * контент только вниз. Подбирается best-fit, среди свободных экстентов одного размера - самый нижний
+     *
+     * @param size  - требуемый размер
+     * @param limit - позиция, до которой должен закончиться экстент
+     * @return - позиция выделенного экстента размером roundUp(size) или -1, если подходящего свободного места нет
+     */
+    public long allocateBelow(long size, long limit) {
+        long length = roundUp(size);
+        checkState(length > 0, "Cannot allocate empty extent");
+
+        for (Map.Entry<Long, NavigableSet<Long>> free : freeBySize.tailMap(length, true).entrySet()) {
+            long position = free.getValue().first();
+            if (position + length <= limit) {
+                long freeLength = free.getKey();
+                removeFree(position, freeLength);
+                addFree(position + length, freeLength - length);
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Попробовать увеличить экстент на месте, не перемещая его
+     *
+     * @param position  - позиция экстента
+     * @param length    - текущий размер экстента
+     * @param newLength - новый размер (кратный ALLOCATION_UNIT)
+     * @return - удалось ли увеличить экстент
+     */
+    public boolean tryExtend(long position, long length, long newLength) {
+        long end = position + length;
+        long required = newLength - length;
+
+        if (end == highWaterMark) {
+            highWaterMark += required;
+            return true;
+        }
+
+        Long nextFreeLength = freeByPosition.get(end);
+        if (nextFreeLength == null) {
+            return false;
+        }
+
+        if (nextFreeLength >= required) {
+            removeFree(end, nextFreeLength);
+            addFree(end + required, nextFreeLength - required);
+            return true;
+        }
+
+        if (end + nextFreeLength == highWaterMark) {
+            removeFree(end, nextFreeLength);
+            highWaterMark += required - nextFreeLength;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Освободить экстент. Соседние свободные экстенты сливаются, свободное место в конце области отдается обратно
+     * (highWaterMark уменьшается)
+     *
+     * @param position - позиция экстента
+     * @param length   - размер экстента
+     */
+    public void release(long position, long length) {
+        if (length == 0) {
+            return;
+        }
+
+        long start = position;
+        long end = position + length;
+
+        Map.Entry<Long, Long> previous = freeByPosition.lowerEntry(position);
+        if (previous != null && previous.getKey() + previous.getValue() == position) {
+            removeFree(previous.getKey(), previous.getValue());
+            start = previous.getKey();
+        }
+
+        Long nextLength = freeByPosition.get(end);
+        if (nextLength != null) {
+            removeFree(end, nextLength);
+            end += nextLength;
+        }
+
+        if (end == highWaterMark) {
+            highWaterMark = start;
+        } else {
+            addFree(start, end - start);
+        }
+    }
+
+    /**
+     * @return - позиция, за которой в контентной области ничего не выделено
+     */
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return - суммарный размер свободных экстентов до highWaterMark
+     */
+    public long getFreeBytes() {
+        return freeByPosition.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private void addFree(long position, long length) {
+        if (length == 0) {
+            return;
+        }
+        freeByPosition.put(position, length);
+        freeBySize.computeIfAbsent(length, k -> new TreeSet<>()).add(position);
+    }
+
+    private void removeFree(long position, long length) {
+        freeByPosition.remove(position);
+        NavigableSet<Long> positions = freeBySize.get(length);
+        positions.remove(position);
+        if (positions.isEmpty()) {
+            freeBySize.remove(length);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package onefilesystem.allocation;
+
+import java.util.Arrays;
+
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Распределитель слотов заголовков.
+ * <p>
+ * Освобожденные слоты хранятся в стеке, поэтому и выделение, и освобождение стоят O(1). Если свободных слотов нет,
+ * выделяется следующий никогда не использованный слот. Как и карта свободных экстентов, стек на диске не хранится:
+ * он восстанавливается при старте по удаленным заголовкам.
+ * <p>
+ * Не thread-safe
+ */
+public class SlotAllocator {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeSlotsCount;
+
+    /**
+     * Сколько слотов когда-либо использовалось
+     */
+    private long slotsCount;
+
+    /**
+     * @param slotsCount - сколько слотов уже использовалось
+     */
+    public SlotAllocator(long slotsCount) {
+        this.slotsCount = slotsCount;
+    }
+
+    /**
+     * Взять освобожденный слот
+     *
+     * @return - номер слота или -1, если свободных слотов нет
+     */
+    public long allocateFree() {
+        if (freeSlotsCount == 0) {
+            return -1;
+        }
+        return freeSlots[--freeSlotsCount];
+    }
+
+    /**
+     * Взять следующий никогда не использованный слот
+     */
+    public long allocateNew() {
+        return slotsCount++;
+    }
+
+    /**
+     * Освободить слот
+     */
+    public void release(long slot) {
+        checkState(slot >= 0 && slot < slotsCount, "Slot was never allocated: " + slot);
+
+        if (freeSlotsCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeSlotsCount++] = (int) slot;
+    }
+
+    public long getSlotsCount() {
+        return slotsCount;
+    }
+
+    public int getFreeSlotsCount() {
+        return freeSlotsCount;
+    }
+}
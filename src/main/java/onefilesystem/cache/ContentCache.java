@@ -0,0 +1,147 @@
+package onefilesystem.cache;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import onefilesystem.model.CacheStatistics;
+
+/**
+ * Кэш контента файлов с ограничением по суммарному размеру.
+ * <p>
+ * Ключ - имя файла и версия контента: версия меняется при каждом изменении файла, поэтому устаревший контент не
+ * отдается, даже если его забыли инвалидировать. Контент хранится в direct буферах вне heap, наружу отдаются срезы
+ * только для чтения, так что большой кэш не увеличивает паузы GC.
+ * <p>
+ * Thread-safe
+ */
+public class ContentCache {
+
+    private final long maxBytes;
+    private final EvictionPolicy evictionPolicy;
+    private final Lock lock = new ReentrantLock();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long usedBytes;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long rejectionCount;
+
+    /**
+     * @param maxBytes       - сколько байт контента можно держать в кэше
+     * @param evictionPolicy - политика вытеснения
+     */
+    public ContentCache(long maxBytes, EvictionPolicy evictionPolicy) {
+        this.maxBytes = maxBytes;
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * @param fileName - имя файла
+     * @param version  - версия контента
+     * @return - контент только для чтения или null, если в кэше нет этой версии
+     */
+    public ByteBuffer get(String fileName, long version) {
+        lock.lock();
+        try {
+            evictionPolicy.recordAccess(fileName);
+
+            Entry entry = entries.get(fileName);
+            if (entry == null || entry.version != version) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            return entry.content.duplicate();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Положить контент в кэш, если политика вытеснения согласна. Контент копируется
+     *
+     * @param fileName - имя файла
+     * @param version  - версия контента
+     * @param content  - контент от position до limit, позиция не меняется
+     */
+    public void put(String fileName, long version, ByteBuffer content) {
+        int size = content.remaining();
+        if (size > maxBytes) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            remove(fileName);
+            while (usedBytes + size > maxBytes) {
+                String victim = evictionPolicy.victim();
+                if (!evictionPolicy.admit(fileName, victim)) {
+                    rejectionCount++;
+                    return;
+                }
+                remove(victim);
+                evictionCount++;
+            }
+
+            ByteBuffer copy = ByteBuffer.allocateDirect(size);
+            copy.put(content.duplicate()).flip();
+            entries.put(fileName, new Entry(version, copy.asReadOnlyBuffer()));
+            usedBytes += size;
+            evictionPolicy.onInsert(fileName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Убрать файл из кэша. Вызывается при изменении и удалении файла
+     */
+    public void invalidate(String fileName) {
+        lock.lock();
+        try {
+            remove(fileName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        lock.lock();
+        try {
+            return CacheStatistics.builder()
+                    .hitCount(hitCount)
+                    .missCount(missCount)
+                    .evictionCount(evictionCount)
+                    .rejectionCount(rejectionCount)
+                    .entriesCount(entries.size())
+                    .usedBytes(usedBytes)
+                    .maxBytes(maxBytes)
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(String fileName) {
+        Entry entry = entries.remove(fileName);
+        if (entry != null) {
+            usedBytes -= entry.content.capacity();
+            evictionPolicy.onRemove(fileName);
+        }
+    }
+
+    private static class Entry {
+        private final long version;
+        private final ByteBuffer content;
+
+        private Entry(long version, ByteBuffer content) {
+            this.version = version;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package onefilesystem.cache;
+
+/**
+ * Политика вытеснения кэша контента. Решает, какой файл вытеснить и стоит ли вообще кэшировать новый файл.
+ * <p>
+ * Вызывается под блокировкой кэша, thread-safe быть не обязана
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Обращение к файлу, и попадание, и промах
+     */
+    void recordAccess(String fileName);
+
+    /**
+     * Файл добавлен в кэш
+     */
+    void onInsert(String fileName);
+
+    /**
+     * Файл удален из кэша: вытеснен или инвалидирован
+     */
+    void onRemove(String fileName);
+
+    /**
+     * @return - кандидат на вытеснение, кэш не пуст
+     */
+    String victim();
+
+    /**
+     * @param candidate - файл, который хотим добавить
+     * @param victim    - файл, который для этого придется вытеснить
+     * @return - стоит ли вытеснять victim ради candidate
+     */
+    boolean admit(String candidate, String victim);
+}
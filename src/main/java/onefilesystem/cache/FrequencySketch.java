@@ -0,0 +1,79 @@
+package onefilesystem.cache;
+
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Приблизительные частоты обращений (count-min sketch, 4 строки счетчиков).
+ * Когда число обращений достигает 10 * width, все счетчики делятся пополам, чтобы старая популярность угасала.
+ * <p>
+ * Не thread-safe
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param width - счетчиков в строке, степень двойки
+     */
+    FrequencySketch(int width) {
+        checkState(width > 0 && Integer.bitCount(width) == 1, "Sketch width must be a power of two: " + width);
+
+        counters = new int[DEPTH][width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        int min = frequency(hash);
+        for (int i = 0; i < DEPTH; i++) {
+            // консервативное обновление: растут только минимальные счетчики
+            int index = index(hash, i);
+            if (counters[i][index] == min) {
+                counters[i][index]++;
+            }
+        }
+
+        if (++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(String key) {
+        return frequency(spread(key.hashCode()));
+    }
+
+    private int frequency(int hash) {
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, counters[i][index(hash, i)]);
+        }
+        return min;
+    }
+
+    private void reset() {
+        for (int[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+        additions = sampleSize / 2;
+    }
+
+    private int index(int hash, int row) {
+        int h = hash * SEEDS[row];
+        return (h ^ h >>> 16) & mask;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x45D9F3B;
+        return hash ^ hash >>> 16;
+    }
+}
@@ -0,0 +1,37 @@
+package onefilesystem.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Вытесняется файл, к которому дольше всего не обращались. Новый файл принимается всегда
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+
+    private final Map<String, Boolean> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public void recordAccess(String fileName) {
+        accessOrder.get(fileName);
+    }
+
+    @Override
+    public void onInsert(String fileName) {
+        accessOrder.put(fileName, Boolean.TRUE);
+    }
+
+    @Override
+    public void onRemove(String fileName) {
+        accessOrder.remove(fileName);
+    }
+
+    @Override
+    public String victim() {
+        return accessOrder.keySet().iterator().next();
+    }
+
+    @Override
+    public boolean admit(String candidate, String victim) {
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package onefilesystem.cache;
+
+/**
+ * TinyLFU: порядок вытеснения LRU, но новый файл вытесняет жертву, только если обращались к нему чаще.
+ * Частоты считаются по всем обращениям, в том числе к файлам не из кэша, поэтому однократные чтения не вымывают
+ * популярные файлы. В отличие от W-TinyLFU нет отдельного окна для новых файлов.
+ */
+public class TinyLfuEvictionPolicy implements EvictionPolicy {
+
+    private static final int DEFAULT_SKETCH_WIDTH = 1 << 16;
+
+    private final LruEvictionPolicy lru = new LruEvictionPolicy();
+    private final FrequencySketch sketch;
+
+    public TinyLfuEvictionPolicy() {
+        this(DEFAULT_SKETCH_WIDTH);
+    }
+
+    /**
+     * @param sketchWidth - счетчиков частоты в строке, степень двойки. Порядка числа популярных файлов
+     */
+    public TinyLfuEvictionPolicy(int sketchWidth) {
+        sketch = new FrequencySketch(sketchWidth);
+    }
+
+    @Override
+    public void recordAccess(String fileName) {
+        sketch.increment(fileName);
+        lru.recordAccess(fileName);
+    }
+
+    @Override
+    public void onInsert(String fileName) {
+        lru.onInsert(fileName);
+    }
+
+    @Override
+    public void onRemove(String fileName) {
+        lru.onRemove(fileName);
+    }
+
+    @Override
+    public String victim() {
+        return lru.victim();
+    }
+
+    @Override
+    public boolean admit(String candidate, String victim) {
+        return sketch.frequency(candidate) > sketch.frequency(victim);
+    }
+}
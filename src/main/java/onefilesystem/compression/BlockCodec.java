@@ -0,0 +1,36 @@
+package onefilesystem.compression;
+
+/**
+ * Алгоритм сжатия одного блока контента.
+ * <p>
+ * Реализации thread-safe: состояние, если оно нужно, хранится в ThreadLocal
+ */
+public interface BlockCodec {
+
+    /**
+     * Сжать блок
+     *
+     * @param source         - массив с блоком
+     * @param sourceOffset   - начало блока
+     * @param sourceLength   - размер блока
+     * @param target         - массив для сжатых байт
+     * @param targetOffset   - куда писать сжатые байты
+     * @param targetCapacity - сколько байт можно записать
+     * @return - размер сжатого блока или -1, если он не поместился в targetCapacity
+     */
+    int compress(byte[] source, int sourceOffset, int sourceLength, byte[] target, int targetOffset,
+                 int targetCapacity);
+
+    /**
+     * Распаковать блок. Бросает OneFileSystemException, если сжатые байты испорчены
+     *
+     * @param source       - массив со сжатым блоком
+     * @param sourceOffset - начало сжатого блока
+     * @param sourceLength - размер сжатого блока
+     * @param target       - массив для блока
+     * @param targetOffset - куда писать блок
+     * @param targetLength - размер блока до сжатия
+     */
+    void decompress(byte[] source, int sourceOffset, int sourceLength, byte[] target, int targetOffset,
+                    int targetLength);
+}
@@ -0,0 +1,55 @@
+package onefilesystem.compression;
+
+import lombok.Getter;
+import onefilesystem.exception.OneFileSystemException;
+
+/**
+ * Сжатие контента файла. Записывается в заголовок файла, поэтому файлы с разным сжатием читаются независимо от
+ * настроек файловой системы
+ */
+public enum Compression {
+
+    /**
+     * Контент хранится как есть
+     */
+    NONE(0, null),
+
+    /**
+     * java.util.zip.Deflater: сжимает лучше, но медленнее
+     */
+    DEFLATE(1, new DeflateBlockCodec()),
+
+    /**
+     * Быстрое LZ77-сжатие (см. LzBlockCodec): сжимает хуже DEFLATE, но почти не тратит процессор
+     */
+    LZ(2, new LzBlockCodec());
+
+    /**
+     * Идентификатор в заголовке файла
+     */
+    @Getter
+    private final int id;
+    private final BlockCodec codec;
+
+    Compression(int id, BlockCodec codec) {
+        this.id = id;
+        this.codec = codec;
+    }
+
+    BlockCodec codec() {
+        return codec;
+    }
+
+    /**
+     * @param id - идентификатор из заголовка файла
+     * @return - сжатие
+     */
+    public static Compression byId(int id) {
+        for (Compression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        throw new OneFileSystemException("Unknown compression " + id);
+    }
+}
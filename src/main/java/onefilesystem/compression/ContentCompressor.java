@@ -0,0 +1,180 @@
+package onefilesystem.compression;
+
+import java.util.stream.IntStream;
+
+import onefilesystem.exception.OneFileSystemException;
+
+import static onefilesystem.utils.Constants.COMPRESSION_BLOCK_SIZE;
+import static onefilesystem.utils.Constants.COMPRESSION_BUFFER_SIZE;
+import static onefilesystem.utils.Constants.INT_SIZE;
+
+/**
+ * Сжатие контента файла блоками по COMPRESSION_BLOCK_SIZE байт. Формат сжатого контента:
+ * <pre>
+ * int[]  размер каждого сжатого блока, отрицательный - блок не сжался и лежит как есть
+ * byte[] блоки подряд
+ * </pre>
+ * Число блоков следует из размера контента в заголовке. Блоки сжимаются и распаковываются независимо, поэтому у
+ * большого контента параллельно. Если контент в сумме не сжался, то он хранится как есть (Compression.NONE).
+ * <p>
+ * Сжатые байты и распакованный для чтения участка контент кладутся в буферы потока, если помещаются в
+ * COMPRESSION_BUFFER_SIZE, так что на каждую операцию аллоцируется только возвращаемый контент
+ */
+public class ContentCompressor {
+    private ContentCompressor() {
+    }
+
+    private static final ThreadLocal<byte[]> STORED_BUFFERS = ThreadLocal.withInitial(() -> new byte[0]);
+    private static final ThreadLocal<byte[]> CONTENT_BUFFERS = ThreadLocal.withInitial(() -> new byte[0]);
+
+    /**
+     * Сжать контент. Результат может лежать в буфере потока и годен до следующего вызова в этом потоке
+     *
+     * @param content     - контент
+     * @param compression - сжатие
+     * @return - сжатый контент или исходный с Compression.NONE, если он не сжимается
+     */
+    public static EncodedContent compress(byte[] content, Compression compression) {
+        int blocksCount = blocksCount(content.length);
+        int tableSize = blocksCount * INT_SIZE;
+        if (compression == Compression.NONE || tableSize >= content.length) {
+            return EncodedContent.raw(content);
+        }
+
+        BlockCodec codec = compression.codec();
+        if (blocksCount == 1) {
+            byte[] stored = storedBuffer(content.length);
+            int length = codec.compress(content, 0, content.length, stored, tableSize,
+                    content.length - tableSize - 1);
+            if (length < 0) {
+                return EncodedContent.raw(content);
+            }
+            putInt(stored, 0, length);
+            return EncodedContent.of(compression, stored, tableSize + length);
+        }
+
+        byte[][] blocks = new byte[blocksCount][];
+        int[] lengths = new int[blocksCount];
+        IntStream.range(0, blocksCount).parallel().forEach(i -> {
+            int from = i * COMPRESSION_BLOCK_SIZE;
+            int blockSize = Math.min(COMPRESSION_BLOCK_SIZE, content.length - from);
+            byte[] block = new byte[blockSize - 1];
+            int length = codec.compress(content, from, blockSize, block, 0, block.length);
+            blocks[i] = length < 0 ? null : block;
+            lengths[i] = length < 0 ? -blockSize : length;
+        });
+
+        long storedLength = tableSize;
+        for (int length : lengths) {
+            storedLength += Math.abs(length);
+        }
+        if (storedLength >= content.length) {
+            return EncodedContent.raw(content);
+        }
+
+        byte[] stored = storedBuffer((int) storedLength);
+        int position = tableSize;
+        for (int i = 0; i < blocksCount; i++) {
+            putInt(stored, i * INT_SIZE, lengths[i]);
+            if (blocks[i] == null) {
+                System.arraycopy(content, i * COMPRESSION_BLOCK_SIZE, stored, position, -lengths[i]);
+            } else {
+                System.arraycopy(blocks[i], 0, stored, position, lengths[i]);
+            }
+            position += Math.abs(lengths[i]);
+        }
+        return EncodedContent.of(compression, stored, position);
+    }
+
+    /**
+     * Распаковать контент
+     *
+     * @param compression  - сжатие
+     * @param stored       - сжатый контент
+     * @param storedLength - размер сжатого контента
+     * @param target       - массив для контента
+     * @param contentSize  - размер контента
+     */
+    public static void decompress(Compression compression, byte[] stored, int storedLength, byte[] target,
+                                  int contentSize) {
+        int blocksCount = blocksCount(contentSize);
+        int[] offsets = new int[blocksCount + 1];
+        offsets[0] = blocksCount * INT_SIZE;
+        checkCorrupted(offsets[0] <= storedLength);
+        for (int i = 0; i < blocksCount; i++) {
+            int length = Math.abs(getInt(stored, i * INT_SIZE));
+            checkCorrupted(length >= 0 && length <= storedLength - offsets[i]);
+            offsets[i + 1] = offsets[i] + length;
+        }
+        checkCorrupted(offsets[blocksCount] == storedLength);
+
+        BlockCodec codec = compression.codec();
+        IntStream blocks = IntStream.range(0, blocksCount);
+        (blocksCount > 1 ? blocks.parallel() : blocks).forEach(i -> {
+            int from = i * COMPRESSION_BLOCK_SIZE;
+            int blockSize = Math.min(COMPRESSION_BLOCK_SIZE, contentSize - from);
+            int length = offsets[i + 1] - offsets[i];
+            if (getInt(stored, i * INT_SIZE) < 0) {
+                checkCorrupted(length == blockSize);
+                System.arraycopy(stored, offsets[i], target, from, blockSize);
+            } else {
+                codec.decompress(stored, offsets[i], length, target, from, blockSize);
+            }
+        });
+    }
+
+    /**
+     * Буфер потока под сжатый контент
+     *
+     * @param size - нужный размер
+     * @return - буфер потока или новый массив, если size больше COMPRESSION_BUFFER_SIZE
+     */
+    public static byte[] storedBuffer(int size) {
+        return buffer(STORED_BUFFERS, size);
+    }
+
+    /**
+     * Буфер потока под распакованный контент, независимый от storedBuffer
+     *
+     * @param size - нужный размер
+     * @return - буфер потока или новый массив, если size больше COMPRESSION_BUFFER_SIZE
+     */
+    public static byte[] contentBuffer(int size) {
+        return buffer(CONTENT_BUFFERS, size);
+    }
+
+    private static byte[] buffer(ThreadLocal<byte[]> buffers, int size) {
+        if (size > COMPRESSION_BUFFER_SIZE) {
+            return new byte[size];
+        }
+
+        byte[] buffer = buffers.get();
+        if (buffer.length < size) {
+            buffer = new byte[Math.max(size, Math.min(2 * buffer.length, COMPRESSION_BUFFER_SIZE))];
+            buffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static int blocksCount(int contentSize) {
+        return (contentSize + COMPRESSION_BLOCK_SIZE - 1) / COMPRESSION_BLOCK_SIZE;
+    }
+
+    private static void putInt(byte[] target, int position, int value) {
+        target[position] = (byte) (value >>> 24);
+        target[position + 1] = (byte) (value >>> 16);
+        target[position + 2] = (byte) (value >>> 8);
+        target[position + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] source, int position) {
+        return (source[position] & 0xFF) << 24 | (source[position + 1] & 0xFF) << 16
+                | (source[position + 2] & 0xFF) << 8 | source[position + 3] & 0xFF;
+    }
+
+    private static void checkCorrupted(boolean condition) {
+        if (!condition) {
+            throw new OneFileSystemException("Corrupted compressed content");
+        }
+    }
+}
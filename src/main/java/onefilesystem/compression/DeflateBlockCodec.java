@@ -0,0 +1,56 @@
+package onefilesystem.compression;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import onefilesystem.exception.OneFileSystemException;
+
+/**
+ * Сжатие java.util.zip.Deflater: лучше сжимает, но медленнее LZ.
+ * Deflater и Inflater держат нативную память, поэтому создаются по одному на поток и переиспользуются
+ */
+class DeflateBlockCodec implements BlockCodec {
+
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(Deflater::new);
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    @Override
+    public int compress(byte[] source, int sourceOffset, int sourceLength, byte[] target, int targetOffset,
+                        int targetCapacity) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(source, sourceOffset, sourceLength);
+        deflater.finish();
+
+        int length = 0;
+        while (!deflater.finished() && length < targetCapacity) {
+            length += deflater.deflate(target, targetOffset + length, targetCapacity - length);
+        }
+        return deflater.finished() ? length : -1;
+    }
+
+    @Override
+    public void decompress(byte[] source, int sourceOffset, int sourceLength, byte[] target, int targetOffset,
+                           int targetLength) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(source, sourceOffset, sourceLength);
+
+        try {
+            int length = 0;
+            while (!inflater.finished() && length < targetLength) {
+                int inflated = inflater.inflate(target, targetOffset + length, targetLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != targetLength || !inflater.finished()) {
+                throw new OneFileSystemException("Corrupted deflate block");
+            }
+        } catch (DataFormatException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package onefilesystem.compression;
+
+import lombok.Value;
+import onefilesystem.utils.Checksums;
+
+/**
+ * Контент в том виде, в котором он пишется на диск
+ */
+@Value
+public class EncodedContent {
+
+    /**
+     * Сжатие, NONE - если контент не сжимается
+     */
+    Compression compression;
+
+    /**
+     * Массив с байтами для записи, может быть длиннее length
+     */
+    byte[] bytes;
+    int length;
+
+    /**
+     * CRC32C записываемых байт
+     */
+    int checksum;
+
+    /**
+     * @param compression - сжатие
+     * @param bytes       - массив с байтами для записи
+     * @param length      - сколько байт записать
+     * @return - контент для записи с посчитанной контрольной суммой
+     */
+    public static EncodedContent of(Compression compression, byte[] bytes, int length) {
+        return new EncodedContent(compression, bytes, length, Checksums.crc32c(bytes, 0, length));
+    }
+
+    static EncodedContent raw(byte[] content) {
+        return of(Compression.NONE, content, content.length);
+    }
+}
@@ -0,0 +1,252 @@
+package onefilesystem.compression;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import onefilesystem.exception.OneFileSystemException;
+
+/**
+ * Быстрое LZ77-сжатие в формате блока LZ4: последовательности из токена, литералов и ссылки назад.
+ * <pre>
+ * byte   токен: старшие 4 бита - число литералов, младшие - длина совпадения минус MIN_MATCH
+ * byte[] продолжение числа литералов, если оно 15: байты по 255 и последний меньше 255
+ * byte[] литералы
+ * short  смещение совпадения назад, little-endian, от 1 до MAX_OFFSET
+ * byte[] продолжение длины совпадения, если она 15
+ * </pre>
+ * Последняя последовательность - только литералы, без смещения. Совпадения ищутся хеш-таблицей по 4 байтам без
+ * цепочек, на несжимаемых данных шаг поиска растет, поэтому они проходятся почти со скоростью копирования
+ */
+class LzBlockCodec implements BlockCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+
+    /**
+     * Последние байты блока всегда литералы, а совпадение не начинается ближе MATCH_FIND_LIMIT к концу: так
+     * совпадение не выходит за блок
+     */
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+
+    private static final int MAX_HASH_LOG = 14;
+    private static final int MIN_HASH_LOG = 8;
+    private static final int SKIP_STRENGTH = 6;
+    private static final int RUN_MASK = 15;
+
+    private static final VarHandle INT_VIEW = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final ThreadLocal<int[]> hashTables = ThreadLocal.withInitial(() -> new int[1 << MAX_HASH_LOG]);
+
+    @Override
+    public int compress(byte[] source, int sourceOffset, int sourceLength, byte[] target, int targetOffset,
+                        int targetCapacity) {
+        int sourceEnd = sourceOffset + sourceLength;
+        int targetEnd = targetOffset + targetCapacity;
+        int anchor = sourceOffset;
+        int op = targetOffset;
+
+        if (sourceLength >= MATCH_FIND_LIMIT + 1) {
+            // маленькому блоку - маленькая таблица, чтобы не чистить лишнее
+            int hashLog = Math.max(MIN_HASH_LOG,
+                    Math.min(MAX_HASH_LOG, 32 - Integer.numberOfLeadingZeros(sourceLength)));
+            int[] hashTable = hashTables.get();
+            Arrays.fill(hashTable, 0, 1 << hashLog, -1);
+
+            int matchFindEnd = sourceEnd - MATCH_FIND_LIMIT;
+            int matchEnd = sourceEnd - LAST_LITERALS;
+            int ip = sourceOffset;
+            while (ip < matchFindEnd) {
+                int sequence = readInt(source, ip);
+                int hash = hash(sequence, hashLog);
+                int ref = hashTable[hash];
+                hashTable[hash] = ip - sourceOffset;
+                if (ref < 0 || ip - sourceOffset - ref > MAX_OFFSET
+                        || readInt(source, sourceOffset + ref) != sequence) {
+                    ip += 1 + ((ip - anchor) >>> SKIP_STRENGTH);
+                    continue;
+                }
+
+                ref += sourceOffset;
+                while (ip > anchor && ref > sourceOffset && source[ip - 1] == source[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH + commonLength(source, ip + MIN_MATCH, ref + MIN_MATCH, matchEnd);
+
+                op = writeSequence(source, anchor, ip - anchor, ip - ref, matchLength, target, op, targetEnd);
+                if (op < 0) {
+                    return -1;
+                }
+                ip += matchLength;
+                anchor = ip;
+                if (ip - 2 < matchFindEnd) {
+                    hashTable[hash(readInt(source, ip - 2), hashLog)] = ip - 2 - sourceOffset;
+                }
+            }
+        }
+
+        op = writeSequence(source, anchor, sourceEnd - anchor, 0, 0, target, op, targetEnd);
+        return op < 0 ? -1 : op - targetOffset;
+    }
+
+    @Override
+    public void decompress(byte[] source, int sourceOffset, int sourceLength, byte[] target, int targetOffset,
+                           int targetLength) {
+        int ip = sourceOffset;
+        int sourceEnd = sourceOffset + sourceLength;
+        int op = targetOffset;
+        int targetEnd = targetOffset + targetLength;
+
+        while (ip < sourceEnd) {
+            int token = source[ip++] & 0xFF;
+
+            int literalsLength = token >>> 4;
+            if (literalsLength == RUN_MASK) {
+                int b;
+                do {
+                    checkCorrupted(ip < sourceEnd);
+                    b = source[ip++] & 0xFF;
+                    literalsLength += b;
+                } while (b == 255);
+            }
+            checkCorrupted(literalsLength <= sourceEnd - ip && literalsLength <= targetEnd - op);
+            System.arraycopy(source, ip, target, op, literalsLength);
+            ip += literalsLength;
+            op += literalsLength;
+            if (ip == sourceEnd) {
+                break;
+            }
+
+            checkCorrupted(ip + 2 <= sourceEnd);
+            int offset = source[ip] & 0xFF | (source[ip + 1] & 0xFF) << 8;
+            ip += 2;
+            checkCorrupted(offset > 0 && offset <= op - targetOffset);
+
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int b;
+                do {
+                    checkCorrupted(ip < sourceEnd);
+                    b = source[ip++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            checkCorrupted(matchLength <= targetEnd - op);
+
+            int ref = op - offset;
+            if (offset >= matchLength) {
+                System.arraycopy(target, ref, target, op, matchLength);
+                op += matchLength;
+            } else {
+                // совпадение перекрывает само себя: повтор последних offset байт
+                for (int i = 0; i < matchLength; i++) {
+                    target[op++] = target[ref++];
+                }
+            }
+        }
+        checkCorrupted(op == targetEnd);
+    }
+
+    /**
+     * Записать последовательность. matchLength = 0 - последняя последовательность, только литералы
+     *
+     * @return - позиция после последовательности или -1, если она не поместилась
+     */
+    private static int writeSequence(byte[] source, int literalsStart, int literalsLength, int offset,
+                                     int matchLength, byte[] target, int op, int targetEnd) {
+        int matchCode = matchLength == 0 ? 0 : matchLength - MIN_MATCH;
+        // токен, продолжения длин, литералы и смещение
+        int maxLength = 1 + literalsLength / 255 + 1 + literalsLength + 2 + matchCode / 255 + 1;
+        if (maxLength > targetEnd - op && exactLength(literalsLength, matchLength, matchCode) > targetEnd - op) {
+            return -1;
+        }
+
+        int tokenPosition = op++;
+        int token;
+        if (literalsLength >= RUN_MASK) {
+            token = RUN_MASK << 4;
+            op = writeLength(literalsLength - RUN_MASK, target, op);
+        } else {
+            token = literalsLength << 4;
+        }
+        System.arraycopy(source, literalsStart, target, op, literalsLength);
+        op += literalsLength;
+
+        if (matchLength > 0) {
+            target[op++] = (byte) offset;
+            target[op++] = (byte) (offset >>> 8);
+            if (matchCode >= RUN_MASK) {
+                token |= RUN_MASK;
+                op = writeLength(matchCode - RUN_MASK, target, op);
+            } else {
+                token |= matchCode;
+            }
+        }
+        target[tokenPosition] = (byte) token;
+        return op;
+    }
+
+    private static int exactLength(int literalsLength, int matchLength, int matchCode) {
+        int length = 1 + literalsLength;
+        if (literalsLength >= RUN_MASK) {
+            length += (literalsLength - RUN_MASK) / 255 + 1;
+        }
+        if (matchLength > 0) {
+            length += 2;
+            if (matchCode >= RUN_MASK) {
+                length += (matchCode - RUN_MASK) / 255 + 1;
+            }
+        }
+        return length;
+    }
+
+    private static int writeLength(int length, byte[] target, int op) {
+        while (length >= 255) {
+            target[op++] = (byte) 255;
+            length -= 255;
+        }
+        target[op++] = (byte) length;
+        return op;
+    }
+
+    /**
+     * Длина совпадения участков с позиций ip и ref, не дальше end. Сравнивается по 8 байт
+     */
+    private static int commonLength(byte[] source, int ip, int ref, int end) {
+        int start = ip;
+        while (ip <= end - Long.BYTES) {
+            long diff = (long) LONG_VIEW.get(source, ip) ^ (long) LONG_VIEW.get(source, ref);
+            if (diff != 0) {
+                return ip - start + (Long.numberOfTrailingZeros(diff) >>> 3);
+            }
+            ip += Long.BYTES;
+            ref += Long.BYTES;
+        }
+        while (ip < end && source[ip] == source[ref]) {
+            ip++;
+            ref++;
+        }
+        return ip - start;
+    }
+
+    private static int readInt(byte[] source, int position) {
+        return (int) INT_VIEW.get(source, position);
+    }
+
+    private static int hash(int sequence, int hashLog) {
+        return sequence * -1640531535 >>> 32 - hashLog;
+    }
+
+    private static void checkCorrupted(boolean condition) {
+        if (!condition) {
+            throw new OneFileSystemException("Corrupted LZ block");
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package onefilesystem.exception;
+
+public class CorruptedContentException extends OneFileSystemException {
+
+    private static final String ERROR_TEMPLATE = "Content of file %s is corrupted: checksum mismatch";
+
+    public CorruptedContentException(String fileName) {
+        super(String.format(ERROR_TEMPLATE, fileName));
+    }
+}
@@ -0,0 +1,10 @@
+package onefilesystem.exception;
+
+public class ReadOnlyFileSystemException extends OneFileSystemException {
+
+    private static final String ERROR_TEMPLATE = "File system is read-only. Cannot %s file %s";
+
+    public ReadOnlyFileSystemException(String operation, String fileName) {
+        super(String.format(ERROR_TEMPLATE, operation, fileName));
+    }
+}
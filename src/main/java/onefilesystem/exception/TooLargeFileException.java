@@ -4,7 +4,7 @@ public class TooLargeFileException extends OneFileSystemException {
 
     private static final String ERROR_TEMPLATE = "File %s is too large. Size is %s";
 
-    public TooLargeFileException(String fileName, int size) {
+    public TooLargeFileException(String fileName, long size) {
         super(String.format(ERROR_TEMPLATE, fileName, size));
     }
 }
@@ -0,0 +1,10 @@
+package onefilesystem.exception;
+
+public class TooLongFileNameException extends OneFileSystemException {
+
+    private static final String ERROR_TEMPLATE = "File name %s is too long. Length in UTF-8 is %s";
+
+    public TooLongFileNameException(String fileName, int length) {
+        super(String.format(ERROR_TEMPLATE, fileName, length));
+    }
+}
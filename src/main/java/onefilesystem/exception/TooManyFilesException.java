@@ -0,0 +1,10 @@
+package onefilesystem.exception;
+
+public class TooManyFilesException extends OneFileSystemException {
+
+    private static final String ERROR_TEMPLATE = "Cannot create file %s. File system already has %s files";
+
+    public TooManyFilesException(String fileName, int maxFilesCount) {
+        super(String.format(ERROR_TEMPLATE, fileName, maxFilesCount));
+    }
+}
@@ -0,0 +1,10 @@
+package onefilesystem.exception;
+
+public class TooManyInFlightOperationsException extends OneFileSystemException {
+
+    private static final String ERROR_TEMPLATE = "Cannot start operation on file %s. %s operations are already in flight";
+
+    public TooManyInFlightOperationsException(String fileName, int maxInFlight) {
+        super(String.format(ERROR_TEMPLATE, fileName, maxInFlight));
+    }
+}
@@ -0,0 +1,78 @@
+package onefilesystem.metrics;
+
+import java.util.List;
+
+/**
+ * Раздает события инструментирования нескольким получателям по порядку
+ */
+public class CompositeMetricsListener implements MetricsListener {
+
+    private final MetricsListener[] listeners;
+
+    public CompositeMetricsListener(List<MetricsListener> listeners) {
+        this.listeners = listeners.toArray(new MetricsListener[0]);
+    }
+
+    @Override
+    public void onOperation(Operation operation, long durationNanos, long bytes) {
+        for (MetricsListener listener : listeners) {
+            listener.onOperation(operation, durationNanos, bytes);
+        }
+    }
+
+    @Override
+    public void onLockWait(long waitNanos, boolean exclusive) {
+        for (MetricsListener listener : listeners) {
+            listener.onLockWait(waitNanos, exclusive);
+        }
+    }
+
+    @Override
+    public void onLockHold(long holdNanos, boolean exclusive) {
+        for (MetricsListener listener : listeners) {
+            listener.onLockHold(holdNanos, exclusive);
+        }
+    }
+
+    @Override
+    public void onBytesRead(long bytes) {
+        for (MetricsListener listener : listeners) {
+            listener.onBytesRead(bytes);
+        }
+    }
+
+    @Override
+    public void onBytesWritten(long bytes) {
+        for (MetricsListener listener : listeners) {
+            listener.onBytesWritten(bytes);
+        }
+    }
+
+    @Override
+    public void onHeadersEncoded(int count, long nanos) {
+        for (MetricsListener listener : listeners) {
+            listener.onHeadersEncoded(count, nanos);
+        }
+    }
+
+    @Override
+    public void onHeadersDecoded(int count, long nanos) {
+        for (MetricsListener listener : listeners) {
+            listener.onHeadersDecoded(count, nanos);
+        }
+    }
+
+    @Override
+    public void onChecksumMismatch(String fileName) {
+        for (MetricsListener listener : listeners) {
+            listener.onChecksumMismatch(fileName);
+        }
+    }
+
+    @Override
+    public void onDeduplication(boolean shared, long nanos) {
+        for (MetricsListener listener : listeners) {
+            listener.onDeduplication(shared, nanos);
+        }
+    }
+}
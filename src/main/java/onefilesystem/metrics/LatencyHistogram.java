@@ -0,0 +1,123 @@
+package onefilesystem.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import onefilesystem.model.LatencyStatistics;
+
+/**
+ * Гистограмма времени с логарифмически-линейными корзинами, как в HdrHistogram.
+ * <p>
+ * Значения до SUB_BUCKETS хранятся точно, дальше каждая степень двойки делится на SUB_BUCKETS корзин одинаковой
+ * ширины, то есть относительная погрешность не больше 1/SUB_BUCKETS. Значения больше 2^MAX_BIT наносекунд попадают в
+ * последнюю корзину.
+ * <p>
+ * Запись - инкремент счетчика корзины без блокировок и аллокаций. Счетчики поделены на полосы по потокам: замеры
+ * одной операции почти всегда попадают в одну корзину, и общий счетчик стал бы точкой конкуренции всех потоков.
+ * <p>
+ * Thread-safe. Снимок не атомарен: запись, идущая во время снимка, может попасть в одни поля и не попасть в другие
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 2^40 наносекунд - около 18 минут
+     */
+    private static final int MAX_BIT = 40;
+    private static final int BUCKETS_COUNT = SUB_BUCKETS + (MAX_BIT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private static final int STRIPES_COUNT = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES_COUNT];
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES_COUNT; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS_COUNT);
+        }
+    }
+
+    /**
+     * @param nanos - замер в наносекундах, отрицательный считается нулем
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES_COUNT - 1);
+        stripes[stripe].incrementAndGet(bucketIndex(value));
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * @return - количество замеров, перцентили и максимум
+     */
+    public LatencyStatistics getStatistics() {
+        long[] snapshot = new long[BUCKETS_COUNT];
+        long total = 0;
+        for (AtomicLongArray counts : stripes) {
+            for (int i = 0; i < BUCKETS_COUNT; i++) {
+                snapshot[i] += counts.get(i);
+            }
+        }
+        for (long count : snapshot) {
+            total += count;
+        }
+
+        return LatencyStatistics.builder()
+                .count(total)
+                .totalNanos(totalNanos.sum())
+                .p50Nanos(percentile(snapshot, total, 50))
+                .p90Nanos(percentile(snapshot, total, 90))
+                .p99Nanos(percentile(snapshot, total, 99))
+                .p999Nanos(percentile(snapshot, total, 99.9))
+                .maxNanos(maxNanos.get())
+                .build();
+    }
+
+    private long percentile(long[] snapshot, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    /**
+     * Номер корзины: для значения со старшим битом b корзина определяется битами b-1..b-SUB_BUCKET_BITS
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int highestBit = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_BIT);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int subBucket = (int) Math.min(value >>> shift, 2 * SUB_BUCKETS - 1) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return - наибольшее значение, попадающее в корзину
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,91 @@
+package onefilesystem.metrics;
+
+/**
+ * Получатель событий инструментирования файловой системы.
+ * <p>
+ * Методы вызываются в потоке операции, часто под блокировкой файла, поэтому должны быть быстрыми и thread-safe.
+ * Исключение из метода ломает операцию файловой системы
+ */
+public interface MetricsListener {
+
+    /**
+     * Ничего не делающий получатель, если метрики выключены
+     */
+    MetricsListener NOOP = new MetricsListener() {
+    };
+
+    /**
+     * Операция успешно завершилась
+     *
+     * @param operation     - операция
+     * @param durationNanos - время операции вместе с ожиданием блокировок
+     * @param bytes         - сколько байт контента прочитано или записано
+     */
+    default void onOperation(Operation operation, long durationNanos, long bytes) {
+    }
+
+    /**
+     * Блокировка файла захвачена
+     *
+     * @param waitNanos - сколько поток ждал блокировку
+     * @param exclusive - блокировка записи
+     */
+    default void onLockWait(long waitNanos, boolean exclusive) {
+    }
+
+    /**
+     * Блокировка файла отпущена
+     *
+     * @param holdNanos - сколько поток держал блокировку
+     * @param exclusive - блокировка записи
+     */
+    default void onLockHold(long holdNanos, boolean exclusive) {
+    }
+
+    /**
+     * Прочитано из файла файловой системы
+     */
+    default void onBytesRead(long bytes) {
+    }
+
+    /**
+     * Записано в файл файловой системы
+     */
+    default void onBytesWritten(long bytes) {
+    }
+
+    /**
+     * Заголовки закодированы перед записью
+     *
+     * @param count - сколько заголовков
+     * @param nanos - время кодирования
+     */
+    default void onHeadersEncoded(int count, long nanos) {
+    }
+
+    /**
+     * Заголовки разобраны при открытии файловой системы
+     *
+     * @param count - сколько заголовков
+     * @param nanos - время разбора
+     */
+    default void onHeadersDecoded(int count, long nanos) {
+    }
+
+    /**
+     * Контент файла не совпал с контрольной суммой
+     *
+     * @param fileName - имя файла
+     */
+    default void onChecksumMismatch(String fileName) {
+    }
+
+    /**
+     * writeContent поискал файл с таким же контентом при включенной дедупликации
+     *
+     * @param shared - контент записан ссылкой на экстент другого файла
+     * @param nanos  - время поиска в индексе и сравнения контента
+     */
+    default void onDeduplication(boolean shared, long nanos) {
+    }
+}
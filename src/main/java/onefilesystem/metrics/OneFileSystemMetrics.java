@@ -0,0 +1,277 @@
+package onefilesystem.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.model.LatencyStatistics;
+import onefilesystem.model.OperationStatistics;
+
+/**
+ * Встроенный сборщик метрик файловой системы: счетчики и гистограммы времени операций и блокировок, байты
+ * ввода-вывода, время кодирования заголовков. Размер контейнера и живого контента считаются при запросе.
+ * <p>
+ * Запись метрики - несколько инкрементов LongAdder и счетчика корзины гистограммы, без блокировок и аллокаций.
+ * <p>
+ * Thread-safe
+ */
+@Slf4j
+public class OneFileSystemMetrics implements MetricsListener, OneFileSystemMetricsMXBean {
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LatencyHistogram[] operationLatencies = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] operationBytes = new LongAdder[OPERATIONS.length];
+
+    private final LatencyHistogram readLockWait = new LatencyHistogram();
+    private final LatencyHistogram writeLockWait = new LatencyHistogram();
+    private final LatencyHistogram readLockHold = new LatencyHistogram();
+    private final LatencyHistogram writeLockHold = new LatencyHistogram();
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder headersEncoded = new LongAdder();
+    private final LongAdder headerEncodeNanos = new LongAdder();
+    private final LongAdder headersDecoded = new LongAdder();
+    private final LongAdder headerDecodeNanos = new LongAdder();
+    private final LongAdder checksumMismatches = new LongAdder();
+    private final LongAdder sharedWrites = new LongAdder();
+    private final LatencyHistogram deduplication = new LatencyHistogram();
+
+    private final LongSupplier containerSize;
+    private final LongSupplier liveBytes;
+    private final LongSupplier storedBytes;
+    private final LongSupplier savedBytes;
+
+    private ObjectName objectName;
+
+    /**
+     * @param containerSize - размер файла файловой системы
+     * @param liveBytes     - суммарный размер контента живых файлов
+     * @param storedBytes   - сколько контент живых файлов занимает на диске после сжатия и дедупликации
+     * @param savedBytes    - сколько байт на диске сэкономила дедупликация
+     */
+    public OneFileSystemMetrics(LongSupplier containerSize, LongSupplier liveBytes, LongSupplier storedBytes,
+                                LongSupplier savedBytes) {
+        this.containerSize = containerSize;
+        this.liveBytes = liveBytes;
+        this.storedBytes = storedBytes;
+        this.savedBytes = savedBytes;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            operationLatencies[i] = new LatencyHistogram();
+            operationBytes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Зарегистрировать метрики в platform MBeanServer. Ошибка регистрации не мешает работе файловой системы
+     *
+     * @param containerPath - путь к файлу файловой системы, различает MBean разных файловых систем
+     */
+    public void registerMBean(String containerPath) {
+        try {
+            ObjectName name = new ObjectName("onefilesystem:type=OneFileSystem,path="
+                    + ObjectName.quote(containerPath));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            log.warn("Failed to register metrics MBean for {}: {}", containerPath, e.toString());
+        }
+    }
+
+    /**
+     * Убрать метрики из MBeanServer, если они были зарегистрированы
+     */
+    public void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.warn("Failed to unregister metrics MBean {}: {}", objectName, e.toString());
+        }
+        objectName = null;
+    }
+
+    /**
+     * @return - имя MBean или null, если метрики не зарегистрированы
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public void onOperation(Operation operation, long durationNanos, long bytes) {
+        operationLatencies[operation.ordinal()].record(durationNanos);
+        if (bytes > 0) {
+            operationBytes[operation.ordinal()].add(bytes);
+        }
+    }
+
+    @Override
+    public void onLockWait(long waitNanos, boolean exclusive) {
+        (exclusive ? writeLockWait : readLockWait).record(waitNanos);
+    }
+
+    @Override
+    public void onLockHold(long holdNanos, boolean exclusive) {
+        (exclusive ? writeLockHold : readLockHold).record(holdNanos);
+    }
+
+    @Override
+    public void onBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    @Override
+    public void onBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void onHeadersEncoded(int count, long nanos) {
+        headersEncoded.add(count);
+        headerEncodeNanos.add(nanos);
+    }
+
+    @Override
+    public void onHeadersDecoded(int count, long nanos) {
+        headersDecoded.add(count);
+        headerDecodeNanos.add(nanos);
+    }
+
+    @Override
+    public void onChecksumMismatch(String fileName) {
+        checksumMismatches.increment();
+    }
+
+    @Override
+    public void onDeduplication(boolean shared, long nanos) {
+        deduplication.record(nanos);
+        if (shared) {
+            sharedWrites.increment();
+        }
+    }
+
+    /**
+     * @param operation - операция
+     * @return - метрики операции
+     */
+    public OperationStatistics getOperation(Operation operation) {
+        return OperationStatistics.builder()
+                .operation(operation.name())
+                .bytes(operationBytes[operation.ordinal()].sum())
+                .latency(operationLatencies[operation.ordinal()].getStatistics())
+                .build();
+    }
+
+    @Override
+    public List<OperationStatistics> getOperations() {
+        List<OperationStatistics> operations = new ArrayList<>(OPERATIONS.length);
+        for (Operation operation : OPERATIONS) {
+            operations.add(getOperation(operation));
+        }
+        return operations;
+    }
+
+    @Override
+    public LatencyStatistics getReadLockWait() {
+        return readLockWait.getStatistics();
+    }
+
+    @Override
+    public LatencyStatistics getWriteLockWait() {
+        return writeLockWait.getStatistics();
+    }
+
+    @Override
+    public LatencyStatistics getReadLockHold() {
+        return readLockHold.getStatistics();
+    }
+
+    @Override
+    public LatencyStatistics getWriteLockHold() {
+        return writeLockHold.getStatistics();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getHeadersEncoded() {
+        return headersEncoded.sum();
+    }
+
+    @Override
+    public long getHeaderEncodeNanos() {
+        return headerEncodeNanos.sum();
+    }
+
+    @Override
+    public long getHeadersDecoded() {
+        return headersDecoded.sum();
+    }
+
+    @Override
+    public long getHeaderDecodeNanos() {
+        return headerDecodeNanos.sum();
+    }
+
+    @Override
+    public long getChecksumMismatches() {
+        return checksumMismatches.sum();
+    }
+
+    @Override
+    public long getContainerSize() {
+        return containerSize.getAsLong();
+    }
+
+    @Override
+    public long getLiveBytes() {
+        return liveBytes.getAsLong();
+    }
+
+    @Override
+    public long getStoredBytes() {
+        return storedBytes.getAsLong();
+    }
+
+    @Override
+    public LatencyStatistics getDeduplication() {
+        return deduplication.getStatistics();
+    }
+
+    @Override
+    public long getSharedWrites() {
+        return sharedWrites.sum();
+    }
+
+    @Override
+    public long getDeduplicatedBytes() {
+        return savedBytes.getAsLong();
+    }
+
+    @Override
+    public double getDeduplicationRatio() {
+        long stored = storedBytes.getAsLong();
+        return stored == 0 ? 1 : (double) (stored + savedBytes.getAsLong()) / stored;
+    }
+}
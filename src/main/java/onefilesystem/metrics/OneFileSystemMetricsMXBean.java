@@ -0,0 +1,77 @@
+package onefilesystem.metrics;
+
+import java.util.List;
+
+import onefilesystem.model.LatencyStatistics;
+import onefilesystem.model.OperationStatistics;
+
+/**
+ * Метрики файловой системы в JMX. Время - в наносекундах
+ */
+public interface OneFileSystemMetricsMXBean {
+
+    /**
+     * @return - количество, байты и время по каждой операции
+     */
+    List<OperationStatistics> getOperations();
+
+    LatencyStatistics getReadLockWait();
+
+    LatencyStatistics getWriteLockWait();
+
+    LatencyStatistics getReadLockHold();
+
+    LatencyStatistics getWriteLockHold();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getHeadersEncoded();
+
+    long getHeaderEncodeNanos();
+
+    long getHeadersDecoded();
+
+    long getHeaderDecodeNanos();
+
+    /**
+     * @return - сколько раз контент файла не совпал с контрольной суммой при чтении и проверке в фоне
+     */
+    long getChecksumMismatches();
+
+    /**
+     * @return - размер файла файловой системы
+     */
+    long getContainerSize();
+
+    /**
+     * @return - суммарный размер контента живых файлов
+     */
+    long getLiveBytes();
+
+    /**
+     * @return - сколько контент живых файлов занимает на диске после сжатия и дедупликации
+     */
+    long getStoredBytes();
+
+    /**
+     * @return - время поиска одинакового контента на каждый writeContent при включенной дедупликации
+     */
+    LatencyStatistics getDeduplication();
+
+    /**
+     * @return - сколько writeContent записали контент ссылкой на экстент другого файла
+     */
+    long getSharedWrites();
+
+    /**
+     * @return - сколько байт на диске сэкономила дедупликация
+     */
+    long getDeduplicatedBytes();
+
+    /**
+     * @return - во сколько раз контент занимал бы больше места без дедупликации
+     */
+    double getDeduplicationRatio();
+}
@@ -0,0 +1,29 @@
+package onefilesystem.metrics;
+
+import lombok.Getter;
+
+/**
+ * Операции файловой системы, по которым собираются метрики
+ */
+@Getter
+public enum Operation {
+    CREATE_FILE(true),
+    DELETE_FILE(true),
+    WRITE_CONTENT(true),
+    READ_CONTENT(false),
+    SIZE(false),
+    STAT(false),
+    READ(false),
+    WRITE(true),
+    APPEND(true),
+    TRUNCATE(true);
+
+    /**
+     * Операция меняет файл и берет блокировку записи
+     */
+    private final boolean exclusive;
+
+    Operation(boolean exclusive) {
+        this.exclusive = exclusive;
+    }
+}
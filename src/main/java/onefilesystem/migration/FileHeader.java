@@ -0,0 +1,24 @@
+package onefilesystem.migration;
+
+import java.io.Serializable;
+
+import lombok.Getter;
+
+/**
+ * Заголовок файла в прежнем формате (java сериализация onefilesystem.model.FileHeader).
+ * <p>
+ * Класс называется так же, как и прежний: при десериализации java сравнивает имя класса без пакета. serialVersionUID
+ * совпадает с вычисленным для прежнего класса. Поля, которых не было в потоке, остаются по умолчанию.
+ */
+@Getter
+class FileHeader implements Serializable {
+    private static final long serialVersionUID = -8402191653907481744L;
+
+    private long order;
+    private long headerPosition;
+    private long contentPosition;
+    private long contentCapacity;
+    private String fileName;
+    private boolean isDeleted;
+    private int contentRealSize;
+}
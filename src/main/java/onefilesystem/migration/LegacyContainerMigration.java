@@ -0,0 +1,201 @@
+package onefilesystem.migration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.OneFileSystem;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.utils.FileHeaderCodec;
+import onefilesystem.utils.SuperblockCodec;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+import static onefilesystem.utils.Constants.INT_SIZE;
+import static onefilesystem.utils.Constants.MAX_FILES_COUNT;
+
+/**
+ * Одноразовая миграция файловой системы без суперблока на текущий формат.
+ * <p>
+ * В прежнем формате заголовки лежат с начала файла: слот i по смещению i * FILE_HEADER_SIZE. Заголовок записан либо
+ * java сериализацией (int длина сериализованного объекта, затем сам объект), либо в бинарном формате
+ * {@link FileHeaderCodec} без суперблока. Контент лежит там, куда указывает заголовок.
+ * <p>
+ * Так как область заголовков в текущем формате сдвинута суперблоком, файлы копируются в новую файловую систему рядом
+ * с прежней, которая затем атомарно ее заменяет. Поэтому прерванную миграцию можно просто запустить еще раз.
+ * Файловая система во время миграции должна быть закрыта.
+ */
+@Slf4j
+public class LegacyContainerMigration {
+    private LegacyContainerMigration() {
+    }
+
+    private static final String SERIALIZED_CLASS_NAME = "onefilesystem.model.FileHeader";
+    private static final String MIGRATION_SUFFIX = ".migration";
+
+    /**
+     * @param args - директория и имя файла файловой системы в основной файловой системе
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: LegacyContainerMigration <fileSystemDirectory> <fileSystemName>");
+            System.exit(1);
+        }
+        migrate(args[0], args[1]);
+    }
+
+    /**
+     * Перенести файлы в файловую систему текущего формата
+     *
+     * @param fileSystemDirectory - директория в основной файловой системе
+     * @param fileSystemName      - имя файла в основной файловой системе
+     * @return - сколько файлов перенесено. 0, если файловая система уже в текущем формате
+     */
+    public static int migrate(String fileSystemDirectory, String fileSystemName) throws IOException {
+        Path fileSystemPath = Paths.get(fileSystemDirectory, fileSystemName);
+        Path migrationPath = Paths.get(fileSystemDirectory, fileSystemName + MIGRATION_SUFFIX);
+        Files.deleteIfExists(migrationPath);
+
+        int migrated = 0;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(fileSystemPath.toFile(), "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                ByteBuffer firstSlot = readSlot(channel, 0);
+                if (!isLegacyContainer(firstSlot)) {
+                    log.info("File system {} already has current format", fileSystemPath);
+                    return 0;
+                }
+
+                List<onefilesystem.model.FileHeader> fileHeaders = readLegacyHeaders(channel);
+                try (OneFileSystem fileSystem = new OneFileSystem(fileSystemDirectory,
+                        migrationPath.getFileName().toString())) {
+                    for (onefilesystem.model.FileHeader fileHeader : fileHeaders) {
+                        ByteBuffer content = ByteBuffer.allocate(fileHeader.getContentRealSize());
+                        readFully(channel, content, fileHeader.getContentPosition());
+
+                        fileSystem.createFile(fileHeader.getFileName());
+                        fileSystem.writeContent(fileHeader.getFileName(), content.array());
+                        migrated++;
+                    }
+                }
+            } finally {
+                lock.release();
+            }
+        }
+
+        Files.move(migrationPath, fileSystemPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Migrated {} files of {}", migrated, fileSystemPath);
+        return migrated;
+    }
+
+    /**
+     * @param firstBytes - начало файла файловой системы
+     * @return - записана ли файловая система в прежнем формате
+     */
+    public static boolean isLegacyContainer(ByteBuffer firstBytes) {
+        return !SuperblockCodec.isSuperblock(firstBytes)
+                && (isSerializedHeader(firstBytes, 0) || firstBytes.getInt(0) == FileHeaderCodec.MAGIC);
+    }
+
+    /**
+     * @return - записан ли заголовок в формате java сериализации
+     */
+    public static boolean isSerializedHeader(ByteBuffer source, int offset) {
+        int length = source.getInt(offset);
+        return length > 0 && length <= FILE_HEADER_SIZE - INT_SIZE
+                && source.getShort(offset + INT_SIZE) == ObjectStreamConstants.STREAM_MAGIC;
+    }
+
+    /**
+     * Прочитать живые файлы прежнего формата. Заголовки лежат подряд до первого пустого слота
+     */
+    private static List<onefilesystem.model.FileHeader> readLegacyHeaders(FileChannel channel) throws IOException {
+        List<onefilesystem.model.FileHeader> fileHeaders = new ArrayList<>();
+        for (int i = 0; i < MAX_FILES_COUNT; i++) {
+            ByteBuffer slot = readSlot(channel, i);
+            if (FileHeaderCodec.isEmpty(slot, 0)) {
+                break;
+            }
+
+            onefilesystem.model.FileHeader fileHeader = isSerializedHeader(slot, 0)
+                    ? convert(deserialize(slot))
+                    : FileHeaderCodec.decode(slot, 0);
+            if (!fileHeader.isDeleted()) {
+                fileHeaders.add(fileHeader);
+            }
+        }
+        return fileHeaders;
+    }
+
+    private static ByteBuffer readSlot(FileChannel channel, int slot) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(channel, byteBuffer, slot * (long) FILE_HEADER_SIZE);
+        return byteBuffer;
+    }
+
+    private static FileHeader deserialize(ByteBuffer slot) {
+        int length = slot.getInt(0);
+        try (ObjectInputStream inputStream = new SerializedHeaderInputStream(
+                new ByteArrayInputStream(slot.array(), INT_SIZE, length))) {
+            return (FileHeader) inputStream.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new OneFileSystemException(e);
+        }
+    }
+
+    private static onefilesystem.model.FileHeader convert(FileHeader serialized) {
+        onefilesystem.model.FileHeader fileHeader =
+                new onefilesystem.model.FileHeader(serialized.getOrder(), serialized.getFileName());
+        fileHeader.setDeleted(serialized.isDeleted());
+        fileHeader.setRawContentSize(serialized.getContentRealSize());
+        fileHeader.setContentPosition(serialized.getContentPosition());
+        fileHeader.setContentCapacity(serialized.getContentCapacity());
+        return fileHeader;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer byteBuffer, long position) throws IOException {
+        while (byteBuffer.hasRemaining()) {
+            int read = channel.read(byteBuffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Поток, который читает прежний onefilesystem.model.FileHeader в {@link FileHeader} и больше никаких классов
+     */
+    private static class SerializedHeaderInputStream extends ObjectInputStream {
+
+        SerializedHeaderInputStream(InputStream in) throws IOException {
+            super(in);
+            setObjectInputFilter(info -> info.serialClass() == null || info.serialClass() == FileHeader.class
+                    ? ObjectInputFilter.Status.UNDECIDED
+                    : ObjectInputFilter.Status.REJECTED);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (SERIALIZED_CLASS_NAME.equals(desc.getName())) {
+                return FileHeader.class;
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
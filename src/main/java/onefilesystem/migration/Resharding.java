@@ -0,0 +1,117 @@
+package onefilesystem.migration;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.OneFileSystemOptions;
+import onefilesystem.ShardedFileSystem;
+import onefilesystem.model.FileStat;
+
+import static onefilesystem.validation.ValidationService.checkArgument;
+import static onefilesystem.validation.ValidationService.checkState;
+
+/**
+ * Офлайн-перераспределение файлов по другому числу сегментов (см. ShardedFileSystem), в том числе превращение обычной
+ * OneFileSystem в сегментированную и обратно.
+ * <p>
+ * Файлы копируются в новые сегменты с временными именами рядом с прежними, затем новые сегменты переименовываются,
+ * а прежние удаляются. Если копирование прервано, то прежние сегменты не тронуты и перераспределение можно просто
+ * запустить еще раз. Файловая система во время перераспределения должна быть закрыта.
+ */
+@Slf4j
+public class Resharding {
+    private Resharding() {
+    }
+
+    private static final String RESHARDING_SUFFIX = ".resharding";
+    private static final int PAGE_SIZE = 1024;
+
+    /**
+     * @param args - директория и имя файловой системы в основной файловой системе, новое число сегментов
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: Resharding <fileSystemDirectory> <fileSystemName> <shardsCount>");
+            System.exit(1);
+        }
+        reshard(args[0], args[1], Integer.parseInt(args[2]), OneFileSystemOptions.defaults());
+    }
+
+    /**
+     * Перераспределить файлы по shardsCount сегментам
+     *
+     * @param fileSystemDirectory - директория в основной файловой системе
+     * @param fileSystemName      - имя файловой системы
+     * @param shardsCount         - новое число сегментов
+     * @param options             - настройки новых сегментов
+     * @return - сколько файлов перенесено. 0, если число сегментов уже такое
+     */
+    public static long reshard(String fileSystemDirectory, String fileSystemName, int shardsCount,
+                               OneFileSystemOptions options) throws IOException {
+        checkArgument(shardsCount > 0, "Shards count must be positive: " + shardsCount);
+        int existingShardsCount = ShardedFileSystem.existingShardsCount(fileSystemDirectory, fileSystemName);
+        checkState(existingShardsCount > 0, "File system " + fileSystemName + " not found");
+        if (existingShardsCount == shardsCount) {
+            log.info("File system {} already has {} shards", fileSystemName, shardsCount);
+            return 0;
+        }
+
+        String reshardingName = fileSystemName + RESHARDING_SUFFIX;
+        deleteSegments(fileSystemDirectory, reshardingName,
+                ShardedFileSystem.existingShardsCount(fileSystemDirectory, reshardingName));
+
+        AtomicLong copied = new AtomicLong();
+        try (ShardedFileSystem source = new ShardedFileSystem(fileSystemDirectory, fileSystemName,
+                existingShardsCount, options);
+             ShardedFileSystem target = new ShardedFileSystem(fileSystemDirectory, reshardingName, shardsCount,
+                     options)) {
+            List<String> page = source.listAll(null, PAGE_SIZE);
+            while (!page.isEmpty()) {
+                page.parallelStream().forEach(fileName -> {
+                    FileStat stat = source.stat(fileName);
+                    target.createFile(fileName);
+                    target.writeContent(fileName, source.readContent(fileName), stat.getCompression());
+                    copied.incrementAndGet();
+                });
+                page = source.listAll(page.get(page.size() - 1), PAGE_SIZE);
+            }
+        }
+
+        // прежние сегменты удаляются, только когда новые уже на диске
+        for (int i = 0; i < shardsCount; i++) {
+            try (FileChannel channel = FileChannel.open(segmentPath(fileSystemDirectory, reshardingName, i,
+                    shardsCount), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+        for (int i = 0; i < shardsCount; i++) {
+            Files.move(segmentPath(fileSystemDirectory, reshardingName, i, shardsCount),
+                    segmentPath(fileSystemDirectory, fileSystemName, i, shardsCount),
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        deleteSegments(fileSystemDirectory, fileSystemName, existingShardsCount);
+
+        log.info("Resharded {} files of {} from {} to {} shards", copied.get(), fileSystemName, existingShardsCount,
+                shardsCount);
+        return copied.get();
+    }
+
+    private static void deleteSegments(String fileSystemDirectory, String fileSystemName, int shardsCount)
+            throws IOException {
+        for (int i = 0; i < shardsCount; i++) {
+            Files.deleteIfExists(segmentPath(fileSystemDirectory, fileSystemName, i, shardsCount));
+        }
+    }
+
+    private static Path segmentPath(String fileSystemDirectory, String fileSystemName, int shard, int shardsCount) {
+        return Paths.get(fileSystemDirectory, ShardedFileSystem.segmentName(fileSystemName, shard, shardsCount));
+    }
+}
@@ -0,0 +1,15 @@
+package onefilesystem.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Метрики загрузки или выгрузки директории (см. BulkTransfer)
+ */
+@Value
+@Builder
+public class BulkTransferStatistics {
+    long filesCount;
+    long bytes;
+    long durationNanos;
+}
@@ -0,0 +1,28 @@
+package onefilesystem.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Метрики кэша контента
+ */
+@Value
+@Builder
+public class CacheStatistics {
+    long hitCount;
+    long missCount;
+
+    /**
+     * Файлы, вытесненные ради новых
+     */
+    long evictionCount;
+
+    /**
+     * Файлы, которые политика вытеснения не пустила в кэш
+     */
+    long rejectionCount;
+
+    long entriesCount;
+    long usedBytes;
+    long maxBytes;
+}
@@ -0,0 +1,33 @@
+package onefilesystem.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Метрики прохода компактора
+ */
+@Value
+@Builder
+public class CompactionStatistics {
+    long movedFilesCount;
+    long movedBytes;
+
+    /**
+     * Файлы, которые изменились во время копирования и остались на месте
+     */
+    long skippedFilesCount;
+
+    /**
+     * На сколько уменьшился файл файловой системы
+     */
+    long reclaimedBytes;
+    long containerSize;
+
+    long durationNanos;
+
+    /**
+     * Время, когда компактор держал блокировку записи файла: чтение и запись этого файла ждали
+     */
+    long totalPauseNanos;
+    long maxPauseNanos;
+}
@@ -1,29 +1,104 @@
 package onefilesystem.model;
 
-import java.io.Serializable;
-
 import lombok.Data;
+import onefilesystem.compression.Compression;
 
-import static onefilesystem.utils.Constants.CONTENT_START_POSITION;
 import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
-import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
 
 @Data
-public class FileHeader implements Serializable {
+public class FileHeader {
     private final long order;
     private final long headerPosition;
-    private final long contentPosition;
+
+    /**
+     * Экстент, выделенный под контент файла. У пустого файла экстента нет (contentCapacity = 0)
+     */
+    private long contentPosition;
+    private long contentCapacity;
 
     private String fileName;
     private boolean isDeleted;
     private int contentRealSize;
 
+    /**
+     * Сжатие контента и сколько байт он занимает в экстенте. Без сжатия contentStoredSize = contentRealSize
+     */
+    private Compression compression;
+    private int contentStoredSize;
+
+    /**
+     * CRC32C контента в экстенте (contentStoredSize байт) или null, если она неизвестна
+     */
+    private Integer contentChecksum;
+
+    /**
+     * Версия контента, меняется при каждом изменении контента. На диск не пишется
+     */
+    private long version;
+
+    /**
+     * Поколение снимков, в котором файл начал ссылаться на свой экстент: снимки следующих поколений могут читать
+     * экстент, и менять его на месте нельзя. На диск не пишется
+     */
+    private long extentGeneration;
+
     public FileHeader(long order, String fileName) {
         this.order = order;
         this.fileName = fileName;
         this.isDeleted = false;
-        this.headerPosition = order * FILE_HEADER_SIZE;
-        this.contentPosition = CONTENT_START_POSITION + order * MAX_FILE_SIZE;
+        this.headerPosition = HEADERS_START_POSITION + order * FILE_HEADER_SIZE;
+        this.contentPosition = 0;
+        this.contentCapacity = 0;
         this.contentRealSize = 0;
+        this.compression = Compression.NONE;
+        this.contentStoredSize = 0;
+        this.contentChecksum = 0;
+    }
+
+    /**
+     * Записать в заголовок несжатый контент
+     *
+     * @param contentSize - размер контента
+     */
+    public void setRawContentSize(int contentSize) {
+        this.contentRealSize = contentSize;
+        this.contentStoredSize = contentSize;
+        this.compression = Compression.NONE;
+    }
+
+    /**
+     * @return - копия заголовка, которая не меняется вместе с ним
+     */
+    public FileHeader copy() {
+        FileHeader copy = new FileHeader(order, fileName);
+        copy.contentPosition = contentPosition;
+        copy.contentCapacity = contentCapacity;
+        copy.isDeleted = isDeleted;
+        copy.contentRealSize = contentRealSize;
+        copy.compression = compression;
+        copy.contentStoredSize = contentStoredSize;
+        copy.contentChecksum = contentChecksum;
+        copy.version = version;
+        copy.extentGeneration = extentGeneration;
+        return copy;
+    }
+
+    /**
+     * Перенести в заголовок поля копии, измененной и зафиксированной вместо него
+     *
+     * @param source - копия этого заголовка, см. {@link #copy()}
+     */
+    public void assign(FileHeader source) {
+        contentPosition = source.contentPosition;
+        contentCapacity = source.contentCapacity;
+        fileName = source.fileName;
+        isDeleted = source.isDeleted;
+        contentRealSize = source.contentRealSize;
+        compression = source.compression;
+        contentStoredSize = source.contentStoredSize;
+        contentChecksum = source.contentChecksum;
+        version = source.version;
+        extentGeneration = source.extentGeneration;
     }
 }
@@ -0,0 +1,25 @@
+package onefilesystem.model;
+
+import lombok.Builder;
+import lombok.Value;
+import onefilesystem.compression.Compression;
+
+/**
+ * Атрибуты файла
+ */
+@Value
+@Builder
+public class FileStat {
+    String fileName;
+
+    /**
+     * Размер контента
+     */
+    long size;
+
+    /**
+     * Сколько байт контент занимает в файле файловой системы, меньше size, если он сжат
+     */
+    long storedSize;
+    Compression compression;
+}
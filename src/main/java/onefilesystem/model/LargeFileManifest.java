@@ -0,0 +1,30 @@
+package onefilesystem.model;
+
+import lombok.Value;
+
+/**
+ * Манифест большого файла - контент обычного файла с именем большого файла. Сам контент лежит в файлах-чанках
+ * одинакового размера, последний чанк может быть короче (см. onefilesystem.LargeFiles)
+ */
+@Value
+public class LargeFileManifest {
+
+    /**
+     * Идентификатор набора чанков, новый при каждой записи файла
+     */
+    long chunksId;
+    long length;
+    int chunkSize;
+
+    public long getChunksCount() {
+        return (length + chunkSize - 1) / chunkSize;
+    }
+
+    /**
+     * @param chunk - номер чанка
+     * @return - размер чанка
+     */
+    public int getChunkLength(long chunk) {
+        return (int) Math.min(chunkSize, length - chunk * chunkSize);
+    }
+}
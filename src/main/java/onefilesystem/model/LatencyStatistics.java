@@ -0,0 +1,20 @@
+package onefilesystem.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Распределение времени: количество замеров и перцентили в наносекундах.
+ * Перцентили округлены вверх до границы корзины гистограммы, погрешность не больше 1/16 значения
+ */
+@Value
+@Builder
+public class LatencyStatistics {
+    long count;
+    long totalNanos;
+    long p50Nanos;
+    long p90Nanos;
+    long p99Nanos;
+    long p999Nanos;
+    long maxNanos;
+}
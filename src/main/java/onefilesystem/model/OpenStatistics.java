@@ -0,0 +1,42 @@
+package onefilesystem.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Метрики открытия файловой системы
+ */
+@Value
+@Builder
+public class OpenStatistics {
+    /**
+     * Сколько слотов заголовков прочитано
+     */
+    long headerCount;
+    long liveFilesCount;
+
+    /**
+     * Слоты, которые не удалось разобрать. Они пропускаются и не переиспользуются
+     */
+    long corruptedHeadersCount;
+    long headerBytesRead;
+
+    /**
+     * Сколько потоков разбирало заголовки
+     */
+    int decodeParallelism;
+
+    /**
+     * Сколько записей журнала проиграно при восстановлении после сбоя
+     */
+    long journalRecordsReplayed;
+
+    /**
+     * Пришлось ли перестроить хеш-индекс имен на диске (HeaderIndex.DISK): он не совпал с заголовками после сбоя
+     */
+    boolean headerIndexRebuilt;
+
+    long readTimeNanos;
+    long decodeTimeNanos;
+    long openTimeNanos;
+}
@@ -0,0 +1,20 @@
+package onefilesystem.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Метрики одной операции файловой системы
+ */
+@Value
+@Builder
+public class OperationStatistics {
+    String operation;
+
+    /**
+     * Сколько байт контента прочитали или записали все вызовы операции
+     */
+    long bytes;
+
+    LatencyStatistics latency;
+}
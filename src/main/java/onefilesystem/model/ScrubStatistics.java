@@ -0,0 +1,28 @@
+package onefilesystem.model;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Метрики прохода проверки контрольных сумм контента
+ */
+@Value
+@Builder
+public class ScrubStatistics {
+    long checkedFilesCount;
+    long checkedBytes;
+
+    /**
+     * Файлы без контрольной суммы и файлы, которые изменились во время проверки
+     */
+    long skippedFilesCount;
+
+    /**
+     * Файлы, контент которых не совпал с контрольной суммой
+     */
+    List<String> corruptedFiles;
+
+    long durationNanos;
+}
@@ -0,0 +1,84 @@
+package onefilesystem.model;
+
+import lombok.Data;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+import static onefilesystem.utils.Constants.HASH_INDEX_BUCKET_SIZE;
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
+
+/**
+ * Суперблок - служебная информация о файловой системе, лежит в начале файла
+ */
+@Data
+public class Superblock {
+    private final int formatVersion;
+
+    /**
+     * Сколько слотов под заголовки зарезервировано. Задается при создании файловой системы
+     */
+    private final int maxFilesCount;
+
+    /**
+     * Размер журнала, лежит сразу за заголовками. 0 - журнала нет (формат версии 1)
+     */
+    private final int journalSize;
+
+    /**
+     * Сколько корзин в хеш-индексе имен, лежит сразу за журналом. 0 - индекса нет (формат версии 1 и 2)
+     */
+    private final int indexBucketsCount;
+
+    /**
+     * Сколько слотов заголовков когда-либо использовалось. Дальше этого слота заголовки не читаются
+     */
+    private long headerCount;
+
+    /**
+     * Позиция, за которой в контентной области ничего не выделено
+     */
+    private long contentHighWaterMark;
+
+    /**
+     * Поколение журнала. При восстановлении проигрываются только записи текущего поколения
+     */
+    private long journalEpoch;
+
+    /**
+     * Счетчик изменений для процессов, открывших файловую систему только для чтения. Пишется отдельно от суперблока
+     */
+    private long changeCounter;
+
+    public Superblock(int formatVersion, int maxFilesCount, int journalSize) {
+        this(formatVersion, maxFilesCount, journalSize, 0);
+    }
+
+    public Superblock(int formatVersion, int maxFilesCount, int journalSize, int indexBucketsCount) {
+        this.formatVersion = formatVersion;
+        this.maxFilesCount = maxFilesCount;
+        this.journalSize = journalSize;
+        this.indexBucketsCount = indexBucketsCount;
+        this.headerCount = 0;
+        this.contentHighWaterMark = getContentStartPosition();
+    }
+
+    /**
+     * @return - позиция в файле, с которой начинается журнал
+     */
+    public long getJournalPosition() {
+        return HEADERS_START_POSITION + (long) maxFilesCount * FILE_HEADER_SIZE;
+    }
+
+    /**
+     * @return - позиция в файле, с которой начинается хеш-индекс имен
+     */
+    public long getIndexPosition() {
+        return getJournalPosition() + journalSize;
+    }
+
+    /**
+     * @return - позиция в файле, с которой начинается контент файлов
+     */
+    public long getContentStartPosition() {
+        return getIndexPosition() + (long) indexBucketsCount * HASH_INDEX_BUCKET_SIZE;
+    }
+}
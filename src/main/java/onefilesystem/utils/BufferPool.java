@@ -0,0 +1,52 @@
+package onefilesystem.utils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Пул direct буферов одинакового размера для ввода/вывода через FileChannel.
+ * <p>
+ * Если в пуле нет свободного буфера, создается новый. Возвращенный буфер, который не поместился в пул, просто
+ * отдается GC. Операции над ArrayBlockingQueue не аллоцируют, поэтому в установившемся режиме работа с пулом
+ * обходится без аллокаций.
+ * <p>
+ * Thread-safe
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final BlockingQueue<ByteBuffer> buffers;
+
+    /**
+     * @param bufferSize - размер одного буфера
+     * @param poolSize   - сколько буферов хранить в пуле
+     */
+    public BufferPool(int bufferSize, int poolSize) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    /**
+     * Взять буфер из пула. Буфер очищен (position = 0, limit = capacity)
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer byteBuffer = buffers.poll();
+        if (byteBuffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        return byteBuffer;
+    }
+
+    /**
+     * Вернуть буфер в пул
+     */
+    public void release(ByteBuffer byteBuffer) {
+        byteBuffer.clear();
+        buffers.offer(byteBuffer);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,108 @@
+package onefilesystem.utils;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Контрольные суммы CRC32C. java.util.zip.CRC32C использует аппаратную инструкцию процессора, если она есть
+ */
+public class Checksums {
+    private Checksums() {
+    }
+
+    /**
+     * Отраженный полином CRC32C (Castagnoli)
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    /**
+     * @return - CRC32C участка массива
+     */
+    public static int crc32c(byte[] source, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(source, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return - CRC32C буфера от position до limit. Позиция буфера не меняется
+     */
+    public static int crc32c(ByteBuffer source) {
+        CRC32C crc = new CRC32C();
+        crc.update(source.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return - CRC32C length нулевых байт
+     */
+    public static int zeros(long length) {
+        CRC32C crc = new CRC32C();
+        for (long offset = 0; offset < length; offset += ZEROS.length) {
+            crc.update(ZEROS, 0, (int) Math.min(ZEROS.length, length - offset));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * CRC32C склейки двух участков по их контрольным суммам, без чтения самих участков (как crc32_combine в zlib)
+     *
+     * @param crc1    - CRC32C первого участка
+     * @param crc2    - CRC32C второго участка
+     * @param length2 - размер второго участка
+     * @return - CRC32C первого участка, за которым идет второй
+     */
+    public static int combine(int crc1, int crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+
+        // even и odd - операторы над регистром CRC: дописать 2^k и 2^(k+1) нулевых бит
+        int[] even = new int[32];
+        int[] odd = new int[32];
+        odd[0] = POLYNOMIAL;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);
+        square(odd, even);
+
+        do {
+            square(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            length2 >>>= 1;
+            if (length2 == 0) {
+                break;
+            }
+
+            square(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            length2 >>>= 1;
+        } while (length2 != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
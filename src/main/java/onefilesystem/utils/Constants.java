@@ -7,7 +7,41 @@ public class Constants {
     public static final int MAX_FILES_COUNT = 1024;
     public static final int FILE_HEADER_SIZE = 256;
     public static final int MAX_FILE_SIZE = 1_0000_000;
-    public static final long CONTENT_START_POSITION = (long) MAX_FILES_COUNT * FILE_HEADER_SIZE;
+    public static final int SUPERBLOCK_SIZE = 4096;
+    public static final long HEADERS_START_POSITION = SUPERBLOCK_SIZE;
+    public static final int JOURNAL_SIZE = 1024 * 1024;
+    public static final long CONTENT_START_POSITION = HEADERS_START_POSITION + (long) MAX_FILES_COUNT * FILE_HEADER_SIZE
+            + JOURNAL_SIZE;
+    public static final int ALLOCATION_UNIT = 512;
+
+    public static final int IO_BUFFER_SIZE = 64 * 1024;
+    public static final int IO_BUFFER_POOL_SIZE = 64;
+    public static final int MMAP_SEGMENT_SIZE = 256 * 1024 * 1024;
+    public static final int LOCK_STRIPES_COUNT = 64;
+    public static final long GROUP_COMMIT_WINDOW_MICROS = 0;
+    public static final int ASYNC_IO_THREADS = 4;
+    public static final int ASYNC_MAX_IN_FLIGHT = 4096;
+    public static final long COMPACTION_IO_BUDGET = 64 * 1024 * 1024;
+    public static final long SCRUB_INTERVAL_MINUTES = 60;
+    public static final long SCRUB_IO_BUDGET = 16 * 1024 * 1024;
+    public static final int COMPRESSION_BLOCK_SIZE = 256 * 1024;
+    public static final int COMPRESSION_BUFFER_SIZE = 1024 * 1024;
+    public static final char DIRECTORY_SEPARATOR = '/';
+    public static final char SERVICE_NAME_PREFIX = '\u0000';
+    public static final int LARGE_FILE_CHUNK_SIZE = 8 * 1024 * 1024;
+    public static final int LARGE_FILE_PARALLELISM = 4;
+    public static final long SHARED_READ_TIMEOUT_MILLIS = 10_000;
+    public static final long SHARED_READ_RETRY_MICROS = 100;
+    public static final int SERVER_MAX_FRAME_SIZE = MAX_FILE_SIZE + 64 * 1024;
+    public static final int SERVER_MAX_PENDING_BYTES = 4 * 1024 * 1024;
+    public static final int SERVER_MAX_IN_FLIGHT_REQUESTS = 1024;
+    public static final int SERVER_WORKER_THREADS = 4;
+    public static final int BULK_TRANSFER_PARALLELISM = 4;
+    public static final int BULK_TRANSFER_BATCH_SIZE = 4096;
+    public static final int BULK_TRANSFER_BUFFER_SIZE = 1024 * 1024;
+    public static final int HEADER_CACHE_SIZE = 4096;
+    public static final int HASH_INDEX_BUCKET_SIZE = 8;
+    public static final int HASH_INDEX_PAGE_SIZE = 4096;
 
     public static final int INT_SIZE = 4;
 
@@ -0,0 +1,219 @@
+package onefilesystem.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+import onefilesystem.compression.Compression;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.FileHeader;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+
+/**
+ * Бинарный формат заголовка файла фиксированного размера FILE_HEADER_SIZE:
+ * <pre>
+ * int    magic
+ * short  version
+ * short  flags: младший байт - флаги, старший - идентификатор сжатия контента
+ * long   order
+ * long   contentPosition
+ * long   contentCapacity
+ * long   contentRealSize
+ * long   contentStoredSize
+ * int    contentChecksum, CRC32C контента в экстенте, если есть флаг CONTENT_CHECKSUM_FLAG
+ * short  длина имени в байтах
+ * byte[] имя в UTF-8
+ * ...
+ * int    CRC32C всех предыдущих байт слота, последние 4 байта слота
+ * </pre>
+ * Остаток слота заполняется нулями. Слот, который начинается с нулевого magic, пустой.
+ * <p>
+ * Заголовки версии 1 (без contentStoredSize, контент не сжат) и 2 (без контрольных сумм) читаются, пишется всегда
+ * текущая версия.
+ */
+public class FileHeaderCodec {
+    private FileHeaderCodec() {
+    }
+
+    public static final int MAGIC = 0x4F465348;
+    public static final short VERSION = 3;
+    private static final short VERSION_1 = 1;
+    private static final short VERSION_2 = 2;
+
+    private static final short DELETED_FLAG = 1;
+    private static final short CONTENT_CHECKSUM_FLAG = 2;
+    private static final int COMPRESSION_SHIFT = 8;
+
+    private static final int CONTENT_CHECKSUM_OFFSET = 4 + 2 + 2 + 8 + 8 + 8 + 8 + 8;
+    private static final int NAME_LENGTH_OFFSET = CONTENT_CHECKSUM_OFFSET + 4;
+    private static final int NAME_OFFSET = NAME_LENGTH_OFFSET + 2;
+    private static final int HEADER_CHECKSUM_OFFSET = FILE_HEADER_SIZE - 4;
+    private static final int VERSION_1_NAME_LENGTH_OFFSET = CONTENT_CHECKSUM_OFFSET - 8;
+    private static final int VERSION_2_NAME_LENGTH_OFFSET = CONTENT_CHECKSUM_OFFSET;
+
+    public static final int MAX_FILE_NAME_LENGTH = HEADER_CHECKSUM_OFFSET - NAME_OFFSET;
+
+    /**
+     * Записать заголовок в буфер начиная с его текущей позиции. Позиция буфера сдвигается на FILE_HEADER_SIZE
+     *
+     * @param fileHeader - заголовок файла
+     * @param target     - буфер, в котором есть место под FILE_HEADER_SIZE байт
+     */
+    public static void encode(FileHeader fileHeader, ByteBuffer target) {
+        int start = target.position();
+        if (utf8Length(fileHeader.getFileName()) > MAX_FILE_NAME_LENGTH) {
+            // имя из заголовка прежней версии может не поместиться в текущую
+            throw new OneFileSystemException("File name is too long for file header version " + VERSION + ": "
+                    + fileHeader.getFileName());
+        }
+
+        Integer contentChecksum = fileHeader.getContentChecksum();
+        int flags = (fileHeader.isDeleted() ? DELETED_FLAG : 0)
+                | (contentChecksum != null ? CONTENT_CHECKSUM_FLAG : 0)
+                | fileHeader.getCompression().getId() << COMPRESSION_SHIFT;
+        target.putInt(MAGIC);
+        target.putShort(VERSION);
+        target.putShort((short) flags);
+        target.putLong(fileHeader.getOrder());
+        target.putLong(fileHeader.getContentPosition());
+        target.putLong(fileHeader.getContentCapacity());
+        target.putLong(fileHeader.getContentRealSize());
+        target.putLong(fileHeader.getContentStoredSize());
+        target.putInt(contentChecksum != null ? contentChecksum : 0);
+
+        target.position(start + NAME_OFFSET);
+        int nameLength = putUtf8(fileHeader.getFileName(), target);
+        target.putShort(start + NAME_LENGTH_OFFSET, (short) nameLength);
+
+        while (target.position() < start + HEADER_CHECKSUM_OFFSET) {
+            target.put((byte) 0);
+        }
+        target.putInt(headerChecksum(target, start));
+    }
+
+    /**
+     * Прочитать заголовок из буфера. Позиция буфера не меняется, поэтому из одного буфера можно читать параллельно
+     *
+     * @param source - буфер
+     * @param offset - смещение заголовка в буфере
+     * @return - объект FileHeader
+     */
+    public static FileHeader decode(ByteBuffer source, int offset) {
+        int magic = source.getInt(offset);
+        if (magic != MAGIC) {
+            throw new OneFileSystemException(String.format("Unknown file header format, magic %x", magic));
+        }
+
+        short version = source.getShort(offset + 4);
+        if (version != VERSION && version != VERSION_1 && version != VERSION_2) {
+            throw new OneFileSystemException("Unsupported file header version " + version);
+        }
+        if (version == VERSION && source.getInt(offset + HEADER_CHECKSUM_OFFSET) != headerChecksum(source, offset)) {
+            throw new OneFileSystemException("File header checksum mismatch");
+        }
+
+        short flags = source.getShort(offset + 6);
+        long order = source.getLong(offset + 8);
+
+        int nameLengthOffset = version == VERSION_1 ? VERSION_1_NAME_LENGTH_OFFSET
+                : version == VERSION_2 ? VERSION_2_NAME_LENGTH_OFFSET
+                : NAME_LENGTH_OFFSET;
+        String fileName = getUtf8(source, offset + nameLengthOffset + 2, source.getShort(offset + nameLengthOffset));
+        FileHeader fileHeader = new FileHeader(order, fileName);
+        fileHeader.setDeleted((flags & DELETED_FLAG) != 0);
+        fileHeader.setContentPosition(source.getLong(offset + 16));
+        fileHeader.setContentCapacity(source.getLong(offset + 24));
+        fileHeader.setContentRealSize((int) source.getLong(offset + 32));
+        if (version == VERSION_1) {
+            fileHeader.setContentStoredSize(fileHeader.getContentRealSize());
+        } else {
+            fileHeader.setCompression(Compression.byId((flags & 0xFFFF) >>> COMPRESSION_SHIFT));
+            fileHeader.setContentStoredSize((int) source.getLong(offset + 40));
+        }
+        fileHeader.setContentChecksum(version == VERSION && (flags & CONTENT_CHECKSUM_FLAG) != 0
+                ? source.getInt(offset + CONTENT_CHECKSUM_OFFSET)
+                : null);
+        return fileHeader;
+    }
+
+    /**
+     * CRC32C слота заголовка без последних 4 байт, в которых она хранится
+     */
+    private static int headerChecksum(ByteBuffer source, int offset) {
+        ByteBuffer slot = source.duplicate();
+        slot.limit(offset + HEADER_CHECKSUM_OFFSET).position(offset);
+        CRC32C crc = new CRC32C();
+        crc.update(slot);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return - пустой ли слот заголовка (в него еще ничего не записывали)
+     */
+    public static boolean isEmpty(ByteBuffer source, int offset) {
+        return source.getInt(offset) == 0;
+    }
+
+    /**
+     * Размер имени файла в UTF-8, без аллокаций
+     */
+    public static int utf8Length(String fileName) {
+        int length = 0;
+        for (int i = 0; i < fileName.length(); i++) {
+            char c = fileName.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (i + 1 < fileName.length() && Character.isSurrogatePair(c, fileName.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Записать строку в буфер в UTF-8 без промежуточного byte[]
+     *
+     * @return - сколько байт записано
+     */
+    private static int putUtf8(String value, ByteBuffer target) {
+        int start = target.position();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                target.put((byte) c);
+            } else if (c < 0x800) {
+                target.put((byte) (0xC0 | c >> 6));
+                target.put((byte) (0x80 | c & 0x3F));
+            } else if (i + 1 < value.length() && Character.isSurrogatePair(c, value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                target.put((byte) (0xF0 | codePoint >> 18));
+                target.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                target.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                target.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                target.put((byte) (0xE0 | c >> 12));
+                target.put((byte) (0x80 | c >> 6 & 0x3F));
+                target.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        return target.position() - start;
+    }
+
+    private static String getUtf8(ByteBuffer source, int offset, int length) {
+        if (source.hasArray()) {
+            return new String(source.array(), source.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = source.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package onefilesystem.utils;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import onefilesystem.model.FileHeader;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+
+/**
+ * Бинарный формат записи журнала:
+ * <pre>
+ * int    magic
+ * long   epoch
+ * byte[] fileHeader   (FILE_HEADER_SIZE байт, формат FileHeaderCodec)
+ * int    crc32        (всех предыдущих байт записи)
+ * </pre>
+ * Запись - новый образ заголовка файла. Запись с другим поколением или с неверной контрольной суммой считается
+ * недописанной.
+ */
+public class JournalRecordCodec {
+    private JournalRecordCodec() {
+    }
+
+    public static final int MAGIC = 0x4F46534A;
+
+    private static final int HEADER_OFFSET = 4 + 8;
+    private static final int CRC_OFFSET = HEADER_OFFSET + FILE_HEADER_SIZE;
+
+    public static final int RECORD_SIZE = CRC_OFFSET + 4;
+
+    /**
+     * Записать запись в буфер начиная с его текущей позиции. Позиция буфера сдвигается на RECORD_SIZE
+     *
+     * @param epoch      - поколение журнала
+     * @param fileHeader - новый образ заголовка
+     * @param target     - буфер, в котором есть место под RECORD_SIZE байт
+     */
+    public static void encode(long epoch, FileHeader fileHeader, ByteBuffer target) {
+        int start = target.position();
+
+        target.putInt(MAGIC);
+        target.putLong(epoch);
+        FileHeaderCodec.encode(fileHeader, target);
+        target.putInt(crc(target, start));
+    }
+
+    /**
+     * Прочитать запись из буфера. Позиция буфера не меняется
+     *
+     * @param source - буфер
+     * @param offset - смещение записи в буфере
+     * @param epoch  - текущее поколение журнала
+     * @return - образ заголовка или null, если записи нет или она недописана
+     */
+    public static FileHeader decode(ByteBuffer source, int offset, long epoch) {
+        if (offset + RECORD_SIZE > source.limit()
+                || source.getInt(offset) != MAGIC
+                || source.getLong(offset + 4) != epoch
+                || source.getInt(offset + CRC_OFFSET) != crc(source, offset)) {
+            return null;
+        }
+        return FileHeaderCodec.decode(source, offset + HEADER_OFFSET);
+    }
+
+    private static int crc(ByteBuffer source, int offset) {
+        ByteBuffer record = source.duplicate();
+        record.limit(offset + CRC_OFFSET).position(offset);
+
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,56 @@
+package onefilesystem.utils;
+
+import java.nio.ByteBuffer;
+
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.LargeFileManifest;
+
+/**
+ * Бинарный формат манифеста большого файла:
+ * <pre>
+ * int    magic
+ * short  version
+ * long   chunksId
+ * long   length
+ * int    chunkSize
+ * </pre>
+ */
+public class LargeFileManifestCodec {
+    private LargeFileManifestCodec() {
+    }
+
+    public static final int MAGIC = 0x4F46534C;
+    public static final short VERSION = 1;
+
+    public static final int ENCODED_SIZE = 4 + 2 + 8 + 8 + 4;
+
+    public static byte[] encode(LargeFileManifest manifest) {
+        ByteBuffer target = ByteBuffer.allocate(ENCODED_SIZE);
+        target.putInt(MAGIC);
+        target.putShort(VERSION);
+        target.putLong(manifest.getChunksId());
+        target.putLong(manifest.getLength());
+        target.putInt(manifest.getChunkSize());
+        return target.array();
+    }
+
+    /**
+     * @param content - контент файла
+     * @return - манифест или null, если это контент обычного файла
+     */
+    public static LargeFileManifest decode(byte[] content) {
+        if (content.length != ENCODED_SIZE) {
+            return null;
+        }
+        ByteBuffer source = ByteBuffer.wrap(content);
+        if (source.getInt(0) != MAGIC) {
+            return null;
+        }
+
+        short version = source.getShort(4);
+        if (version != VERSION) {
+            throw new OneFileSystemException("Unsupported large file manifest version " + version);
+        }
+        return new LargeFileManifest(source.getLong(6), source.getLong(14), source.getInt(22));
+    }
+}
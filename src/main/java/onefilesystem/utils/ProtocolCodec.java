@@ -0,0 +1,167 @@
+package onefilesystem.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import onefilesystem.validation.ValidationService;
+
+/**
+ * Бинарный протокол FileSystemServer, числа big-endian:
+ * <pre>
+ * запрос:  int длина остатка кадра, byte opcode, int requestId, аргументы
+ * ответ:   int длина остатка кадра, int requestId, byte status, результат или сообщение об ошибке
+ * строка:  short длина в байтах UTF-8 (-1 - null), байты
+ * контент: int длина, байты
+ * </pre>
+ * Аргументы и результаты операций:
+ * <pre>
+ * CREATE_FILE     name                               -
+ * DELETE_FILE     name                               -
+ * WRITE_CONTENT   name, content                      -
+ * READ_CONTENT    name                               content
+ * SIZE            name                               long size
+ * EXISTS          name                               byte 0 или 1
+ * STAT            name                               long size, long storedSize, byte compression
+ * LIST            prefix                             int count, строки
+ * LIST_ALL        after, int limit                   int count, строки
+ * LIST_DIRECTORY  directory                          int count, строки
+ * READ            name, long offset, int length      int read (-1 - offset за концом контента), байты
+ * WRITE           name, long offset, content         -
+ * APPEND          name, content                      -
+ * TRUNCATE        name, long size                    -
+ * CREATE_SERVICE_FILE name                           -
+ * </pre>
+ * Клиент отправляет запросы, не дожидаясь ответов на предыдущие, сервер отвечает на запросы соединения в порядке их
+ * прихода.
+ */
+public class ProtocolCodec {
+    private ProtocolCodec() {
+    }
+
+    public static final byte CREATE_FILE = 1;
+    public static final byte DELETE_FILE = 2;
+    public static final byte WRITE_CONTENT = 3;
+    public static final byte READ_CONTENT = 4;
+    public static final byte SIZE = 5;
+    public static final byte EXISTS = 6;
+    public static final byte STAT = 7;
+    public static final byte LIST = 8;
+    public static final byte LIST_ALL = 9;
+    public static final byte LIST_DIRECTORY = 10;
+    public static final byte READ = 11;
+    public static final byte WRITE = 12;
+    public static final byte APPEND = 13;
+    public static final byte TRUNCATE = 14;
+    public static final byte CREATE_SERVICE_FILE = 15;
+
+    public static final byte OK = 0;
+    public static final byte FILE_NOT_FOUND = 1;
+    public static final byte FILE_ALREADY_EXISTS = 2;
+    public static final byte CORRUPTED_CONTENT = 3;
+    public static final byte READ_ONLY = 4;
+    public static final byte ILLEGAL_ARGUMENT = 5;
+    public static final byte ILLEGAL_STATE = 6;
+    public static final byte ERROR = 7;
+
+    public static final int LENGTH_SIZE = 4;
+    public static final int REQUEST_HEADER_SIZE = 1 + 4;
+    public static final int RESPONSE_HEADER_SIZE = 4 + 1;
+
+    /**
+     * Буфер запроса с заголовком, аргументы дописываются после него
+     *
+     * @param argumentsSize - размер аргументов
+     */
+    public static ByteBuffer request(byte opcode, int requestId, int argumentsSize) {
+        ByteBuffer target = ByteBuffer.allocate(LENGTH_SIZE + REQUEST_HEADER_SIZE + argumentsSize);
+        target.putInt(REQUEST_HEADER_SIZE + argumentsSize);
+        target.put(opcode);
+        target.putInt(requestId);
+        return target;
+    }
+
+    /**
+     * Буфер ответа с заголовком, результат дописывается после него
+     *
+     * @param resultSize - размер результата
+     */
+    public static ByteBuffer response(int requestId, byte status, int resultSize) {
+        ByteBuffer target = ByteBuffer.allocate(LENGTH_SIZE + RESPONSE_HEADER_SIZE + resultSize);
+        target.putInt(RESPONSE_HEADER_SIZE + resultSize);
+        target.putInt(requestId);
+        target.put(status);
+        return target;
+    }
+
+    /**
+     * @return - строка в UTF-8 или null
+     */
+    public static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param utf8 - строка в UTF-8 или null
+     * @return - сколько байт строка занимает в кадре
+     */
+    public static int stringSize(byte[] utf8) {
+        return 2 + (utf8 == null ? 0 : utf8.length);
+    }
+
+    public static void putString(ByteBuffer target, byte[] utf8) {
+        if (utf8 == null) {
+            target.putShort((short) -1);
+            return;
+        }
+        ValidationService.checkArgument(utf8.length <= Short.MAX_VALUE, "String is too long: " + utf8.length + " bytes");
+        target.putShort((short) utf8.length);
+        target.put(utf8);
+    }
+
+    public static String getString(ByteBuffer source) {
+        int length = source.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(source.array(), source.arrayOffset() + source.position(), length,
+                StandardCharsets.UTF_8);
+        source.position(source.position() + length);
+        return value;
+    }
+
+    public static byte[] getContent(ByteBuffer source) {
+        byte[] content = new byte[source.getInt()];
+        source.get(content);
+        return content;
+    }
+
+    /**
+     * @param names - строки в UTF-8
+     * @return - сколько байт список занимает в кадре
+     */
+    public static int stringsSize(List<byte[]> names) {
+        int size = 4;
+        for (byte[] name : names) {
+            size += stringSize(name);
+        }
+        return size;
+    }
+
+    public static void putStrings(ByteBuffer target, List<byte[]> names) {
+        target.putInt(names.size());
+        for (byte[] name : names) {
+            putString(target, name);
+        }
+    }
+
+    public static List<String> getStrings(ByteBuffer source) {
+        int count = source.getInt();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(getString(source));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,88 @@
+package onefilesystem.utils;
+
+import java.nio.ByteBuffer;
+
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.model.Superblock;
+
+/**
+ * Бинарный формат суперблока:
+ * <pre>
+ * int    magic
+ * short  formatVersion
+ * int    maxFilesCount
+ * long   headerCount
+ * long   contentHighWaterMark
+ * int    journalSize     (с версии 2)
+ * long   journalEpoch    (с версии 2)
+ * long   changeCounter   (в суперблоке версии 2 раньше не использовался и равен 0)
+ * int    indexBucketsCount (с версии 3)
+ * </pre>
+ * Суперблок занимает SUPERBLOCK_SIZE байт, остаток не используется. Суперблок версии 1 читается как суперблок без
+ * журнала, версии 2 - как суперблок без хеш-индекса имен. Версия 3 пишется только у файловой системы с хеш-индексом,
+ * чтобы ее не открыла прежняя версия, которая не знает, что контент начинается за индексом.
+ * <p>
+ * Счетчик изменений пишется отдельно от остального суперблока, по смещению CHANGE_COUNTER_OFFSET (см. ChangeCounter).
+ */
+public class SuperblockCodec {
+    private SuperblockCodec() {
+    }
+
+    public static final int MAGIC = 0x4F465353;
+    public static final short FORMAT_VERSION = 2;
+    public static final short FORMAT_VERSION_WITH_HEADER_INDEX = 3;
+    private static final short FORMAT_VERSION_WITHOUT_JOURNAL = 1;
+
+    public static final int CHANGE_COUNTER_OFFSET = 4 + 2 + 4 + 8 + 8 + 4 + 8;
+    private static final int INDEX_BUCKETS_COUNT_OFFSET = CHANGE_COUNTER_OFFSET + 8;
+    public static final int ENCODED_SIZE = INDEX_BUCKETS_COUNT_OFFSET + 4;
+
+    /**
+     * Записать суперблок в буфер начиная с его текущей позиции
+     */
+    public static void encode(Superblock superblock, ByteBuffer target) {
+        target.putInt(MAGIC);
+        target.putShort((short) superblock.getFormatVersion());
+        target.putInt(superblock.getMaxFilesCount());
+        target.putLong(superblock.getHeaderCount());
+        target.putLong(superblock.getContentHighWaterMark());
+        target.putInt(superblock.getJournalSize());
+        target.putLong(superblock.getJournalEpoch());
+        target.putLong(superblock.getChangeCounter());
+        target.putInt(superblock.getIndexBucketsCount());
+    }
+
+    /**
+     * Прочитать суперблок из буфера начиная с нулевой позиции
+     */
+    public static Superblock decode(ByteBuffer source) {
+        if (!isSuperblock(source)) {
+            throw new OneFileSystemException("Superblock not found");
+        }
+
+        short formatVersion = source.getShort(4);
+        if (formatVersion != FORMAT_VERSION && formatVersion != FORMAT_VERSION_WITHOUT_JOURNAL
+                && formatVersion != FORMAT_VERSION_WITH_HEADER_INDEX) {
+            throw new OneFileSystemException("Unsupported file system format version " + formatVersion);
+        }
+
+        boolean hasJournal = formatVersion >= FORMAT_VERSION;
+        boolean hasIndex = formatVersion >= FORMAT_VERSION_WITH_HEADER_INDEX;
+        Superblock superblock = new Superblock(formatVersion, source.getInt(6), hasJournal ? source.getInt(26) : 0,
+                hasIndex ? source.getInt(INDEX_BUCKETS_COUNT_OFFSET) : 0);
+        superblock.setHeaderCount(source.getLong(10));
+        superblock.setContentHighWaterMark(source.getLong(18));
+        if (hasJournal) {
+            superblock.setJournalEpoch(source.getLong(30));
+            superblock.setChangeCounter(source.getLong(CHANGE_COUNTER_OFFSET));
+        }
+        return superblock;
+    }
+
+    /**
+     * @return - начинается ли буфер с суперблока
+     */
+    public static boolean isSuperblock(ByteBuffer source) {
+        return source.getInt(0) == MAGIC;
+    }
+}
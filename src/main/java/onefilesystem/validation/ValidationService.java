@@ -1,13 +1,19 @@
 package onefilesystem.validation;
 
 import java.util.Map;
+import java.util.function.Predicate;
 
 import onefilesystem.exception.FileAlreadyExistsException;
 import onefilesystem.exception.FileNotFoundException;
 import onefilesystem.exception.TooLargeFileException;
+import onefilesystem.exception.TooLongFileNameException;
+import onefilesystem.exception.TooManyFilesException;
 import onefilesystem.model.FileHeader;
 
 import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static onefilesystem.utils.Constants.SERVICE_NAME_PREFIX;
+import static onefilesystem.utils.FileHeaderCodec.MAX_FILE_NAME_LENGTH;
+import static onefilesystem.utils.FileHeaderCodec.utf8Length;
 
 public class ValidationService {
     private ValidationService() {
@@ -17,8 +23,18 @@ public class ValidationService {
      * Если файл существует, то бросить FileAlreadyExistsException
      */
     public static void isFileAlreadyExists(Map<String, FileHeader> existingFiles, String fileName) {
-        FileHeader fileHeader = existingFiles.get(fileName);
-        if (fileHeader != null && !fileHeader.isDeleted()) {
+        if (existingFiles.containsKey(fileName)) {
+            throw new FileAlreadyExistsException(fileName);
+        }
+    }
+
+    /**
+     * Если файл существует, то бросить FileAlreadyExistsException
+     *
+     * @param exists - проверка существования файла по имени
+     */
+    public static void isFileAlreadyExists(Predicate<String> exists, String fileName) {
+        if (exists.test(fileName)) {
             throw new FileAlreadyExistsException(fileName);
         }
     }
@@ -27,8 +43,7 @@ public class ValidationService {
      * Если файл не существует, то бросить FileNotFoundException
      */
     public static void isFileExists(Map<String, FileHeader> existingFiles, String fileName) {
-        FileHeader fileHeader = existingFiles.get(fileName);
-        if (fileHeader == null || fileHeader.isDeleted()) {
+        if (!existingFiles.containsKey(fileName)) {
             throw new FileNotFoundException(fileName);
         }
     }
@@ -37,8 +52,55 @@ public class ValidationService {
      * Если размер файла больше разрешенного, то бросить TooLargeFileException
      */
     public static void checkContentSize(byte[] content, String fileName) {
-        if (content.length >= MAX_FILE_SIZE) {
-            throw new TooLargeFileException(fileName, content.length);
+        checkContentSize(content.length, fileName);
+    }
+
+    /**
+     * Если размер файла больше разрешенного, то бросить TooLargeFileException
+     */
+    public static void checkContentSize(long contentSize, String fileName) {
+        if (contentSize >= MAX_FILE_SIZE) {
+            throw new TooLargeFileException(fileName, contentSize);
+        }
+    }
+
+    /**
+     * Если имя файла не помещается в заголовок, то бросить TooLongFileNameException
+     */
+    public static void checkFileName(String fileName) {
+        int length = utf8Length(fileName);
+        if (length > MAX_FILE_NAME_LENGTH) {
+            throw new TooLongFileNameException(fileName, length);
+        }
+    }
+
+    /**
+     * Если имя зарезервировано под служебные файлы (начинается с SERVICE_NAME_PREFIX), то бросить
+     * IllegalArgumentException. Служебные файлы создаются только через FileSystem.createServiceFile
+     */
+    public static void checkNotReserved(String fileName) {
+        checkArgument(!isServiceName(fileName), "File name is reserved: " + fileName);
+    }
+
+    /**
+     * @return - зарезервировано ли имя под служебные файлы
+     */
+    public static boolean isServiceName(String fileName) {
+        return !fileName.isEmpty() && fileName.charAt(0) == SERVICE_NAME_PREFIX;
+    }
+
+    /**
+     * Если все слоты заголовков заняты, то бросить TooManyFilesException
+     */
+    public static void checkFilesCount(long filesCount, int maxFilesCount, String fileName) {
+        if (filesCount >= maxFilesCount) {
+            throw new TooManyFilesException(fileName, maxFilesCount);
+        }
+    }
+
+    public static void checkArgument(boolean expression, Object errorMessage) {
+        if (!expression) {
+            throw new IllegalArgumentException(String.valueOf(errorMessage));
         }
     }
 
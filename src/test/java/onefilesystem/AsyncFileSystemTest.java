@@ -0,0 +1,121 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.TooManyInFlightOperationsException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static onefilesystem.utils.Constants.ASYNC_MAX_IN_FLIGHT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncFileSystemTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String DEFAULT_FILE_NAME = "file";
+    private static final String DEFAULT_CONTENT = "default-content";
+    private static final int FILES_COUNT = 2000;
+
+    private FileSystem fileSystem;
+    private AsyncFileSystem asyncFileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        asyncFileSystem.close();
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+    }
+
+    /**
+     * Один поток запускает операции над тысячами файлов и не ждет их. Операции над одним файлом выполняются в порядке
+     * вызова, поэтому чтение сразу после записи видит записанный контент
+     */
+    @Test
+    void manyOperationsFromOneThread() {
+        open(new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder().maxFilesCount(FILES_COUNT).build()), 3 * FILES_COUNT);
+
+        List<CompletableFuture<byte[]>> reads = new ArrayList<>(FILES_COUNT);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            String fileName = DEFAULT_FILE_NAME + i;
+            asyncFileSystem.createFile(fileName);
+            asyncFileSystem.writeContent(fileName, (DEFAULT_CONTENT + i).getBytes());
+            reads.add(asyncFileSystem.readContent(fileName));
+        }
+
+        for (int i = 0; i < FILES_COUNT; i++) {
+            assertEquals(DEFAULT_CONTENT + i, new String(reads.get(i).join()));
+        }
+        assertEquals(0, asyncFileSystem.getInFlightCount());
+    }
+
+    /**
+     * Читатель не видит недописанный контент: либо файла нет, либо контент пустой, либо записан целиком
+     */
+    @Test
+    void readerSeesWholeContent() {
+        open(new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        String expected = DEFAULT_CONTENT.repeat(1000);
+
+        CompletableFuture<Void> write = asyncFileSystem.createFile(DEFAULT_FILE_NAME)
+                .thenCompose(created -> asyncFileSystem.writeContent(DEFAULT_FILE_NAME, expected.getBytes()));
+
+        String actual = "";
+        while (actual.isEmpty()) {
+            try {
+                actual = new String(asyncFileSystem.readContent(DEFAULT_FILE_NAME).join());
+            } catch (CompletionException e) {
+                assertTrue(e.getCause() instanceof FileNotFoundException);
+            }
+        }
+
+        write.join();
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void rejectOperationsOverLimit() {
+        CountDownLatch release = new CountDownLatch(1);
+        open(new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME) {
+            @Override
+            public void writeContent(String fileName, byte[] content) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.writeContent(fileName, content);
+            }
+        }, 1);
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+
+        CompletableFuture<Void> blocked = asyncFileSystem.writeContent(DEFAULT_FILE_NAME, DEFAULT_CONTENT.getBytes());
+        CompletableFuture<byte[]> rejected = asyncFileSystem.readContent(DEFAULT_FILE_NAME);
+        release.countDown();
+
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(exception.getCause() instanceof TooManyInFlightOperationsException);
+        blocked.join();
+        assertEquals(DEFAULT_CONTENT, new String(asyncFileSystem.readContent(DEFAULT_FILE_NAME).join()));
+    }
+
+    private void open(FileSystem fileSystem) {
+        open(fileSystem, ASYNC_MAX_IN_FLIGHT);
+    }
+
+    private void open(FileSystem fileSystem, int maxInFlight) {
+        this.fileSystem = fileSystem;
+        this.asyncFileSystem = new AsyncFileSystem(fileSystem, 4, maxInFlight);
+    }
+}
@@ -0,0 +1,191 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import onefilesystem.exception.FileAlreadyExistsException;
+import onefilesystem.model.BulkTransferStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static onefilesystem.utils.JournalRecordCodec.RECORD_SIZE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkTransferTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-bulk-fs";
+    private static final int SHARDS_COUNT = 3;
+    private static final int FILES_COUNT = 300;
+    private static final int LARGE_FILE_SIZE = 3 * 1024 * 1024 + 17;
+    private Path source;
+    private Path target;
+    private FileSystem fileSystem;
+
+    @BeforeEach
+    public void before() throws IOException {
+        source = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        target = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            Path path = source.resolve(relativePath(i));
+            Files.createDirectories(path.getParent());
+            Files.write(path, content(i));
+        }
+        Files.write(source.resolve("large"), largeContent());
+        Files.createDirectories(source.resolve("empty-directory"));
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        deleteDirectory(source);
+        deleteDirectory(target);
+        Files.deleteIfExists(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        for (int i = 0; i < SHARDS_COUNT; i++) {
+            Files.deleteIfExists(Paths.get(FILE_SYSTEM_DIRECTORY,
+                    ShardedFileSystem.segmentName(FILE_SYSTEM_NAME, i, SHARDS_COUNT)));
+        }
+    }
+
+    @Test
+    void importAndExport() throws IOException {
+        fileSystem = open(Durability.NONE);
+        try (BulkTransfer bulkTransfer = new BulkTransfer(fileSystem, 4, 64)) {
+            BulkTransferStatistics imported = bulkTransfer.importDirectory(source, "imported/");
+            assertEquals(FILES_COUNT + 1, imported.getFilesCount());
+            assertImported("imported/");
+
+            BulkTransferStatistics exported = bulkTransfer.exportDirectory("imported/", target);
+            assertEquals(imported.getFilesCount(), exported.getFilesCount());
+            assertEquals(imported.getBytes(), exported.getBytes());
+        }
+
+        for (int i = 0; i < FILES_COUNT; i++) {
+            assertArrayEquals(content(i), Files.readAllBytes(target.resolve(relativePath(i))));
+        }
+        assertArrayEquals(largeContent(), Files.readAllBytes(target.resolve("large")));
+    }
+
+    /**
+     * Заголовки пачки фиксируются в журнале одной записью и восстанавливаются после повторного открытия, контрольные
+     * суммы совпадают с контентом
+     */
+    @Test
+    void importedFilesSurviveReopen() throws IOException {
+        fileSystem = open(Durability.PER_OPERATION);
+        try (BulkTransfer bulkTransfer = new BulkTransfer(fileSystem, 2, 16)) {
+            bulkTransfer.importDirectory(source, "");
+        }
+        fileSystem.createFile("after-import");
+        fileSystem.writeContent("after-import", content(1));
+        fileSystem.close();
+
+        fileSystem = open(Durability.PER_OPERATION);
+        assertImported("");
+        assertArrayEquals(content(1), fileSystem.readContent("after-import"));
+        assertEquals(List.of(), ((OneFileSystem) fileSystem).scrub().getCorruptedFiles());
+    }
+
+    /**
+     * Пачка больше журнала делится на пачки, которые в него помещаются
+     */
+    @Test
+    void batchIsCappedAtJournalCapacity() throws IOException {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .durability(Durability.PER_OPERATION)
+                .journalSize(16 * RECORD_SIZE)
+                .build());
+        try (BulkTransfer bulkTransfer = new BulkTransfer(fileSystem, 2, FILES_COUNT * 2)) {
+            bulkTransfer.importDirectory(source, "");
+        }
+        fileSystem.close();
+
+        fileSystem = open(Durability.PER_OPERATION);
+        assertImported("");
+    }
+
+    @Test
+    void importIntoShardedFileSystem() {
+        fileSystem = new ShardedFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, SHARDS_COUNT);
+        try (BulkTransfer bulkTransfer = new BulkTransfer(fileSystem)) {
+            bulkTransfer.importDirectory(source, "sharded/");
+        }
+
+        assertImported("sharded/");
+    }
+
+    /**
+     * Пачка с уже существующим файлом не фиксируется, ее место освобождается
+     */
+    @Test
+    void conflictingBatchIsRolledBack() {
+        fileSystem = open(Durability.NONE);
+        fileSystem.createFile(fileName("", FILES_COUNT - 1));
+
+        try (BulkTransfer bulkTransfer = new BulkTransfer(fileSystem, 2, FILES_COUNT * 2)) {
+            assertThrows(FileAlreadyExistsException.class, () -> bulkTransfer.importDirectory(source, ""));
+        }
+
+        assertEquals(1, fileSystem.list("").size());
+        assertFalse(fileSystem.exists(fileName("", 0)));
+    }
+
+    private OneFileSystem open(Durability durability) {
+        return new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .durability(durability)
+                .verification(Verification.ON_READ)
+                .build());
+    }
+
+    private void assertImported(String prefix) {
+        assertEquals(FILES_COUNT, fileSystem.list(prefix + "dir").size());
+        for (int i = 0; i < FILES_COUNT; i++) {
+            assertArrayEquals(content(i), fileSystem.readContent(fileName(prefix, i)));
+        }
+        assertArrayEquals(largeContent(), fileSystem.readContent(prefix + "large"));
+    }
+
+    /**
+     * Файлы лежат в директориях двух уровней, каждый седьмой - пустой
+     */
+    private static String relativePath(int i) {
+        return "dir" + i % 5 + "/sub" + i % 3 + "/file" + i;
+    }
+
+    private static String fileName(String prefix, int i) {
+        return prefix + relativePath(i);
+    }
+
+    private static byte[] content(int i) {
+        byte[] content = new byte[i % 7 == 0 ? 0 : i * 37];
+        for (int j = 0; j < content.length; j++) {
+            content[j] = (byte) (i + j);
+        }
+        return content;
+    }
+
+    private static byte[] largeContent() {
+        byte[] content = new byte[LARGE_FILE_SIZE];
+        for (int j = 0; j < content.length; j++) {
+            content[j] = (byte) (j * 31);
+        }
+        return content;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import onefilesystem.compression.Compression;
+import onefilesystem.exception.CorruptedContentException;
+import onefilesystem.model.ScrubStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Порча данных имитируется записью в файл файловой системы в обход OneFileSystem
+ */
+class ChecksumTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "file";
+    private static final String OTHER_FILE_NAME = "other";
+    private static final String MARKER = "corrupt-me";
+
+    private final Path path = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    private OneFileSystem fileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(path);
+    }
+
+    @Test
+    void detectCorruptedContentOnRead() throws IOException {
+        fileSystem = open(Verification.ON_READ);
+        createFiles();
+        fileSystem.close();
+
+        corruptContent();
+        fileSystem = open(Verification.ON_READ);
+
+        assertThrows(CorruptedContentException.class, () -> fileSystem.readContent(FILE_NAME));
+        assertEquals("other", new String(fileSystem.readContent(OTHER_FILE_NAME), StandardCharsets.UTF_8));
+        assertEquals(1, fileSystem.getMetrics().getChecksumMismatches());
+
+        ScrubStatistics statistics = fileSystem.scrub();
+        assertEquals(2, statistics.getCheckedFilesCount());
+        assertEquals(List.of(FILE_NAME), statistics.getCorruptedFiles());
+    }
+
+    @Test
+    void detectCorruptedCompressedContentInBackground() throws Exception {
+        fileSystem = open(Verification.OFF);
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, (MARKER + " " + "abc".repeat(1000)).getBytes(StandardCharsets.UTF_8),
+                Compression.LZ);
+        fileSystem.close();
+
+        corruptContent();
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .verification(Verification.BACKGROUND)
+                .scrubInterval(Duration.ofMillis(10))
+                .build());
+
+        while (fileSystem.getScrubStatistics() == null) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(FILE_NAME), fileSystem.getScrubStatistics().getCorruptedFiles());
+    }
+
+    /**
+     * Испорченный заголовок пропускается при открытии, остальные файлы читаются
+     */
+    @Test
+    void skipCorruptedHeader() throws IOException {
+        fileSystem = open(Verification.OFF);
+        createFiles();
+        fileSystem.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(HEADERS_START_POSITION + 16);
+            file.write(file.read() ^ 1);
+        }
+        fileSystem = open(Verification.OFF);
+
+        assertEquals(1, fileSystem.getOpenStatistics().getCorruptedHeadersCount());
+        assertEquals(1, fileSystem.getOpenStatistics().getLiveFilesCount());
+        assertEquals("other", new String(fileSystem.readContent(OTHER_FILE_NAME), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Дописывание продолжает контрольную сумму, запись внутрь контента пересчитывает ее или, если проверки выключены,
+     * сбрасывает
+     */
+    @Test
+    void keepChecksumOnRangedWrites() throws IOException {
+        fileSystem = open(Verification.ON_READ);
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.append(FILE_NAME, ByteBuffer.wrap("first".getBytes(StandardCharsets.UTF_8)));
+        fileSystem.write(FILE_NAME, 10, ByteBuffer.wrap("second".getBytes(StandardCharsets.UTF_8)));
+        fileSystem.write(FILE_NAME, 0, ByteBuffer.wrap("F".getBytes(StandardCharsets.UTF_8)));
+        fileSystem.truncate(FILE_NAME, 12);
+        fileSystem.close();
+
+        fileSystem = open(Verification.ON_READ);
+        assertArrayEquals("First\0\0\0\0\0se".getBytes(StandardCharsets.UTF_8), fileSystem.readContent(FILE_NAME));
+        ScrubStatistics statistics = fileSystem.scrub();
+        assertEquals(1, statistics.getCheckedFilesCount());
+        assertEquals(Collections.emptyList(), statistics.getCorruptedFiles());
+        fileSystem.close();
+
+        fileSystem = open(Verification.OFF);
+        fileSystem.write(FILE_NAME, 0, ByteBuffer.wrap("f".getBytes(StandardCharsets.UTF_8)));
+        statistics = fileSystem.scrub();
+        assertEquals(0, statistics.getCheckedFilesCount());
+        assertEquals(1, statistics.getSkippedFilesCount());
+
+        fileSystem.writeContent(FILE_NAME, "content".getBytes(StandardCharsets.UTF_8));
+        assertFalse(fileSystem.scrub().getCorruptedFiles().contains(FILE_NAME));
+        assertEquals(1, fileSystem.getScrubStatistics().getCheckedFilesCount());
+    }
+
+    private OneFileSystem open(Verification verification) {
+        return new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder().verification(verification).build());
+    }
+
+    private void createFiles() {
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, (MARKER + " content").getBytes(StandardCharsets.UTF_8));
+        fileSystem.createFile(OTHER_FILE_NAME);
+        fileSystem.writeContent(OTHER_FILE_NAME, "other".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Поменять один бит в начале MARKER. LZ хранит первые байты контента как есть, поэтому MARKER находится и в сжатом
+     * контенте
+     */
+    private void corruptContent() throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        byte[] marker = MARKER.substring(0, 4).getBytes(StandardCharsets.UTF_8);
+        int position = indexOf(bytes, marker);
+        assertTrue(position > 0);
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(position);
+            file.write(bytes[position] ^ 1);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,128 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import onefilesystem.model.CompactionStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactionTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_COUNT = 40;
+    private static final int CONTENT_SIZE = 4096;
+
+    private final Path path = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    private OneFileSystem fileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(path);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Durability.class, names = {"NONE", "PER_OPERATION"})
+    void compactReclaimsSpaceOfDeletedFiles(Durability durability) throws IOException {
+        OneFileSystemOptions options = OneFileSystemOptions.builder().durability(durability).build();
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, options);
+        createFiles();
+        for (int i = 0; i < FILES_COUNT; i += 2) {
+            fileSystem.deleteFile(FILE_NAME + i);
+        }
+        long sizeBefore = Files.size(path);
+
+        CompactionStatistics statistics = fileSystem.compact();
+
+        assertTrue(statistics.getMovedFilesCount() > 0);
+        assertEquals(sizeBefore - Files.size(path), statistics.getReclaimedBytes());
+        assertTrue(statistics.getReclaimedBytes() >= (long) FILES_COUNT / 2 * CONTENT_SIZE - CONTENT_SIZE);
+        assertTrue(statistics.getMaxPauseNanos() > 0);
+        assertFilesIntact(1, 2);
+
+        fileSystem.close();
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, options);
+        assertFilesIntact(1, 2);
+        assertEquals(0, fileSystem.compact().getMovedFilesCount());
+    }
+
+    @Test
+    void backgroundCompactionWithConcurrentWriters() throws Exception {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .compactionInterval(Duration.ofMillis(1))
+                .compactionIoBudget(0)
+                .build());
+        createFiles();
+
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 2; thread++) {
+            int first = thread;
+            futures.add(executor.submit(() -> {
+                for (int round = 0; !stop.get(); round++) {
+                    for (int i = first; i < FILES_COUNT; i += 2) {
+                        String fileName = FILE_NAME + i;
+                        assertArrayEquals(content(i), fileSystem.readContent(fileName));
+                        if (i % 4 == first) {
+                            // короткий контент освобождает хвост экстента, длинный заставляет переехать
+                            fileSystem.writeContent(fileName, round % 2 == 0 ? new byte[1] : content(i));
+                            fileSystem.writeContent(fileName, content(i));
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        Thread.sleep(500);
+        stop.set(true);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertNotNull(fileSystem.getCompactionStatistics());
+        assertFilesIntact(0, 1);
+    }
+
+    private void createFiles() {
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, content(i));
+        }
+    }
+
+    private void assertFilesIntact(int first, int step) {
+        for (int i = first; i < FILES_COUNT; i += step) {
+            assertArrayEquals(content(i), fileSystem.readContent(FILE_NAME + i));
+        }
+    }
+
+    private static byte[] content(int i) {
+        byte[] content = new byte[CONTENT_SIZE];
+        for (int j = 0; j < content.length; j++) {
+            content[j] = (byte) (i * 31 + j);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,107 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import onefilesystem.compression.Compression;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static onefilesystem.utils.Constants.CONTENT_START_POSITION;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressionTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "file";
+    private static final int CONTENT_SIZE = 1_000_000;
+
+    private final Path path = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    private OneFileSystem fileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(path);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Compression.class, names = {"DEFLATE", "LZ"})
+    void writeAndReadCompressedContent(Compression compression) throws IOException {
+        OneFileSystemOptions options = OneFileSystemOptions.builder()
+                .compression(compression)
+                .durability(Durability.PER_OPERATION)
+                .build();
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, options);
+        byte[] content = text();
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, content);
+
+        assertTrue(Files.size(path) < CONTENT_START_POSITION + CONTENT_SIZE / 2);
+        assertTrue(fileSystem.getMetrics().getStoredBytes() < CONTENT_SIZE / 2);
+        assertEquals(CONTENT_SIZE, fileSystem.size(FILE_NAME));
+        assertArrayEquals(content, fileSystem.readContent(FILE_NAME));
+        assertEquals(ByteBuffer.wrap(content, 1000, 100), read(1000, 100));
+
+        fileSystem.close();
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder().readMode(ReadMode.MMAP).build());
+        assertArrayEquals(content, fileSystem.readContent(FILE_NAME));
+        assertEquals(ByteBuffer.wrap(content), fileSystem.readContentView(FILE_NAME));
+        assertEquals(ByteBuffer.wrap(content, CONTENT_SIZE - 10, 10), read(CONTENT_SIZE - 10, 100));
+    }
+
+    /**
+     * Запись участка и обрезка переписывают сжатый файл несжатым
+     */
+    @ParameterizedTest
+    @EnumSource(value = Durability.class, names = {"NONE", "PER_OPERATION"})
+    void changeRangeOfCompressedContent(Durability durability) throws IOException {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder().durability(durability).build());
+        byte[] content = text();
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, content, Compression.LZ);
+        long compressedSize = Files.size(path);
+
+        fileSystem.write(FILE_NAME, 10, ByteBuffer.wrap("changed".getBytes(StandardCharsets.UTF_8)));
+        fileSystem.append(FILE_NAME, ByteBuffer.wrap("tail".getBytes(StandardCharsets.UTF_8)));
+        System.arraycopy("changed".getBytes(StandardCharsets.UTF_8), 0, content, 10, 7);
+        byte[] expected = Arrays.copyOf(content, CONTENT_SIZE + 4);
+        System.arraycopy("tail".getBytes(StandardCharsets.UTF_8), 0, expected, CONTENT_SIZE, 4);
+
+        assertTrue(Files.size(path) > compressedSize + CONTENT_SIZE / 2);
+        assertArrayEquals(expected, fileSystem.readContent(FILE_NAME));
+
+        fileSystem.writeContent(FILE_NAME, content, Compression.DEFLATE);
+        fileSystem.truncate(FILE_NAME, 100);
+        assertArrayEquals(Arrays.copyOf(content, 100), fileSystem.readContent(FILE_NAME));
+
+        fileSystem.close();
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        assertArrayEquals(Arrays.copyOf(content, 100), fileSystem.readContent(FILE_NAME));
+    }
+
+    private ByteBuffer read(long offset, int length) {
+        ByteBuffer target = ByteBuffer.allocate(length);
+        fileSystem.read(FILE_NAME, offset, target);
+        return target.flip();
+    }
+
+    private static byte[] text() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < CONTENT_SIZE; i++) {
+            text.append("{\"id\":").append(i).append(",\"name\":\"file-").append(i % 97).append("\"}\n");
+        }
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), CONTENT_SIZE);
+    }
+}
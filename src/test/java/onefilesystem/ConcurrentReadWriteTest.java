@@ -7,17 +7,26 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.metrics.MetricsListener;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static java.util.concurrent.CompletableFuture.runAsync;
+import static onefilesystem.utils.Constants.LOCK_STRIPES_COUNT;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ConcurrentReadWriteTest {
 
@@ -63,6 +72,81 @@ class ConcurrentReadWriteTest {
         futures.forEach(CompletableFuture::join);
     }
 
+    /**
+     * Пока запись в файл держит блокировку своей полосы, операции над файлом другой полосы не ждут, а с одной
+     * глобальной блокировкой ждут. Запись останавливается в момент записи заголовка на место, под блокировкой файла
+     */
+    @Test
+    void differentStripesDoNotBlockEachOther() throws Exception {
+        assertFalse(otherFileBlocked(LOCK_STRIPES_COUNT));
+        assertTrue(otherFileBlocked(1));
+    }
+
+    /**
+     * @return - ждали ли запись и чтение файла другой полосы, пока запись в первый файл держала блокировку
+     */
+    private boolean otherFileBlocked(int lockStripesCount) throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Thread> blockedThread = new AtomicReference<>();
+        MetricsListener blocking = new MetricsListener() {
+            @Override
+            public void onHeadersEncoded(int count, long nanos) {
+                if (Thread.currentThread() == blockedThread.get()) {
+                    locked.countDown();
+                    awaitLatch(release);
+                }
+            }
+        };
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .lockStripesCount(lockStripesCount)
+                .metricsListener(blocking)
+                .build());
+
+        StripedLocks stripes = new StripedLocks(LOCK_STRIPES_COUNT);
+        String otherFileName = DEFAULT_FILE_NAME + 1;
+        for (int i = 2; stripes.forFile(otherFileName) == stripes.forFile(DEFAULT_FILE_NAME); i++) {
+            otherFileName = DEFAULT_FILE_NAME + i;
+        }
+        createFile(DEFAULT_FILE_NAME, DEFAULT_CONTENT);
+        createFile(otherFileName, DEFAULT_CONTENT);
+
+        CompletableFuture<Void> write = runAsync(() -> {
+            blockedThread.set(Thread.currentThread());
+            fileSystem.writeContent(DEFAULT_FILE_NAME, "changed".getBytes());
+        }, executorService);
+        locked.await();
+
+        String fileName = otherFileName;
+        CompletableFuture<Void> other = runAsync(() -> {
+            fileSystem.writeContent(fileName, "other".getBytes());
+            assertArrayEquals("other".getBytes(), fileSystem.readContent(fileName));
+        }, executorService);
+        boolean blocked;
+        try {
+            other.get(1, TimeUnit.SECONDS);
+            blocked = false;
+        } catch (TimeoutException e) {
+            blocked = true;
+        }
+
+        release.countDown();
+        write.join();
+        other.join();
+        return blocked;
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Прочитать файл DEFAULT_FILE_NAME + id после его появления и сравнить с ожидаемым контентом
      */
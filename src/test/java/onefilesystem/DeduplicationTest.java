@@ -0,0 +1,147 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static onefilesystem.utils.Constants.CONTENT_START_POSITION;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeduplicationTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_COUNT = 10;
+    private static final int CONTENT_SIZE = 100_000;
+
+    private final Path path = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    private final byte[] content = content(1);
+    private OneFileSystem fileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(path);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Durability.class, names = {"NONE", "PER_OPERATION"})
+    void identicalContentIsStoredOnce(Durability durability) throws IOException {
+        open(durability);
+        writeIdenticalFiles();
+
+        assertTrue(Files.size(path) < CONTENT_START_POSITION + 2 * CONTENT_SIZE);
+        assertEquals(CONTENT_SIZE, fileSystem.getMetrics().getStoredBytes());
+        assertEquals((FILES_COUNT - 1) * CONTENT_SIZE, fileSystem.getMetrics().getDeduplicatedBytes());
+        assertEquals(FILES_COUNT, fileSystem.getMetrics().getDeduplicationRatio(), 0.001);
+        assertEquals(FILES_COUNT - 1, fileSystem.getMetrics().getSharedWrites());
+        assertEquals(FILES_COUNT, fileSystem.getMetrics().getDeduplication().getCount());
+        assertAllFiles(content);
+    }
+
+    /**
+     * Изменение и удаление разделенного файла не трогают остальные файлы
+     */
+    @ParameterizedTest
+    @EnumSource(value = Durability.class, names = {"NONE", "PER_OPERATION"})
+    void changeSharedFile(Durability durability) throws IOException {
+        open(durability);
+        writeIdenticalFiles();
+
+        fileSystem.write(FILE_NAME + 0, 10, ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        fileSystem.append(FILE_NAME + 1, ByteBuffer.wrap(new byte[]{4}));
+        fileSystem.truncate(FILE_NAME + 2, 100);
+        fileSystem.writeContent(FILE_NAME + 3, content(2));
+        fileSystem.deleteFile(FILE_NAME + 4);
+
+        byte[] written = content.clone();
+        System.arraycopy(new byte[]{1, 2, 3}, 0, written, 10, 3);
+        byte[] appended = Arrays.copyOf(content, CONTENT_SIZE + 1);
+        appended[CONTENT_SIZE] = 4;
+        assertArrayEquals(written, fileSystem.readContent(FILE_NAME + 0));
+        assertArrayEquals(appended, fileSystem.readContent(FILE_NAME + 1));
+        assertArrayEquals(Arrays.copyOf(content, 100), fileSystem.readContent(FILE_NAME + 2));
+        assertArrayEquals(content(2), fileSystem.readContent(FILE_NAME + 3));
+        for (int i = 5; i < FILES_COUNT; i++) {
+            assertArrayEquals(content, fileSystem.readContent(FILE_NAME + i));
+        }
+        assertEquals((FILES_COUNT - 6) * CONTENT_SIZE, fileSystem.getMetrics().getDeduplicatedBytes());
+    }
+
+    /**
+     * Ссылки на экстенты восстанавливаются из заголовков: экстент освобождается только с последним файлом
+     */
+    @Test
+    void referencesAreRestoredOnOpen() throws IOException {
+        open(Durability.NONE);
+        writeIdenticalFiles();
+        fileSystem.close();
+
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        assertEquals((FILES_COUNT - 1) * CONTENT_SIZE, fileSystem.getMetrics().getDeduplicatedBytes());
+        for (int i = 0; i < FILES_COUNT - 1; i++) {
+            fileSystem.deleteFile(FILE_NAME + i);
+        }
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, content(2));
+
+        assertArrayEquals(content, fileSystem.readContent(FILE_NAME + (FILES_COUNT - 1)));
+        assertArrayEquals(content(2), fileSystem.readContent(FILE_NAME));
+        assertEquals(0, fileSystem.getMetrics().getDeduplicatedBytes());
+    }
+
+    @Test
+    void compactionKeepsSharedExtents() throws IOException {
+        open(Durability.NONE);
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, content(2));
+        writeIdenticalFiles();
+        fileSystem.deleteFile(FILE_NAME);
+
+        assertEquals(0, fileSystem.compact().getMovedFilesCount());
+        for (int i = 1; i < FILES_COUNT; i++) {
+            fileSystem.deleteFile(FILE_NAME + i);
+        }
+        assertEquals(1, fileSystem.compact().getMovedFilesCount());
+        assertArrayEquals(content, fileSystem.readContent(FILE_NAME + 0));
+        assertEquals(CONTENT_START_POSITION + CONTENT_SIZE + 512 - CONTENT_SIZE % 512, Files.size(path));
+    }
+
+    private void open(Durability durability) {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .deduplication(true)
+                .durability(durability)
+                .build());
+    }
+
+    private void writeIdenticalFiles() {
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, content.clone());
+        }
+    }
+
+    private void assertAllFiles(byte[] expected) {
+        for (int i = 0; i < FILES_COUNT; i++) {
+            assertArrayEquals(expected, fileSystem.readContent(FILE_NAME + i));
+        }
+    }
+
+    private static byte[] content(long seed) {
+        byte[] content = new byte[CONTENT_SIZE];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
@@ -0,0 +1,219 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import onefilesystem.exception.FileAlreadyExistsException;
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.model.Superblock;
+import onefilesystem.utils.SuperblockCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static onefilesystem.utils.Constants.HASH_INDEX_BUCKET_SIZE;
+import static onefilesystem.utils.Constants.SUPERBLOCK_SIZE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Файловая система с хеш-индексом имен на диске (HeaderIndex.DISK) и кэшем заголовков намного меньше числа файлов
+ */
+class DiskHeaderIndexTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_COUNT = 600;
+    private static final int MAX_FILES_COUNT = 1000;
+    private static final int HEADER_CACHE_SIZE = 32;
+
+    /**
+     * Имена с одинаковым String.hashCode, то есть с одинаковым хешем в индексе
+     */
+    private static final List<String> COLLIDING_NAMES = List.of("AaAa", "AaBB", "BBAa", "BBBB");
+
+    private final Path path = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    private OneFileSystem fileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(path);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Durability.class, names = {"NONE", "PER_OPERATION"})
+    void filesSurviveEvictionDeletionAndReopen(Durability durability) throws IOException {
+        fileSystem = open(durability, ReadMode.CHANNEL);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, content(i));
+        }
+        for (int i = 0; i < FILES_COUNT; i += 3) {
+            fileSystem.deleteFile(FILE_NAME + i);
+        }
+        for (int i = 0; i < FILES_COUNT; i += 6) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, content(i + 1));
+        }
+        assertFiles();
+
+        fileSystem.close();
+        // режим индекса берется из суперблока, а не из настроек
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        assertFalse(fileSystem.getOpenStatistics().isHeaderIndexRebuilt());
+        assertEquals(SuperblockCodec.FORMAT_VERSION_WITH_HEADER_INDEX, readSuperblock().getFormatVersion());
+        assertFiles();
+    }
+
+    @Test
+    void collidingNames() throws IOException {
+        fileSystem = open(Durability.NONE, ReadMode.MMAP);
+        for (String fileName : COLLIDING_NAMES) {
+            fileSystem.createFile(fileName);
+            fileSystem.writeContent(fileName, fileName.getBytes());
+        }
+        assertThrows(FileAlreadyExistsException.class, () -> fileSystem.createFile(COLLIDING_NAMES.get(2)));
+
+        // удаление из середины цепочки сдвигает следующие корзины назад
+        fileSystem.deleteFile(COLLIDING_NAMES.get(1));
+        assertFalse(fileSystem.exists(COLLIDING_NAMES.get(1)));
+        assertThrows(FileNotFoundException.class, () -> fileSystem.readContent(COLLIDING_NAMES.get(1)));
+        for (String fileName : List.of(COLLIDING_NAMES.get(0), COLLIDING_NAMES.get(2), COLLIDING_NAMES.get(3))) {
+            assertArrayEquals(fileName.getBytes(), fileSystem.readContent(fileName));
+        }
+
+        fileSystem.createFile(COLLIDING_NAMES.get(1));
+        fileSystem.close();
+        fileSystem = open(Durability.NONE, ReadMode.MMAP);
+        assertFalse(fileSystem.getOpenStatistics().isHeaderIndexRebuilt());
+        assertEquals(0, fileSystem.size(COLLIDING_NAMES.get(1)));
+        assertArrayEquals(COLLIDING_NAMES.get(3).getBytes(), fileSystem.readContent(COLLIDING_NAMES.get(3)));
+    }
+
+    /**
+     * Индекс пишется мимо журнала: если он не совпадает с заголовками, он перестраивается при открытии
+     */
+    @Test
+    void damagedIndexIsRebuiltOnOpen() throws IOException {
+        fileSystem = open(Durability.PER_OPERATION, ReadMode.CHANNEL);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, content(i));
+        }
+        fileSystem.close();
+
+        Superblock superblock = readSuperblock();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            int indexSize = superblock.getIndexBucketsCount() * HASH_INDEX_BUCKET_SIZE;
+            channel.write(ByteBuffer.allocate(indexSize / 2), superblock.getIndexPosition());
+        }
+
+        fileSystem = open(Durability.PER_OPERATION, ReadMode.CHANNEL);
+        assertTrue(fileSystem.getOpenStatistics().isHeaderIndexRebuilt());
+        for (int i = 0; i < FILES_COUNT; i++) {
+            assertArrayEquals(content(i), fileSystem.readContent(FILE_NAME + i));
+        }
+
+        fileSystem.close();
+        fileSystem = open(Durability.PER_OPERATION, ReadMode.CHANNEL);
+        assertFalse(fileSystem.getOpenStatistics().isHeaderIndexRebuilt());
+        assertEquals(FILES_COUNT, fileSystem.getOpenStatistics().getLiveFilesCount());
+    }
+
+    @Test
+    void compactionSnapshotAndScrub() throws IOException {
+        fileSystem = open(Durability.PER_OPERATION, ReadMode.CHANNEL);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, content(i));
+        }
+        for (int i = 0; i < FILES_COUNT; i += 2) {
+            fileSystem.deleteFile(FILE_NAME + i);
+        }
+
+        try (FileSystem snapshot = fileSystem.snapshot()) {
+            assertTrue(fileSystem.compact().getMovedFilesCount() > 0);
+            fileSystem.writeContent(FILE_NAME + 1, content(2));
+            assertArrayEquals(content(1), snapshot.readContent(FILE_NAME + 1));
+            assertEquals(FILES_COUNT / 2, snapshot.list("").size());
+        }
+
+        assertEquals(List.of(), fileSystem.scrub().getCorruptedFiles());
+        assertArrayEquals(content(2), fileSystem.readContent(FILE_NAME + 1));
+        for (int i = 3; i < FILES_COUNT; i += 2) {
+            assertArrayEquals(content(i), fileSystem.readContent(FILE_NAME + i));
+        }
+    }
+
+    /**
+     * Читатель из другого процесса держит заголовки в памяти и индекс не трогает
+     */
+    @Test
+    void readOnlyOpen() throws IOException {
+        fileSystem = open(Durability.NONE, ReadMode.CHANNEL);
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, content(1));
+
+        try (OneFileSystem reader = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder().readOnly(true).build())) {
+            assertArrayEquals(content(1), reader.readContent(FILE_NAME));
+            fileSystem.deleteFile(FILE_NAME);
+            assertFalse(reader.exists(FILE_NAME));
+        }
+    }
+
+    private OneFileSystem open(Durability durability, ReadMode readMode) {
+        return new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .headerIndex(HeaderIndex.DISK)
+                .headerCacheSize(HEADER_CACHE_SIZE)
+                .maxFilesCount(MAX_FILES_COUNT)
+                .durability(durability)
+                .readMode(readMode)
+                .build());
+    }
+
+    private void assertFiles() {
+        for (int i = 0; i < FILES_COUNT; i++) {
+            String fileName = FILE_NAME + i;
+            if (i % 6 == 0) {
+                assertArrayEquals(content(i + 1), fileSystem.readContent(fileName));
+            } else if (i % 3 == 0) {
+                assertFalse(fileSystem.exists(fileName));
+            } else {
+                assertTrue(fileSystem.exists(fileName));
+                assertArrayEquals(content(i), fileSystem.readContent(fileName));
+            }
+        }
+        assertEquals(FILES_COUNT - FILES_COUNT / 6, fileSystem.list("").size());
+    }
+
+    private Superblock readSuperblock() {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer byteBuffer = ByteBuffer.allocate(SUPERBLOCK_SIZE);
+            channel.read(byteBuffer, 0);
+            return SuperblockCodec.decode(byteBuffer.rewind());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] content(int i) {
+        byte[] content = new byte[100 + i % 50];
+        for (int j = 0; j < content.length; j++) {
+            content[j] = (byte) (i + j);
+        }
+        return content;
+    }
+}
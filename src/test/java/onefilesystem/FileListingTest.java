@@ -0,0 +1,103 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import onefilesystem.compression.Compression;
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.model.FileStat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileListingTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final List<String> FILE_NAMES = List.of(
+            "a", "a.txt", "a/b", "a/c/d", "a/c/e", "a/c0", "b/x", "b/y/z");
+    private OneFileSystem fileSystem;
+
+    @BeforeEach
+    public void before() {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        FILE_NAMES.forEach(fileSystem::createFile);
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+    }
+
+    @Test
+    void listByPrefix() {
+        assertEquals(FILE_NAMES, fileSystem.list(""));
+        assertEquals(List.of("a/b", "a/c/d", "a/c/e", "a/c0"), fileSystem.list("a/"));
+        assertEquals(List.of("a/c/d", "a/c/e", "a/c0"), fileSystem.list("a/c"));
+        assertEquals(List.of(), fileSystem.list("c"));
+    }
+
+    @Test
+    void listDirectory() {
+        assertEquals(List.of("a", "a.txt", "a/", "b/"), fileSystem.listDirectory(""));
+        assertEquals(List.of("a/b", "a/c/", "a/c0"), fileSystem.listDirectory("a"));
+        assertEquals(List.of("a/c/d", "a/c/e"), fileSystem.listDirectory("a/c/"));
+        assertEquals(List.of("b/x", "b/y/"), fileSystem.listDirectory("b"));
+        assertEquals(List.of(), fileSystem.listDirectory("c"));
+    }
+
+    @Test
+    void listAllByPages() {
+        List<String> names = new ArrayList<>();
+        List<String> page = fileSystem.listAll(null, 3);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 3);
+            names.addAll(page);
+            page = fileSystem.listAll(page.get(page.size() - 1), 3);
+        }
+
+        assertEquals(FILE_NAMES, names);
+        assertThrows(IllegalArgumentException.class, () -> fileSystem.listAll(null, 0));
+    }
+
+    @Test
+    void deletedFilesAreNotListed() {
+        fileSystem.deleteFile("a/c/d");
+
+        assertFalse(fileSystem.exists("a/c/d"));
+        assertTrue(fileSystem.exists("a/c/e"));
+        assertEquals(List.of("a/c/e"), fileSystem.listDirectory("a/c"));
+        assertEquals(List.of("a/b", "a/c/", "a/c0"), fileSystem.listDirectory("a"));
+    }
+
+    @Test
+    void indexIsRestoredOnOpen() throws IOException {
+        fileSystem.deleteFile("a/b");
+        fileSystem.close();
+
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        assertEquals(List.of("a/c/d", "a/c/e", "a/c0"), fileSystem.list("a/"));
+    }
+
+    @Test
+    void stat() {
+        byte[] content = new byte[64 * 1024];
+        fileSystem.writeContent("a", content, Compression.LZ);
+
+        FileStat stat = fileSystem.stat("a");
+        assertEquals("a", stat.getFileName());
+        assertEquals(content.length, stat.getSize());
+        assertTrue(stat.getStoredSize() < content.length);
+        assertEquals(Compression.LZ, stat.getCompression());
+        assertThrows(FileNotFoundException.class, () -> fileSystem.stat("c"));
+    }
+}
@@ -0,0 +1,221 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.metrics.MetricsListener;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
+import static onefilesystem.utils.Constants.MAX_FILES_COUNT;
+import static onefilesystem.utils.JournalRecordCodec.RECORD_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Сбой имитируется копией файла файловой системы, снятой до close()
+ */
+class JournalTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String CRASHED_FILE_SYSTEM_NAME = "test-fs-crashed";
+    private static final String DEFAULT_FILE_NAME = "file";
+    private static final long JOURNAL_POSITION = HEADERS_START_POSITION + (long) MAX_FILES_COUNT * FILE_HEADER_SIZE;
+
+    private FileSystem fileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.deleteIfExists(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        Files.deleteIfExists(Paths.get(FILE_SYSTEM_DIRECTORY, CRASHED_FILE_SYSTEM_NAME));
+    }
+
+    /**
+     * Заголовок не успел записаться на место, но запись журнала устойчива
+     */
+    @Test
+    void replayLostHeader() throws IOException {
+        fileSystem = open(FILE_SYSTEM_NAME, Durability.PER_OPERATION);
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.writeContent(DEFAULT_FILE_NAME, "content".getBytes());
+
+        Path crashed = crash();
+        overwrite(crashed, HEADERS_START_POSITION, new byte[FILE_HEADER_SIZE]);
+
+        try (OneFileSystem recovered = open(CRASHED_FILE_SYSTEM_NAME, Durability.NONE)) {
+            assertEquals(2, recovered.getOpenStatistics().getJournalRecordsReplayed());
+            assertEquals("content", new String(recovered.readContent(DEFAULT_FILE_NAME)));
+        }
+    }
+
+    /**
+     * Недописанная запись отбрасывается, файл остается со старым контентом: новый контент писался в другой экстент
+     */
+    @Test
+    void discardTornRecord() throws IOException {
+        fileSystem = open(FILE_SYSTEM_NAME, Durability.PER_OPERATION);
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.writeContent(DEFAULT_FILE_NAME, "old".getBytes());
+        fileSystem.writeContent(DEFAULT_FILE_NAME, "new content".getBytes());
+
+        Path crashed = crash();
+        overwrite(crashed, HEADERS_START_POSITION, new byte[FILE_HEADER_SIZE]);
+        overwrite(crashed, JOURNAL_POSITION + 2 * RECORD_SIZE + RECORD_SIZE - 1, new byte[]{1});
+
+        try (OneFileSystem recovered = open(CRASHED_FILE_SYSTEM_NAME, Durability.NONE)) {
+            assertEquals(2, recovered.getOpenStatistics().getJournalRecordsReplayed());
+            assertEquals("old", new String(recovered.readContent(DEFAULT_FILE_NAME)));
+        }
+    }
+
+    /**
+     * После checkpoint старые записи не проигрываются поверх новых заголовков
+     */
+    @Test
+    void groupCommitWithCheckpoints() throws Exception {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .durability(Durability.GROUP_COMMIT)
+                .journalSize(4 * RECORD_SIZE)
+                .build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String fileName = DEFAULT_FILE_NAME + i;
+                futures.add(executor.submit(() -> {
+                    fileSystem.createFile(fileName);
+                    for (int j = 0; j < 20; j++) {
+                        fileSystem.writeContent(fileName, (fileName + j).getBytes());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        crash();
+        try (OneFileSystem recovered = open(CRASHED_FILE_SYSTEM_NAME, Durability.NONE)) {
+            for (int i = 0; i < 4; i++) {
+                assertEquals(DEFAULT_FILE_NAME + i + 19, new String(recovered.readContent(DEFAULT_FILE_NAME + i)));
+            }
+        }
+    }
+
+    /**
+     * Заголовок не записался на место после записи журнала: файл в памяти не меняется, новый экстент не освобождается,
+     * изменения отклоняются до переоткрытия, а при открытии запись проигрывается
+     */
+    @Test
+    void failedCommitFailsJournal() throws IOException {
+        AtomicBoolean failHeaderWrites = new AtomicBoolean();
+        fileSystem = openFailing(failHeaderWrites);
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.writeContent(DEFAULT_FILE_NAME, "old".getBytes());
+
+        failHeaderWrites.set(true);
+        assertThrows(IllegalStateException.class,
+                () -> fileSystem.writeContent(DEFAULT_FILE_NAME, "new content".getBytes()));
+        failHeaderWrites.set(false);
+
+        assertEquals("old", new String(fileSystem.readContent(DEFAULT_FILE_NAME)));
+        assertThrows(OneFileSystemException.class, () -> fileSystem.createFile("other"));
+        fileSystem.close();
+
+        fileSystem = open(FILE_SYSTEM_NAME, Durability.PER_OPERATION);
+        assertEquals(3, ((OneFileSystem) fileSystem).getOpenStatistics().getJournalRecordsReplayed());
+        fileSystem.createFile("other");
+        fileSystem.writeContent("other", "other content".getBytes());
+        assertEquals("new content", new String(fileSystem.readContent(DEFAULT_FILE_NAME)));
+        assertEquals("other content", new String(fileSystem.readContent("other")));
+    }
+
+    /**
+     * Обрезка, запись участка и удаление фиксируют копию заголовка: после неудачной фиксации файл в памяти прежний
+     */
+    @Test
+    void failedCommitKeepsHeader() throws IOException {
+        AtomicBoolean failHeaderWrites = new AtomicBoolean();
+        String content = "content";
+        for (int operation = 0; operation < 3; operation++) {
+            fileSystem = openFailing(failHeaderWrites);
+            fileSystem.createFile(DEFAULT_FILE_NAME);
+            fileSystem.writeContent(DEFAULT_FILE_NAME, content.getBytes());
+
+            failHeaderWrites.set(true);
+            if (operation == 0) {
+                assertThrows(IllegalStateException.class, () -> fileSystem.truncate(DEFAULT_FILE_NAME, 3));
+            } else if (operation == 1) {
+                assertThrows(IllegalStateException.class, () -> fileSystem.append(DEFAULT_FILE_NAME,
+                        ByteBuffer.wrap(new byte[2 * content.length()])));
+            } else {
+                assertThrows(IllegalStateException.class, () -> fileSystem.deleteFile(DEFAULT_FILE_NAME));
+            }
+            failHeaderWrites.set(false);
+
+            assertEquals(content.length(), fileSystem.size(DEFAULT_FILE_NAME));
+            assertEquals(content, new String(fileSystem.readContent(DEFAULT_FILE_NAME)));
+            fileSystem.close();
+            Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        }
+        fileSystem = open(FILE_SYSTEM_NAME, Durability.PER_OPERATION);
+    }
+
+    /**
+     * Запись заголовка на место падает, пока установлен флаг
+     */
+    private OneFileSystem openFailing(AtomicBoolean failHeaderWrites) {
+        MetricsListener failing = new MetricsListener() {
+            @Override
+            public void onHeadersEncoded(int count, long nanos) {
+                if (failHeaderWrites.get()) {
+                    throw new IllegalStateException("Header write failed");
+                }
+            }
+        };
+        return new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .durability(Durability.PER_OPERATION)
+                .metricsListener(failing)
+                .build());
+    }
+
+    private OneFileSystem open(String fileSystemName, Durability durability) {
+        return new OneFileSystem(FILE_SYSTEM_DIRECTORY, fileSystemName,
+                OneFileSystemOptions.builder().durability(durability).build());
+    }
+
+    /**
+     * Снять копию файла файловой системы, как если бы процесс упал в этот момент
+     */
+    private Path crash() throws IOException {
+        Path crashed = Paths.get(FILE_SYSTEM_DIRECTORY, CRASHED_FILE_SYSTEM_NAME);
+        Files.copy(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME), crashed);
+        return crashed;
+    }
+
+    private void overwrite(Path path, long position, byte[] bytes) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(position);
+            file.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import onefilesystem.exception.FileNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LargeFilesTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "large";
+    private static final int CHUNK_SIZE = 4096;
+
+    private final Path path = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    private OneFileSystem fileSystem;
+    private LargeFiles largeFiles;
+
+    @BeforeEach
+    public void before() {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        largeFiles = new LargeFiles(fileSystem, CHUNK_SIZE, 3);
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        largeFiles.close();
+        fileSystem.close();
+        Files.delete(path);
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        byte[] content = content(1, 10 * CHUNK_SIZE + 123);
+        write(FILE_NAME, content);
+
+        assertTrue(largeFiles.isLargeFile(FILE_NAME));
+        assertEquals(content.length, largeFiles.length(FILE_NAME));
+        assertArrayEquals(content, read(FILE_NAME));
+        assertEquals(List.of(FILE_NAME), fileSystem.list(""));
+        assertEquals(11, fileSystem.list(LargeFiles.CHUNK_NAME_PREFIX).size());
+
+        ByteBuffer range = ByteBuffer.allocate(2 * CHUNK_SIZE + 10);
+        assertEquals(range.capacity(), largeFiles.read(FILE_NAME, CHUNK_SIZE - 5, range));
+        assertArrayEquals(Arrays.copyOfRange(content, CHUNK_SIZE - 5, 3 * CHUNK_SIZE + 5), range.array());
+        assertEquals(-1, largeFiles.read(FILE_NAME, content.length, ByteBuffer.allocate(1)));
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        write(FILE_NAME, new byte[0]);
+        assertEquals(0, largeFiles.length(FILE_NAME));
+        assertEquals(0, read(FILE_NAME).length);
+    }
+
+    /**
+     * Перезапись заменяет набор чанков целиком, удаление удаляет чанки
+     */
+    @Test
+    void rewriteAndDelete() throws IOException {
+        write(FILE_NAME, content(1, 5 * CHUNK_SIZE));
+        byte[] content = content(2, 2 * CHUNK_SIZE + 1);
+        write(FILE_NAME, content);
+
+        assertArrayEquals(content, read(FILE_NAME));
+        assertEquals(3, fileSystem.list(LargeFiles.CHUNK_NAME_PREFIX).size());
+
+        largeFiles.delete(FILE_NAME);
+        assertFalse(fileSystem.exists(FILE_NAME));
+        assertTrue(fileSystem.list(LargeFiles.CHUNK_NAME_PREFIX).isEmpty());
+        assertThrows(FileNotFoundException.class, () -> largeFiles.open(FILE_NAME));
+    }
+
+    @Test
+    void regularFileIsNotLarge() {
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, new byte[10]);
+        assertFalse(largeFiles.isLargeFile(FILE_NAME));
+        assertThrows(FileNotFoundException.class, () -> largeFiles.length(FILE_NAME));
+    }
+
+    /**
+     * Файл больше MAX_FILE_SIZE пишется и читается потоком, не собираясь в памяти целиком
+     */
+    @Test
+    void fileLargerThanMaxFileSize() throws IOException {
+        try (LargeFiles files = new LargeFiles(fileSystem, 1024 * 1024, 4)) {
+            long length = 3L * MAX_FILE_SIZE;
+            Random random = new Random(1);
+            byte[] block = new byte[100_000];
+            try (OutputStream output = files.create(FILE_NAME)) {
+                for (long written = 0; written < length; written += block.length) {
+                    random.nextBytes(block);
+                    output.write(block, 0, (int) Math.min(block.length, length - written));
+                }
+            }
+            assertEquals(length, files.length(FILE_NAME));
+
+            random = new Random(1);
+            byte[] expected = new byte[block.length];
+            try (InputStream input = files.open(FILE_NAME)) {
+                for (long read = 0; read < length; read += block.length) {
+                    random.nextBytes(expected);
+                    int blockLength = (int) Math.min(block.length, length - read);
+                    assertEquals(blockLength, input.readNBytes(block, 0, blockLength));
+                    assertArrayEquals(Arrays.copyOf(expected, blockLength), Arrays.copyOf(block, blockLength));
+                }
+                assertEquals(-1, input.read());
+            }
+        }
+    }
+
+    /**
+     * Чтение через снимок не видит перезаписи
+     */
+    @Test
+    void readSnapshotDuringRewrite() throws IOException {
+        byte[] content = content(1, 4 * CHUNK_SIZE);
+        write(FILE_NAME, content);
+
+        try (FileSystem snapshot = fileSystem.snapshot();
+             LargeFiles snapshotFiles = new LargeFiles(snapshot, CHUNK_SIZE, 2);
+             InputStream input = snapshotFiles.open(FILE_NAME)) {
+            write(FILE_NAME, content(2, CHUNK_SIZE));
+            assertArrayEquals(content, input.readAllBytes());
+        }
+    }
+
+    @Test
+    void collectOrphanChunks() throws IOException {
+        write(FILE_NAME, content(1, 2 * CHUNK_SIZE));
+        String orphan = LargeFiles.chunkName(42, 0);
+        fileSystem.createServiceFile(orphan);
+
+        assertEquals(1, largeFiles.collectGarbage());
+        assertFalse(fileSystem.exists(orphan));
+        assertEquals(2, fileSystem.list(LargeFiles.CHUNK_NAME_PREFIX).size());
+    }
+
+    /**
+     * Поток, открытый во время сборки мусора, не теряет чанки, записанные до того, как сборка их перечислила
+     */
+    @Test
+    void collectGarbageDuringWrites() throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread collector = new Thread(() -> {
+            while (!stop.get()) {
+                largeFiles.collectGarbage();
+            }
+        });
+        collector.start();
+        try {
+            for (int i = 0; i < 50; i++) {
+                write(FILE_NAME + i, content(i, 3 * CHUNK_SIZE));
+            }
+        } finally {
+            stop.set(true);
+            collector.join();
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertArrayEquals(content(i, 3 * CHUNK_SIZE), read(FILE_NAME + i));
+        }
+    }
+
+    private void write(String fileName, byte[] content) throws IOException {
+        try (OutputStream output = largeFiles.create(fileName)) {
+            // записи разного размера, в том числе через границу чанка
+            int offset = 0;
+            for (int length = 1; offset < content.length; length = length * 3 + 1) {
+                int written = Math.min(length, content.length - offset);
+                output.write(content, offset, written);
+                offset += written;
+            }
+        }
+    }
+
+    private byte[] read(String fileName) throws IOException {
+        try (InputStream input = largeFiles.open(fileName)) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static byte[] content(long seed, int size) {
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
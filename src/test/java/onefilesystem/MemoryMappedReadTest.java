@@ -0,0 +1,115 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryMappedReadTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String DEFAULT_FILE_NAME = "file";
+    private static final String DEFAULT_CONTENT = "default-content";
+    private FileSystem fileSystem;
+
+    @BeforeEach
+    public void before() {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder().readMode(ReadMode.MMAP).build());
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+    }
+
+    @Test
+    void readContentView() {
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.writeContent(DEFAULT_FILE_NAME, DEFAULT_CONTENT.getBytes());
+
+        ByteBuffer view = fileSystem.readContentView(DEFAULT_FILE_NAME);
+
+        assertTrue(view.isReadOnly());
+        assertTrue(view.isDirect());
+        assertEquals(DEFAULT_CONTENT, toString(view));
+        assertThrows(java.nio.ReadOnlyBufferException.class, () -> view.put(0, (byte) 0));
+    }
+
+    @Test
+    void readEmptyContentView() {
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+
+        assertEquals(0, fileSystem.readContentView(DEFAULT_FILE_NAME).remaining());
+        assertEquals(0, fileSystem.readContent(DEFAULT_FILE_NAME).length);
+    }
+
+    /**
+     * После первого чтения файл отображен до текущего конца, новые файлы дописываются за ним
+     */
+    @Test
+    void readAfterFileSystemGrows() {
+        for (int i = 0; i < 10; i++) {
+            byte[] content = new byte[100_000 * (i + 1)];
+            Arrays.fill(content, (byte) i);
+
+            fileSystem.createFile(DEFAULT_FILE_NAME + i);
+            fileSystem.writeContent(DEFAULT_FILE_NAME + i, content);
+
+            assertArrayEquals(content, fileSystem.readContent(DEFAULT_FILE_NAME + i));
+            assertEquals(ByteBuffer.wrap(content), fileSystem.readContentView(DEFAULT_FILE_NAME + i));
+        }
+    }
+
+    /**
+     * Компакция переносит файл вниз, но не обрезает файл файловой системы под срезом, полученным раньше
+     */
+    @Test
+    void viewSurvivesCompaction() {
+        byte[] content = new byte[4_000_000];
+        Arrays.fill(content, (byte) 7);
+        fileSystem.createFile(DEFAULT_FILE_NAME + 0);
+        fileSystem.writeContent(DEFAULT_FILE_NAME + 0, content);
+        fileSystem.createFile(DEFAULT_FILE_NAME + 1);
+        fileSystem.writeContent(DEFAULT_FILE_NAME + 1, content);
+
+        ByteBuffer view = fileSystem.readContentView(DEFAULT_FILE_NAME + 1);
+        fileSystem.deleteFile(DEFAULT_FILE_NAME + 0);
+        assertEquals(1, ((OneFileSystem) fileSystem).compact().getMovedFilesCount());
+
+        assertEquals(7, view.get(content.length - 1));
+        assertArrayEquals(content, fileSystem.readContent(DEFAULT_FILE_NAME + 1));
+    }
+
+    @Test
+    void viewInChannelMode() throws IOException {
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.writeContent(DEFAULT_FILE_NAME, DEFAULT_CONTENT.getBytes());
+
+        ByteBuffer view = fileSystem.readContentView(DEFAULT_FILE_NAME);
+        assertTrue(view.isReadOnly());
+        assertEquals(DEFAULT_CONTENT, toString(view));
+    }
+
+    private static String toString(ByteBuffer view) {
+        byte[] bytes = new byte[view.remaining()];
+        view.duplicate().get(bytes);
+        return new String(bytes);
+    }
+}
@@ -0,0 +1,120 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import onefilesystem.metrics.MetricsListener;
+import onefilesystem.metrics.OneFileSystemMetrics;
+import onefilesystem.metrics.Operation;
+import onefilesystem.model.OperationStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String DEFAULT_FILE_NAME = "file";
+
+    private OneFileSystem fileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+    }
+
+    @Test
+    void operationsLocksAndBytesCounted() {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.writeContent(DEFAULT_FILE_NAME, new byte[1000]);
+        fileSystem.readContent(DEFAULT_FILE_NAME);
+        fileSystem.append(DEFAULT_FILE_NAME, ByteBuffer.allocate(24));
+
+        OneFileSystemMetrics metrics = fileSystem.getMetrics();
+        OperationStatistics write = metrics.getOperation(Operation.WRITE_CONTENT);
+        OperationStatistics read = metrics.getOperation(Operation.READ_CONTENT);
+
+        assertEquals(1, metrics.getOperation(Operation.CREATE_FILE).getLatency().getCount());
+        assertEquals(1, write.getLatency().getCount());
+        assertEquals(1000, write.getBytes());
+        assertEquals(1000, read.getBytes());
+        assertEquals(24, metrics.getOperation(Operation.APPEND).getBytes());
+        assertTrue(read.getLatency().getMaxNanos() > 0);
+
+        assertEquals(3, metrics.getWriteLockWait().getCount());
+        assertEquals(3, metrics.getWriteLockHold().getCount());
+        assertEquals(1, metrics.getReadLockHold().getCount());
+        assertTrue(metrics.getBytesRead() >= 1000);
+        assertTrue(metrics.getBytesWritten() >= 1024);
+        assertEquals(3, metrics.getHeadersEncoded());
+        assertEquals(1024, metrics.getLiveBytes());
+        assertTrue(metrics.getContainerSize() > metrics.getLiveBytes());
+    }
+
+    @Test
+    void exposedThroughJmx() throws JMException {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.writeContent(DEFAULT_FILE_NAME, new byte[100]);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = fileSystem.getMetrics().getObjectName();
+        assertNotNull(objectName);
+
+        assertEquals(100L, server.getAttribute(objectName, "LiveBytes"));
+        CompositeData[] operations = (CompositeData[]) server.getAttribute(objectName, "Operations");
+        assertEquals(Operation.values().length, operations.length);
+        CompositeData writeLockWait = (CompositeData) server.getAttribute(objectName, "WriteLockWait");
+        assertEquals(2L, writeLockWait.get("count"));
+    }
+
+    @Test
+    void unregisteredOnClose() throws IOException {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        ObjectName objectName = fileSystem.getMetrics().getObjectName();
+        fileSystem.close();
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    }
+
+    @Test
+    void customListenerWithoutBuiltInMetrics() {
+        List<Operation> operations = new ArrayList<>();
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public synchronized void onOperation(Operation operation, long durationNanos, long bytes) {
+                operations.add(operation);
+            }
+        };
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .metricsEnabled(false)
+                .metricsListener(listener)
+                .build());
+
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.size(DEFAULT_FILE_NAME);
+        fileSystem.deleteFile(DEFAULT_FILE_NAME);
+
+        assertNull(fileSystem.getMetrics());
+        assertEquals(List.of(Operation.CREATE_FILE, Operation.SIZE, Operation.DELETE_FILE), operations);
+    }
+}
@@ -7,11 +7,14 @@ import java.nio.file.Paths;
 import onefilesystem.exception.FileAlreadyExistsException;
 import onefilesystem.exception.FileNotFoundException;
 import onefilesystem.exception.TooLargeFileException;
+import onefilesystem.exception.TooLongFileNameException;
+import onefilesystem.exception.TooManyFilesException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static onefilesystem.utils.FileHeaderCodec.MAX_FILE_NAME_LENGTH;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class OneFileSystemNegativeTest {
@@ -67,6 +70,19 @@ class OneFileSystemNegativeTest {
                 () -> fileSystem.deleteFile(DEFAULT_FILE_NAME));
     }
 
+    /**
+     * Служебные имена создаются только через createServiceFile, иначе файл был бы не виден в списках
+     */
+    @Test
+    void createFileWithReservedName() {
+        String chunkName = LargeFiles.chunkName(1, 0);
+        assertThrows(IllegalArgumentException.class, () -> fileSystem.createFile(chunkName));
+        assertThrows(IllegalArgumentException.class, () -> fileSystem.createServiceFile(DEFAULT_FILE_NAME));
+
+        fileSystem.createServiceFile(chunkName);
+        assertThrows(FileAlreadyExistsException.class, () -> fileSystem.createServiceFile(chunkName));
+    }
+
     @Test
     void createAlreadyCreatedFile() {
         fileSystem.createFile(DEFAULT_FILE_NAME);
@@ -83,4 +99,26 @@ class OneFileSystemNegativeTest {
         assertThrows(TooLargeFileException.class,
                 () -> fileSystem.writeContent(DEFAULT_FILE_NAME, tooLargeContent));
     }
-}
\ No newline at end of file
+
+    @Test
+    void createFileWithTooLongName() {
+        String tooLongName = "ф".repeat(MAX_FILE_NAME_LENGTH / 2 + 1);
+
+        assertThrows(TooLongFileNameException.class,
+                () -> fileSystem.createFile(tooLongName));
+    }
+
+    @Test
+    void createTooManyFiles() throws IOException {
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder().maxFilesCount(2).build());
+
+        fileSystem.createFile(DEFAULT_FILE_NAME + 1);
+        fileSystem.createFile(DEFAULT_FILE_NAME + 2);
+
+        assertThrows(TooManyFilesException.class,
+                () -> fileSystem.createFile(DEFAULT_FILE_NAME + 3));
+    }
+}
@@ -1,15 +1,24 @@
 package onefilesystem;
 
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
+import java.util.Arrays;
+
+import onefilesystem.model.OpenStatistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import static onefilesystem.utils.Constants.ALLOCATION_UNIT;
+import static onefilesystem.utils.Constants.CONTENT_START_POSITION;
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class OneFileSystemPositiveTest {
 
@@ -96,6 +105,113 @@ class OneFileSystemPositiveTest {
         }
     }
 
+    @Test
+    void containerSizeTracksContentSize() throws IOException {
+        createTenFiles();
+
+        long containerSize = Files.size(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        assertTrue(containerSize <= CONTENT_START_POSITION + 10 * ALLOCATION_UNIT);
+    }
+
+    @Test
+    void growContentOfSurroundedFile() {
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+        fileSystem.createFile(DEFAULT_FILE_NAME + 1);
+        fileSystem.writeContent(DEFAULT_FILE_NAME, DEFAULT_CONTENT_BYTES);
+        fileSystem.writeContent(DEFAULT_FILE_NAME + 1, DEFAULT_CONTENT_BYTES);
+
+        byte[] largeContent = new byte[ALLOCATION_UNIT * 3];
+        Arrays.fill(largeContent, (byte) 'x');
+        fileSystem.writeContent(DEFAULT_FILE_NAME, largeContent);
+
+        assertArrayEquals(largeContent, fileSystem.readContent(DEFAULT_FILE_NAME));
+        assertContent(DEFAULT_FILE_NAME + 1, DEFAULT_CONTENT);
+    }
+
+    @Test
+    void contentSurvivesReopen() throws IOException {
+        createTenFiles();
+        fileSystem.deleteFile(DEFAULT_FILE_NAME + 3);
+        fileSystem.close();
+
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        fileSystem.createFile(DEFAULT_FILE_NAME + 3);
+        fileSystem.writeContent(DEFAULT_FILE_NAME + 3, DEFAULT_CONTENT_BYTES);
+
+        for (int i = 0; i < 10; i++) {
+            assertContent(DEFAULT_FILE_NAME + i, i == 3 ? DEFAULT_CONTENT : DEFAULT_CONTENT + i);
+        }
+    }
+
+    @Test
+    void openStatisticsAfterReopen() throws IOException {
+        createTenFiles();
+        fileSystem.deleteFile(DEFAULT_FILE_NAME + 3);
+        fileSystem.close();
+
+        OneFileSystem reopened = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        fileSystem = reopened;
+
+        OpenStatistics openStatistics = reopened.getOpenStatistics();
+        assertEquals(10, openStatistics.getHeaderCount());
+        assertEquals(9, openStatistics.getLiveFilesCount());
+        assertEquals(0, openStatistics.getCorruptedHeadersCount());
+        assertEquals(10 * FILE_HEADER_SIZE, openStatistics.getHeaderBytesRead());
+    }
+
+    @Test
+    void reuseDeletedSlotAfterReopen() throws IOException {
+        createTenFiles();
+        fileSystem.deleteFile(DEFAULT_FILE_NAME + 3);
+        fileSystem.close();
+
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        fileSystem.createFile(DEFAULT_FILE_NAME + 10);
+        fileSystem.close();
+
+        OneFileSystem reopened = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        fileSystem = reopened;
+
+        assertEquals(10, reopened.getOpenStatistics().getHeaderCount());
+        assertEquals(10, reopened.getOpenStatistics().getLiveFilesCount());
+    }
+
+    @Test
+    void readThroughCache() throws IOException {
+        fileSystem.close();
+        OneFileSystem cached = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder().cacheSize(1024).build());
+        fileSystem = cached;
+
+        cached.createFile(DEFAULT_FILE_NAME);
+        cached.writeContent(DEFAULT_FILE_NAME, DEFAULT_CONTENT_BYTES);
+        assertContent(DEFAULT_FILE_NAME, DEFAULT_CONTENT);
+        assertContent(DEFAULT_FILE_NAME, DEFAULT_CONTENT);
+
+        cached.writeContent(DEFAULT_FILE_NAME, (DEFAULT_CONTENT + 1).getBytes());
+        assertContent(DEFAULT_FILE_NAME, DEFAULT_CONTENT + 1);
+
+        assertEquals(1, cached.getCacheStatistics().getHitCount());
+        assertEquals(2, cached.getCacheStatistics().getMissCount());
+    }
+
+    @Test
+    void skipCorruptedHeader() throws IOException {
+        createTenFiles();
+        fileSystem.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(FILE_SYSTEM_DIRECTORY + "/" + FILE_SYSTEM_NAME, "rw")) {
+            file.seek(HEADERS_START_POSITION + 5 * FILE_HEADER_SIZE);
+            file.writeInt(0xBAD);
+        }
+
+        OneFileSystem reopened = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        fileSystem = reopened;
+
+        assertEquals(1, reopened.getOpenStatistics().getCorruptedHeadersCount());
+        assertContent(DEFAULT_FILE_NAME + 9, DEFAULT_CONTENT + 9);
+    }
+
     private void assertContent(String fileName, String expectedContent) {
         byte[] actualContent = fileSystem.readContent(fileName);
         assertEquals(expectedContent, new String(actualContent));
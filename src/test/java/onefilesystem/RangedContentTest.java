@@ -0,0 +1,131 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import onefilesystem.exception.TooLargeFileException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static onefilesystem.utils.Constants.IO_BUFFER_SIZE;
+import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RangedContentTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String DEFAULT_FILE_NAME = "file";
+    private static final String ANOTHER_FILE_NAME = "another-file";
+    private FileSystem fileSystem;
+
+    @BeforeEach
+    public void before() {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        fileSystem.createFile(DEFAULT_FILE_NAME);
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+    }
+
+    @Test
+    void readRange() {
+        fileSystem.writeContent(DEFAULT_FILE_NAME, "0123456789".getBytes());
+
+        ByteBuffer target = ByteBuffer.allocate(4);
+        assertEquals(4, fileSystem.read(DEFAULT_FILE_NAME, 3, target));
+        assertEquals("3456", new String(target.array()));
+
+        target.clear();
+        assertEquals(2, fileSystem.read(DEFAULT_FILE_NAME, 8, target));
+        assertEquals(-1, fileSystem.read(DEFAULT_FILE_NAME, 10, target));
+    }
+
+    @Test
+    void writeRangeKeepsOtherBytes() {
+        fileSystem.writeContent(DEFAULT_FILE_NAME, "0123456789".getBytes());
+
+        fileSystem.write(DEFAULT_FILE_NAME, 2, ByteBuffer.wrap("ab".getBytes()));
+        fileSystem.write(DEFAULT_FILE_NAME, 8, ByteBuffer.wrap("cdef".getBytes()));
+
+        assertEquals("01ab4567cdef", new String(fileSystem.readContent(DEFAULT_FILE_NAME)));
+    }
+
+    @Test
+    void writeAfterEndFillsGapWithZeros() {
+        fileSystem.createFile(ANOTHER_FILE_NAME);
+        fileSystem.writeContent(ANOTHER_FILE_NAME, "garbage".getBytes());
+        fileSystem.deleteFile(ANOTHER_FILE_NAME);
+
+        fileSystem.write(DEFAULT_FILE_NAME, 7, ByteBuffer.wrap("x".getBytes()));
+
+        assertArrayEquals(new byte[]{0, 0, 0, 0, 0, 0, 0, 'x'}, fileSystem.readContent(DEFAULT_FILE_NAME));
+    }
+
+    /**
+     * Файл окружен соседями, поэтому при росте переезжает, контент и соседи должны уцелеть
+     */
+    @Test
+    void appendToSurroundedFile() {
+        fileSystem.createFile(ANOTHER_FILE_NAME);
+        fileSystem.writeContent(ANOTHER_FILE_NAME, "neighbour".getBytes());
+
+        byte[] expected = new byte[3 * IO_BUFFER_SIZE + 17];
+        new Random(1).nextBytes(expected);
+        for (int offset = 0; offset < expected.length; offset += 1000) {
+            fileSystem.append(DEFAULT_FILE_NAME,
+                    ByteBuffer.wrap(expected, offset, Math.min(1000, expected.length - offset)));
+        }
+
+        assertArrayEquals(expected, fileSystem.readContent(DEFAULT_FILE_NAME));
+        assertEquals("neighbour", new String(fileSystem.readContent(ANOTHER_FILE_NAME)));
+    }
+
+    @Test
+    void streamThroughChannels() throws IOException {
+        byte[] expected = new byte[2 * IO_BUFFER_SIZE + 5];
+        new Random(2).nextBytes(expected);
+
+        try (SeekableByteChannel channel = fileSystem.openWriteChannel(DEFAULT_FILE_NAME)) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(4096);
+            for (int offset = 0; offset < expected.length; offset += direct.capacity()) {
+                direct.clear();
+                direct.put(expected, offset, Math.min(direct.capacity(), expected.length - offset)).flip();
+                channel.write(direct);
+            }
+            assertEquals(expected.length, channel.size());
+
+            channel.truncate(expected.length - 5);
+        }
+
+        byte[] actual = new byte[expected.length - 5];
+        try (SeekableByteChannel channel = fileSystem.openReadChannel(DEFAULT_FILE_NAME)) {
+            ByteBuffer target = ByteBuffer.wrap(actual);
+            while (channel.read(target) > 0) {
+                // читаем до конца
+            }
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            assertThrows(NonWritableChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+        }
+
+        assertArrayEquals(Arrays.copyOf(expected, actual.length), actual);
+    }
+
+    @Test
+    void writeRangeTooLarge() {
+        assertThrows(TooLargeFileException.class,
+                () -> fileSystem.write(DEFAULT_FILE_NAME, MAX_FILE_SIZE, ByteBuffer.allocate(1)));
+    }
+}
@@ -0,0 +1,207 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.exception.ReadOnlyFileSystemException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+import static onefilesystem.utils.Constants.HEADERS_START_POSITION;
+import static onefilesystem.utils.Constants.SHARED_READ_TIMEOUT_MILLIS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Читатель и писатель открыты в одной JVM: их блокировки не пересекаются, как и у разных процессов
+ */
+class ReadOnlyOpenTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_COUNT = 10;
+    private static final int CONTENT_SIZE = 10_000;
+
+    private final Path path = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    private OneFileSystem writer;
+    private OneFileSystem reader;
+
+    @AfterEach
+    public void after() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+        writer.close();
+        Files.delete(path);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Durability.class, names = {"NONE", "PER_OPERATION"})
+    void readerSeesWriterChanges(Durability durability) {
+        openWriter(durability);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            writer.createFile(FILE_NAME + i);
+            writer.writeContent(FILE_NAME + i, content(i, CONTENT_SIZE));
+        }
+        openReader();
+        for (int i = 0; i < FILES_COUNT; i++) {
+            assertArrayEquals(content(i, CONTENT_SIZE), reader.readContent(FILE_NAME + i));
+        }
+
+        writer.writeContent(FILE_NAME + 0, content(100, 2 * CONTENT_SIZE));
+        writer.write(FILE_NAME + 1, 10, ByteBuffer.wrap(content(101, 10)));
+        writer.truncate(FILE_NAME + 2, 100);
+        writer.deleteFile(FILE_NAME + 3);
+        writer.createFile("new");
+
+        assertArrayEquals(content(100, 2 * CONTENT_SIZE), reader.readContent(FILE_NAME + 0));
+        ByteBuffer range = ByteBuffer.allocate(10);
+        assertEquals(10, reader.read(FILE_NAME + 1, 10, range));
+        assertArrayEquals(content(101, 10), range.array());
+        assertEquals(100, reader.size(FILE_NAME + 2));
+        assertFalse(reader.exists(FILE_NAME + 3));
+        assertThrows(FileNotFoundException.class, () -> reader.readContent(FILE_NAME + 3));
+        assertEquals(0, reader.stat("new").getSize());
+        assertEquals(FILES_COUNT, reader.list("").size());
+    }
+
+    /**
+     * Испорченный слот не ждется до таймаута при каждом перечитывании, а пропускается, пока его байты не изменятся
+     */
+    @Test
+    void corruptedSlotIsSkipped() throws IOException {
+        openWriter(Durability.NONE);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            writer.createFile(FILE_NAME + i);
+            writer.writeContent(FILE_NAME + i, content(i, CONTENT_SIZE));
+        }
+        long checksumPosition = HEADERS_START_POSITION + (long) FILES_COUNT * FILE_HEADER_SIZE - Integer.BYTES;
+        flipByte(checksumPosition);
+
+        long start = System.nanoTime();
+        openReader();
+        for (int i = 0; i < 5; i++) {
+            writer.writeContent(FILE_NAME + 0, content(i, CONTENT_SIZE));
+            assertArrayEquals(content(i, CONTENT_SIZE), reader.readContent(FILE_NAME + 0));
+        }
+        assertTrue(System.nanoTime() - start < SHARED_READ_TIMEOUT_MILLIS * 1_000_000);
+        assertFalse(reader.exists(FILE_NAME + (FILES_COUNT - 1)));
+
+        flipByte(checksumPosition);
+        writer.writeContent(FILE_NAME + 0, content(0, CONTENT_SIZE));
+        assertArrayEquals(content(FILES_COUNT - 1, CONTENT_SIZE), reader.readContent(FILE_NAME + (FILES_COUNT - 1)));
+    }
+
+    @Test
+    void readerCannotChangeFiles() {
+        openWriter(Durability.NONE);
+        writer.createFile(FILE_NAME);
+        openReader();
+
+        assertThrows(ReadOnlyFileSystemException.class, () -> reader.createFile("new"));
+        assertThrows(ReadOnlyFileSystemException.class, () -> reader.writeContent(FILE_NAME, new byte[1]));
+        assertThrows(ReadOnlyFileSystemException.class, () -> reader.write(FILE_NAME, 0, ByteBuffer.allocate(1)));
+        assertThrows(ReadOnlyFileSystemException.class, () -> reader.append(FILE_NAME, ByteBuffer.allocate(1)));
+        assertThrows(ReadOnlyFileSystemException.class, () -> reader.truncate(FILE_NAME, 0));
+        assertThrows(ReadOnlyFileSystemException.class, () -> reader.deleteFile(FILE_NAME));
+        assertThrows(IllegalStateException.class, () -> reader.compact());
+        assertTrue(writer.exists(FILE_NAME));
+    }
+
+    @Test
+    void readerOfMissingFileSystemFails() throws IOException {
+        openWriter(Durability.NONE);
+        assertThrows(OneFileSystemException.class, () -> new OneFileSystem(FILE_SYSTEM_DIRECTORY, "missing-fs",
+                OneFileSystemOptions.builder().readOnly(true).build()));
+        assertFalse(Files.exists(Paths.get(FILE_SYSTEM_DIRECTORY, "missing-fs")));
+    }
+
+    /**
+     * Писатель переписывает контент на месте и переносит его в другие экстенты, читатель не видит недописанный
+     * контент: все байты файла всегда одинаковые
+     */
+    @Test
+    void readsDuringWritesAreConsistent() throws InterruptedException {
+        openWriter(Durability.NONE);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            writer.createFile(FILE_NAME + i);
+            writer.writeContent(FILE_NAME + i, uniform(0, CONTENT_SIZE));
+        }
+        openReader();
+
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writerThread = new Thread(() -> {
+            for (int round = 1; !stop.get(); round++) {
+                String fileName = FILE_NAME + round % FILES_COUNT;
+                if (round % 3 == 0) {
+                    writer.write(fileName, 0, ByteBuffer.wrap(uniform(round, (int) writer.size(fileName))));
+                } else {
+                    writer.writeContent(fileName, uniform(round, CONTENT_SIZE + round % 7 * 1000));
+                }
+            }
+        });
+        writerThread.start();
+
+        try {
+            for (int i = 0; i < 2000; i++) {
+                byte[] content = reader.readContent(FILE_NAME + i % FILES_COUNT);
+                for (byte b : content) {
+                    assertEquals(content[0], b);
+                }
+            }
+        } finally {
+            stop.set(true);
+            writerThread.join();
+        }
+    }
+
+    private void flipByte(long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+    }
+
+    private void openWriter(Durability durability) {
+        writer = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .durability(durability)
+                .build());
+    }
+
+    private void openReader() {
+        reader = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .readOnly(true)
+                .build());
+    }
+
+    private static byte[] uniform(int value, int size) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) value);
+        return content;
+    }
+
+    private static byte[] content(int seed, int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (seed * 31 + i);
+        }
+        return content;
+    }
+}
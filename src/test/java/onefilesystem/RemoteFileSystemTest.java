@@ -0,0 +1,186 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import onefilesystem.compression.Compression;
+import onefilesystem.exception.FileAlreadyExistsException;
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.OneFileSystemException;
+import onefilesystem.exception.TooLongFileNameException;
+import onefilesystem.model.FileStat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static onefilesystem.utils.Constants.MAX_FILE_SIZE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemoteFileSystemTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "dir/file";
+    private OneFileSystem fileSystem;
+    private FileSystemServer server;
+    private RemoteFileSystem remote;
+
+    @BeforeEach
+    public void before() {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        server = new FileSystemServer(fileSystem, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        remote = new RemoteFileSystem(server.getAddress());
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        remote.close();
+        server.close();
+        fileSystem.close();
+        Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+    }
+
+    @Test
+    void createWriteReadDelete() {
+        remote.createFile(FILE_NAME);
+        remote.writeContent(FILE_NAME, content(1, 1000));
+
+        assertTrue(remote.exists(FILE_NAME));
+        assertEquals(1000, remote.size(FILE_NAME));
+        assertArrayEquals(content(1, 1000), remote.readContent(FILE_NAME));
+        assertArrayEquals(content(1, 1000), fileSystem.readContent(FILE_NAME));
+        FileStat stat = remote.stat(FILE_NAME);
+        assertEquals(1000, stat.getSize());
+        assertEquals(Compression.NONE, stat.getCompression());
+
+        remote.deleteFile(FILE_NAME);
+        assertFalse(remote.exists(FILE_NAME));
+        assertFalse(fileSystem.exists(FILE_NAME));
+    }
+
+    @Test
+    void list() {
+        remote.createFile("a/1");
+        remote.createFile("a/2");
+        remote.createFile("b/3");
+
+        assertEquals(List.of("a/1", "a/2"), remote.list("a/"));
+        assertEquals(List.of("a/2", "b/3"), remote.listAll("a/1", 10));
+        assertEquals(List.of("a/1"), remote.listAll(null, 1));
+        assertEquals(List.of("a/1", "a/2"), remote.listDirectory("a"));
+    }
+
+    @Test
+    void rangedOperations() {
+        remote.createFile(FILE_NAME);
+        remote.append(FILE_NAME, ByteBuffer.wrap(content(1, 100)));
+        remote.write(FILE_NAME, 50, ByteBuffer.wrap(content(2, 100)));
+        remote.truncate(FILE_NAME, 120);
+
+        byte[] expected = Arrays.copyOf(content(1, 100), 120);
+        System.arraycopy(content(2, 70), 0, expected, 50, 70);
+        assertArrayEquals(expected, fileSystem.readContent(FILE_NAME));
+
+        ByteBuffer target = ByteBuffer.allocate(30);
+        assertEquals(30, remote.read(FILE_NAME, 40, target));
+        assertArrayEquals(Arrays.copyOfRange(expected, 40, 70), target.array());
+        target.clear();
+        assertEquals(20, remote.read(FILE_NAME, 100, target));
+        assertEquals(-1, remote.read(FILE_NAME, 200, target));
+    }
+
+    @Test
+    void errorsAreRethrown() {
+        remote.createFile(FILE_NAME);
+
+        assertThrows(FileAlreadyExistsException.class, () -> remote.createFile(FILE_NAME));
+        assertThrows(FileNotFoundException.class, () -> remote.readContent("missing"));
+        assertThrows(FileNotFoundException.class, () -> remote.deleteFile("missing"));
+        assertThrows(TooLongFileNameException.class, () -> remote.createFile("x".repeat(1000)));
+        assertTrue(remote.exists(FILE_NAME));
+    }
+
+    /**
+     * Контент больше буфера сокета: часть уходит через transferTo, остаток копируется в очередь ответов
+     */
+    @Test
+    void largeContent() {
+        remote.createFile(FILE_NAME);
+        remote.writeContent(FILE_NAME, content(3, MAX_FILE_SIZE - 1));
+
+        assertArrayEquals(content(3, MAX_FILE_SIZE - 1), remote.readContent(FILE_NAME));
+    }
+
+    @Test
+    void pipelinedCallsFromManyThreads() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int thread = i;
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 50; j++) {
+                    String fileName = "file" + thread + "-" + j;
+                    remote.createFile(fileName);
+                    remote.writeContent(fileName, content(j, 10_000 + j));
+                    assertArrayEquals(content(j, 10_000 + j), remote.readContent(fileName));
+                }
+            }));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertEquals(400, remote.list("file").size());
+    }
+
+    /**
+     * Ответы больше SERVER_MAX_PENDING_BYTES на нескольких соединениях: чтение сокета выключается и снова включается
+     * после выполнения запросов на дорожках
+     */
+    @Test
+    void largeReadsFromManyConnections() throws IOException {
+        remote.createFile(FILE_NAME);
+        remote.writeContent(FILE_NAME, content(5, 3_000_000));
+
+        try (RemoteFileSystem other = new RemoteFileSystem(server.getAddress())) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                FileSystem client = i % 2 == 0 ? remote : other;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int j = 0; j < 5; j++) {
+                        assertArrayEquals(content(5, 3_000_000), client.readContent(FILE_NAME));
+                        assertTrue(client.exists(FILE_NAME));
+                    }
+                }));
+            }
+            futures.forEach(CompletableFuture::join);
+        }
+    }
+
+    @Test
+    void callsFailAfterServerIsClosed() throws IOException {
+        server.close();
+        assertThrows(OneFileSystemException.class, () -> {
+            for (int i = 0; i < 10; i++) {
+                remote.exists(FILE_NAME);
+            }
+        });
+    }
+
+    private static byte[] content(int seed, int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (seed * 31 + i);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,118 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedFileSystemTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-sharded-fs";
+    private static final int SHARDS_COUNT = 4;
+    private static final int FILES_COUNT = 100;
+    private ShardedFileSystem fileSystem;
+
+    @BeforeEach
+    public void before() {
+        fileSystem = new ShardedFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, SHARDS_COUNT);
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(fileName(i));
+            fileSystem.writeContent(fileName(i), content(i));
+        }
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        for (int i = 0; i < SHARDS_COUNT; i++) {
+            Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY,
+                    ShardedFileSystem.segmentName(FILE_SYSTEM_NAME, i, SHARDS_COUNT)));
+        }
+    }
+
+    @Test
+    void filesAreSpreadAcrossShards() {
+        for (int i = 0; i < SHARDS_COUNT; i++) {
+            int shardFilesCount = fileSystem.getShard(i).list("").size();
+            assertTrue(shardFilesCount > 0 && shardFilesCount < FILES_COUNT);
+        }
+        assertEquals(FILES_COUNT, fileSystem.list("").size());
+    }
+
+    @Test
+    void reopen() throws IOException {
+        fileSystem.deleteFile(fileName(0));
+        fileSystem.append(fileName(1), ByteBuffer.wrap("!".getBytes()));
+        fileSystem.close();
+
+        fileSystem = new ShardedFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, SHARDS_COUNT);
+        assertEquals(FILES_COUNT - 1, fileSystem.list("").size());
+        assertEquals(new String(content(1)) + "!", new String(fileSystem.readContent(fileName(1))));
+        for (int i = 2; i < FILES_COUNT; i++) {
+            assertArrayEquals(content(i), fileSystem.readContent(fileName(i)));
+        }
+    }
+
+    @Test
+    void openWithAnotherShardsCount() {
+        assertThrows(IllegalStateException.class,
+                () -> new ShardedFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, SHARDS_COUNT * 2));
+        assertEquals(SHARDS_COUNT, ShardedFileSystem.existingShardsCount(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+    }
+
+    /**
+     * Снимок снимается со всех сегментов в один момент
+     */
+    @Test
+    void snapshotOfAllShards() throws IOException {
+        try (FileSystem snapshot = fileSystem.snapshot()) {
+            for (int i = 0; i < FILES_COUNT; i += 2) {
+                fileSystem.deleteFile(fileName(i));
+                fileSystem.writeContent(fileName(i + 1), new byte[1]);
+            }
+
+            assertEquals(FILES_COUNT, snapshot.list("").size());
+            for (int i = 0; i < FILES_COUNT; i++) {
+                assertArrayEquals(content(i), snapshot.readContent(fileName(i)));
+            }
+        }
+        assertEquals(FILES_COUNT / 2, fileSystem.list("").size());
+    }
+
+    @Test
+    void listingIsMergedFromShards() {
+        List<String> names = new ArrayList<>();
+        List<String> page = fileSystem.listAll(null, 7);
+        while (!page.isEmpty()) {
+            names.addAll(page);
+            page = fileSystem.listAll(page.get(page.size() - 1), 7);
+        }
+
+        assertEquals(fileSystem.list(""), names);
+        assertEquals(FILES_COUNT, names.size());
+        assertEquals(List.of("dir/"), fileSystem.listDirectory(""));
+        assertEquals(10, fileSystem.listDirectory("dir/").size());
+        assertEquals(fileSystem.list("dir/file3/"), fileSystem.listDirectory("dir/file3"));
+        assertEquals(10, fileSystem.listDirectory("dir/file3").size());
+    }
+
+    private static String fileName(int i) {
+        return "dir/file" + i / 10 + "/" + i;
+    }
+
+    private static byte[] content(int i) {
+        return ("content" + i).getBytes();
+    }
+}
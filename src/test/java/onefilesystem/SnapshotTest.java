@@ -0,0 +1,201 @@
+package onefilesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.ReadOnlyFileSystemException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static onefilesystem.utils.Constants.CONTENT_START_POSITION;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_COUNT = 8;
+    private static final int CONTENT_SIZE = 100_000;
+
+    private final Path path = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+    private OneFileSystem fileSystem;
+
+    @AfterEach
+    public void after() throws IOException {
+        fileSystem.close();
+        Files.delete(path);
+    }
+
+    /**
+     * Снимок не видит изменений после снятия, ни целиком записанного контента, ни участков, ни удаления
+     */
+    @ParameterizedTest
+    @EnumSource(value = Durability.class, names = {"NONE", "PER_OPERATION"})
+    void snapshotIsPointInTime(Durability durability) throws IOException {
+        open(durability, false);
+        writeFiles(1);
+
+        try (FileSystem snapshot = fileSystem.snapshot()) {
+            fileSystem.writeContent(FILE_NAME + 0, content(100));
+            fileSystem.write(FILE_NAME + 1, 10, ByteBuffer.wrap(new byte[]{1, 2, 3}));
+            fileSystem.append(FILE_NAME + 2, ByteBuffer.wrap(new byte[]{4}));
+            fileSystem.truncate(FILE_NAME + 3, 100);
+            fileSystem.deleteFile(FILE_NAME + 4);
+            fileSystem.createFile(FILE_NAME);
+
+            assertSnapshotFiles(snapshot, 1);
+            assertFalse(snapshot.exists(FILE_NAME));
+            assertThrows(FileNotFoundException.class, () -> snapshot.readContent(FILE_NAME));
+            assertEquals(FILES_COUNT, snapshot.list(FILE_NAME).size());
+            assertEquals(CONTENT_SIZE, snapshot.size(FILE_NAME + 3));
+
+            ByteBuffer range = ByteBuffer.allocate(3);
+            assertEquals(3, snapshot.read(FILE_NAME + 1, 10, range));
+            assertArrayEquals(Arrays.copyOfRange(content(1 + 1), 10, 13), range.array());
+        }
+
+        assertArrayEquals(content(100), fileSystem.readContent(FILE_NAME + 0));
+        assertEquals(CONTENT_SIZE + 1, fileSystem.size(FILE_NAME + 2));
+        assertEquals(100, fileSystem.size(FILE_NAME + 3));
+        assertFalse(fileSystem.exists(FILE_NAME + 4));
+    }
+
+    @Test
+    void snapshotIsReadOnly() throws IOException {
+        open(Durability.NONE, false);
+        writeFiles(1);
+
+        FileSystem snapshot = fileSystem.snapshot();
+        assertThrows(ReadOnlyFileSystemException.class, () -> snapshot.createFile(FILE_NAME));
+        assertThrows(ReadOnlyFileSystemException.class, () -> snapshot.writeContent(FILE_NAME + 0, new byte[1]));
+        assertThrows(ReadOnlyFileSystemException.class,
+                () -> snapshot.append(FILE_NAME + 0, ByteBuffer.wrap(new byte[1])));
+        assertThrows(ReadOnlyFileSystemException.class, () -> snapshot.truncate(FILE_NAME + 0, 0));
+        assertThrows(ReadOnlyFileSystemException.class, () -> snapshot.deleteFile(FILE_NAME + 0));
+
+        snapshot.close();
+        snapshot.close();
+        assertThrows(IllegalStateException.class, () -> snapshot.readContent(FILE_NAME + 0));
+    }
+
+    /**
+     * Прежний экстент переписанного файла не освобождается, пока открыт хотя бы один снимок, который его видит
+     */
+    @Test
+    void extentsAreReclaimedAfterSnapshotsClose() throws IOException {
+        open(Durability.NONE, false);
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, content(1));
+        long capacity = CONTENT_SIZE + 512 - CONTENT_SIZE % 512;
+
+        SnapshottableFileSystem snapshot = fileSystem.snapshot();
+        FileSystem nested = snapshot.snapshot();
+        fileSystem.writeContent(FILE_NAME, content(2));
+        fileSystem.writeContent(FILE_NAME, content(3));
+        assertEquals(CONTENT_START_POSITION + capacity + CONTENT_SIZE, Files.size(path));
+
+        snapshot.close();
+        assertEquals(0, fileSystem.compact().getMovedFilesCount());
+        assertArrayEquals(content(1), nested.readContent(FILE_NAME));
+
+        nested.close();
+        assertEquals(1, fileSystem.compact().getMovedFilesCount());
+        assertEquals(CONTENT_START_POSITION + capacity, Files.size(path));
+        assertArrayEquals(content(3), fileSystem.readContent(FILE_NAME));
+    }
+
+    @Test
+    void sharedExtentIsCopiedForSnapshot() throws IOException {
+        open(Durability.NONE, true);
+        writeFiles(0);
+
+        try (FileSystem snapshot = fileSystem.snapshot()) {
+            fileSystem.deleteFile(FILE_NAME + 0);
+            fileSystem.write(FILE_NAME + 1, 0, ByteBuffer.wrap(new byte[]{1}));
+            assertArrayEquals(content(0), snapshot.readContent(FILE_NAME + 1));
+        }
+    }
+
+    /**
+     * Снимок читает неизменный контент, пока писатели переписывают файлы
+     */
+    @ParameterizedTest
+    @EnumSource(value = Durability.class, names = {"NONE", "PER_OPERATION"})
+    void snapshotReadsDuringWrites(Durability durability) throws Exception {
+        open(durability, false);
+        writeFiles(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicBoolean stopped = new AtomicBoolean();
+        try (FileSystem snapshot = fileSystem.snapshot()) {
+            Future<?> writer = executor.submit(() -> {
+                Random random = new Random(1);
+                while (!stopped.get()) {
+                    int file = random.nextInt(FILES_COUNT);
+                    if (random.nextBoolean()) {
+                        fileSystem.writeContent(FILE_NAME + file, content(random.nextInt(100)));
+                    } else {
+                        fileSystem.write(FILE_NAME + file, random.nextInt(CONTENT_SIZE), ByteBuffer.allocate(100));
+                    }
+                }
+            });
+            Future<?> reader = executor.submit(() -> {
+                for (int i = 0; i < 20; i++) {
+                    assertSnapshotFiles(snapshot, 1);
+                }
+            });
+
+            reader.get(1, TimeUnit.MINUTES);
+            stopped.set(true);
+            writer.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void open(Durability durability, boolean deduplication) {
+        fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .durability(durability)
+                .deduplication(deduplication)
+                .build());
+    }
+
+    /**
+     * @param seed - зерно контента первого файла, у следующих на 1 больше, 0 - у всех одинаковый контент
+     */
+    private void writeFiles(int seed) {
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, content(seed == 0 ? 0 : seed + i));
+        }
+    }
+
+    private static void assertSnapshotFiles(FileSystem snapshot, int seed) {
+        for (int i = 0; i < FILES_COUNT; i++) {
+            assertArrayEquals(content(seed + i), snapshot.readContent(FILE_NAME + i));
+        }
+    }
+
+    private static byte[] content(long seed) {
+        byte[] content = new byte[CONTENT_SIZE];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
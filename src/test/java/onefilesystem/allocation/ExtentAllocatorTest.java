@@ -0,0 +1,83 @@
+package onefilesystem.allocation;
+
+import org.junit.jupiter.api.Test;
+
+import static onefilesystem.utils.Constants.ALLOCATION_UNIT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtentAllocatorTest {
+
+    private static final long START_POSITION = 1000;
+
+    @Test
+    void allocateRoundsUpToAllocationUnit() {
+        ExtentAllocator allocator = new ExtentAllocator(START_POSITION);
+
+        long first = allocator.allocate(1);
+        long second = allocator.allocate(ALLOCATION_UNIT + 1);
+
+        assertEquals(START_POSITION, first);
+        assertEquals(START_POSITION + ALLOCATION_UNIT, second);
+        assertEquals(START_POSITION + 3 * ALLOCATION_UNIT, allocator.getHighWaterMark());
+    }
+
+    @Test
+    void allocateChoosesBestFit() {
+        ExtentAllocator allocator = new ExtentAllocator(START_POSITION);
+        long large = allocator.allocate(4 * ALLOCATION_UNIT);
+        allocator.allocate(ALLOCATION_UNIT);
+        long small = allocator.allocate(ALLOCATION_UNIT);
+        allocator.allocate(ALLOCATION_UNIT);
+
+        allocator.release(large, 4 * ALLOCATION_UNIT);
+        allocator.release(small, ALLOCATION_UNIT);
+
+        assertEquals(small, allocator.allocate(ALLOCATION_UNIT));
+        assertEquals(large, allocator.allocate(2 * ALLOCATION_UNIT));
+        assertEquals(2 * ALLOCATION_UNIT, allocator.getFreeBytes());
+    }
+
+    @Test
+    void releaseMergesNeighboursAndLowersHighWaterMark() {
+        ExtentAllocator allocator = new ExtentAllocator(START_POSITION);
+        long first = allocator.allocate(ALLOCATION_UNIT);
+        long second = allocator.allocate(ALLOCATION_UNIT);
+        long third = allocator.allocate(ALLOCATION_UNIT);
+
+        allocator.release(first, ALLOCATION_UNIT);
+        allocator.release(second, ALLOCATION_UNIT);
+        assertEquals(2 * ALLOCATION_UNIT, allocator.getFreeBytes());
+        assertEquals(first, allocator.allocate(2 * ALLOCATION_UNIT));
+
+        allocator.release(third, ALLOCATION_UNIT);
+        assertEquals(third, allocator.getHighWaterMark());
+    }
+
+    @Test
+    void extendInPlace() {
+        ExtentAllocator allocator = new ExtentAllocator(START_POSITION);
+        long first = allocator.allocate(ALLOCATION_UNIT);
+        long second = allocator.allocate(ALLOCATION_UNIT);
+
+        assertFalse(allocator.tryExtend(first, ALLOCATION_UNIT, 2 * ALLOCATION_UNIT));
+        assertTrue(allocator.tryExtend(second, ALLOCATION_UNIT, 3 * ALLOCATION_UNIT));
+
+        allocator.release(second, 3 * ALLOCATION_UNIT);
+        assertTrue(allocator.tryExtend(first, ALLOCATION_UNIT, 2 * ALLOCATION_UNIT));
+        assertEquals(START_POSITION + 2 * ALLOCATION_UNIT, allocator.getHighWaterMark());
+    }
+
+    @Test
+    void markUsedRestoresFreeExtents() {
+        ExtentAllocator allocator = new ExtentAllocator(START_POSITION);
+        allocator.markUsed(START_POSITION + 3 * ALLOCATION_UNIT, ALLOCATION_UNIT);
+        allocator.markUsed(START_POSITION + ALLOCATION_UNIT, ALLOCATION_UNIT);
+
+        assertEquals(START_POSITION + 4 * ALLOCATION_UNIT, allocator.getHighWaterMark());
+        assertEquals(2 * ALLOCATION_UNIT, allocator.getFreeBytes());
+        assertEquals(START_POSITION, allocator.allocate(ALLOCATION_UNIT));
+        assertEquals(START_POSITION + 2 * ALLOCATION_UNIT, allocator.allocate(ALLOCATION_UNIT));
+    }
+}
@@ -0,0 +1,42 @@
+package onefilesystem.allocation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SlotAllocatorTest {
+
+    @Test
+    void allocateNewContinuesAfterUsedSlots() {
+        SlotAllocator allocator = new SlotAllocator(3);
+
+        assertEquals(-1, allocator.allocateFree());
+        assertEquals(3, allocator.allocateNew());
+        assertEquals(4, allocator.getSlotsCount());
+    }
+
+    @Test
+    void allocateFreeReturnsLastReleasedSlot() {
+        SlotAllocator allocator = new SlotAllocator(0);
+        for (int i = 0; i < 100; i++) {
+            allocator.allocateNew();
+        }
+
+        allocator.release(10);
+        allocator.release(42);
+
+        assertEquals(2, allocator.getFreeSlotsCount());
+        assertEquals(42, allocator.allocateFree());
+        assertEquals(10, allocator.allocateFree());
+        assertEquals(-1, allocator.allocateFree());
+        assertEquals(100, allocator.getSlotsCount());
+    }
+
+    @Test
+    void releaseNeverAllocatedSlot() {
+        SlotAllocator allocator = new SlotAllocator(1);
+
+        assertThrows(IllegalStateException.class, () -> allocator.release(1));
+    }
+}
@@ -0,0 +1,105 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import onefilesystem.FileSystem;
+import onefilesystem.OneFileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Пропускная способность и задержки операций FileSystem для размеров контента от 16 байт до 8 МБ.
+ * Каждый поток работает со своими файлами, число потоков задают наследники через @Threads
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public abstract class AbstractOperationsBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+
+    @State(Scope.Benchmark)
+    public static class SharedFileSystem {
+
+        @Param({"16", "4096", "65536", "1048576", "8388608"})
+        private int contentSize;
+
+        private final AtomicInteger threadsCount = new AtomicInteger();
+        private Path directory;
+        private FileSystem fileSystem;
+
+        @Setup
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+            fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            fileSystem.close();
+            Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Файлы одного потока: readFile и writeFile с контентом, createdFile создается и удаляется
+     */
+    @State(Scope.Thread)
+    public static class ThreadFiles {
+        private String readFile;
+        private String writeFile;
+        private String createdFile;
+        private byte[] content;
+
+        @Setup
+        public void setup(SharedFileSystem shared) {
+            String prefix = FILE_NAME + shared.threadsCount.getAndIncrement() + "-";
+            readFile = prefix + "read";
+            writeFile = prefix + "write";
+            createdFile = prefix + "created";
+            content = new byte[shared.contentSize];
+
+            shared.fileSystem.createFile(readFile);
+            shared.fileSystem.writeContent(readFile, content);
+            shared.fileSystem.createFile(writeFile);
+        }
+    }
+
+    @Benchmark
+    public void writeContent(SharedFileSystem shared, ThreadFiles files) {
+        shared.fileSystem.writeContent(files.writeFile, files.content);
+    }
+
+    @Benchmark
+    public byte[] readContent(SharedFileSystem shared, ThreadFiles files) {
+        return shared.fileSystem.readContent(files.readFile);
+    }
+
+    /**
+     * Создание файла, запись контента и удаление: без удаления кончились бы слоты заголовков
+     */
+    @Benchmark
+    public void createWriteDelete(SharedFileSystem shared, ThreadFiles files) {
+        shared.fileSystem.createFile(files.createdFile);
+        shared.fileSystem.writeContent(files.createdFile, files.content);
+        shared.fileSystem.deleteFile(files.createdFile);
+    }
+}
@@ -0,0 +1,108 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import onefilesystem.BulkTransfer;
+import onefilesystem.Durability;
+import onefilesystem.OneFileSystem;
+import onefilesystem.OneFileSystemOptions;
+import onefilesystem.model.BulkTransferStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Загрузка директории из filesCount файлов по 4 КБ в пустую файловую систему: BulkTransfer против createFile и
+ * writeContent на каждый файл
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkTransferBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILE_SIZE = 4096;
+
+    @Param({"10000"})
+    private int filesCount;
+
+    @Param({"NONE", "PER_OPERATION"})
+    private Durability durability;
+
+    private Path source;
+    private Path directory;
+    private OneFileSystem fileSystem;
+
+    @Setup
+    public void setup() throws IOException {
+        source = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        for (int i = 0; i < filesCount; i++) {
+            Path path = source.resolve("dir" + i % 100).resolve(FILE_NAME + i);
+            Files.createDirectories(path.getParent());
+            Files.write(path, new byte[FILE_SIZE]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .maxFilesCount(filesCount)
+                .durability(durability)
+                .build());
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        fileSystem.close();
+        Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public BulkTransferStatistics bulkImport() {
+        try (BulkTransfer bulkTransfer = new BulkTransfer(fileSystem)) {
+            return bulkTransfer.importDirectory(source, "");
+        }
+    }
+
+    @Benchmark
+    public OneFileSystem fileByFileImport() throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                String fileName = source.relativize(path).toString();
+                fileSystem.createFile(fileName);
+                fileSystem.writeContent(fileName, Files.readAllBytes(path));
+            }
+        }
+        return fileSystem;
+    }
+}
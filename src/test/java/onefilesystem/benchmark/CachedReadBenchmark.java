@@ -0,0 +1,101 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import onefilesystem.OneFileSystem;
+import onefilesystem.OneFileSystemOptions;
+import onefilesystem.cache.LruEvictionPolicy;
+import onefilesystem.cache.TinyLfuEvictionPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Чтение файлов с распределением Ципфа: кэш на 10% файлов без кэша, с LRU и с TinyLFU
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class CachedReadBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_COUNT = 10_000;
+    private static final int CONTENT_SIZE = 4096;
+    private static final int READS_COUNT = 1 << 20;
+
+    @Param({"NONE", "LRU", "TINY_LFU"})
+    private String cache;
+
+    private Path directory;
+    private OneFileSystem fileSystem;
+    private final String[] reads = new String[READS_COUNT];
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        OneFileSystemOptions.OneFileSystemOptionsBuilder options = OneFileSystemOptions.builder()
+                .maxFilesCount(FILES_COUNT);
+        if (!"NONE".equals(cache)) {
+            options.cacheSize(FILES_COUNT / 10 * CONTENT_SIZE)
+                    .evictionPolicy("LRU".equals(cache) ? LruEvictionPolicy::new : TinyLfuEvictionPolicy::new);
+        }
+        fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME, options.build());
+
+        byte[] content = new byte[CONTENT_SIZE];
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, content);
+        }
+
+        double[] cumulative = new double[FILES_COUNT];
+        double sum = 0;
+        for (int i = 0; i < FILES_COUNT; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < READS_COUNT; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            reads[i] = FILE_NAME + (index < 0 ? -index - 1 : index);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (fileSystem.getCacheStatistics() != null) {
+            log.info("{}", fileSystem.getCacheStatistics());
+        }
+        fileSystem.close();
+        Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public byte[] readContent() {
+        String fileName = reads[next];
+        next = (next + 1) & (READS_COUNT - 1);
+        return fileSystem.readContent(fileName);
+    }
+}
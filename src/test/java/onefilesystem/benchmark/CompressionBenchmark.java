@@ -0,0 +1,95 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import onefilesystem.OneFileSystem;
+import onefilesystem.OneFileSystemOptions;
+import onefilesystem.compression.Compression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Пропускная способность writeContent и readContent текстового контента с каждым сжатием. Контент больше
+ * COMPRESSION_BLOCK_SIZE сжимается блоками параллельно. Размер сжатого контента печатается в конце
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+
+    @Param({"NONE", "LZ", "DEFLATE"})
+    private Compression compression;
+
+    @Param({"65536", "4194304"})
+    private int contentSize;
+
+    private byte[] content;
+    private Path directory;
+    private OneFileSystem fileSystem;
+
+    @Setup
+    public void setup() throws IOException {
+        content = text(contentSize);
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .compression(compression)
+                .build());
+        fileSystem.createFile(FILE_NAME);
+        fileSystem.writeContent(FILE_NAME, content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%s: %d bytes stored as %d%n", compression, contentSize,
+                fileSystem.getMetrics().getStoredBytes());
+        fileSystem.close();
+        Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void writeContent() {
+        fileSystem.writeContent(FILE_NAME, content);
+    }
+
+    @Benchmark
+    public byte[] readContent() {
+        return fileSystem.readContent(FILE_NAME);
+    }
+
+    /**
+     * Текст в духе JSON-логов: повторяющиеся ключи и разные значения
+     */
+    private static byte[] text(int size) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < size; i++) {
+            text.append("{\"timestamp\":").append(1_600_000_000_000L + i * 37L)
+                    .append(",\"level\":\"").append(i % 7 == 0 ? "WARN" : "INFO")
+                    .append("\",\"thread\":\"worker-").append(i % 16)
+                    .append("\",\"message\":\"processed request ").append(i * 7919 % 100_000).append("\"}\n");
+        }
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), size);
+    }
+}
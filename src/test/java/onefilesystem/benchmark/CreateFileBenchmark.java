@@ -0,0 +1,87 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import onefilesystem.OneFileSystem;
+import onefilesystem.OneFileSystemOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Сколько стоит удалить и снова создать файл, когда в файловой системе filesCount слотов заголовков и доля
+ * deletedRatio из них занята удаленными файлами (переиспользование места удаленных файлов)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateFileBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+
+    @Param({"1000", "100000", "1000000"})
+    private int filesCount;
+
+    @Param({"0", "0.5", "0.9"})
+    private double deletedRatio;
+
+    private Path directory;
+    private OneFileSystem fileSystem;
+    private List<String> liveFiles;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        OneFileSystemOptions options = OneFileSystemOptions.builder().maxFilesCount(filesCount).build();
+        fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME, options);
+        for (int i = 0; i < filesCount; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+        }
+
+        liveFiles = new ArrayList<>(filesCount);
+        Random random = new Random(42);
+        for (int i = 0; i < filesCount; i++) {
+            if (random.nextDouble() < deletedRatio) {
+                fileSystem.deleteFile(FILE_NAME + i);
+            } else {
+                liveFiles.add(FILE_NAME + i);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileSystem.close();
+        Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void deleteAndCreate() throws IOException {
+        String fileName = liveFiles.get(next);
+        next = (next + 1) % liveFiles.size();
+
+        fileSystem.deleteFile(fileName);
+        fileSystem.createFile(fileName);
+    }
+}
@@ -0,0 +1,89 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import onefilesystem.Durability;
+import onefilesystem.OneFileSystem;
+import onefilesystem.OneFileSystemOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Пропускная способность writeContent в разных режимах durability, каждый поток пишет в свой файл.
+ * Окно groupCommitWindowMicros влияет только на GROUP_COMMIT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(8)
+public class DurabilityBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+
+    @Param({"NONE", "PER_OPERATION", "GROUP_COMMIT"})
+    private Durability durability;
+
+    /**
+     * Имеет смысл только для GROUP_COMMIT
+     */
+    @Param({"0", "200"})
+    private int groupCommitWindowMicros;
+
+    private final AtomicInteger filesCount = new AtomicInteger();
+    private final byte[] content = new byte[4096];
+    private Path directory;
+    private OneFileSystem fileSystem;
+
+    @State(Scope.Thread)
+    public static class ThreadFile {
+        private String fileName;
+
+        @Setup
+        public void setup(DurabilityBenchmark benchmark) {
+            fileName = FILE_NAME + benchmark.filesCount.getAndIncrement();
+            benchmark.fileSystem.createFile(fileName);
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME,
+                OneFileSystemOptions.builder()
+                        .durability(durability)
+                        .groupCommitWindow(Duration.ofNanos(groupCommitWindowMicros * 1000L))
+                        .build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileSystem.close();
+        Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void writeContent(ThreadFile threadFile) {
+        fileSystem.writeContent(threadFile.fileName, content);
+    }
+}
@@ -0,0 +1,88 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import onefilesystem.OneFileSystem;
+import onefilesystem.OneFileSystemOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Цена встроенных метрик на самых коротких операциях, где она заметнее всего: маленький контент, 4 потока
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@Threads(4)
+public class MetricsOverheadBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_COUNT = 1024;
+    private static final byte[] CONTENT = new byte[16];
+
+    @Param({"false", "true"})
+    private boolean metricsEnabled;
+
+    private Path directory;
+    private OneFileSystem fileSystem;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME, OneFileSystemOptions.builder()
+                .maxFilesCount(FILES_COUNT)
+                .metricsEnabled(metricsEnabled)
+                .build());
+
+        for (int i = 0; i < FILES_COUNT; i++) {
+            fileSystem.createFile(FILE_NAME + i);
+            fileSystem.writeContent(FILE_NAME + i, CONTENT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fileSystem.close();
+        Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public long size() {
+        return fileSystem.size(randomFile());
+    }
+
+    @Benchmark
+    public byte[] readContent() {
+        return fileSystem.readContent(randomFile());
+    }
+
+    @Benchmark
+    public void writeContent() {
+        fileSystem.writeContent(randomFile(), CONTENT);
+    }
+
+    private static String randomFile() {
+        return FILE_NAME + ThreadLocalRandom.current().nextInt(FILES_COUNT);
+    }
+}
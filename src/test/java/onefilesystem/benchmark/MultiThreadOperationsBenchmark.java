@@ -0,0 +1,7 @@
+package onefilesystem.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+@Threads(4)
+public class MultiThreadOperationsBenchmark extends AbstractOperationsBenchmark {
+}
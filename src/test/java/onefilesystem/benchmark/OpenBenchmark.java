@@ -0,0 +1,104 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import onefilesystem.HeaderIndex;
+import onefilesystem.OneFileSystem;
+import onefilesystem.OneFileSystemOptions;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Сколько стоит открыть файловую систему с filesCount файлами (чтение всех заголовков). В режиме HeaderIndex.DISK
+ * заголовки заодно проверяются по отображенному хеш-индексу имен. retainedHeap - сколько памяти держит открытая
+ * файловая система: в режиме HeaderIndex.DISK в памяти остаются имена и кэш заголовков, но не все заголовки
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+
+    @Param({"1000", "10000", "100000"})
+    private int filesCount;
+
+    @Param({"HEAP", "DISK"})
+    private HeaderIndex headerIndex;
+
+    private Path directory;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        OneFileSystemOptions options = OneFileSystemOptions.builder()
+                .maxFilesCount(filesCount)
+                .headerIndex(headerIndex)
+                .build();
+        try (OneFileSystem fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME, options)) {
+            byte[] content = new byte[16];
+            for (int i = 0; i < filesCount; i++) {
+                fileSystem.createFile(FILE_NAME + i);
+                fileSystem.writeContent(FILE_NAME + i, content);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void open(Blackhole blackhole) throws IOException {
+        try (OneFileSystem fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME)) {
+            blackhole.consume(fileSystem.getOpenStatistics());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 1)
+    public void retainedHeap(RetainedHeap heap, Blackhole blackhole) throws IOException {
+        long before = usedHeap();
+        try (OneFileSystem fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME)) {
+            heap.retainedBytes = usedHeap() - before;
+            blackhole.consume(fileSystem.getOpenStatistics());
+        }
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+        public long retainedBytes;
+    }
+}
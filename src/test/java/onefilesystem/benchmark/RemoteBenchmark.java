@@ -0,0 +1,115 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import onefilesystem.FileSystemServer;
+import onefilesystem.OneFileSystem;
+import onefilesystem.RemoteFileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Нагрузка на FileSystemServer через loopback: потоки делят connectionsCount соединений, то есть при одном
+ * соединении все 8 потоков отправляют запросы, не дожидаясь ответов друг друга. Большой контент readContent уходит
+ * из файла в сокет через transferTo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(8)
+public class RemoteBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_PER_THREAD = 16;
+
+    @Param({"1", "8"})
+    private int connectionsCount;
+
+    @Param({"4096", "1048576"})
+    private int contentSize;
+
+    private final AtomicInteger threadsCount = new AtomicInteger();
+    private byte[] content;
+    private Path directory;
+    private OneFileSystem fileSystem;
+    private FileSystemServer server;
+    private RemoteFileSystem[] clients;
+
+    @State(Scope.Thread)
+    public static class ThreadFiles {
+        private RemoteFileSystem client;
+        private String[] fileNames;
+        private int next;
+
+        @Setup
+        public void setup(RemoteBenchmark benchmark) {
+            int thread = benchmark.threadsCount.getAndIncrement();
+            client = benchmark.clients[thread % benchmark.clients.length];
+            fileNames = new String[FILES_PER_THREAD];
+            for (int i = 0; i < FILES_PER_THREAD; i++) {
+                fileNames[i] = FILE_NAME + thread + "-" + i;
+                client.createFile(fileNames[i]);
+                client.writeContent(fileNames[i], benchmark.content);
+            }
+        }
+
+        private String nextFile() {
+            next = (next + 1) % FILES_PER_THREAD;
+            return fileNames[next];
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        content = new byte[contentSize];
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        fileSystem = new OneFileSystem(directory.toString(), FILE_SYSTEM_NAME);
+        server = new FileSystemServer(fileSystem, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        clients = new RemoteFileSystem[connectionsCount];
+        for (int i = 0; i < connectionsCount; i++) {
+            clients[i] = new RemoteFileSystem(server.getAddress());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (RemoteFileSystem client : clients) {
+            client.close();
+        }
+        server.close();
+        fileSystem.close();
+        Files.delete(directory.resolve(FILE_SYSTEM_NAME));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void writeContent(ThreadFiles files) {
+        files.client.writeContent(files.nextFile(), content);
+    }
+
+    @Benchmark
+    public byte[] readContent(ThreadFiles files) {
+        return files.client.readContent(files.nextFile());
+    }
+}
@@ -0,0 +1,103 @@
+package onefilesystem.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import onefilesystem.Durability;
+import onefilesystem.OneFileSystemOptions;
+import onefilesystem.ShardedFileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Масштабирование операций с числом сегментов: каждый поток работает со своими файлами, которые раскладываются по
+ * сегментам по хэшу имени. С Durability.PER_OPERATION у каждого сегмента свой журнал и свой force()
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(8)
+public class ShardedBenchmark {
+
+    private static final String FILE_SYSTEM_NAME = "benchmark-fs";
+    private static final String FILE_NAME = "file";
+    private static final int FILES_PER_THREAD = 16;
+
+    @Param({"1", "2", "4", "8"})
+    private int shardsCount;
+
+    @Param({"NONE", "PER_OPERATION"})
+    private Durability durability;
+
+    private final AtomicInteger threadsCount = new AtomicInteger();
+    private final byte[] content = new byte[4096];
+    private Path directory;
+    private ShardedFileSystem fileSystem;
+
+    @State(Scope.Thread)
+    public static class ThreadFiles {
+        private String[] fileNames;
+        private int next;
+
+        @Setup
+        public void setup(ShardedBenchmark benchmark) {
+            int thread = benchmark.threadsCount.getAndIncrement();
+            fileNames = new String[FILES_PER_THREAD];
+            for (int i = 0; i < FILES_PER_THREAD; i++) {
+                fileNames[i] = FILE_NAME + thread + "-" + i;
+                benchmark.fileSystem.createFile(fileNames[i]);
+                benchmark.fileSystem.writeContent(fileNames[i], benchmark.content);
+            }
+        }
+
+        private String nextFile() {
+            next = (next + 1) % FILES_PER_THREAD;
+            return fileNames[next];
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory(FILE_SYSTEM_NAME);
+        fileSystem = new ShardedFileSystem(directory.toString(), FILE_SYSTEM_NAME, shardsCount,
+                OneFileSystemOptions.builder()
+                        .durability(durability)
+                        .build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileSystem.close();
+        for (int i = 0; i < shardsCount; i++) {
+            Files.delete(directory.resolve(ShardedFileSystem.segmentName(FILE_SYSTEM_NAME, i, shardsCount)));
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void writeContent(ThreadFiles files) {
+        fileSystem.writeContent(files.nextFile(), content);
+    }
+
+    @Benchmark
+    public byte[] readContent(ThreadFiles files) {
+        return fileSystem.readContent(files.nextFile());
+    }
+}
@@ -0,0 +1,7 @@
+package onefilesystem.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+@Threads(1)
+public class SingleThreadOperationsBenchmark extends AbstractOperationsBenchmark {
+}
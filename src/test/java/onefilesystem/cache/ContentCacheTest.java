@@ -0,0 +1,73 @@
+package onefilesystem.cache;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentCacheTest {
+
+    @Test
+    void getReturnsOnlySameVersion() {
+        ContentCache cache = new ContentCache(1024, new LruEvictionPolicy());
+        cache.put("file", 1, ByteBuffer.wrap("content".getBytes()));
+
+        ByteBuffer cached = cache.get("file", 1);
+        assertNull(cache.get("file", 2));
+
+        assertTrue(cached.isDirect());
+        assertTrue(cached.isReadOnly());
+        assertEquals(1, cache.getStatistics().getHitCount());
+        assertEquals(1, cache.getStatistics().getMissCount());
+    }
+
+    @Test
+    void lruEvictsLeastRecentlyUsedToFitBudget() {
+        ContentCache cache = new ContentCache(300, new LruEvictionPolicy());
+        cache.put("first", 1, ByteBuffer.allocate(100));
+        cache.put("second", 1, ByteBuffer.allocate(100));
+        cache.put("third", 1, ByteBuffer.allocate(100));
+        cache.get("first", 1);
+
+        cache.put("fourth", 1, ByteBuffer.allocate(150));
+
+        assertNotNull(cache.get("first", 1));
+        assertNull(cache.get("second", 1));
+        assertNull(cache.get("third", 1));
+        assertEquals(2, cache.getStatistics().getEvictionCount());
+        assertEquals(250, cache.getStatistics().getUsedBytes());
+    }
+
+    @Test
+    void tinyLfuRejectsRarelyReadFile() {
+        ContentCache cache = new ContentCache(200, new TinyLfuEvictionPolicy(64));
+        for (int i = 0; i < 5; i++) {
+            cache.get("popular", 1);
+            cache.get("warm", 1);
+        }
+        cache.put("popular", 1, ByteBuffer.allocate(100));
+        cache.put("warm", 1, ByteBuffer.allocate(100));
+
+        cache.get("scan", 1);
+        cache.put("scan", 1, ByteBuffer.allocate(100));
+
+        assertNull(cache.get("scan", 1));
+        assertNotNull(cache.get("popular", 1));
+        assertEquals(1, cache.getStatistics().getRejectionCount());
+    }
+
+    @Test
+    void invalidateFreesBudget() {
+        ContentCache cache = new ContentCache(100, new LruEvictionPolicy());
+        cache.put("file", 1, ByteBuffer.allocate(100));
+
+        cache.invalidate("file");
+
+        assertEquals(0, cache.getStatistics().getUsedBytes());
+        assertEquals(0, cache.getStatistics().getEntriesCount());
+    }
+}
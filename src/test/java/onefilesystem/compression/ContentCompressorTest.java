@@ -0,0 +1,80 @@
+package onefilesystem.compression;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import onefilesystem.exception.OneFileSystemException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentCompressorTest {
+
+    @ParameterizedTest
+    @EnumSource(value = Compression.class, names = {"DEFLATE", "LZ"})
+    void compressAndDecompress(Compression compression) {
+        for (int size : new int[]{200, 4096, 300_000, 1_000_000}) {
+            byte[] content = text(size);
+
+            EncodedContent encoded = ContentCompressor.compress(content, compression);
+
+            assertEquals(compression, encoded.getCompression());
+            assertTrue(encoded.getLength() < content.length / 2, "size " + size);
+            assertArrayEquals(content, decompress(encoded, content.length));
+        }
+    }
+
+    /**
+     * Несжимаемый контент хранится как есть, а в частично сжимаемом несжимаемые блоки лежат как есть
+     */
+    @ParameterizedTest
+    @EnumSource(value = Compression.class, names = {"DEFLATE", "LZ"})
+    void storeIncompressibleRaw(Compression compression) {
+        byte[] random = new byte[600_000];
+        new Random(1).nextBytes(random);
+
+        EncodedContent encoded = ContentCompressor.compress(random, compression);
+        assertEquals(Compression.NONE, encoded.getCompression());
+        assertSame(random, encoded.getBytes());
+
+        byte[] mixed = Arrays.copyOf(random, 700_000);
+        System.arraycopy(text(400_000), 0, mixed, 300_000, 400_000);
+        encoded = ContentCompressor.compress(mixed, compression);
+        assertEquals(compression, encoded.getCompression());
+        assertArrayEquals(mixed, decompress(encoded, mixed.length));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Compression.class, names = {"DEFLATE", "LZ"})
+    void detectCorruptedContent(Compression compression) {
+        byte[] content = text(10_000);
+        EncodedContent encoded = ContentCompressor.compress(content, compression);
+        byte[] stored = Arrays.copyOf(encoded.getBytes(), encoded.getLength() / 2);
+
+        assertThrows(OneFileSystemException.class, () -> ContentCompressor.decompress(compression, stored,
+                stored.length, new byte[content.length], content.length));
+    }
+
+    private static byte[] decompress(EncodedContent encoded, int contentSize) {
+        byte[] stored = Arrays.copyOf(encoded.getBytes(), encoded.getLength());
+        byte[] content = new byte[contentSize];
+        ContentCompressor.decompress(encoded.getCompression(), stored, stored.length, content, contentSize);
+        return content;
+    }
+
+    private static byte[] text(int size) {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(size);
+        while (text.length() < size) {
+            text.append("{\"id\":").append(random.nextInt(1000)).append(",\"name\":\"file-")
+                    .append(random.nextInt(100)).append("\",\"tags\":[\"aaa\",\"bbb\"]}\n");
+        }
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.UTF_8), size);
+    }
+}
@@ -0,0 +1,52 @@
+package onefilesystem.metrics;
+
+import onefilesystem.model.LatencyStatistics;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketBoundsCoverValues() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, 1L << 40};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+
+            assertTrue(upperBound >= value, "value " + value);
+            assertTrue(upperBound - value <= value / 16, "value " + value);
+        }
+        assertEquals(LatencyHistogram.bucketIndex((1L << 41) - 1), LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    void percentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 10_000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+
+        LatencyStatistics statistics = histogram.getStatistics();
+
+        assertEquals(10_000, statistics.getCount());
+        assertEquals(10_000_000, statistics.getMaxNanos());
+        assertWithin(5_000_000, statistics.getP50Nanos());
+        assertWithin(9_900_000, statistics.getP99Nanos());
+        assertWithin(9_990_000, statistics.getP999Nanos());
+    }
+
+    @Test
+    void emptyHistogram() {
+        LatencyStatistics statistics = new LatencyHistogram().getStatistics();
+
+        assertEquals(0, statistics.getCount());
+        assertEquals(0, statistics.getP99Nanos());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 16,
+                "expected ~" + expected + ", actual " + actual);
+    }
+}
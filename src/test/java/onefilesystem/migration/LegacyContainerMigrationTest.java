@@ -0,0 +1,78 @@
+package onefilesystem.migration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import onefilesystem.FileSystem;
+import onefilesystem.OneFileSystem;
+import onefilesystem.exception.FileNotFoundException;
+import onefilesystem.exception.OneFileSystemException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LegacyContainerMigrationTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-fs";
+
+    /**
+     * Заголовки, записанные прежней версией: file0 и file1 с контентом content0 и content1, удаленный файл deleted
+     */
+    private static final String SERIALIZED_HEADERS = "/migration/serialized-headers.bin";
+
+    /**
+     * Прежняя версия начинала контент сразу за заголовками и резервировала под каждый файл по 10_000_000 байт
+     */
+    private static final long LEGACY_CONTENT_START_POSITION = 1024L * 256;
+    private static final long LEGACY_SLOT_SIZE = 10_000_000;
+
+    private final Path fileSystemPath = Paths.get(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+
+    @BeforeEach
+    public void before() throws IOException {
+        try (InputStream headers = getClass().getResourceAsStream(SERIALIZED_HEADERS);
+             RandomAccessFile file = new RandomAccessFile(fileSystemPath.toFile(), "rw")) {
+            file.write(headers.readAllBytes());
+            file.seek(LEGACY_CONTENT_START_POSITION);
+            file.write("content0".getBytes());
+            file.seek(LEGACY_CONTENT_START_POSITION + LEGACY_SLOT_SIZE);
+            file.write("content1".getBytes());
+        }
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        Files.delete(fileSystemPath);
+    }
+
+    @Test
+    void openWithoutMigration() {
+        assertThrows(OneFileSystemException.class, () -> new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+    }
+
+    @Test
+    void migrate() throws IOException {
+        assertEquals(2, LegacyContainerMigration.migrate(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        assertEquals(0, LegacyContainerMigration.migrate(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+
+        try (FileSystem fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME)) {
+            assertEquals("content0", new String(fileSystem.readContent("file0")));
+            assertEquals("content1", new String(fileSystem.readContent("file1")));
+            assertThrows(FileNotFoundException.class, () -> fileSystem.readContent("deleted"));
+
+            fileSystem.createFile("file2");
+            fileSystem.writeContent("file2", "content2".getBytes());
+            assertEquals("content2", new String(fileSystem.readContent("file2")));
+            assertEquals("content0", new String(fileSystem.readContent("file0")));
+            assertEquals("content1", new String(fileSystem.readContent("file1")));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package onefilesystem.migration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import onefilesystem.OneFileSystem;
+import onefilesystem.OneFileSystemOptions;
+import onefilesystem.ShardedFileSystem;
+import onefilesystem.compression.Compression;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReshardingTest {
+
+    private static final String FILE_SYSTEM_DIRECTORY = ".";
+    private static final String FILE_SYSTEM_NAME = "test-resharding-fs";
+    private static final int FILES_COUNT = 50;
+
+    @BeforeEach
+    public void before() throws IOException {
+        try (OneFileSystem fileSystem = new OneFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME)) {
+            for (int i = 0; i < FILES_COUNT; i++) {
+                fileSystem.createFile(fileName(i));
+                fileSystem.writeContent(fileName(i), content(i), i % 2 == 0 ? Compression.LZ : Compression.NONE);
+            }
+        }
+    }
+
+    @AfterEach
+    public void after() throws IOException {
+        int shardsCount = ShardedFileSystem.existingShardsCount(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME);
+        for (int i = 0; i < shardsCount; i++) {
+            Files.delete(Paths.get(FILE_SYSTEM_DIRECTORY,
+                    ShardedFileSystem.segmentName(FILE_SYSTEM_NAME, i, shardsCount)));
+        }
+    }
+
+    @Test
+    void reshardAndBack() throws IOException {
+        OneFileSystemOptions options = OneFileSystemOptions.defaults();
+        assertEquals(FILES_COUNT, Resharding.reshard(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, 4, options));
+        assertEquals(4, ShardedFileSystem.existingShardsCount(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        assertFilesIntact(4);
+
+        assertEquals(FILES_COUNT, Resharding.reshard(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, 3, options));
+        assertFilesIntact(3);
+
+        assertEquals(FILES_COUNT, Resharding.reshard(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, 1, options));
+        assertEquals(1, ShardedFileSystem.existingShardsCount(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME));
+        assertEquals(0, Resharding.reshard(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME, 1, options));
+        assertFilesIntact(1);
+    }
+
+    private static void assertFilesIntact(int shardsCount) throws IOException {
+        try (ShardedFileSystem fileSystem = new ShardedFileSystem(FILE_SYSTEM_DIRECTORY, FILE_SYSTEM_NAME,
+                shardsCount)) {
+            assertEquals(FILES_COUNT, fileSystem.list("").size());
+            for (int i = 0; i < FILES_COUNT; i++) {
+                assertArrayEquals(content(i), fileSystem.readContent(fileName(i)));
+                assertEquals(i % 2 == 0 ? Compression.LZ : Compression.NONE,
+                        fileSystem.stat(fileName(i)).getCompression());
+            }
+        }
+    }
+
+    private static String fileName(int i) {
+        return "file" + i;
+    }
+
+    private static byte[] content(int i) {
+        return ("content" + i).repeat(100).getBytes();
+    }
+}
@@ -0,0 +1,24 @@
+package onefilesystem.utils;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChecksumsTest {
+
+    @Test
+    void combine() {
+        byte[] bytes = new byte[100_000];
+        new Random(1).nextBytes(bytes);
+
+        for (int split : new int[]{0, 1, 777, 65536, bytes.length}) {
+            int first = Checksums.crc32c(bytes, 0, split);
+            int second = Checksums.crc32c(bytes, split, bytes.length - split);
+            assertEquals(Checksums.crc32c(bytes, 0, bytes.length),
+                    Checksums.combine(first, second, bytes.length - split));
+        }
+        assertEquals(Checksums.crc32c(new byte[70_000], 0, 70_000), Checksums.zeros(70_000));
+    }
+}
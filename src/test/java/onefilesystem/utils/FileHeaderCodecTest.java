@@ -0,0 +1,57 @@
+package onefilesystem.utils;
+
+import java.nio.ByteBuffer;
+
+import onefilesystem.compression.Compression;
+import onefilesystem.model.FileHeader;
+import org.junit.jupiter.api.Test;
+
+import static onefilesystem.utils.Constants.FILE_HEADER_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileHeaderCodecTest {
+
+    @Test
+    void encodeAndDecode() {
+        FileHeader fileHeader = new FileHeader(7, "файл-😀.txt");
+        fileHeader.setDeleted(true);
+        fileHeader.setContentPosition(1L << 40);
+        fileHeader.setContentCapacity(4096);
+        fileHeader.setContentRealSize(4000);
+        fileHeader.setContentStoredSize(1200);
+        fileHeader.setCompression(Compression.LZ);
+
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(2 * FILE_HEADER_SIZE);
+        byteBuffer.position(FILE_HEADER_SIZE);
+        FileHeaderCodec.encode(fileHeader, byteBuffer);
+
+        assertEquals(2 * FILE_HEADER_SIZE, byteBuffer.position());
+        assertTrue(FileHeaderCodec.isEmpty(byteBuffer, 0));
+        assertEquals(fileHeader, FileHeaderCodec.decode(byteBuffer, FILE_HEADER_SIZE));
+    }
+
+    @Test
+    void decodeVersion1() {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        byteBuffer.putInt(FileHeaderCodec.MAGIC).putShort((short) 1).putShort((short) 0)
+                .putLong(3).putLong(1L << 20).putLong(1024).putLong(1000)
+                .putShort((short) 4).put("file".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+
+        FileHeader fileHeader = FileHeaderCodec.decode(byteBuffer, 0);
+
+        FileHeader expected = new FileHeader(3, "file");
+        expected.setContentPosition(1L << 20);
+        expected.setContentCapacity(1024);
+        expected.setRawContentSize(1000);
+        expected.setContentChecksum(null);
+        assertEquals(expected, fileHeader);
+    }
+
+    @Test
+    void utf8Length() {
+        String fileName = "файл-😀.txt";
+        assertEquals(fileName.getBytes(java.nio.charset.StandardCharsets.UTF_8).length,
+                FileHeaderCodec.utf8Length(fileName));
+    }
+}